@@ -37,6 +37,7 @@ checkForUnsetValues() {
 makeConfig patient-generated-data $PROFILE
 configValue patient-generated-data $PROFILE authorization.client-ids '{"P73R4CUD4":"pteracuda"}'
 configValue patient-generated-data $PROFILE authorization.static-access-token 'pterastatic'
+configValue patient-generated-data $PROFILE bulk-export.enabled 'true'
 configValue patient-generated-data $PROFILE internal.client-key 'pteracuda'
 configValue patient-generated-data $PROFILE metadata.endpoint-authorize 'http://fake.com/authorize'
 configValue patient-generated-data $PROFILE metadata.endpoint-management 'http://fake.com/manage'
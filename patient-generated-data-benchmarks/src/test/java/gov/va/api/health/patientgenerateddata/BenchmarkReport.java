@@ -0,0 +1,167 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+/**
+ * Compares JMH JSON results to a baseline run. Each benchmark, including its parameters, is listed
+ * with the change in average time and in allocation per operation. The run fails if either grew by
+ * more than the threshold.
+ */
+public final class BenchmarkReport {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  /** Allocation noise, in bytes per operation, that is never reported as a regression. */
+  private static final double ALLOCATION_SLACK = 16;
+
+  /** Normalized allocation rate from the gc profiler, named with a leading dot in older JMHs. */
+  private static Double allocation(JsonNode secondaryMetrics) {
+    if (secondaryMetrics == null) {
+      return null;
+    }
+    Iterator<Map.Entry<String, JsonNode>> metrics = secondaryMetrics.fields();
+    while (metrics.hasNext()) {
+      Map.Entry<String, JsonNode> metric = metrics.next();
+      if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+        return metric.getValue().get("score").asDouble();
+      }
+    }
+    return null;
+  }
+
+  private static String change(Double baseline, Double current) {
+    if (baseline == null || current == null || baseline == 0) {
+      return "";
+    }
+    return String.format("%+.1f%%", (current - baseline) * 100 / baseline);
+  }
+
+  private static String format(Double value) {
+    return value == null ? "-" : String.format("%.2f", value);
+  }
+
+  private static String key(JsonNode benchmark) {
+    StringBuilder key = new StringBuilder(benchmark.get("benchmark").asText());
+    JsonNode params = benchmark.get("params");
+    if (params != null) {
+      Map<String, String> sorted = new TreeMap<>();
+      params.fields().forEachRemaining(p -> sorted.put(p.getKey(), p.getValue().asText()));
+      key.append(sorted);
+    }
+    return key.toString();
+  }
+
+  private static void log(@NonNull String msg) {
+    System.out.println(msg);
+  }
+
+  /** Arguments are the JMH result file, the baseline file, and the threshold, e.g. 0.10. */
+  @SneakyThrows
+  public static void main(String[] args) {
+    checkState(args.length == 3, "Usage: BenchmarkReport <result> <baseline> <threshold>");
+    File resultFile = new File(args[0]);
+    File baselineFile = new File(args[1]);
+    double threshold = Double.parseDouble(args[2]);
+    Map<String, Score> results = scores(resultFile);
+    Map<String, Score> baseline =
+        baselineFile.exists() ? scores(baselineFile) : new LinkedHashMap<>();
+    List<String> report = new ArrayList<>();
+    List<String> regressions = new ArrayList<>();
+    report.add(
+        String.format(
+            "%-90s %12s %12s %8s %12s %12s %8s",
+            "Benchmark",
+            "Baseline",
+            "Current",
+            "Change",
+            "Base B/op",
+            "Cur B/op",
+            "Change"));
+    for (Map.Entry<String, Score> entry : results.entrySet()) {
+      Score current = entry.getValue();
+      Score base = baseline.get(entry.getKey());
+      report.add(
+          String.format(
+              "%-90s %12s %12s %8s %12s %12s %8s",
+              entry.getKey(),
+              base == null ? "-" : format(base.time()),
+              format(current.time()) + " " + current.unit(),
+              base == null ? "" : change(base.time(), current.time()),
+              base == null ? "-" : format(base.allocation()),
+              format(current.allocation()),
+              base == null ? "" : change(base.allocation(), current.allocation())));
+      if (base != null && current.regressedFrom(base, threshold)) {
+        regressions.add(entry.getKey());
+      }
+    }
+    if (baseline.isEmpty()) {
+      report.add("No baseline at " + baselineFile.getAbsolutePath() + ", nothing compared.");
+    }
+    File reportFile =
+        new File(resultFile.getAbsoluteFile().getParentFile(), "benchmark-report.txt");
+    Files.write(reportFile.toPath(), report);
+    report.forEach(BenchmarkReport::log);
+    checkState(
+        regressions.isEmpty(),
+        "%s benchmarks regressed by more than %s%%: %s",
+        regressions.size(),
+        threshold * 100,
+        regressions);
+  }
+
+  @SneakyThrows
+  private static Map<String, Score> scores(File file) {
+    Map<String, Score> scores = new LinkedHashMap<>();
+    for (JsonNode benchmark : MAPPER.readTree(file)) {
+      JsonNode primary = benchmark.get("primaryMetric");
+      scores.put(
+          key(benchmark),
+          Score.builder()
+              .time(primary.get("score").asDouble())
+              .error(primary.path("scoreError").asDouble(0))
+              .unit(primary.get("scoreUnit").asText())
+              .allocation(allocation(benchmark.get("secondaryMetrics")))
+              .build());
+    }
+    return scores;
+  }
+
+  @Value
+  @Builder
+  static class Score {
+    double time;
+
+    double error;
+
+    String unit;
+
+    Double allocation;
+
+    /** Slower beyond the measurement error, or allocating more, than the threshold allows. */
+    boolean regressedFrom(Score baseline, double threshold) {
+      if (!unit.equals(baseline.unit())) {
+        return false;
+      }
+      if (time - error > baseline.time() * (1 + threshold)) {
+        return true;
+      }
+      return allocation != null
+          && baseline.allocation() != null
+          && allocation > baseline.allocation() * (1 + threshold) + ALLOCATION_SLACK;
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The leaf level of a clustered index, modeled the way SQL Server fills it. A row past the last key
+ * of the index starts a new page once the last page is full. Any other row that does not fit splits
+ * its page, moving half of the rows to a new page. New pages are allocated at the end of the file,
+ * so a split leaves the index out of physical order.
+ */
+final class ClusteredIndexModel {
+  /** Bytes available for rows on an 8 KB page. */
+  private static final int PAGE_BYTES = 8096;
+
+  /** Row header, null bitmap, variable column offsets and slot array entry. */
+  private static final int ROW_OVERHEAD_BYTES = 15;
+
+  private final int rowsPerPage;
+
+  /** Pages by their lowest key. */
+  private final TreeMap<String, Page> pages = new TreeMap<>();
+
+  private int allocatedPages;
+
+  private long rows;
+
+  private long splits;
+
+  ClusteredIndexModel(int keyBytes, int payloadBytes) {
+    rowsPerPage = PAGE_BYTES / (keyBytes + payloadBytes + ROW_OVERHEAD_BYTES);
+    checkState(rowsPerPage > 0, "Rows do not fit on a page");
+  }
+
+  private void addKey(String lowestKey, Page page, String key) {
+    page.keys.add(key);
+    if (key.compareTo(lowestKey) < 0) {
+      pages.remove(lowestKey);
+      pages.put(key, page);
+    }
+  }
+
+  /** Average fullness of the pages, as avg_page_space_used_in_percent reports it. */
+  double density() {
+    return pages.isEmpty() ? 0 : 100.0 * rows / ((double) pages.size() * rowsPerPage);
+  }
+
+  /**
+   * Percentage of pages whose next page in key order is not the next page in the file, as
+   * avg_fragmentation_in_percent reports it.
+   */
+  double fragmentation() {
+    if (pages.isEmpty()) {
+      return 0;
+    }
+    int outOfOrder = 0;
+    Page previous = null;
+    for (Page page : pages.values()) {
+      if (previous != null && page.id != previous.id + 1) {
+        outOfOrder++;
+      }
+      previous = page;
+    }
+    return 100.0 * outOfOrder / pages.size();
+  }
+
+  /** Add the row with the given key, returning the number of page splits it caused. */
+  int insert(String key) {
+    rows++;
+    Map.Entry<String, Page> entry = pages.floorEntry(key);
+    if (entry == null) {
+      entry = pages.firstEntry();
+    }
+    if (entry == null) {
+      Page first = newPage();
+      first.keys.add(key);
+      pages.put(key, first);
+      return 0;
+    }
+    Page page = entry.getValue();
+    if (page.keys.size() < rowsPerPage) {
+      addKey(entry.getKey(), page, key);
+      return 0;
+    }
+    if (page == pages.lastEntry().getValue() && key.compareTo(page.keys.last()) > 0) {
+      Page last = newPage();
+      last.keys.add(key);
+      pages.put(key, last);
+      return 0;
+    }
+    splits++;
+    Page upper = newPage();
+    while (upper.keys.size() < page.keys.size()) {
+      upper.keys.add(page.keys.pollLast());
+    }
+    pages.put(upper.keys.first(), upper);
+    if (key.compareTo(upper.keys.first()) > 0) {
+      upper.keys.add(key);
+    } else {
+      addKey(entry.getKey(), page, key);
+    }
+    return 1;
+  }
+
+  private Page newPage() {
+    return new Page(allocatedPages++);
+  }
+
+  int pageCount() {
+    return pages.size();
+  }
+
+  long rows() {
+    return rows;
+  }
+
+  long splits() {
+    return splits;
+  }
+
+  private static final class Page {
+    private final int id;
+
+    private final TreeSet<String> keys = new TreeSet<>();
+
+    private Page(int id) {
+      this.id = id;
+    }
+  }
+}
@@ -0,0 +1,159 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.SneakyThrows;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Inserting new resources keyed by random and by time-ordered IDs into a table clustered on its
+ * varchar(36) primary key, like the resource tables. Each operation inserts and commits a batch of
+ * rows. The keys are also replayed through a model of the clustered index, which counts the page
+ * splits of each batch and reports the page density and fragmentation left at the end of the run.
+ *
+ * <p>The table is in an in-memory H2 database, unless -Dbenchmarks.jdbc-url names another
+ * database. Against SQL Server, the fragmentation SQL Server reports for the table is printed too.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ClusteredInsertBenchmark {
+  private static final int BATCH_SIZE = 100;
+
+  private static final int KEY_BYTES = 36;
+
+  @Param({"random", "time-ordered"})
+  String ids;
+
+  @Param({"1000"})
+  int payloadBytes;
+
+  @Param({"50000"})
+  int preloadedRows;
+
+  Connection connection;
+
+  PreparedStatement insert;
+
+  ClusteredIndexModel index;
+
+  Supplier<String> newId;
+
+  String payload;
+
+  @Benchmark
+  public void insertBatch(PageSplits pageSplits) {
+    pageSplits.pageSplits += insertRows(BATCH_SIZE);
+  }
+
+  @SneakyThrows
+  private int insertRows(int count) {
+    int splits = 0;
+    for (int i = 0; i < count; i++) {
+      String id = newId.get();
+      insert.setString(1, id);
+      insert.setString(2, payload);
+      insert.addBatch();
+      splits += index.insert(id);
+    }
+    insert.executeBatch();
+    connection.commit();
+    return splits;
+  }
+
+  @TearDown(Level.Trial)
+  @SneakyThrows
+  public void report() {
+    System.out.printf(
+        "%nModeled index (%s IDs): %d rows, %d pages, %d splits,"
+            + " %.1f%% page density, %.1f%% fragmentation%n",
+        ids,
+        index.rows(),
+        index.pageCount(),
+        index.splits(),
+        index.density(),
+        index.fragmentation());
+    if (connection.getMetaData().getURL().startsWith("jdbc:sqlserver:")) {
+      try (Statement stats = connection.createStatement();
+          ResultSet rows =
+              stats.executeQuery(
+                  "select page_count, avg_page_space_used_in_percent, avg_fragmentation_in_percent"
+                      + " from sys.dm_db_index_physical_stats(db_id(),"
+                      + " object_id('ClusteredInsertBenchmark'), 1, null, 'DETAILED')"
+                      + " where index_level = 0")) {
+        while (rows.next()) {
+          System.out.printf(
+              "SQL Server index (%s IDs): %d pages, %.1f%% page density, %.1f%% fragmentation%n",
+              ids, rows.getLong(1), rows.getDouble(2), rows.getDouble(3));
+        }
+      }
+    }
+    try (Statement drop = connection.createStatement()) {
+      drop.execute("drop table ClusteredInsertBenchmark");
+    }
+    connection.close();
+  }
+
+  /** Create the table and fill it with rows keyed the same way, like a long-lived table. */
+  @Setup(Level.Trial)
+  @SneakyThrows
+  public void setUp() {
+    newId =
+        "random".equals(ids)
+            ? Controllers::generateRandomId
+            : Controllers::generateTimeOrderedId;
+    payload = "x".repeat(payloadBytes);
+    index = new ClusteredIndexModel(KEY_BYTES, payloadBytes);
+    connection =
+        DriverManager.getConnection(
+            System.getProperty("benchmarks.jdbc-url", "jdbc:h2:mem:clustered;MODE=MSSQLServer"),
+            System.getProperty("benchmarks.jdbc-username", "sa"),
+            System.getProperty("benchmarks.jdbc-password", ""));
+    try (Statement ddl = connection.createStatement()) {
+      ddl.execute("drop table if exists ClusteredInsertBenchmark");
+      ddl.execute(
+          "create table ClusteredInsertBenchmark"
+              + " (id varchar(36) not null primary key, payload varchar(4000) not null)");
+    }
+    connection.setAutoCommit(false);
+    insert =
+        connection.prepareStatement(
+            "insert into ClusteredInsertBenchmark (id, payload) values (?,?)");
+    for (int loaded = 0; loaded < preloadedRows; loaded += BATCH_SIZE) {
+      insertRows(Math.min(BATCH_SIZE, preloadedRows - loaded));
+    }
+  }
+
+  /** Page splits in the modeled clustered index, per iteration. */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class PageSplits {
+    public long pageSplits;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      pageSplits = 0;
+    }
+  }
+}
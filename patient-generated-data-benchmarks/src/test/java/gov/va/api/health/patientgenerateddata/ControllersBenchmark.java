@@ -0,0 +1,94 @@
+package gov.va.api.health.patientgenerateddata;
+
+import gov.va.api.health.r4.api.elements.Reference;
+import gov.va.api.health.r4.api.resources.Observation;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Date and reference parsing done for the search columns of every write. */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ControllersBenchmark {
+  @Param({
+    "2021",
+    "2021-06",
+    "2021-06-15",
+    "2021-06-15T12:30:45Z",
+    "2021-06-15T12:30:45.123-05:00"
+  })
+  String dateTime;
+
+  List<Reference> references;
+
+  List<String> referenceStrings;
+
+  @Benchmark
+  public Instant parseDateTime() {
+    return Controllers.parseDateTime(dateTime);
+  }
+
+  @Benchmark
+  public void resourceIdOfReference(Blackhole blackhole) {
+    for (Reference reference : references) {
+      blackhole.consume(Controllers.resourceId(reference));
+    }
+  }
+
+  @Benchmark
+  public void resourceIdOfString(Blackhole blackhole) {
+    for (String reference : referenceStrings) {
+      blackhole.consume(Controllers.resourceId(reference));
+    }
+  }
+
+  @Benchmark
+  public void resourceType(Blackhole blackhole) {
+    for (Reference reference : references) {
+      blackhole.consume(Controllers.resourceType(reference));
+    }
+  }
+
+  /** References of the synthetic resources, plus the qualified forms clients also send. */
+  @Setup
+  public void setUp() {
+    references = new ArrayList<>();
+    for (QuestionnaireResponse response :
+        SyntheticPayloads.resources(QuestionnaireResponse.class, "questionnaire-response")) {
+      references.add(response.subject());
+      references.add(response.author());
+      references.add(response.source());
+    }
+    for (Observation observation :
+        SyntheticPayloads.resources(Observation.class, "observation")) {
+      references.add(observation.subject());
+    }
+    references.add(Reference.builder().reference("/Patient/1017283180V801730").build());
+    references.add(
+        Reference.builder()
+            .reference("https://sandbox-api.va.gov/services/pgd/v0/r4/Patient/1017283180V801730")
+            .build());
+    references.removeIf(Objects::isNull);
+    referenceStrings = references.stream().map(Reference::reference).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,65 @@
+package gov.va.api.health.patientgenerateddata;
+
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Search index values computed from the metadata tags and use contexts of every write. */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MappingBenchmark {
+  List<Questionnaire> questionnaires;
+
+  List<QuestionnaireResponse> questionnaireResponses;
+
+  @Benchmark
+  public void metadataTagJoin(Blackhole blackhole) {
+    for (QuestionnaireResponse response : questionnaireResponses) {
+      blackhole.consume(TokenListMapping.metadataTagJoin(response));
+    }
+  }
+
+  @Benchmark
+  public void metadataTagTokens(Blackhole blackhole) {
+    for (QuestionnaireResponse response : questionnaireResponses) {
+      blackhole.consume(TokenListMapping.metadataTagTokens(response));
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    questionnaires = SyntheticPayloads.resources(Questionnaire.class, "questionnaire");
+    questionnaireResponses =
+        SyntheticPayloads.resources(QuestionnaireResponse.class, "questionnaire-response");
+  }
+
+  @Benchmark
+  public void useContextValueJoin(Blackhole blackhole) {
+    for (Questionnaire questionnaire : questionnaires) {
+      blackhole.consume(CompositeMapping.useContextValueJoin(questionnaire));
+    }
+  }
+
+  @Benchmark
+  public void useContextValueTokens(Blackhole blackhole) {
+    for (Questionnaire questionnaire : questionnaires) {
+      blackhole.consume(CompositeMapping.useContextValueTokens(questionnaire));
+    }
+  }
+}
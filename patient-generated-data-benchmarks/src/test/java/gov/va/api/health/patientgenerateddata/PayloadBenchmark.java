@@ -0,0 +1,131 @@
+package gov.va.api.health.patientgenerateddata;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.r4.api.resources.Observation;
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Reading stored payloads, both bound to the R4 model and rewritten as raw resources, for plain and
+ * compressed payloads.
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PayloadBenchmark {
+  private static final String R4_URL = "https://sandbox-api.va.gov/services/pgd/v0/r4";
+
+  @Param({"false", "true"})
+  boolean compressed;
+
+  List<ObservationEntity> observations;
+
+  List<QuestionnaireEntity> questionnaires;
+
+  List<QuestionnaireResponseEntity> questionnaireResponses;
+
+  private static void deserialize(Blackhole blackhole, List<? extends PayloadEntity<?>> entities) {
+    for (PayloadEntity<?> entity : entities) {
+      blackhole.consume(entity.deserializePayload());
+    }
+  }
+
+  private static void rawResources(
+      Blackhole blackhole, List<? extends PayloadEntity<?>> entities, Set<String> icnFields) {
+    for (PayloadEntity<?> entity : entities) {
+      blackhole.consume(RawResource.of(entity, R4_URL, icnFields));
+    }
+  }
+
+  @Benchmark
+  public void deserializeObservation(Blackhole blackhole) {
+    deserialize(blackhole, observations);
+  }
+
+  @Benchmark
+  public void deserializeQuestionnaire(Blackhole blackhole) {
+    deserialize(blackhole, questionnaires);
+  }
+
+  @Benchmark
+  public void deserializeQuestionnaireResponse(Blackhole blackhole) {
+    deserialize(blackhole, questionnaireResponses);
+  }
+
+  private <E extends PayloadEntity<?>> E encode(E entity) {
+    if (compressed) {
+      entity.compressedPayload(PayloadCompression.compress(entity.payload())).payload(null);
+    }
+    return entity;
+  }
+
+  @Benchmark
+  public void rawObservation(Blackhole blackhole) {
+    rawResources(blackhole, observations, Set.of("subject"));
+  }
+
+  @Benchmark
+  public void rawQuestionnaire(Blackhole blackhole) {
+    rawResources(blackhole, questionnaires, Set.of());
+  }
+
+  @Benchmark
+  public void rawQuestionnaireResponse(Blackhole blackhole) {
+    rawResources(blackhole, questionnaireResponses, Set.of("subject", "author", "source"));
+  }
+
+  @Setup
+  public void setUp() {
+    observations =
+        SyntheticPayloads.resources(Observation.class, "observation").stream()
+            .map(
+                r ->
+                    encode(
+                        ObservationEntity.builder()
+                            .id(r.id())
+                            .payload(SyntheticPayloads.payload(r))
+                            .build()))
+            .collect(Collectors.toList());
+    questionnaires =
+        SyntheticPayloads.resources(Questionnaire.class, "questionnaire").stream()
+            .map(
+                r ->
+                    encode(
+                        QuestionnaireEntity.builder()
+                            .id(r.id())
+                            .payload(SyntheticPayloads.payload(r))
+                            .build()))
+            .collect(Collectors.toList());
+    questionnaireResponses =
+        SyntheticPayloads.resources(QuestionnaireResponse.class, "questionnaire-response").stream()
+            .map(
+                r ->
+                    encode(
+                        QuestionnaireResponseEntity.builder()
+                            .id(r.id())
+                            .payload(SyntheticPayloads.payload(r))
+                            .build()))
+            .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,33 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating IDs for new resources from concurrent request threads. Random IDs all draw on the
+ * SecureRandom shared by UUID.randomUUID, time-ordered IDs on per-thread generators.
+ */
+@Fork(1)
+@Threads(4)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ResourceIdBenchmark {
+  @Benchmark
+  public String randomId() {
+    return Controllers.generateRandomId();
+  }
+
+  @Benchmark
+  public String timeOrderedId() {
+    return Controllers.generateTimeOrderedId();
+  }
+}
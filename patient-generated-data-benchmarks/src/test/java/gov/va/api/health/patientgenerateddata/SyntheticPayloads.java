@@ -0,0 +1,46 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.r4.api.resources.Resource;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+/** Resources and stored payloads from the synthetic data module. */
+@UtilityClass
+class SyntheticPayloads {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  private static String baseDir() {
+    return System.getProperty("basedir", ".");
+  }
+
+  /** The payload as it is stored, i.e. compact JSON. */
+  @SneakyThrows
+  static String payload(Resource resource) {
+    return MAPPER.writeValueAsString(resource);
+  }
+
+  /** Read every synthetic resource in a directory, e.g. questionnaire-response. */
+  @SneakyThrows
+  static <R extends Resource> List<R> resources(Class<R> type, String directory) {
+    File dir =
+        new File(
+            baseDir() + "/../patient-generated-data-synthetic/src/test/resources/" + directory);
+    File[] files = dir.listFiles();
+    checkState(files != null && files.length > 0, "No synthetic resources in %s", dir);
+    Arrays.sort(files, Comparator.comparing(File::getName));
+    return Arrays.stream(files).map(f -> read(type, f)).collect(Collectors.toList());
+  }
+
+  @SneakyThrows
+  private static <R extends Resource> R read(Class<R> type, File file) {
+    return MAPPER.readValue(file, type);
+  }
+}
@@ -6,23 +6,41 @@ import static gov.va.api.health.patientgenerateddata.Controllers.nowMillis;
 import static java.util.stream.Collectors.joining;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.va.api.health.r4.api.elements.Reference;
 import gov.va.api.health.r4.api.resources.Observation;
 import gov.va.api.health.r4.api.resources.Questionnaire;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
 import gov.va.api.health.r4.api.resources.Resource;
+import java.io.BufferedReader;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import javax.validation.ConstraintViolation;
 import javax.validation.Validation;
 import liquibase.Contexts;
@@ -37,6 +55,13 @@ import lombok.NonNull;
 import lombok.SneakyThrows;
 import lombok.Value;
 
+/**
+ * Loads the synthetic resources into H2 and, optionally, SQL Server. Setting populaterator.copies
+ * additionally loads that many copies of every synthetic resource, with new IDs and patients, from
+ * populaterator.threads writers. Each writer has its own connection, inserts a partition of the
+ * copies with JDBC batches, and commits every populaterator.batch-size resources. Setting
+ * populaterator.ndjson loads the NDJSON files written by the ScaleDataGenerator the same way.
+ */
 public final class Populaterator {
   private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
 
@@ -46,6 +71,10 @@ public final class Populaterator {
     return System.getProperty("basedir", ".");
   }
 
+  private static int batchSize() {
+    return Integer.getInteger("populaterator.batch-size", 1000);
+  }
+
   @SneakyThrows
   private static void bootstrap(@NonNull Db db) {
     log("Bootstrapping " + db.name());
@@ -62,6 +91,89 @@ public final class Populaterator {
     conn.close();
   }
 
+  /** Copy of the template with an ID derived from the template ID and the copy number. */
+  @SneakyThrows
+  private static <T extends Resource> T copy(@NonNull T template, Class<T> clazz, int copy) {
+    ObjectNode tree = MAPPER.valueToTree(template);
+    tree.put(
+        "id",
+        UUID.nameUUIDFromBytes((template.id() + "/" + copy).getBytes(StandardCharsets.UTF_8))
+            .toString());
+    return MAPPER.treeToValue(tree, clazz);
+  }
+
+  @SneakyThrows
+  private static void copies(
+      @NonNull Db db, @NonNull Templates templates, int first, int last, AtomicLong progress) {
+    try (Connection connection = db.connection();
+        Writer writer = new Writer(connection, batchSize(), progress)) {
+      for (int copy = first; copy < last; copy++) {
+        String icn = icn(copy);
+        for (Observation template : templates.observations()) {
+          Observation observation = copy(template, Observation.class, copy);
+          patient(observation.subject(), icn);
+          observation(writer, observation);
+        }
+        for (Questionnaire template : templates.questionnaires()) {
+          questionnaire(writer, copy(template, Questionnaire.class, copy));
+        }
+        for (QuestionnaireResponse template : templates.questionnaireResponses()) {
+          QuestionnaireResponse response = copy(template, QuestionnaireResponse.class, copy);
+          patient(response.subject(), icn);
+          patient(response.author(), icn);
+          patient(response.source(), icn);
+          questionnaireResponse(writer, response);
+        }
+      }
+    }
+  }
+
+  /** Load copies of the templates, partitioned across writer threads. */
+  @SneakyThrows
+  private static void copies(@NonNull Db db, @NonNull Templates templates) {
+    int copies = Integer.getInteger("populaterator.copies", 0);
+    if (copies <= 0) {
+      return;
+    }
+    int threads = Integer.getInteger("populaterator.threads", 4);
+    long expected = (long) copies * templates.size();
+    log(
+        String.format(
+            "Loading %d copies (%d resources) with %d threads in batches of %d",
+            copies, expected, threads, batchSize()));
+    AtomicLong progress = new AtomicLong();
+    long start = System.nanoTime();
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(
+        () -> progress(progress.get(), expected, start), 5, 5, TimeUnit.SECONDS);
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> partitions = new ArrayList<>();
+      for (int t = 0; t < threads; t++) {
+        int first = 1 + (int) ((long) copies * t / threads);
+        int last = 1 + (int) ((long) copies * (t + 1) / threads);
+        partitions.add(workers.submit(() -> copies(db, templates, first, last, progress)));
+      }
+      for (Future<?> partition : partitions) {
+        partition.get();
+      }
+    } finally {
+      workers.shutdownNow();
+      reporter.shutdownNow();
+    }
+    progress(progress.get(), expected, start);
+  }
+
+  /** A well formed ICN, unique for each of populaterator.patients patients. */
+  private static String icn(int copy) {
+    return ScaleDataGenerator.icn(copy % Integer.getInteger("populaterator.patients", 10000));
+  }
+
+  @SneakyThrows
+  private static String json(@NonNull Resource resource) {
+    return MAPPER.writeValueAsString(resource);
+  }
+
   @SneakyThrows
   private static void liquibase(@NonNull Db db) {
     var connection = db.connection();
@@ -101,21 +213,129 @@ public final class Populaterator {
     }
   }
 
+  /**
+   * Load the NDJSON files in populaterator.ndjson, e.g. from the ScaleDataGenerator. Every writer
+   * thread reads each file and inserts the lines numbered for it.
+   */
   @SneakyThrows
-  private static void observation(@NonNull Connection connection) {
-    for (File f : new File(baseDir() + "/src/test/resources/observation").listFiles()) {
-      Observation observation = readFile(Observation.class, f);
-      observation.meta(metaWithLastUpdatedAndSource(observation.meta(), nowMillis(), SOURCE));
-      String sqlInsert =
-          sqlInsert("app.Observation", List.of("id", "payload", "version", "lastUpdated"));
-      try (PreparedStatement statement = connection.prepareStatement(sqlInsert)) {
-        statement.setObject(1, observation.id());
-        statement.setObject(2, MAPPER.writeValueAsString(observation));
-        statement.setObject(3, 0);
-        statement.setTimestamp(4, timestamp(Controllers.nowMillis()));
-        statement.execute();
+  private static void ndjson(@NonNull Db db) {
+    String directory = System.getProperty("populaterator.ndjson", "");
+    if (directory.isBlank()) {
+      return;
+    }
+    List<File> files =
+        Stream.of("Questionnaire", "Observation", "QuestionnaireResponse")
+            .map(type -> new File(directory, type + ".ndjson"))
+            .filter(File::exists)
+            .collect(Collectors.toList());
+    checkState(!files.isEmpty(), "No NDJSON files in %s", directory);
+    long expected = 0;
+    for (File file : files) {
+      try (Stream<String> lines = Files.lines(file.toPath())) {
+        expected += lines.count();
       }
     }
+    int threads = Integer.getInteger("populaterator.threads", 4);
+    log(
+        String.format(
+            "Loading %d resources from %s with %d threads in batches of %d",
+            expected, directory, threads, batchSize()));
+    AtomicLong progress = new AtomicLong();
+    long start = System.nanoTime();
+    long total = expected;
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(
+        () -> progress(progress.get(), total, start), 5, 5, TimeUnit.SECONDS);
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    try {
+      for (File file : files) {
+        List<Future<?>> partitions = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+          int thread = t;
+          partitions.add(workers.submit(() -> ndjson(db, file, thread, threads, progress)));
+        }
+        for (Future<?> partition : partitions) {
+          partition.get();
+        }
+      }
+    } finally {
+      workers.shutdownNow();
+      reporter.shutdownNow();
+    }
+    progress(progress.get(), total, start);
+  }
+
+  @SneakyThrows
+  private static void ndjson(
+      @NonNull Db db, @NonNull File file, int thread, int threads, AtomicLong progress) {
+    String type = file.getName().replace(".ndjson", "");
+    try (Connection connection = db.connection();
+        Writer writer = new Writer(connection, batchSize(), progress);
+        BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+      String line;
+      for (long number = 0; (line = reader.readLine()) != null; number++) {
+        if (number % threads != thread || line.isBlank()) {
+          continue;
+        }
+        switch (type) {
+          case "Observation":
+            observation(writer, MAPPER.readValue(line, Observation.class));
+            break;
+          case "Questionnaire":
+            questionnaire(writer, MAPPER.readValue(line, Questionnaire.class));
+            break;
+          case "QuestionnaireResponse":
+            questionnaireResponse(writer, MAPPER.readValue(line, QuestionnaireResponse.class));
+            break;
+          default:
+            throw new IllegalStateException("Unknown NDJSON resource type: " + type);
+        }
+      }
+    }
+  }
+
+  private static void observation(@NonNull Writer writer, @NonNull Observation observation) {
+    observation.meta(metaWithLastUpdatedAndSource(observation.meta(), nowMillis(), SOURCE));
+    writer.insert(
+        "app.Observation",
+        List.of(
+            "id",
+            "payload",
+            "version",
+            "lastUpdated",
+            "metaSource",
+            "subject",
+            "status",
+            "effective"),
+        observation.id(),
+        json(observation),
+        0,
+        timestamp(Controllers.nowMillis()),
+        SOURCE,
+        Controllers.resourceId(observation.subject()),
+        MAPPER.convertValue(observation.status(), String.class),
+        timestamp(Controllers.parseDateTime(observation.effectiveDateTime())));
+    searchTokens(
+        writer,
+        "app.ObservationCode",
+        "observationId",
+        observation.id(),
+        TokenListMapping.codeableConceptTokens(
+            observation.code() == null ? null : List.of(observation.code())));
+    searchTokens(
+        writer,
+        "app.ObservationCategory",
+        "observationId",
+        observation.id(),
+        TokenListMapping.codeableConceptTokens(observation.category()));
+    writer.added();
+  }
+
+  /** Point a patient reference at another patient. */
+  private static void patient(Reference reference, @NonNull String icn) {
+    if (reference != null && "Patient".equals(Controllers.resourceType(reference))) {
+      reference.reference("Patient/" + icn);
+    }
   }
 
   @SneakyThrows
@@ -124,68 +344,86 @@ public final class Populaterator {
     waitForStartup(db);
     bootstrap(db);
     liquibase(db);
-    var connection = db.connection();
-    observation(connection);
-    questionnaire(connection);
-    questionnaireResponse(connection);
-    connection.commit();
-    connection.close();
+    Templates templates = templates();
+    try (Connection connection = db.connection();
+        Writer writer = new Writer(connection, batchSize(), new AtomicLong())) {
+      templates.observations().forEach(o -> observation(writer, o));
+      templates.questionnaires().forEach(q -> questionnaire(writer, q));
+      templates.questionnaireResponses().forEach(r -> questionnaireResponse(writer, r));
+    }
+    copies(db, templates);
+    ndjson(db);
     log("Finished " + db.name());
   }
 
-  @SneakyThrows
-  private static void questionnaire(@NonNull Connection connection) {
-    for (File f : new File(baseDir() + "/src/test/resources/questionnaire").listFiles()) {
-      Questionnaire questionnaire = readFile(Questionnaire.class, f);
-      questionnaire.meta(metaWithLastUpdatedAndSource(questionnaire.meta(), nowMillis(), SOURCE));
-      String sqlInsert =
-          sqlInsert(
-              "app.Questionnaire",
-              List.of("id", "payload", "version", "contextTypeValue", "lastUpdated"));
-      try (PreparedStatement statement = connection.prepareStatement(sqlInsert)) {
-        statement.setObject(1, questionnaire.id());
-        statement.setObject(2, MAPPER.writeValueAsString(questionnaire));
-        statement.setObject(3, 0);
-        statement.setObject(4, CompositeMapping.useContextValueJoin(questionnaire));
-        statement.setTimestamp(5, timestamp(Controllers.nowMillis()));
-        statement.execute();
-      }
-    }
+  private static void progress(long loaded, long expected, long start) {
+    double seconds = (System.nanoTime() - start) / 1e9;
+    log(
+        String.format(
+            "Loaded %d of %d resources (%.1f%%), %.0f resources/s",
+            loaded, expected, loaded * 100.0 / expected, loaded / seconds));
   }
 
-  @SneakyThrows
-  private static void questionnaireResponse(@NonNull Connection connection) {
-    for (File f : new File(baseDir() + "/src/test/resources/questionnaire-response").listFiles()) {
-      QuestionnaireResponse response = readFile(QuestionnaireResponse.class, f);
-      response.meta(metaWithLastUpdatedAndSource(response.meta(), nowMillis(), SOURCE));
-      String sqlInsert =
-          sqlInsert(
-              "app.QuestionnaireResponse",
-              List.of(
-                  "id",
-                  "payload",
-                  "version",
-                  "authored",
-                  "author",
-                  "subject",
-                  "metaTag",
-                  "questionnaire",
-                  "source",
-                  "lastUpdated"));
-      try (PreparedStatement statement = connection.prepareStatement(sqlInsert)) {
-        statement.setObject(1, response.id());
-        statement.setObject(2, MAPPER.writeValueAsString(response));
-        statement.setObject(3, 0);
-        statement.setTimestamp(4, timestamp(Controllers.parseDateTime(response.authored())));
-        statement.setObject(5, Controllers.resourceId(response.author()));
-        statement.setObject(6, Controllers.resourceId(response.subject()));
-        statement.setObject(7, TokenListMapping.metadataTagJoin(response));
-        statement.setObject(8, Controllers.resourceId(response.questionnaire()));
-        statement.setObject(9, Controllers.resourceId(response.source()));
-        statement.setTimestamp(10, timestamp(Controllers.nowMillis()));
-        statement.execute();
-      }
+  private static void questionnaire(
+      @NonNull Writer writer, @NonNull Questionnaire questionnaire) {
+    questionnaire.meta(metaWithLastUpdatedAndSource(questionnaire.meta(), nowMillis(), SOURCE));
+    writer.insert(
+        "app.Questionnaire",
+        List.of("id", "payload", "version", "contextTypeValue", "lastUpdated", "metaSource"),
+        questionnaire.id(),
+        json(questionnaire),
+        0,
+        CompositeMapping.useContextValueJoin(questionnaire),
+        timestamp(Controllers.nowMillis()),
+        SOURCE);
+    for (UseContextToken token : CompositeMapping.useContextValueTokens(questionnaire)) {
+      writer.insert(
+          "app.QuestionnaireContext",
+          List.of("questionnaireId", "contextCode", "system", "code", "token"),
+          questionnaire.id(),
+          token.contextCode(),
+          token.system(),
+          token.code(),
+          token.token());
     }
+    writer.added();
+  }
+
+  private static void questionnaireResponse(
+      @NonNull Writer writer, @NonNull QuestionnaireResponse response) {
+    response.meta(metaWithLastUpdatedAndSource(response.meta(), nowMillis(), SOURCE));
+    writer.insert(
+        "app.QuestionnaireResponse",
+        List.of(
+            "id",
+            "payload",
+            "version",
+            "authored",
+            "author",
+            "subject",
+            "metaTag",
+            "questionnaire",
+            "source",
+            "lastUpdated",
+            "metaSource"),
+        response.id(),
+        json(response),
+        0,
+        timestamp(Controllers.parseDateTime(response.authored())),
+        Controllers.resourceId(response.author()),
+        Controllers.resourceId(response.subject()),
+        TokenListMapping.metadataTagJoin(response),
+        Controllers.resourceId(response.questionnaire()),
+        Controllers.resourceId(response.source()),
+        timestamp(Controllers.nowMillis()),
+        SOURCE);
+    searchTokens(
+        writer,
+        "app.QuestionnaireResponseTag",
+        "questionnaireResponseId",
+        response.id(),
+        TokenListMapping.metadataTagTokens(response));
+    writer.added();
   }
 
   @SneakyThrows
@@ -199,6 +437,33 @@ public final class Populaterator {
     return obj;
   }
 
+  private static <T extends Resource> List<T> readFiles(
+      @NonNull Class<T> clazz, @NonNull String folder) {
+    File[] files = new File(baseDir() + "/src/test/resources/" + folder).listFiles();
+    checkState(files != null, "Missing synthetic %s", folder);
+    return Arrays.stream(files)
+        .sorted(Comparator.comparing(File::getName))
+        .map(f -> readFile(clazz, f))
+        .collect(Collectors.toList());
+  }
+
+  private static void searchTokens(
+      @NonNull Writer writer,
+      @NonNull String table,
+      @NonNull String idColumn,
+      @NonNull String id,
+      @NonNull Collection<SearchToken> tokens) {
+    for (SearchToken token : tokens) {
+      writer.insert(
+          table,
+          List.of(idColumn, "system", "code", "token"),
+          id,
+          token.system(),
+          token.code(),
+          token.token());
+    }
+  }
+
   private static String sqlInsert(@NonNull String table, @NonNull Collection<String> columns) {
     return String.format(
         "insert into %s (%s) values (%s)",
@@ -207,6 +472,14 @@ public final class Populaterator {
         IntStream.range(0, columns.size()).mapToObj(v -> "?").collect(joining(",")));
   }
 
+  private static Templates templates() {
+    return Templates.builder()
+        .observations(readFiles(Observation.class, "observation"))
+        .questionnaires(readFiles(Questionnaire.class, "questionnaire"))
+        .questionnaireResponses(readFiles(QuestionnaireResponse.class, "questionnaire-response"))
+        .build();
+  }
+
   private static Timestamp timestamp(Instant instant) {
     if (instant == null) {
       return null;
@@ -296,4 +569,84 @@ public final class Populaterator {
               host, port, user, password, database));
     }
   }
+
+  @Value
+  @Builder
+  private static final class Templates {
+    @NonNull List<Observation> observations;
+
+    @NonNull List<Questionnaire> questionnaires;
+
+    @NonNull List<QuestionnaireResponse> questionnaireResponses;
+
+    int size() {
+      return observations.size() + questionnaires.size() + questionnaireResponses.size();
+    }
+  }
+
+  /**
+   * Batched inserts on one connection. Batches are executed in the order their tables were first
+   * used, so resources are inserted before the search tokens that reference them, and committed
+   * together every batchSize resources.
+   */
+  private static final class Writer implements AutoCloseable {
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>();
+
+    private final Connection connection;
+
+    private final int batchSize;
+
+    private final AtomicLong progress;
+
+    private int pending;
+
+    @SneakyThrows
+    Writer(@NonNull Connection connection, int batchSize, @NonNull AtomicLong progress) {
+      checkState(batchSize > 0, "populaterator.batch-size must be positive");
+      this.connection = connection;
+      this.batchSize = batchSize;
+      this.progress = progress;
+      connection.setAutoCommit(false);
+    }
+
+    /** Count a resource whose rows have all been inserted, executing the batches when full. */
+    void added() {
+      pending++;
+      if (pending >= batchSize) {
+        flush();
+      }
+    }
+
+    @Override
+    @SneakyThrows
+    public void close() {
+      flush();
+      for (PreparedStatement statement : statements.values()) {
+        statement.close();
+      }
+    }
+
+    @SneakyThrows
+    void flush() {
+      for (PreparedStatement statement : statements.values()) {
+        statement.executeBatch();
+      }
+      connection.commit();
+      progress.addAndGet(pending);
+      pending = 0;
+    }
+
+    @SneakyThrows
+    void insert(@NonNull String table, @NonNull List<String> columns, Object... values) {
+      PreparedStatement statement = statements.get(table);
+      if (statement == null) {
+        statement = connection.prepareStatement(sqlInsert(table, columns));
+        statements.put(table, statement);
+      }
+      for (int i = 0; i < values.length; i++) {
+        statement.setObject(i + 1, values[i]);
+      }
+      statement.addBatch();
+    }
+  }
 }
@@ -0,0 +1,391 @@
+package gov.va.api.health.patientgenerateddata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.File;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+
+/**
+ * Generates reproducible datasets for search performance tests, as NDJSON the Populaterator loads
+ * with populaterator.ndjson. The same seed and counts always produce the same resources, and each
+ * patient is generated from its own random stream, so patients do not change when others are
+ * added.
+ *
+ * <p>Distributions are skewed the way production data is: most patients have a few resources and
+ * some have many, recent dates are more common than old ones, a few questionnaires account for most
+ * responses, and payload sizes vary from a couple of answers to large sampled data series.
+ */
+public final class ScaleDataGenerator {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  /** Generated dates end here, rather than now, so datasets are reproducible. */
+  private static final Instant END = Instant.parse("2021-06-01T00:00:00Z");
+
+  private static final Duration SPAN = Duration.ofDays(5 * 365);
+
+  /** The synthetic questionnaires are the most answered. */
+  private static final List<String> SYNTHETIC_QUESTIONNAIRES =
+      List.of(
+          "37953b72-961b-41ee-bd05-86c62bacc46b",
+          "842479ed-9c5b-474b-bf97-fc295617900c",
+          "9c930b5c-6e0e-4e84-9f3a-1c1a6cb4313e");
+
+  private static final List<ObservationCode> OBSERVATION_CODES =
+      List.of(
+          ObservationCode.of("8867-4", "Heart rate", "vital-signs", "/min", 50, 120, 30),
+          ObservationCode.of("85354-9", "Blood pressure", "vital-signs", "mm[Hg]", 90, 160, 20),
+          ObservationCode.of("29463-7", "Body weight", "vital-signs", "kg", 45, 150, 15),
+          ObservationCode.of("8310-5", "Body temperature", "vital-signs", "Cel", 36, 39, 10),
+          ObservationCode.of("2339-0", "Glucose", "laboratory", "mg/dL", 70, 200, 10),
+          ObservationCode.of("55423-8", "Number of steps", "activity", "{steps}", 0, 20000, 10),
+          ObservationCode.of("131328", "MDC_ECG_ELEC_POTL", "procedure", null, 0, 0, 5));
+
+  private final long seed;
+
+  private final int questionnaires;
+
+  private final int practitioners;
+
+  @Builder
+  ScaleDataGenerator(long seed, int questionnaires, int practitioners) {
+    this.seed = seed;
+    this.questionnaires = questionnaires;
+    this.practitioners = practitioners;
+  }
+
+  private static ObjectNode coding(String system, String code, String display) {
+    ObjectNode coding = MAPPER.createObjectNode().put("system", system).put("code", code);
+    if (display != null) {
+      coding.put("display", display);
+    }
+    return coding;
+  }
+
+  /** Skewed count with the given mean, most are small and a few are large. */
+  private static int count(SplittableRandom random, double mean) {
+    return (int) Math.round(-mean * Math.log(1 - random.nextDouble()));
+  }
+
+  /** Date within the last 5 years before the end, more often recent. */
+  private static String date(SplittableRandom random) {
+    double age = Math.pow(random.nextDouble(), 2);
+    return END.minusSeconds((long) (age * SPAN.toSeconds())).toString();
+  }
+
+  /** A well formed ICN, unique for each patient number. */
+  static String icn(int patient) {
+    return String.format("%010dV%06d", 2000000000L + patient, patient);
+  }
+
+  private static int integer(String property, int defaultValue) {
+    return Integer.getInteger("generator." + property, defaultValue);
+  }
+
+  /** Write NDJSON files to generator.output, by default target/scale-data. */
+  @SneakyThrows
+  public static void main(String[] args) {
+    File output =
+        new File(
+            System.getProperty(
+                "generator.output", System.getProperty("basedir", ".") + "/target/scale-data"));
+    int patients = integer("patients", 1000);
+    ScaleDataGenerator generator =
+        ScaleDataGenerator.builder()
+            .seed(Long.getLong("generator.seed", 1))
+            .questionnaires(integer("questionnaires", 25))
+            .practitioners(integer("practitioners", 200))
+            .build();
+    generator.write(
+        output,
+        patients,
+        integer("observations-per-patient", 20),
+        integer("questionnaire-responses-per-patient", 10));
+  }
+
+  private static ObjectNode reference(String reference) {
+    return MAPPER.createObjectNode().put("reference", reference);
+  }
+
+  private static String text(SplittableRandom random, double meanLength) {
+    int length = 1 + count(random, meanLength);
+    StringBuilder text = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      text.append(random.nextInt(6) == 0 ? ' ' : (char) ('a' + random.nextInt(26)));
+    }
+    return text.toString();
+  }
+
+  private ObjectNode answer(SplittableRandom random) {
+    ObjectNode answer = MAPPER.createObjectNode();
+    switch (random.nextInt(5)) {
+      case 0:
+        return answer.put("valueBoolean", random.nextBoolean());
+      case 1:
+        return answer.put("valueInteger", random.nextInt(100));
+      case 2:
+        answer.set(
+            "valueCoding",
+            coding(
+                "http://cancer.questionnaire.org/system/code/yesno",
+                Integer.toString(random.nextInt(3)),
+                null));
+        return answer;
+      default:
+        return answer.put("valueString", text(random, 40));
+    }
+  }
+
+  private String id(String resourceType, int patient, int index) {
+    return UUID.nameUUIDFromBytes(
+            (seed + "/" + resourceType + "/" + patient + "/" + index)
+                .getBytes(StandardCharsets.UTF_8))
+        .toString();
+  }
+
+  ObjectNode observation(SplittableRandom random, int patient, int index) {
+    ObservationCode code = weighted(random, OBSERVATION_CODES);
+    ObjectNode observation =
+        MAPPER
+            .createObjectNode()
+            .put("resourceType", "Observation")
+            .put("id", id("Observation", patient, index));
+    double status = random.nextDouble();
+    observation.put(
+        "status",
+        status < 0.85
+            ? "final"
+            : status < 0.92 ? "preliminary" : status < 0.97 ? "amended" : "entered-in-error");
+    ObjectNode category = MAPPER.createObjectNode();
+    category
+        .putArray("coding")
+        .add(
+            coding(
+                "http://terminology.hl7.org/CodeSystem/observation-category",
+                code.category(),
+                null));
+    observation.putArray("category").add(category);
+    ObjectNode codeableConcept = MAPPER.createObjectNode().put("text", code.display());
+    codeableConcept
+        .putArray("coding")
+        .add(
+            coding(
+                code.unit() == null ? "urn:oid:2.16.840.1.113883.6.24" : "http://loinc.org",
+                code.code(),
+                code.display()));
+    observation.set("code", codeableConcept);
+    observation.set("subject", reference("Patient/" + icn(patient)));
+    observation.put("effectiveDateTime", date(random));
+    if (code.unit() == null) {
+      // Waveforms are the largest payloads, their size varies with the recording length
+      int samples = 100 + count(random, 2000);
+      StringBuilder data = new StringBuilder(samples * 5);
+      for (int i = 0; i < samples; i++) {
+        data.append(i == 0 ? "" : " ").append(1900 + random.nextInt(300));
+      }
+      ObjectNode sampled = MAPPER.createObjectNode();
+      sampled.set("origin", MAPPER.createObjectNode().put("value", 2048));
+      sampled.put("period", 10).put("dimensions", 1).put("data", data.toString());
+      observation.set("valueSampledData", sampled);
+    } else {
+      double value = code.low() + random.nextDouble() * (code.high() - code.low());
+      observation.set(
+          "valueQuantity",
+          MAPPER
+              .createObjectNode()
+              .put("value", Math.round(value * 10) / 10.0)
+              .put("unit", code.unit())
+              .put("system", "http://unitsofmeasure.org")
+              .put("code", code.unit()));
+    }
+    return observation;
+  }
+
+  /** Questionnaire for each generated questionnaire ID, the synthetic ones already exist. */
+  ObjectNode questionnaire(int index) {
+    ObjectNode questionnaire =
+        MAPPER
+            .createObjectNode()
+            .put("resourceType", "Questionnaire")
+            .put("id", questionnaireId(index))
+            .put("title", "Generated Questionnaire " + index)
+            .put("status", "active");
+    ArrayNode items = questionnaire.putArray("item");
+    for (int i = 1; i <= 1 + index % 10; i++) {
+      items.add(
+          MAPPER
+              .createObjectNode()
+              .put("linkId", Integer.toString(i))
+              .put("text", "Question " + i)
+              .put("type", "string"));
+    }
+    return questionnaire;
+  }
+
+  private String questionnaireId(int index) {
+    if (index < SYNTHETIC_QUESTIONNAIRES.size()) {
+      return SYNTHETIC_QUESTIONNAIRES.get(index);
+    }
+    return id("Questionnaire", -1, index);
+  }
+
+  ObjectNode questionnaireResponse(SplittableRandom random, int patient, int index) {
+    ObjectNode response =
+        MAPPER
+            .createObjectNode()
+            .put("resourceType", "QuestionnaireResponse")
+            .put("id", id("QuestionnaireResponse", patient, index));
+    ArrayNode tags = MAPPER.createArrayNode();
+    if (random.nextDouble() < 0.3) {
+      tags.add(
+          coding(
+              "https://github.com/department-of-veterans-affairs",
+              "health-apis-patient-generated-data",
+              null));
+    }
+    if (random.nextDouble() < 0.5) {
+      tags.add(coding("http://terminology.hl7.org/CodeSystem/common-tags", "actionable", null));
+    }
+    if (tags.size() > 0) {
+      response.putObject("meta").set("tag", tags);
+    }
+    // Answers concentrate on a few questionnaires
+    int questionnaire = (int) (Math.pow(random.nextDouble(), 3) * questionnaires);
+    response.put("questionnaire", "Questionnaire/" + questionnaireId(questionnaire));
+    response.put("status", random.nextDouble() < 0.9 ? "completed" : "in-progress");
+    String patientReference = "Patient/" + icn(patient);
+    response.set(
+        "subject",
+        reference(
+            random.nextDouble() < 0.6
+                ? "Appointment/I2-" + id("Appointment", patient, index).toUpperCase()
+                : patientReference));
+    response.put("authored", date(random));
+    response.set(
+        "author",
+        reference(
+            random.nextDouble() < 0.7
+                ? patientReference
+                : String.format("Practitioner/I2-%08d", random.nextInt(practitioners))));
+    response.set("source", reference(patientReference));
+    ArrayNode items = response.putArray("item");
+    int itemCount = 1 + Math.min(count(random, 6), 99);
+    for (int i = 1; i <= itemCount; i++) {
+      ObjectNode item =
+          MAPPER
+              .createObjectNode()
+              .put("linkId", String.format("%02d", i))
+              .put("text", "Question " + i);
+      item.putArray("answer").add(answer(random));
+      items.add(item);
+    }
+    return response;
+  }
+
+  private SplittableRandom random(String stream, int patient) {
+    return new SplittableRandom(seed * 1_000_003L + patient * 31L + stream.hashCode());
+  }
+
+  private <T extends Weighted> T weighted(SplittableRandom random, List<T> values) {
+    int total = values.stream().mapToInt(Weighted::weight).sum();
+    int pick = random.nextInt(total);
+    for (T value : values) {
+      pick -= value.weight();
+      if (pick < 0) {
+        return value;
+      }
+    }
+    throw new IllegalStateException("Unreachable");
+  }
+
+  /** Write Observation, Questionnaire, and QuestionnaireResponse NDJSON files. */
+  @SneakyThrows
+  void write(
+      @NonNull File output,
+      int patients,
+      double observationsPerPatient,
+      double questionnaireResponsesPerPatient) {
+    output.mkdirs();
+    long observations = 0;
+    long responses = 0;
+    try (PrintWriter observationOut = writer(output, "Observation");
+        PrintWriter questionnaireOut = writer(output, "Questionnaire");
+        PrintWriter responseOut = writer(output, "QuestionnaireResponse")) {
+      for (int q = SYNTHETIC_QUESTIONNAIRES.size(); q < questionnaires; q++) {
+        questionnaireOut.println(MAPPER.writeValueAsString(questionnaire(q)));
+      }
+      for (int patient = 0; patient < patients; patient++) {
+        SplittableRandom observationRandom = random("Observation", patient);
+        int count = count(observationRandom, observationsPerPatient);
+        for (int i = 0; i < count; i++) {
+          observationOut.println(
+              MAPPER.writeValueAsString(observation(observationRandom, patient, i)));
+        }
+        observations += count;
+        SplittableRandom responseRandom = random("QuestionnaireResponse", patient);
+        count = count(responseRandom, questionnaireResponsesPerPatient);
+        for (int i = 0; i < count; i++) {
+          responseOut.println(
+              MAPPER.writeValueAsString(questionnaireResponse(responseRandom, patient, i)));
+        }
+        responses += count;
+      }
+    }
+    System.out.println(
+        String.format(
+            "Generated %d observations and %d questionnaire responses for %d patients in %s",
+            observations, responses, patients, output.getAbsolutePath()));
+  }
+
+  @SneakyThrows
+  private PrintWriter writer(File output, String resourceType) {
+    return new PrintWriter(
+        Files.newBufferedWriter(
+            new File(output, resourceType + ".ndjson").toPath(), StandardCharsets.UTF_8));
+  }
+
+  interface Weighted {
+    int weight();
+  }
+
+  @Value
+  @Builder
+  static class ObservationCode implements Weighted {
+    String code;
+
+    String display;
+
+    String category;
+
+    /** UCUM unit of the quantity, or null for sampled data. */
+    String unit;
+
+    double low;
+
+    double high;
+
+    int weight;
+
+    static ObservationCode of(
+        String code,
+        String display,
+        String category,
+        String unit,
+        double low,
+        double high,
+        int weight) {
+      return new ObservationCode(code, display, category, unit, low, high, weight);
+    }
+  }
+}
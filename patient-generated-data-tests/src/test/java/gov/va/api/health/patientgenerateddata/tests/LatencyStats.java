@@ -0,0 +1,77 @@
+package gov.va.api.health.patientgenerateddata.tests;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Latencies and failures recorded for one endpoint. Latencies are kept exactly, in nanoseconds, so
+ * percentiles are read from the sorted samples rather than from approximate buckets.
+ */
+final class LatencyStats {
+  private long[] latencies = new long[1024];
+
+  private int count;
+
+  private int failures;
+
+  /** Percentile, in milliseconds, of the sorted samples using the nearest rank. */
+  private static double percentile(long[] sorted, double percentile) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+    return sorted[Math.max(rank - 1, 0)] / (double) TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  synchronized void record(long nanos, boolean failed) {
+    if (count == latencies.length) {
+      latencies = Arrays.copyOf(latencies, count * 2);
+    }
+    latencies[count++] = nanos;
+    if (failed) {
+      failures++;
+    }
+  }
+
+  synchronized Summary summary(String endpoint, double seconds) {
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    return Summary.builder()
+        .endpoint(endpoint)
+        .requests(count)
+        .failures(failures)
+        .throughput(count / seconds)
+        .p50(percentile(sorted, 50))
+        .p95(percentile(sorted, 95))
+        .p99(percentile(sorted, 99))
+        .max(percentile(sorted, 100))
+        .build();
+  }
+
+  @Value
+  @Builder
+  static final class Summary {
+    String endpoint;
+
+    int requests;
+
+    int failures;
+
+    /** Requests per second. */
+    double throughput;
+
+    double p50;
+
+    double p95;
+
+    double p99;
+
+    double max;
+
+    double errorRate() {
+      return requests == 0 ? 0 : failures / (double) requests;
+    }
+  }
+}
@@ -0,0 +1,340 @@
+package gov.va.api.health.patientgenerateddata.tests;
+
+import static com.google.common.base.Preconditions.checkState;
+import static gov.va.api.health.patientgenerateddata.tests.Requests.ACCESS_TOKEN;
+import static gov.va.api.health.patientgenerateddata.tests.Requests.CLIENT_KEY;
+import static gov.va.api.health.patientgenerateddata.tests.Requests.MAPPER;
+import static gov.va.api.health.patientgenerateddata.tests.SystemDefinitions.systemDefinition;
+
+import gov.va.api.health.r4.api.resources.Resource;
+import gov.va.api.health.sentinel.Environment;
+import gov.va.api.health.sentinel.configurablevalues.ConfigurableValues;
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Replays a weighted mix of reads, searches, and creates against the locally launched application
+ * from concurrent workers. Latency percentiles, throughput, and error rates are reported per
+ * endpoint, and the run fails if any endpoint breaches its service level objectives.
+ *
+ * <p>Configured with these properties:
+ *
+ * <pre>
+ * - load-test.duration-seconds    measured duration, default 60
+ * - load-test.warmup-seconds      unmeasured warm up, default 10
+ * - load-test.threads             concurrent workers, default 8
+ * - load-test.mix                 weight per kind, default read=60,search=30,create=10
+ * - load-test.slo.p95-millis      default 500
+ * - load-test.slo.p99-millis      default 1000
+ * - load-test.slo.error-rate      default 0.01
+ * - load-test.slo.min-throughput  requests per second per endpoint, default 0
+ * </pre>
+ *
+ * <p>Each SLO can be overridden per kind, e.g. load-test.slo.create.p99-millis.
+ */
+@Slf4j
+public class LoadTest {
+  private static final String BASE_DIR = System.getProperty("basedir", ".");
+
+  private static final HttpClient CLIENT =
+      HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+
+  private final Map<Endpoint, LatencyStats> stats = new LinkedHashMap<>();
+
+  private final Queue<String> created = new ConcurrentLinkedQueue<>();
+
+  private final List<Endpoint> endpoints;
+
+  private final Map<String, Integer> mix;
+
+  private volatile boolean measuring;
+
+  LoadTest(List<Endpoint> endpoints, Map<String, Integer> mix) {
+    this.endpoints = endpoints;
+    this.mix = mix;
+    endpoints.forEach(e -> stats.put(e, new LatencyStats()));
+  }
+
+  private static Endpoint create(String resourceType, Supplier<Resource> resource) {
+    return Endpoint.builder()
+        .kind("create")
+        .name("create " + resourceType)
+        .request(
+            () ->
+                request(resourceType)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(json(resource.get())))
+                    .build())
+        .createdType(resourceType)
+        .build();
+  }
+
+  private static List<Endpoint> endpoints() {
+    var ids = systemDefinition().ids();
+    return List.of(
+        read("Observation", ids.observation()),
+        read("Questionnaire", ids.questionnaire()),
+        read("QuestionnaireResponse", ids.questionnaireResponse()),
+        search("Observation?subject=" + ids.observationSubject()),
+        search(
+            "Questionnaire?context-type-value="
+                + ids.questionnaireContextTypeValue().codeWithAnySystem()),
+        search("QuestionnaireResponse?subject=" + ids.questionnaireResponseSubject()),
+        search("QuestionnaireResponse?_lastUpdated=" + ids.lastUpdated()),
+        create("Observation", ObservationCreateIT::observation),
+        create("Questionnaire", QuestionnaireCreateIT::questionnaire),
+        create("QuestionnaireResponse", QuestionnaireResponseCreateIT::questionnaireResponse));
+  }
+
+  @SneakyThrows
+  private static String json(Resource resource) {
+    return MAPPER.writeValueAsString(resource);
+  }
+
+  /** Start the load test, the application must already be running. */
+  public static void main(String[] args) {
+    checkState(
+        Environment.get() == Environment.LOCAL,
+        "Load tests create data and only run locally, not in %s",
+        Environment.get());
+    new LoadTest(endpoints(), mix(property("load-test.mix", "read=60,search=30,create=10")))
+        .run(
+            Integer.parseInt(property("load-test.threads", "8")),
+            Duration.ofSeconds(Long.parseLong(property("load-test.warmup-seconds", "10"))),
+            Duration.ofSeconds(Long.parseLong(property("load-test.duration-seconds", "60"))));
+  }
+
+  static Map<String, Integer> mix(String mix) {
+    Map<String, Integer> weights = new LinkedHashMap<>();
+    for (String weight : mix.split(",")) {
+      String[] kindAndWeight = weight.trim().split("=");
+      checkState(kindAndWeight.length == 2, "Invalid load-test.mix: %s", mix);
+      weights.put(kindAndWeight[0].trim(), Integer.parseInt(kindAndWeight[1].trim()));
+    }
+    return weights;
+  }
+
+  private static String property(String name, String defaultValue) {
+    return ConfigurableValues.get().forPropertyName(name).orElse(defaultValue).asString();
+  }
+
+  private static Endpoint read(String resourceType, String id) {
+    return Endpoint.builder()
+        .kind("read")
+        .name("read " + resourceType)
+        .request(() -> request(resourceType + "/" + id).GET().build())
+        .build();
+  }
+
+  private static HttpRequest.Builder request(String path) {
+    return HttpRequest.newBuilder(URI.create(systemDefinition().r4().urlWithApiPath() + path))
+        .timeout(Duration.ofSeconds(30))
+        .header("Accept", "application/json")
+        .header("Authorization", "Bearer " + ACCESS_TOKEN)
+        .header("client-key", CLIENT_KEY);
+  }
+
+  private static Endpoint search(String query) {
+    return Endpoint.builder()
+        .kind("search")
+        .name("search " + query.substring(0, query.indexOf('=')))
+        .request(() -> request(query).GET().build())
+        .build();
+  }
+
+  private static double slo(String kind, String name, String defaultValue) {
+    String global = property("load-test.slo." + name, defaultValue);
+    return Double.parseDouble(property("load-test.slo." + kind + "." + name, global));
+  }
+
+  /** Remove the resources created during the run. */
+  private void cleanUp() {
+    var svc = systemDefinition().sandboxDataR4();
+    int removed = 0;
+    for (String reference : created) {
+      try {
+        HttpRequest delete =
+            HttpRequest.newBuilder(URI.create(svc.urlWithApiPath() + reference))
+                .header("client-key", CLIENT_KEY)
+                .DELETE()
+                .build();
+        if (CLIENT.send(delete, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+          removed++;
+        }
+      } catch (Exception e) {
+        log.warn("Failed to remove {}: {}", reference, e.getMessage());
+      }
+    }
+    log.info("Removed {} of {} created resources", removed, created.size());
+  }
+
+  private void execute(Endpoint endpoint) {
+    long start = System.nanoTime();
+    boolean failed;
+    try {
+      HttpResponse<String> response =
+          CLIENT.send(endpoint.request().get(), HttpResponse.BodyHandlers.ofString());
+      failed = response.statusCode() >= 400;
+      if (endpoint.createdType() != null && response.statusCode() == 201) {
+        created.add(
+            endpoint.createdType() + "/" + MAPPER.readTree(response.body()).get("id").asText());
+      }
+    } catch (Exception e) {
+      failed = true;
+    }
+    if (measuring) {
+      stats.get(endpoint).record(System.nanoTime() - start, failed);
+    }
+  }
+
+  private Endpoint next() {
+    int total = endpoints.stream().mapToInt(e -> mix.getOrDefault(e.kind(), 0)).sum();
+    checkState(total > 0, "load-test.mix does not select any endpoint: %s", mix);
+    int pick = ThreadLocalRandom.current().nextInt(total);
+    for (Endpoint endpoint : endpoints) {
+      pick -= mix.getOrDefault(endpoint.kind(), 0);
+      if (pick < 0) {
+        return endpoint;
+      }
+    }
+    throw new IllegalStateException("Unreachable");
+  }
+
+  @SneakyThrows
+  private void report(List<String> lines) {
+    lines.forEach(log::info);
+    File file = new File(BASE_DIR + "/target/load-test-report.txt");
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), lines);
+  }
+
+  @SneakyThrows
+  void run(int threads, @NonNull Duration warmup, @NonNull Duration duration) {
+    log.info("Load testing with {} threads for {} after {} warm up", threads, duration, warmup);
+    long warmupEnd = System.nanoTime() + warmup.toNanos();
+    long end = warmupEnd + duration.toNanos();
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    for (int i = 0; i < threads; i++) {
+      workers.execute(
+          () -> {
+            while (System.nanoTime() < end) {
+              execute(next());
+            }
+          });
+    }
+    TimeUnit.NANOSECONDS.sleep(Math.max(warmupEnd - System.nanoTime(), 0));
+    measuring = true;
+    long measureStart = System.nanoTime();
+    workers.shutdown();
+    workers.awaitTermination(duration.toSeconds() + 60, TimeUnit.SECONDS);
+    measuring = false;
+    double seconds = (System.nanoTime() - measureStart) / 1e9;
+    cleanUp();
+    List<String> lines = new ArrayList<>();
+    List<String> breaches = new ArrayList<>();
+    lines.add(
+        String.format(
+            "%-40s %8s %8s %10s %9s %9s %9s %9s",
+            "Endpoint", "Requests", "Errors", "Req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+    for (Endpoint endpoint : endpoints) {
+      LatencyStats.Summary summary = stats.get(endpoint).summary(endpoint.name(), seconds);
+      if (summary.requests() == 0) {
+        continue;
+      }
+      lines.add(
+          String.format(
+              "%-40s %8d %8d %10.1f %9.1f %9.1f %9.1f %9.1f",
+              summary.endpoint(),
+              summary.requests(),
+              summary.failures(),
+              summary.throughput(),
+              summary.p50(),
+              summary.p95(),
+              summary.p99(),
+              summary.max()));
+      breaches.addAll(Slo.forKind(endpoint.kind()).breaches(summary));
+    }
+    breaches.forEach(b -> lines.add("SLO breached: " + b));
+    report(lines);
+    checkState(breaches.isEmpty(), "%s SLO breaches: %s", breaches.size(), breaches);
+  }
+
+  @Value
+  @Builder
+  static final class Endpoint {
+    @NonNull String kind;
+
+    @NonNull String name;
+
+    @NonNull Supplier<HttpRequest> request;
+
+    /** Resource type of resources created by the endpoint, to be removed after the run. */
+    String createdType;
+  }
+
+  @Value
+  @Builder
+  static final class Slo {
+    double p95Millis;
+
+    double p99Millis;
+
+    double errorRate;
+
+    double minThroughput;
+
+    static Slo forKind(String kind) {
+      return Slo.builder()
+          .p95Millis(slo(kind, "p95-millis", "500"))
+          .p99Millis(slo(kind, "p99-millis", "1000"))
+          .errorRate(slo(kind, "error-rate", "0.01"))
+          .minThroughput(slo(kind, "min-throughput", "0"))
+          .build();
+    }
+
+    List<String> breaches(LatencyStats.Summary summary) {
+      List<String> breaches = new ArrayList<>();
+      if (summary.p95() > p95Millis) {
+        breaches.add(
+            String.format("%s p95 %.1f > %.1f ms", summary.endpoint(), summary.p95(), p95Millis));
+      }
+      if (summary.p99() > p99Millis) {
+        breaches.add(
+            String.format("%s p99 %.1f > %.1f ms", summary.endpoint(), summary.p99(), p99Millis));
+      }
+      if (summary.errorRate() > errorRate) {
+        breaches.add(
+            String.format(
+                "%s error rate %.3f > %.3f", summary.endpoint(), summary.errorRate(), errorRate));
+      }
+      if (summary.throughput() < minThroughput) {
+        breaches.add(
+            String.format(
+                "%s throughput %.1f < %.1f req/s",
+                summary.endpoint(), summary.throughput(), minThroughput));
+      }
+      return breaches;
+    }
+  }
+}
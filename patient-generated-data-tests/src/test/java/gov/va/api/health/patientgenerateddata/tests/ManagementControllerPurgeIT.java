@@ -16,6 +16,6 @@ public class ManagementControllerPurgeIT {
 
   @Test
   void purge() {
-    doInternalDelete("archive/r4/purge", CLIENT_KEY, 200).expectListOf(String.class);
+    doInternalDelete("archive/r4/purge", CLIENT_KEY, 202);
   }
 }
@@ -0,0 +1,53 @@
+package gov.va.api.health.patientgenerateddata;
+
+import gov.va.api.health.r4.api.resources.OperationOutcome;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.Value;
+
+/** Batch-response or transaction-response bundle, with an entry for each request entry. */
+@Value
+@Builder
+public class BatchBundle {
+  @Builder.Default String resourceType = "Bundle";
+
+  String type;
+
+  List<Entry> entry;
+
+  /** Patient ICNs referenced by the created resources. */
+  public Stream<String> icns() {
+    if (entry == null) {
+      return Stream.empty();
+    }
+    return entry.stream()
+        .filter(e -> e.resource() != null)
+        .flatMap(e -> e.resource().icns().stream())
+        .distinct();
+  }
+
+  /** The created resource, or the outcome of an entry that failed. */
+  @Value
+  @Builder
+  public static class Entry {
+    String fullUrl;
+
+    RawResource resource;
+
+    Response response;
+  }
+
+  /** Result of processing an entry. */
+  @Value
+  @Builder
+  public static class Response {
+    String status;
+
+    String location;
+
+    String lastModified;
+
+    OperationOutcome outcome;
+  }
+}
@@ -0,0 +1,355 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
+import static gov.va.api.health.patientgenerateddata.Controllers.nowMillis;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.lang3.StringUtils.isEmpty;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import gov.va.api.health.autoconfig.logging.Loggable;
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import gov.va.api.health.r4.api.resources.Observation;
+import gov.va.api.health.r4.api.resources.OperationOutcome;
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Validator;
+import lombok.Builder;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Creates the resources of a batch or transaction bundle in one database transaction. All entries
+ * are bound and validated before anything is written, the source is resolved once for the request,
+ * and each resource type is saved together so Hibernate can write JDBC batches.
+ *
+ * <p>In a transaction, any invalid entry fails the request, and entries may reference each other
+ * by their urn:uuid full URLs. In a batch, invalid entries are reported in their response entry
+ * and the other entries are still created.
+ */
+@Validated
+@RestController
+@RequestMapping(
+    value = "/r4",
+    produces = {"application/json", "application/fhir+json"})
+public class BatchController {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  private final LinkProperties linkProperties;
+
+  private final Sourcerer sourcerer;
+
+  private final ResourceIds resourceIds;
+
+  private final Validator validator;
+
+  private final ObservationController observationController;
+
+  private final ObservationRepository observationRepository;
+
+  private final QuestionnaireController questionnaireController;
+
+  private final QuestionnaireRepository questionnaireRepository;
+
+  private final QuestionnaireResponseController questionnaireResponseController;
+
+  private final QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  private final int maxEntries;
+
+  /** Autowired constructor. */
+  @Autowired
+  @Builder
+  public BatchController(
+      @NonNull LinkProperties linkProperties,
+      @NonNull Sourcerer sourcerer,
+      @NonNull ResourceIds resourceIds,
+      @NonNull Validator validator,
+      @NonNull ObservationController observationController,
+      @NonNull ObservationRepository observationRepository,
+      @NonNull QuestionnaireController questionnaireController,
+      @NonNull QuestionnaireRepository questionnaireRepository,
+      @NonNull QuestionnaireResponseController questionnaireResponseController,
+      @NonNull QuestionnaireResponseRepository questionnaireResponseRepository,
+      @Value("${batch-bundle.max-entries}") int maxEntries) {
+    checkState(maxEntries > 0, "batch-bundle.max-entries must be positive");
+    this.linkProperties = linkProperties;
+    this.sourcerer = sourcerer;
+    this.resourceIds = resourceIds;
+    this.validator = validator;
+    this.observationController = observationController;
+    this.observationRepository = observationRepository;
+    this.questionnaireController = questionnaireController;
+    this.questionnaireRepository = questionnaireRepository;
+    this.questionnaireResponseController = questionnaireResponseController;
+    this.questionnaireResponseRepository = questionnaireResponseRepository;
+    this.maxEntries = maxEntries;
+  }
+
+  private static <T extends PayloadEntity<?>> List<T> entitiesOf(
+      List<Prepared> prepared, Class<T> type) {
+    return prepared.stream()
+        .map(Prepared::entity)
+        .filter(type::isInstance)
+        .map(type::cast)
+        .collect(toList());
+  }
+
+  /**
+   * Failed entry response. Resources that pass validation but cannot be indexed, such as a dateTime
+   * of 2021-02-30, are bad requests too.
+   */
+  private static BatchBundle.Entry failedEntry(RuntimeException e) {
+    String status;
+    String code;
+    String diagnostics;
+    if (e instanceof Exceptions.Forbidden) {
+      status = "403 Forbidden";
+      code = "forbidden";
+      diagnostics = null;
+    } else if (e instanceof ConstraintViolationException) {
+      status = "400 Bad Request";
+      code = "structure";
+      diagnostics =
+          ((ConstraintViolationException) e)
+              .getConstraintViolations().stream()
+                  .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                  .collect(joining(", "));
+    } else {
+      status = "400 Bad Request";
+      code = "structure";
+      diagnostics = e.getMessage();
+    }
+    OperationOutcome.Issue issue =
+        OperationOutcome.Issue.builder()
+            .severity(OperationOutcome.Issue.IssueSeverity.error)
+            .code(code)
+            .diagnostics(diagnostics)
+            .build();
+    return BatchBundle.Entry.builder()
+        .response(
+            BatchBundle.Response.builder()
+                .status(status)
+                .outcome(
+                    OperationOutcome.builder()
+                        .resourceType("OperationOutcome")
+                        .issue(List.of(issue))
+                        .build())
+                .build())
+        .build();
+  }
+
+  /** Point references to urn:uuid full URLs at the resources created for them. */
+  private static void resolveReferences(JsonNode node, Map<String, String> references) {
+    if (node.isObject()) {
+      JsonNode reference = node.get("reference");
+      if (reference != null && reference.isTextual()) {
+        String resolved = references.get(reference.asText());
+        if (resolved != null) {
+          ((ObjectNode) node).put("reference", resolved);
+        }
+      }
+    }
+    for (Iterator<JsonNode> children = node.elements(); children.hasNext(); ) {
+      resolveReferences(children.next(), references);
+    }
+  }
+
+  /** Transactions only apply to public methods, so the request mapping is public. */
+  @PostMapping
+  @Transactional
+  @Loggable(arguments = false)
+  public BatchBundle batch(
+      @RequestBody JsonNode bundle,
+      @RequestHeader(name = "Authorization", required = true) String authorization,
+      @RequestHeader(name = "x-va-icn", required = false) String icn) {
+    return batch(bundle, authorization, icn, nowMillis());
+  }
+
+  /** Create the resources of a batch or transaction bundle. */
+  public BatchBundle batch(JsonNode bundle, String authorization, String icn, Instant now) {
+    checkRequestState(
+        bundle.isObject() && "Bundle".equals(bundle.path("resourceType").asText()),
+        "Expected a Bundle");
+    String type = bundle.path("type").asText();
+    checkRequestState(
+        "batch".equals(type) || "transaction".equals(type),
+        "Bundle type must be batch or transaction, found %s",
+        type);
+    boolean transaction = "transaction".equals(type);
+    JsonNode entries = bundle.path("entry");
+    checkRequestState(
+        entries.isMissingNode() || entries.isArray(), "Bundle entry must be an array");
+    checkRequestState(
+        entries.size() <= maxEntries,
+        "Bundle has %s entries, the maximum is %s",
+        entries.size(),
+        maxEntries);
+    String source = sourcerer.source(authorization);
+    List<String> ids = new ArrayList<>(entries.size());
+    Map<String, String> references = new HashMap<>();
+    for (JsonNode entry : entries) {
+      String fullUrl = entry.path("fullUrl").asText();
+      String resourceType = entry.path("resource").path("resourceType").asText();
+      String id = resourceIds.newId(resourceType);
+      ids.add(id);
+      if (transaction && fullUrl.startsWith("urn:uuid:") && !resourceType.isEmpty()) {
+        references.put(fullUrl, resourceType + "/" + id);
+      }
+    }
+    List<Prepared> prepared = new ArrayList<>(entries.size());
+    for (int i = 0; i < entries.size(); i++) {
+      try {
+        prepared.add(prepare(entries.get(i), ids.get(i), references, source, icn, now));
+      } catch (Exceptions.Forbidden | Exceptions.BadRequest | ConstraintViolationException e) {
+        if (transaction) {
+          throw e;
+        }
+        prepared.add(Prepared.builder().failure(failedEntry(e)).build());
+      } catch (DateTimeParseException | IllegalArgumentException e) {
+        if (transaction) {
+          throw new Exceptions.BadRequest(e.getMessage(), e);
+        }
+        prepared.add(Prepared.builder().failure(failedEntry(e)).build());
+      }
+    }
+    observationRepository.saveAll(entitiesOf(prepared, ObservationEntity.class));
+    questionnaireRepository.saveAll(entitiesOf(prepared, QuestionnaireEntity.class));
+    questionnaireResponseRepository.saveAll(
+        entitiesOf(prepared, QuestionnaireResponseEntity.class));
+    return BatchBundle.builder()
+        .type(transaction ? "transaction-response" : "batch-response")
+        .entry(prepared.stream().map(p -> toEntry(p, now)).collect(toList()))
+        .build();
+  }
+
+  private <T> T bind(JsonNode resource, Class<T> type) {
+    T value;
+    try {
+      value = MAPPER.treeToValue(resource, type);
+    } catch (JsonProcessingException e) {
+      throw new Exceptions.BadRequest(WebExceptionHandler.sanitizedMessage(e), e);
+    }
+    Set<ConstraintViolation<T>> violations = validator.validate(value);
+    if (!violations.isEmpty()) {
+      throw new ConstraintViolationException(violations);
+    }
+    return value;
+  }
+
+  private Prepared prepare(
+      JsonNode entry,
+      String id,
+      Map<String, String> references,
+      String source,
+      String icn,
+      Instant now) {
+    String method = entry.path("request").path("method").asText();
+    checkRequestState("POST".equals(method), "Only POST entries are supported, found %s", method);
+    JsonNode resource = entry.path("resource");
+    String resourceType = resource.path("resourceType").asText();
+    String url = entry.path("request").path("url").asText();
+    checkRequestState(
+        resourceType.equals(url),
+        "Request URL (%s) and resource type (%s) do not match",
+        url,
+        resourceType);
+    checkRequestState(
+        isEmpty(resource.path("id").asText()),
+        "ID must be empty, found %s",
+        resource.path("id").asText());
+    resolveReferences(resource, references);
+    switch (resourceType) {
+      case "Observation":
+        Observation observation = bind(resource, Observation.class);
+        observation.id(id);
+        ObservationEntity observationEntity =
+            observationController.newEntity(observation, source, icn, now);
+        return Prepared.builder()
+            .entity(observationEntity)
+            .resource(observationController.toRawResource(observationEntity))
+            .build();
+      case "Questionnaire":
+        Questionnaire questionnaire = bind(resource, Questionnaire.class);
+        questionnaire.id(id);
+        QuestionnaireEntity questionnaireEntity =
+            questionnaireController.newEntity(questionnaire, source, icn, now);
+        return Prepared.builder()
+            .entity(questionnaireEntity)
+            .resource(questionnaireController.toRawResource(questionnaireEntity))
+            .build();
+      case "QuestionnaireResponse":
+        QuestionnaireResponse questionnaireResponse =
+            bind(resource, QuestionnaireResponse.class);
+        questionnaireResponse.id(id);
+        QuestionnaireResponseEntity questionnaireResponseEntity =
+            questionnaireResponseController.newEntity(questionnaireResponse, source, icn, now);
+        return Prepared.builder()
+            .entity(questionnaireResponseEntity)
+            .resource(questionnaireResponseController.toRawResource(questionnaireResponseEntity))
+            .build();
+      default:
+        throw new Exceptions.BadRequest("Unsupported resource type: " + resourceType);
+    }
+  }
+
+  private BatchBundle.Entry toEntry(Prepared prepared, Instant now) {
+    if (prepared.failure() != null) {
+      return prepared.failure();
+    }
+    RawResource resource = prepared.resource();
+    String location =
+        linkProperties.r4Url() + "/" + resource.resourceType() + "/" + resource.id();
+    return BatchBundle.Entry.builder()
+        .fullUrl(location)
+        .resource(resource)
+        .response(
+            BatchBundle.Response.builder()
+                .status("201 Created")
+                .location(location)
+                .lastModified(now.toString())
+                .build())
+        .build();
+  }
+
+  /** An entry that is ready to save, or the response of an entry that failed. */
+  @lombok.Value
+  @Builder
+  private static class Prepared {
+    PayloadEntity<?> entity;
+
+    RawResource resource;
+
+    BatchBundle.Entry failure;
+  }
+}
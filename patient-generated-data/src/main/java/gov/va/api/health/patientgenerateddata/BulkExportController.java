@@ -0,0 +1,187 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
+import static gov.va.api.health.patientgenerateddata.Controllers.parseDateTime;
+import static java.util.stream.Collectors.toList;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import gov.va.api.health.r4.api.resources.OperationOutcome;
+import java.io.File;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * FHIR Bulk Data system level $export. Kick-off starts a background export and returns the status
+ * URL, which reports progress until the completion manifest is available. Files are downloaded from
+ * the URLs in the manifest, and deleting the status URL cancels the export and removes its files.
+ * An export includes every patient's data, so these are client-key protected management endpoints,
+ * and links are built from the request rather than the public URL. Exports are held by the instance
+ * that started them, so this controller is only enabled with bulk-export.enabled on a single
+ * instance deployment.
+ */
+@Validated
+@RestController
+@RequestMapping(
+    value = "/management/r4",
+    produces = {"application/json", "application/fhir+json"})
+@ConditionalOnProperty(prefix = "bulk-export", name = "enabled", havingValue = "true")
+@AllArgsConstructor(onConstructor_ = @Autowired)
+public class BulkExportController {
+  private static final String NDJSON = "application/fhir+ndjson";
+
+  private static final Set<String> OUTPUT_FORMATS =
+      Set.of(NDJSON, "application/ndjson", "ndjson");
+
+  private final BulkExporter exporter;
+
+  private static String baseUrl(HttpServletRequest request) {
+    return ServletUriComponentsBuilder.fromContextPath(request)
+        .path("/management/r4")
+        .toUriString();
+  }
+
+  private static List<String> types(String type) {
+    if (isBlank(type)) {
+      return BulkExporter.RESOURCE_TYPES;
+    }
+    List<String> types =
+        Arrays.stream(type.split(",", -1))
+            .map(String::trim)
+            .filter(t -> !t.isEmpty())
+            .distinct()
+            .collect(toList());
+    for (String t : types) {
+      checkRequestState(BulkExporter.RESOURCE_TYPES.contains(t), "Unsupported _type %s", t);
+    }
+    return types;
+  }
+
+  @DeleteMapping(value = "/$export-poll-status/{id}")
+  ResponseEntity<Void> delete(@PathVariable("id") String id) {
+    if (!exporter.delete(id)) {
+      throw new Exceptions.NotFound(id);
+    }
+    return ResponseEntity.status(HttpStatus.ACCEPTED).build();
+  }
+
+  @GetMapping(value = "/$export")
+  ResponseEntity<Void> export(
+      @RequestHeader(name = "Prefer", required = false) String prefer,
+      @RequestParam(name = "_outputFormat", required = false) String outputFormat,
+      @RequestParam(name = "_since", required = false) String since,
+      @RequestParam(name = "_type", required = false) String type,
+      HttpServletRequest request) {
+    checkRequestState(
+        prefer != null && prefer.contains("respond-async"), "Prefer: respond-async is required");
+    checkRequestState(
+        outputFormat == null || OUTPUT_FORMATS.contains(outputFormat),
+        "Unsupported _outputFormat %s",
+        outputFormat);
+    Instant sinceInstant;
+    try {
+      sinceInstant = parseDateTime(since);
+    } catch (DateTimeParseException e) {
+      throw new Exceptions.BadRequest("Invalid _since: " + since, e);
+    }
+    String kickOff =
+        baseUrl(request)
+            + "/$export"
+            + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+    BulkExportJob job = exporter.start(kickOff, types(type), sinceInstant);
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+        .header(HttpHeaders.CONTENT_LOCATION, statusUrl(job.id(), request))
+        .build();
+  }
+
+  @GetMapping(value = "/$export-file/{id}/{file}", produces = NDJSON)
+  ResponseEntity<Resource> file(@PathVariable("id") String id, @PathVariable("file") String file) {
+    File exported =
+        exporter.file(id, file).orElseThrow(() -> new Exceptions.NotFound(id + "/" + file));
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(NDJSON))
+        .contentLength(exported.length())
+        .body(new FileSystemResource(exported));
+  }
+
+  private BulkExportManifest manifest(BulkExportJob job, HttpServletRequest request) {
+    return BulkExportManifest.builder()
+        .transactionTime(job.transactionTime().toString())
+        .request(job.request())
+        .requiresAccessToken(true)
+        .output(
+            job.output().stream()
+                .map(
+                    o ->
+                        BulkExportManifest.Output.builder()
+                            .type(o.type())
+                            .url(
+                                baseUrl(request)
+                                    + "/$export-file/"
+                                    + job.id()
+                                    + "/"
+                                    + o.file())
+                            .count(o.count())
+                            .build())
+                .collect(toList()))
+        .error(List.of())
+        .build();
+  }
+
+  @GetMapping(value = "/$export-poll-status/{id}")
+  ResponseEntity<?> status(@PathVariable("id") String id, HttpServletRequest request) {
+    BulkExportJob job = exporter.job(id).orElseThrow(() -> new Exceptions.NotFound(id));
+    switch (job.status()) {
+      case COMPLETED:
+        return ResponseEntity.ok(manifest(job, request));
+      case FAILED:
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+            .body(
+                OperationOutcome.builder()
+                    .resourceType("OperationOutcome")
+                    .issue(
+                        List.of(
+                            OperationOutcome.Issue.builder()
+                                .severity(OperationOutcome.Issue.IssueSeverity.fatal)
+                                .code("exception")
+                                .diagnostics("Export failed: " + job.error())
+                                .build()))
+                    .build());
+      default:
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .header(
+                "X-Progress",
+                String.format(
+                    "Exported %d resources%s",
+                    job.exported(),
+                    job.exporting() == null ? "" : ", exporting " + job.exporting()))
+            .header(HttpHeaders.RETRY_AFTER, "10")
+            .build();
+    }
+  }
+
+  private String statusUrl(String id, HttpServletRequest request) {
+    return baseUrl(request) + "/$export-poll-status/" + id;
+  }
+}
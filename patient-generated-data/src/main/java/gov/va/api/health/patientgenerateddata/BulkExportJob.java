@@ -0,0 +1,52 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/** Progress and outcome of a bulk data export. */
+@Value
+@Builder(toBuilder = true)
+public class BulkExportJob {
+  String id;
+
+  String request;
+
+  Instant transactionTime;
+
+  List<String> types;
+
+  Instant since;
+
+  Status status;
+
+  /** Resource type currently being exported. */
+  String exporting;
+
+  long exported;
+
+  List<Output> output;
+
+  Instant completed;
+
+  String error;
+
+  /** Export lifecycle. */
+  public enum Status {
+    IN_PROGRESS,
+    COMPLETED,
+    FAILED
+  }
+
+  /** An exported NDJSON file. */
+  @Value
+  @Builder
+  public static class Output {
+    String type;
+
+    String file;
+
+    long count;
+  }
+}
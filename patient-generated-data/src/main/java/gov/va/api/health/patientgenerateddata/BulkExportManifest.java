@@ -0,0 +1,31 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/** Bulk data export completion manifest. */
+@Value
+@Builder
+public class BulkExportManifest {
+  String transactionTime;
+
+  String request;
+
+  boolean requiresAccessToken;
+
+  List<Output> output;
+
+  List<Output> error;
+
+  /** A file of exported resources. */
+  @Value
+  @Builder
+  public static class Output {
+    String type;
+
+    String url;
+
+    Long count;
+  }
+}
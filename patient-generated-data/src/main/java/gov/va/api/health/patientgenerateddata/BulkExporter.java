@@ -0,0 +1,302 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Runs bulk data exports in the background. Each requested resource table is read with a
+ * forward-only JDBC cursor, bypassing the persistence context, and written line by line to an
+ * NDJSON file under bulk-export.directory, so memory use does not grow with the size of the table.
+ * References are qualified the same way reads qualify them. Exports, and their files, are removed
+ * bulk-export.retention-hours after they finish.
+ *
+ * <p>Jobs are kept in memory and files on local disk, so an export can only be polled and
+ * downloaded from the instance that started it. Set bulk-export.enabled only on a single instance
+ * deployment.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "bulk-export", name = "enabled", havingValue = "true")
+public class BulkExporter {
+  /** Exportable resource types, in export order. */
+  public static final List<String> RESOURCE_TYPES =
+      List.of("Observation", "Questionnaire", "QuestionnaireResponse");
+
+  private final JdbcTemplate jdbc;
+
+  private final ObservationController observationController;
+
+  private final QuestionnaireController questionnaireController;
+
+  private final QuestionnaireResponseController questionnaireResponseController;
+
+  private final File directory;
+
+  private final Duration retention;
+
+  private final ExecutorService executor;
+
+  private final Map<String, BulkExportJob> jobs = new ConcurrentHashMap<>();
+
+  private final Map<String, Future<?>> running = new ConcurrentHashMap<>();
+
+  /** Spring constructor, running bulk-export.threads exports at a time. */
+  @Autowired
+  public BulkExporter(
+      DataSource dataSource,
+      ObservationController observationController,
+      QuestionnaireController questionnaireController,
+      QuestionnaireResponseController questionnaireResponseController,
+      @Value("${bulk-export.directory}") String directory,
+      @Value("${bulk-export.fetch-size}") int fetchSize,
+      @Value("${bulk-export.retention-hours}") int retentionHours,
+      @Value("${bulk-export.threads}") int threads) {
+    this(
+        dataSource,
+        observationController,
+        questionnaireController,
+        questionnaireResponseController,
+        directory,
+        fetchSize,
+        retentionHours,
+        Executors.newFixedThreadPool(threads));
+  }
+
+  BulkExporter(
+      DataSource dataSource,
+      ObservationController observationController,
+      QuestionnaireController questionnaireController,
+      QuestionnaireResponseController questionnaireResponseController,
+      String directory,
+      int fetchSize,
+      int retentionHours,
+      ExecutorService executor) {
+    checkState(!"unset".equals(directory), "bulk-export.directory is unset");
+    checkState(fetchSize > 0, "bulk-export.fetch-size must be positive");
+    checkState(retentionHours > 0, "bulk-export.retention-hours must be positive");
+    this.jdbc = new JdbcTemplate(dataSource);
+    jdbc.setFetchSize(fetchSize);
+    this.observationController = observationController;
+    this.questionnaireController = questionnaireController;
+    this.questionnaireResponseController = questionnaireResponseController;
+    this.directory = new File(directory);
+    this.retention = Duration.ofHours(retentionHours);
+    this.executor = executor;
+  }
+
+  /** Cancel the export, if running, and remove it and its files. */
+  public boolean delete(String id) {
+    Future<?> future = running.remove(id);
+    if (future != null) {
+      future.cancel(true);
+    }
+    FileSystemUtils.deleteRecursively(jobDirectory(id));
+    return jobs.remove(id) != null;
+  }
+
+  private void export(String id) {
+    BulkExportJob job = jobs.get(id);
+    List<BulkExportJob.Output> output = new ArrayList<>();
+    AtomicLong exported = new AtomicLong();
+    try {
+      File jobDirectory = jobDirectory(id);
+      Files.createDirectories(jobDirectory.toPath());
+      for (String type : job.types()) {
+        update(id, j -> j.toBuilder().exporting(type).build());
+        String file = type + ".ndjson";
+        long count = export(type, job.since(), new File(jobDirectory, file), exported, id);
+        output.add(BulkExportJob.Output.builder().type(type).file(file).count(count).build());
+      }
+      update(
+          id,
+          j ->
+              j.toBuilder()
+                  .status(BulkExportJob.Status.COMPLETED)
+                  .exporting(null)
+                  .exported(exported.get())
+                  .output(List.copyOf(output))
+                  .completed(Instant.now())
+                  .build());
+      log.info("Exported {} resources for {}", exported.get(), id);
+    } catch (Exception e) {
+      log.error("Export {} failed", id, e);
+      update(
+          id,
+          j ->
+              j.toBuilder()
+                  .status(BulkExportJob.Status.FAILED)
+                  .exporting(null)
+                  .completed(Instant.now())
+                  .error(e.getClass().getSimpleName())
+                  .build());
+    } finally {
+      running.remove(id);
+    }
+  }
+
+  private long export(String type, Instant since, File file, AtomicLong exported, String id)
+      throws IOException {
+    String sql = "select id, payload, compressedPayload from app." + type;
+    Object[] args = {};
+    if (since != null) {
+      sql += " where lastUpdated >= ?";
+      args = new Object[] {Timestamp.from(since)};
+    }
+    AtomicLong count = new AtomicLong();
+    try (BufferedWriter out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+      RowCallbackHandler writeLine =
+          rs -> {
+            if (Thread.currentThread().isInterrupted()) {
+              throw new IllegalStateException("Export cancelled");
+            }
+            RawResource resource =
+                toRawResource(
+                    type,
+                    rs.getString("id"),
+                    rs.getString("payload"),
+                    rs.getBytes("compressedPayload"));
+            try {
+              out.write(resource.json());
+              out.newLine();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+            count.incrementAndGet();
+            if (exported.incrementAndGet() % 1000 == 0) {
+              update(id, j -> j.toBuilder().exported(exported.get()).build());
+            }
+          };
+      jdbc.query(sql, writeLine, args);
+    }
+    return count.get();
+  }
+
+  /** An exported file, if the export has completed and produced it. */
+  public Optional<File> file(String id, String file) {
+    return job(id)
+        .filter(j -> j.status() == BulkExportJob.Status.COMPLETED)
+        .flatMap(j -> j.output().stream().filter(o -> o.file().equals(file)).findFirst())
+        .map(o -> new File(jobDirectory(id), o.file()));
+  }
+
+  public Optional<BulkExportJob> job(String id) {
+    return Optional.ofNullable(jobs.get(id));
+  }
+
+  private File jobDirectory(String id) {
+    return new File(directory, id);
+  }
+
+  /** Remove exports that finished more than bulk-export.retention-hours ago. */
+  public int removeExpired(Instant now) {
+    int removed = 0;
+    for (BulkExportJob job : List.copyOf(jobs.values())) {
+      if (job.completed() != null && job.completed().plus(retention).isBefore(now)) {
+        delete(job.id());
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  @Scheduled(cron = "${bulk-export.cleanup-cron}", zone = "UTC")
+  void scheduledRemoveExpired() {
+    try {
+      log.info("Removed {} expired exports", removeExpired(Instant.now()));
+    } catch (RuntimeException e) {
+      log.error("Export cleanup failed", e);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Start exporting the types, limited to resources updated since the given time if any. */
+  public BulkExportJob start(String request, List<String> types, Instant since) {
+    types.forEach(t -> checkState(RESOURCE_TYPES.contains(t), "Unsupported type %s", t));
+    BulkExportJob job =
+        BulkExportJob.builder()
+            .id(Controllers.generateRandomId())
+            .request(request)
+            .transactionTime(Controllers.nowMillis())
+            .types(List.copyOf(types))
+            .since(since)
+            .status(BulkExportJob.Status.IN_PROGRESS)
+            .output(List.of())
+            .build();
+    jobs.put(job.id(), job);
+    running.put(job.id(), executor.submit(() -> export(job.id())));
+    return job;
+  }
+
+  private RawResource toRawResource(
+      String type, String id, String payload, byte[] compressedPayload) {
+    switch (type) {
+      case "Observation":
+        return observationController.toRawResource(
+            ObservationEntity.builder()
+                .id(id)
+                .payload(payload)
+                .compressedPayload(compressedPayload)
+                .build());
+      case "Questionnaire":
+        return questionnaireController.toRawResource(
+            QuestionnaireEntity.builder()
+                .id(id)
+                .payload(payload)
+                .compressedPayload(compressedPayload)
+                .build());
+      case "QuestionnaireResponse":
+        return questionnaireResponseController.toRawResource(
+            QuestionnaireResponseEntity.builder()
+                .id(id)
+                .payload(payload)
+                .compressedPayload(compressedPayload)
+                .build());
+      default:
+        throw new IllegalStateException("Unsupported type " + type);
+    }
+  }
+
+  private void update(String id, UnaryOperator<BulkExportJob> change) {
+    jobs.computeIfPresent(id, (k, j) -> change.apply(j));
+  }
+}
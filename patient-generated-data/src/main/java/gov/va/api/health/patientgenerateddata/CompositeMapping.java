@@ -2,7 +2,9 @@ package gov.va.api.health.patientgenerateddata;
 
 import static gov.va.api.health.patientgenerateddata.MappingUtils.addTerminators;
 import static gov.va.api.health.patientgenerateddata.MappingUtils.selectLikeInList;
+import static gov.va.api.health.patientgenerateddata.MappingUtils.selectTokenInIndex;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toSet;
 import static org.apache.commons.lang3.StringUtils.trimToNull;
 
@@ -10,7 +12,10 @@ import com.google.common.base.Splitter;
 import gov.va.api.health.r4.api.datatypes.UsageContext;
 import gov.va.api.health.r4.api.resources.Questionnaire;
 import gov.va.api.lighthouse.vulcan.mappings.SingleParameterMapping;
+import java.util.HashSet;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Stream;
 import javax.servlet.http.HttpServletRequest;
 import lombok.Builder;
@@ -18,7 +23,12 @@ import lombok.Value;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.jpa.domain.Specification;
 
-/** See https://www.hl7.org/fhir/r4/search.html#composite */
+/**
+ * See https://www.hl7.org/fhir/r4/search.html#composite
+ *
+ * <p>When tokensFieldName is set, values are matched against the indexed UseContextToken
+ * collection, otherwise the CSV-formatted field is searched.
+ */
 @Value
 @Builder
 public final class CompositeMapping<EntityT> implements SingleParameterMapping<EntityT> {
@@ -26,6 +36,8 @@ public final class CompositeMapping<EntityT> implements SingleParameterMapping<E
 
   String fieldName;
 
+  String tokensFieldName;
+
   /** Return CSV of context-type-value queries. */
   public static String useContextValueJoin(Questionnaire questionnaire) {
     if (questionnaire == null || questionnaire.useContext() == null) {
@@ -36,6 +48,31 @@ public final class CompositeMapping<EntityT> implements SingleParameterMapping<E
         .collect(joining(","));
   }
 
+  /** Return the search tokens of the context-type-value pairs. */
+  public static Set<UseContextToken> useContextValueTokens(Questionnaire questionnaire) {
+    if (questionnaire == null || questionnaire.useContext() == null) {
+      return new HashSet<>();
+    }
+    return questionnaire.useContext().stream()
+        .filter(
+            context ->
+                context != null
+                    && context.code() != null
+                    && context.valueCodeableConcept() != null
+                    && context.valueCodeableConcept().coding() != null)
+        .flatMap(
+            context ->
+                context.valueCodeableConcept().coding().stream()
+                    .filter(Objects::nonNull)
+                    .flatMap(
+                        valueCoding ->
+                            UseContextToken.forContextValue(
+                                trimToNull(context.code().code()),
+                                trimToNull(valueCoding.system()),
+                                trimToNull(valueCoding.code()))))
+        .collect(toCollection(HashSet::new));
+  }
+
   private static Stream<String> valueJoin(UsageContext context) {
     if (context == null
         || context.valueCodeableConcept() == null
@@ -88,6 +125,9 @@ public final class CompositeMapping<EntityT> implements SingleParameterMapping<E
             .filter(str -> !str.equals("$"))
             .filter(str -> !str.equals("|"))
             .collect(toSet());
+    if (tokensFieldName() != null) {
+      return selectTokenInIndex(tokensFieldName(), values);
+    }
     return selectLikeInList(fieldName(), values);
   }
 }
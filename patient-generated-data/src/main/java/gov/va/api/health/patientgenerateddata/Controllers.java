@@ -9,6 +9,7 @@ import com.google.common.base.Splitter;
 import gov.va.api.health.r4.api.elements.Meta;
 import gov.va.api.health.r4.api.elements.Reference;
 import gov.va.api.health.r4.api.resources.Resource;
+import java.security.SecureRandom;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.Collection;
@@ -17,7 +18,9 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Stream;
+import lombok.SneakyThrows;
 import lombok.experimental.UtilityClass;
+import org.springframework.http.ResponseEntity;
 
 @UtilityClass
 public class Controllers {
@@ -31,6 +34,10 @@ public class Controllers {
   // YYYY-MM-DD
   private static final int YEAR_MONTH_DAY = 10;
 
+  // Per-thread generators, rather than the SecureRandom shared by every UUID.randomUUID
+  private static final ThreadLocal<SecureRandom> TIME_ORDERED_RANDOM =
+      ThreadLocal.withInitial(Controllers::newDrbg);
+
   /** Wrapper for Preconditions.checkState which throws a BadRequest. */
   public static void checkRequestState(
       boolean condition, String messageTemplate, Object... messageArgs) {
@@ -41,11 +48,41 @@ public class Controllers {
     }
   }
 
+  /** Attach the weak entity tag of the resource version, unless the version is not known. */
+  public static <B extends ResponseEntity.HeadersBuilder<B>> B eTag(B response, Integer version) {
+    return version == null ? response : response.eTag("W/\"" + version + "\"");
+  }
+
   /** Generate random ID. */
   public static String generateRandomId() {
     return UUID.randomUUID().toString();
   }
 
+  /**
+   * Generate a time-ordered ID, laid out as a version 7 UUID: 48 bits of Unix epoch milliseconds,
+   * the version, 74 random bits and the variant. IDs sort by creation time, to the millisecond, as
+   * UUIDs and as strings, so new rows are appended at the end of a primary key index.
+   */
+  public static String generateTimeOrderedId() {
+    SecureRandom random = TIME_ORDERED_RANDOM.get();
+    long mostSigBits = (System.currentTimeMillis() << 16) | 0x7000L | (random.nextInt() & 0x0FFFL);
+    long leastSigBits = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+    return new UUID(mostSigBits, leastSigBits).toString();
+  }
+
+  /**
+   * The version an If-Match header requires, or null if any version will do. Weak entity tags are
+   * accepted, since they are what reads return.
+   */
+  public static Integer ifMatchVersion(String ifMatch) {
+    if (isBlank(ifMatch) || ifMatch.trim().equals("*")) {
+      return null;
+    }
+    String tag = ifMatch.trim().replaceFirst("^W/", "");
+    checkRequestState(tag.matches("\"[0-9]{1,9}\""), "Unsupported If-Match %s", ifMatch);
+    return Integer.valueOf(tag.substring(1, tag.length() - 1));
+  }
+
   /** Find and parse lastUpdated from Meta object. */
   public static Optional<Instant> lastUpdatedFromMeta(Meta meta) {
     return Optional.ofNullable(meta).map(m -> parseDateTime(m.lastUpdated()));
@@ -73,6 +110,27 @@ public class Controllers {
         .source(source);
   }
 
+  @SneakyThrows
+  private static SecureRandom newDrbg() {
+    return SecureRandom.getInstance("DRBG");
+  }
+
+  /**
+   * Whether an If-None-Match header matches the resource version. Entity tags are compared weakly,
+   * since the version changes whenever the stored resource does.
+   */
+  public static boolean notModified(String ifNoneMatch, Integer version) {
+    if (isBlank(ifNoneMatch) || version == null) {
+      return false;
+    }
+    for (String tag : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+      if (tag.equals("*") || tag.replaceFirst("^W/", "").equals("\"" + version + "\"")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /** Current Instant truncated to milliseconds. */
   public static Instant nowMillis() {
     return Instant.now().truncatedTo(MILLIS);
@@ -188,8 +246,17 @@ public class Controllers {
     return resourceType;
   }
 
-  /** Throw Exceptions.Forbidden if sources don't match. */
+  /**
+   * Throw Exceptions.Forbidden if sources don't match. A resource without an original source, e.g.
+   * one loaded directly into the database, can not be updated by any source.
+   */
   public static void validateSource(String id, String authorizationSource, String originalSource) {
+    if (originalSource == null) {
+      throw new Exceptions.Forbidden(
+          String.format(
+              "For resource %s, request source %s is not authorized, original source is unknown",
+              id, authorizationSource));
+    }
     if (!originalSource.equals(authorizationSource)) {
       throw new Exceptions.Forbidden(
           String.format(
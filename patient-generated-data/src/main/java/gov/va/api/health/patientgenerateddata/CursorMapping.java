@@ -0,0 +1,52 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import gov.va.api.lighthouse.vulcan.mappings.SingleParameterMapping;
+import java.util.Base64;
+import javax.servlet.http.HttpServletRequest;
+import lombok.Builder;
+import lombok.Value;
+import org.springframework.data.jpa.domain.Specification;
+
+/**
+ * Vulcan mapping handler for opaque keyset cursors. The cursor carries the last seen sort key, so
+ * the next page is an index seek past that key rather than an offset scan over earlier rows.
+ */
+@Value
+@Builder
+public final class CursorMapping<EntityT> implements SingleParameterMapping<EntityT> {
+  String parameterName;
+
+  String fieldName;
+
+  /** Decode an opaque cursor into the last seen sort key. */
+  public static String decode(String cursor) {
+    try {
+      String key = new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+      if (isBlank(key)) {
+        throw new Exceptions.BadRequest("Invalid cursor: " + cursor);
+      }
+      return key;
+    } catch (IllegalArgumentException e) {
+      throw new Exceptions.BadRequest("Invalid cursor: " + cursor, e);
+    }
+  }
+
+  /** Encode the last seen sort key as an opaque cursor. */
+  public static String encode(String key) {
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(UTF_8));
+  }
+
+  @Override
+  public Specification<EntityT> specificationFor(HttpServletRequest request) {
+    String cursor = request.getParameter(parameterName());
+    if (isBlank(cursor)) {
+      return null;
+    }
+    String key = decode(cursor.trim());
+    return (root, criteriaQuery, criteriaBuilder) ->
+        criteriaBuilder.greaterThan(root.get(fieldName()), key);
+  }
+}
@@ -43,6 +43,13 @@ public final class Exceptions {
     }
   }
 
+  /** The stored resource is not the version the consumer expected. */
+  public static final class PreconditionFailed extends RuntimeException {
+    public PreconditionFailed(String message) {
+      super(message);
+    }
+  }
+
   /** Missing or bad authentication. */
   public static final class Unauthorized extends RuntimeException {
     public Unauthorized(String message) {
@@ -0,0 +1,59 @@
+package gov.va.api.health.patientgenerateddata;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.List;
+import lombok.Builder;
+import lombok.NonNull;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes resource IDs as a JSON array. IDs are read in keyset-paged chunks and flushed to the client
+ * as they arrive, so memory use does not grow with the size of the table.
+ */
+@Builder
+final class IdStreamer implements StreamingResponseBody {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  @NonNull private final IdFinder finder;
+
+  private final String after;
+
+  private final Instant lastUpdatedSince;
+
+  private final Integer limit;
+
+  @Builder.Default private final int chunkSize = 1000;
+
+  @Override
+  public void writeTo(OutputStream out) throws IOException {
+    try (JsonGenerator json = MAPPER.getFactory().createGenerator(out)) {
+      json.writeStartArray();
+      String cursor = after;
+      int remaining = limit == null ? Integer.MAX_VALUE : limit;
+      while (remaining > 0) {
+        int count = Math.min(chunkSize, remaining);
+        List<String> ids = finder.findIds(cursor, lastUpdatedSince, count);
+        for (String id : ids) {
+          json.writeString(id);
+        }
+        json.flush();
+        if (ids.size() < count) {
+          break;
+        }
+        cursor = ids.get(ids.size() - 1);
+        remaining -= ids.size();
+      }
+      json.writeEndArray();
+    }
+  }
+
+  /** Finds the next IDs, in order, after the given ID. */
+  @FunctionalInterface
+  interface IdFinder {
+    List<String> findIds(String after, Instant lastUpdatedSince, int count);
+  }
+}
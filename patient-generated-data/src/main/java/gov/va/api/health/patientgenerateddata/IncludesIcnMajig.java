@@ -57,6 +57,12 @@ public final class IncludesIcnMajig<T, B> implements ResponseBodyAdvice<Object>
     return null;
   }
 
+  /** The X-VA-INCLUDES-ICN value for the ICNs, NONE if there are none. */
+  public static String usersCsv(Stream<String> icns) {
+    String users = icns.distinct().collect(joining(","));
+    return users.isBlank() ? "NONE" : users;
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public Object beforeBodyWrite(
@@ -67,21 +73,33 @@ public final class IncludesIcnMajig<T, B> implements ResponseBodyAdvice<Object>
       ServerHttpRequest unused4,
       ServerHttpResponse serverHttpResponse) {
     if (type.isInstance(payload)) {
-      String users = extractIcns.apply((T) payload).distinct().collect(joining(","));
-      users = users.isBlank() ? "NONE" : users;
-      addHeader(serverHttpResponse, users);
+      addHeader(serverHttpResponse, usersCsv(extractIcns.apply((T) payload)));
+      return payload;
+    }
+
+    if (payload instanceof RawResource) {
+      addHeader(serverHttpResponse, usersCsv(((RawResource) payload).icns().stream()));
+      return payload;
+    }
+
+    if (payload instanceof RawBundle) {
+      addHeader(serverHttpResponse, usersCsv(((RawBundle) payload).icns()));
+      return payload;
+    }
+
+    if (payload instanceof StreamingRawBundle) {
+      addHeader(serverHttpResponse, usersCsv(((StreamingRawBundle<?>) payload).icns()));
+      return payload;
+    }
+
+    if (payload instanceof BatchBundle) {
+      addHeader(serverHttpResponse, usersCsv(((BatchBundle) payload).icns()));
       return payload;
     }
 
     if (bundleType.isInstance(payload)) {
-      String users =
-          extractResources
-              .apply((B) payload)
-              .flatMap(resource -> extractIcns.apply(resource))
-              .distinct()
-              .collect(joining(","));
-      users = users.isBlank() ? "NONE" : users;
-      addHeader(serverHttpResponse, users);
+      Stream<T> resources = extractResources.apply((B) payload);
+      addHeader(serverHttpResponse, usersCsv(resources.flatMap(r -> extractIcns.apply(r))));
       return payload;
     }
 
@@ -93,6 +111,10 @@ public final class IncludesIcnMajig<T, B> implements ResponseBodyAdvice<Object>
       MethodParameter methodParameter, Class<? extends HttpMessageConverter<?>> unused) {
     return type.equals(methodParameter.getParameterType())
         || bundleType.equals(methodParameter.getParameterType())
+        || RawResource.class.equals(methodParameter.getParameterType())
+        || RawBundle.class.equals(methodParameter.getParameterType())
+        || StreamingRawBundle.class.equals(methodParameter.getParameterType())
+        || BatchBundle.class.equals(methodParameter.getParameterType())
         || ResponseEntity.class.equals(methodParameter.getParameterType());
   }
 }
@@ -0,0 +1,56 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Leases on the rows of the JobLock table, so a scheduled job runs on one instance at a time. A
+ * lease is held until it is released or expires, so a lock held by an instance that stopped
+ * mid-job is freed once its lease runs out. Each lock must be inserted by a changeset first.
+ */
+@Component
+public class JobLocks {
+  private final JdbcTemplate jdbc;
+
+  private final String owner;
+
+  @Autowired
+  public JobLocks(DataSource dataSource) {
+    this(new JdbcTemplate(dataSource), Controllers.generateRandomId());
+  }
+
+  JobLocks(JdbcTemplate jdbc, String owner) {
+    this.jdbc = jdbc;
+    this.owner = owner;
+  }
+
+  /**
+   * Take or renew the lease on the lock, unless another instance holds an unexpired lease. Returns
+   * whether this instance holds the lock.
+   */
+  public boolean lock(String name, Instant now, Duration lease) {
+    return jdbc.update(
+            "update app.JobLock set lockedBy = ?, lockedUntil = ?"
+                + " where name = ? and (lockedBy = ? or lockedUntil <= ?)",
+            owner,
+            Timestamp.from(now.plus(lease)),
+            name,
+            owner,
+            Timestamp.from(now))
+        == 1;
+  }
+
+  /** Release the lock, if this instance holds it. */
+  public void unlock(String name) {
+    jdbc.update(
+        "update app.JobLock set lockedBy = null, lockedUntil = ? where name = ? and lockedBy = ?",
+        Timestamp.from(Instant.EPOCH),
+        name,
+        owner);
+  }
+}
@@ -2,10 +2,12 @@ package gov.va.api.health.patientgenerateddata;
 
 import static com.google.common.base.Preconditions.checkState;
 import static gov.va.api.lighthouse.vulcan.Vulcan.useUrl;
+import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 
 import gov.va.api.health.r4.api.resources.Resource;
 import gov.va.api.lighthouse.vulcan.VulcanConfiguration;
+import javax.servlet.http.HttpServletRequest;
 import lombok.Builder;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,21 +19,36 @@ import org.springframework.stereotype.Component;
 @Getter
 @Component
 public class LinkProperties {
+  /** Query parameter carrying the opaque keyset cursor, see CursorMapping. */
+  public static final String CURSOR_PARAMETER = "_cursor";
+
+  /** Query parameter selecting how Bundle.total is calculated, see SearchTotal. */
+  public static final String TOTAL_PARAMETER = "_total";
+
   private final int defaultPageSize;
 
   private final int maxPageSize;
 
   private final String r4Url;
 
+  private final boolean cursorPaging;
+
+  private final SearchTotal defaultTotal;
+
   @Builder
   @Autowired
   LinkProperties(
       @Value("${page-size-default}") int defaultPageSize,
       @Value("${page-size-max}") int maxPageSize,
       @Value("${public-url}") String baseUrl,
-      @Value("${public-r4-base-path}") String r4BasePath) {
+      @Value("${public-r4-base-path}") String r4BasePath,
+      @Value("${page-cursor-enabled}") boolean cursorPaging,
+      @Value("${page-total-default}") String defaultTotal) {
     this.defaultPageSize = defaultPageSize;
     this.maxPageSize = maxPageSize;
+    this.cursorPaging = cursorPaging;
+    this.defaultTotal =
+        isBlank(defaultTotal) ? SearchTotal.accurate : SearchTotal.valueOf(defaultTotal);
 
     checkState(!"unset".equals(baseUrl), "public-url is unset");
     checkState(!"unset".equals(r4BasePath), "public-r4-base-path is unset");
@@ -45,6 +62,14 @@ public class LinkProperties {
     r4Url = combined;
   }
 
+  /**
+   * Create keyset cursor mapping for use for Vulcan based controllers. The cursor is the last seen
+   * ID, which matches the natural order of the Resource entities.
+   */
+  public <EntityT> CursorMapping<EntityT> cursorMapping() {
+    return CursorMapping.<EntityT>builder().parameterName(CURSOR_PARAMETER).fieldName("id").build();
+  }
+
   /**
    * Create standard page configuration for use for Vulcan based controllers. This is expecting a
    * resource name, e.g. Questionnaire and sorting, which is defined on the Resource entities.
@@ -62,11 +87,25 @@ public class LinkProperties {
   }
 
   public String r4ReadUrl(Resource resource) {
-    String name = resource.getClass().getSimpleName();
-    return r4ResourceUrl(name) + "/" + resource.id();
+    return r4ReadUrl(resource.getClass().getSimpleName(), resource.id());
+  }
+
+  public String r4ReadUrl(String resourceType, String id) {
+    return r4ResourceUrl(resourceType) + "/" + id;
   }
 
   public String r4ResourceUrl(String resource) {
     return r4Url + "/" + resource;
   }
+
+  /**
+   * Determine how Bundle.total should be calculated for the search request. Keyset cursor pages
+   * never report a total, so the count query is always skipped for them.
+   */
+  public SearchTotal searchTotal(HttpServletRequest request) {
+    if (cursorPaging || !isBlank(request.getParameter(CURSOR_PARAMETER))) {
+      return SearchTotal.none;
+    }
+    return SearchTotal.parse(request.getParameter(TOTAL_PARAMETER), defaultTotal);
+  }
 }
@@ -44,6 +44,20 @@ import org.springframework.stereotype.Component;
 public class MagicReferenceConfig {
   private final LinkProperties pageLinks;
 
+  /** Fully qualify a reference URL against the R4 base URL, or null if there is no reference. */
+  static String qualify(String r4Url, String reference) {
+    if (isBlank(reference)) {
+      return null;
+    }
+    if (reference.startsWith("http")) {
+      return reference;
+    }
+    if (reference.startsWith("/")) {
+      return r4Url + reference;
+    }
+    return r4Url + "/" + reference;
+  }
+
   /** Configures and returns the mapper to support magic references. */
   public ObjectMapper configure(ObjectMapper mapper) {
     mapper.registerModule(new MagicReferenceModule());
@@ -55,19 +69,6 @@ public class MagicReferenceConfig {
       super(base);
     }
 
-    private String qualify(String reference) {
-      if (isBlank(reference)) {
-        return null;
-      }
-      if (reference.startsWith("http")) {
-        return reference;
-      }
-      if (reference.startsWith("/")) {
-        return pageLinks.r4Url() + reference;
-      }
-      return pageLinks.r4Url() + "/" + reference;
-    }
-
     @Override
     @SneakyThrows
     public void serializeAsField(
@@ -77,7 +78,7 @@ public class MagicReferenceConfig {
             "Qualified Reference writer cannot serialize: " + shouldBeReference);
       }
       IsReference reference = (IsReference) shouldBeReference;
-      String qualifiedReference = qualify(reference.reference());
+      String qualifiedReference = qualify(pageLinks.r4Url(), reference.reference());
       if (qualifiedReference != null) {
         gen.writeStringField(getName(), qualifiedReference);
       }
@@ -2,21 +2,29 @@ package gov.va.api.health.patientgenerateddata;
 
 import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
 import static gov.va.api.health.patientgenerateddata.Controllers.nowMillis;
+import static gov.va.api.health.patientgenerateddata.Controllers.parseDateTime;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 
 import gov.va.api.health.patientgenerateddata.observation.ObservationController;
 import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivePurgeStatus;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivePurger;
 import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
 import gov.va.api.health.r4.api.resources.Observation;
 import gov.va.api.health.r4.api.resources.Questionnaire;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.io.IOException;
 import java.time.Instant;
-import java.util.List;
+import java.time.format.DateTimeParseException;
 import java.util.Optional;
 import java.util.function.Function;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -26,7 +34,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Validated
 @RestController
@@ -35,12 +45,38 @@ import org.springframework.web.bind.annotation.RestController;
     produces = {"application/json", "application/fhir+json"})
 @AllArgsConstructor(onConstructor_ = @Autowired)
 public class ManagementController {
+  private static final String NDJSON = "application/x-ndjson";
+
+  private final ArchivePurger archivePurger;
+
+  private final NdjsonImporter ndjsonImporter;
+
   private final ObservationController observationController;
 
   private final QuestionnaireController questionnaireController;
 
   private final QuestionnaireResponseController questionnaireResponseController;
 
+  private static ResponseEntity<StreamingResponseBody> ids(
+      IdStreamer.IdFinder finder, String after, String lastUpdatedSince, Integer limit) {
+    checkRequestState(limit == null || limit >= 0, "limit must not be negative");
+    Instant since;
+    try {
+      since = parseDateTime(lastUpdatedSince);
+    } catch (DateTimeParseException e) {
+      throw new Exceptions.BadRequest("Invalid lastUpdatedSince: " + lastUpdatedSince, e);
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.APPLICATION_JSON)
+        .body(
+            IdStreamer.builder()
+                .finder(finder)
+                .after(after)
+                .lastUpdatedSince(since)
+                .limit(limit)
+                .build());
+  }
+
   private static void validateId(String id, Function<String, Optional<?>> finder) {
     checkRequestState(!isBlank(id), "ID is required");
     if (finder.apply(id).isPresent()) {
@@ -91,23 +127,74 @@ public class ManagementController {
     return questionnaireResponseController.create(questionnaireResponse, authorization, null, now);
   }
 
+  @PostMapping(value = "/r4/Observation/import", produces = NDJSON)
+  void importObservations(
+      @RequestHeader(name = "Authorization", required = true) String authorization,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    response.setContentType(NDJSON);
+    ndjsonImporter.importObservations(
+        authorization, request.getInputStream(), response.getOutputStream(), nowMillis());
+  }
+
+  @PostMapping(value = "/r4/QuestionnaireResponse/import", produces = NDJSON)
+  void importQuestionnaireResponses(
+      @RequestHeader(name = "Authorization", required = true) String authorization,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    response.setContentType(NDJSON);
+    ndjsonImporter.importQuestionnaireResponses(
+        authorization, request.getInputStream(), response.getOutputStream(), nowMillis());
+  }
+
+  @PostMapping(value = "/r4/Questionnaire/import", produces = NDJSON)
+  void importQuestionnaires(
+      @RequestHeader(name = "Authorization", required = true) String authorization,
+      HttpServletRequest request,
+      HttpServletResponse response)
+      throws IOException {
+    response.setContentType(NDJSON);
+    ndjsonImporter.importQuestionnaires(
+        authorization, request.getInputStream(), response.getOutputStream(), nowMillis());
+  }
+
   @GetMapping(value = "/r4/Observation/ids")
-  List<String> observationIds() {
-    return observationController.getAllIds();
+  ResponseEntity<StreamingResponseBody> observationIds(
+      @RequestParam(name = "after", required = false) String after,
+      @RequestParam(name = "lastUpdatedSince", required = false) String lastUpdatedSince,
+      @RequestParam(name = "limit", required = false) Integer limit) {
+    return ids(observationController::findIds, after, lastUpdatedSince, limit);
   }
 
+  /** Start a purge in the background. Its progress is reported by the purge status. */
   @DeleteMapping(value = "/archive/r4/purge")
-  List<String> purgeArchives() {
-    return questionnaireResponseController.purgeArchives();
+  ResponseEntity<ArchivePurgeStatus> purgeArchives() {
+    archivePurger.start();
+    return ResponseEntity.accepted()
+        .header(HttpHeaders.CONTENT_LOCATION, "/management/archive/r4/purge/status")
+        .body(archivePurger.status());
+  }
+
+  @GetMapping(value = "/archive/r4/purge/status")
+  ArchivePurgeStatus purgeArchivesStatus() {
+    return archivePurger.status();
   }
 
   @GetMapping(value = "/r4/Questionnaire/ids")
-  List<String> questionnaireIds() {
-    return questionnaireController.getAllIds();
+  ResponseEntity<StreamingResponseBody> questionnaireIds(
+      @RequestParam(name = "after", required = false) String after,
+      @RequestParam(name = "lastUpdatedSince", required = false) String lastUpdatedSince,
+      @RequestParam(name = "limit", required = false) Integer limit) {
+    return ids(questionnaireController::findIds, after, lastUpdatedSince, limit);
   }
 
   @GetMapping(value = "/r4/QuestionnaireResponse/ids")
-  List<String> questionnaireResponseIds() {
-    return questionnaireResponseController.getAllIds();
+  ResponseEntity<StreamingResponseBody> questionnaireResponseIds(
+      @RequestParam(name = "after", required = false) String after,
+      @RequestParam(name = "lastUpdatedSince", required = false) String lastUpdatedSince,
+      @RequestParam(name = "limit", required = false) Integer limit) {
+    return ids(questionnaireResponseController::findIds, after, lastUpdatedSince, limit);
   }
 }
@@ -1,11 +1,15 @@
 package gov.va.api.health.patientgenerateddata;
 
+import static java.util.stream.Collectors.toSet;
 import static org.springframework.util.CollectionUtils.isEmpty;
 
 import com.google.common.collect.Iterables;
 import java.util.Locale;
 import java.util.Set;
+import javax.persistence.criteria.Join;
 import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 import lombok.experimental.UtilityClass;
 import org.springframework.data.jpa.domain.Specification;
 
@@ -39,4 +43,18 @@ public class MappingUtils {
               .toArray(Predicate[]::new));
     };
   }
+
+  static <E> Specification<E> selectTokenInIndex(String fieldName, Set<String> values) {
+    if (isEmpty(values)) {
+      return null;
+    }
+    Set<String> tokens = values.stream().map(SearchToken::normalize).collect(toSet());
+    return (root, criteriaQuery, criteriaBuilder) -> {
+      Subquery<String> subquery = criteriaQuery.subquery(String.class);
+      Root<E> indexed = subquery.from(root.getModel());
+      Join<E, ?> token = indexed.join(fieldName);
+      subquery.select(indexed.<String>get("id")).where(token.get("token").in(tokens));
+      return root.get("id").in(subquery);
+    };
+  }
 }
@@ -0,0 +1,41 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/** Liquibase task populating the metaSource column of each resource table from its payloads. */
+public class MetaSourceBackfill extends PayloadBackfill<String> {
+  public MetaSourceBackfill() {
+    super("metaSource", "Observation", "Questionnaire", "QuestionnaireResponse");
+  }
+
+  @Override
+  protected String extract(ResultSet row) throws Exception {
+    String payload = row.getString("payload");
+    if (payload == null) {
+      payload = PayloadCompression.decompress(row.getBytes("compressedPayload"));
+    }
+    return MAPPER.readTree(payload).path("meta").path("source").textValue();
+  }
+
+  @Override
+  protected String select(String table) {
+    return "select id, payload, compressedPayload from app." + table + " where metaSource is null";
+  }
+
+  @Override
+  protected void write(String id, String metaSource, List<PreparedStatement> writes)
+      throws SQLException {
+    PreparedStatement update = writes.get(0);
+    update.setString(1, metaSource);
+    update.setString(2, id);
+    update.addBatch();
+  }
+
+  @Override
+  protected List<String> writes(String table) {
+    return List.of("update app." + table + " set metaSource = ? where id = ?");
+  }
+}
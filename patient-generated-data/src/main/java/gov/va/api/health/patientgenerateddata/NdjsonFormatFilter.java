@@ -0,0 +1,106 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Selects NDJSON search from the FHIR _format parameter or the Accept header. Requests for NDJSON
+ * are normalized to _format=ndjson, which NdjsonSearchController is mapped to. Mapping on the
+ * Accept header instead would make requests that accept anything ambiguous between the paged and
+ * NDJSON searches. As in FHIR, _format takes precedence over Accept.
+ */
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 1)
+public class NdjsonFormatFilter extends OncePerRequestFilter {
+  static final String FORMAT_PARAMETER = "_format";
+
+  static final String NDJSON_FORMAT = "ndjson";
+
+  /** Unencoded + in a query string is read as a space, so "application/fhir ndjson" is accepted. */
+  private static final Set<String> NDJSON_FORMATS =
+      Set.of(
+          NDJSON_FORMAT,
+          "application/fhir+ndjson",
+          "application/fhir ndjson",
+          "application/ndjson",
+          "application/x-ndjson");
+
+  static boolean isNdjson(HttpServletRequest request) {
+    String format = request.getParameter(FORMAT_PARAMETER);
+    if (format != null) {
+      return NDJSON_FORMATS.contains(format.trim().toLowerCase(Locale.ROOT));
+    }
+    String accept = request.getHeader(HttpHeaders.ACCEPT);
+    if (isBlank(accept)) {
+      return false;
+    }
+    try {
+      return MediaType.parseMediaTypes(accept).stream()
+          .anyMatch(m -> NDJSON_FORMATS.contains(m.getType() + "/" + m.getSubtype()));
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+  }
+
+  @Override
+  protected void doFilterInternal(
+      HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+      throws ServletException, IOException {
+    if ("GET".equals(request.getMethod()) && isNdjson(request)) {
+      filterChain.doFilter(new NdjsonRequest(request), response);
+      return;
+    }
+    filterChain.doFilter(request, response);
+  }
+
+  private static final class NdjsonRequest extends HttpServletRequestWrapper {
+    private final Map<String, String[]> parameters;
+
+    NdjsonRequest(HttpServletRequest request) {
+      super(request);
+      Map<String, String[]> normalized = new LinkedHashMap<>(request.getParameterMap());
+      normalized.put(FORMAT_PARAMETER, new String[] {NDJSON_FORMAT});
+      parameters = Collections.unmodifiableMap(normalized);
+    }
+
+    @Override
+    public String getParameter(String name) {
+      String[] values = parameters.get(name);
+      return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+      return parameters;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+      return Collections.enumeration(parameters.keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+      return parameters.get(name);
+    }
+  }
+}
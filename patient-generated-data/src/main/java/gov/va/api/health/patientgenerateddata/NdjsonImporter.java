@@ -0,0 +1,322 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.stream.Collectors.joining;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import gov.va.api.health.r4.api.resources.Observation;
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import gov.va.api.health.r4.api.resources.Resource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Imports NDJSON resources, one per line, for migrations. Lines are read in chunks of
+ * management-import.batch-size, ID collisions are checked for the whole chunk with one query, and
+ * the new resources of the chunk are saved together. The outcome of each line is written as NDJSON
+ * as soon as its chunk is done, so neither the upload nor the report is held in memory.
+ */
+@Slf4j
+@Component
+public class NdjsonImporter {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  private final Sourcerer sourcerer;
+
+  private final Validator validator;
+
+  private final ObservationController observationController;
+
+  private final ObservationRepository observationRepository;
+
+  private final QuestionnaireController questionnaireController;
+
+  private final QuestionnaireRepository questionnaireRepository;
+
+  private final QuestionnaireResponseController questionnaireResponseController;
+
+  private final QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  private final int batchSize;
+
+  /** Autowired constructor. */
+  @Builder
+  public NdjsonImporter(
+      @NonNull Sourcerer sourcerer,
+      @NonNull Validator validator,
+      @NonNull ObservationController observationController,
+      @NonNull ObservationRepository observationRepository,
+      @NonNull QuestionnaireController questionnaireController,
+      @NonNull QuestionnaireRepository questionnaireRepository,
+      @NonNull QuestionnaireResponseController questionnaireResponseController,
+      @NonNull QuestionnaireResponseRepository questionnaireResponseRepository,
+      @Value("${management-import.batch-size}") int batchSize) {
+    // Each chunk is checked with one IN query, which SQL Server limits to 2100 parameters
+    checkState(
+        batchSize > 0 && batchSize <= 2000,
+        "management-import.batch-size must be between 1 and 2000");
+    this.sourcerer = sourcerer;
+    this.validator = validator;
+    this.observationController = observationController;
+    this.observationRepository = observationRepository;
+    this.questionnaireController = questionnaireController;
+    this.questionnaireRepository = questionnaireRepository;
+    this.questionnaireResponseController = questionnaireResponseController;
+    this.questionnaireResponseRepository = questionnaireResponseRepository;
+    this.batchSize = batchSize;
+  }
+
+  private static void write(OutputStream out, Outcome outcome) throws IOException {
+    out.write(MAPPER.writeValueAsBytes(outcome));
+    out.write('\n');
+  }
+
+  private <R extends Resource, E extends PayloadEntity<R>> void importChunk(
+      List<Line> chunk,
+      Class<R> type,
+      EntityFactory<R, E> factory,
+      PayloadRepository<E> repository,
+      String source,
+      Instant now,
+      OutputStream out,
+      Summary summary)
+      throws IOException {
+    List<Outcome> outcomes = new ArrayList<>(chunk.size());
+    List<R> resources = new ArrayList<>(chunk.size());
+    Set<String> ids = new HashSet<>();
+    for (Line line : chunk) {
+      R resource;
+      try {
+        resource = MAPPER.readValue(line.json(), type);
+      } catch (JsonProcessingException e) {
+        outcomes.add(Outcome.invalid(line, null, WebExceptionHandler.sanitizedMessage(e)));
+        continue;
+      }
+      Set<ConstraintViolation<R>> violations = validator.validate(resource);
+      if (!violations.isEmpty()) {
+        outcomes.add(
+            Outcome.invalid(
+                line,
+                resource.id(),
+                violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .collect(joining(", "))));
+      } else if (isBlank(resource.id())) {
+        outcomes.add(Outcome.invalid(line, null, "ID is required"));
+      } else if (!ids.add(resource.id())) {
+        outcomes.add(Outcome.of(line, resource.id(), "duplicate"));
+      } else {
+        outcomes.add(null);
+        resources.add(resource);
+      }
+    }
+    Set<String> existing =
+        ids.isEmpty() ? Set.of() : new HashSet<>(repository.findExistingIds(ids));
+    List<E> entities = new ArrayList<>(resources.size());
+    Map<String, String> invalid = new HashMap<>();
+    for (R resource : resources) {
+      if (!existing.contains(resource.id())) {
+        try {
+          entities.add(factory.newEntity(resource, source, null, now));
+        } catch (RuntimeException e) {
+          // Valid resources can still fail to index, e.g. a dateTime of 2021-02-30
+          invalid.put(resource.id(), e.getMessage());
+        }
+      }
+    }
+    String failure = null;
+    try {
+      repository.saveAll(entities);
+    } catch (DataAccessException e) {
+      log.error("Failed to save import chunk of {} lines", chunk.size(), e);
+      failure = e.getClass().getSimpleName();
+    }
+    int next = 0;
+    for (int i = 0; i < chunk.size(); i++) {
+      Outcome outcome = outcomes.get(i);
+      if (outcome == null) {
+        String id = resources.get(next++).id();
+        if (existing.contains(id)) {
+          outcome = Outcome.of(chunk.get(i), id, "exists");
+        } else if (invalid.containsKey(id)) {
+          outcome = Outcome.invalid(chunk.get(i), id, invalid.get(id));
+        } else if (failure != null) {
+          outcome = new Outcome(chunk.get(i).number(), id, "failed", failure);
+        } else {
+          outcome = Outcome.of(chunk.get(i), id, "created");
+        }
+      }
+      summary.count(outcome.status());
+      write(out, outcome);
+    }
+    out.flush();
+  }
+
+  /** Import Observation NDJSON. */
+  public Summary importObservations(
+      String authorization, InputStream in, OutputStream out, Instant now) throws IOException {
+    return importResources(
+        Observation.class,
+        observationController::newEntity,
+        observationRepository,
+        authorization,
+        in,
+        out,
+        now);
+  }
+
+  /** Import QuestionnaireResponse NDJSON. */
+  public Summary importQuestionnaireResponses(
+      String authorization, InputStream in, OutputStream out, Instant now) throws IOException {
+    return importResources(
+        QuestionnaireResponse.class,
+        questionnaireResponseController::newEntity,
+        questionnaireResponseRepository,
+        authorization,
+        in,
+        out,
+        now);
+  }
+
+  /** Import Questionnaire NDJSON. */
+  public Summary importQuestionnaires(
+      String authorization, InputStream in, OutputStream out, Instant now) throws IOException {
+    return importResources(
+        Questionnaire.class,
+        questionnaireController::newEntity,
+        questionnaireRepository,
+        authorization,
+        in,
+        out,
+        now);
+  }
+
+  private <R extends Resource, E extends PayloadEntity<R>> Summary importResources(
+      Class<R> type,
+      EntityFactory<R, E> factory,
+      PayloadRepository<E> repository,
+      String authorization,
+      InputStream in,
+      OutputStream out,
+      Instant now)
+      throws IOException {
+    String source = sourcerer.source(authorization);
+    Summary summary = new Summary();
+    BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    List<Line> chunk = new ArrayList<>(batchSize);
+    String json;
+    for (int number = 1; (json = reader.readLine()) != null; number++) {
+      if (isBlank(json)) {
+        continue;
+      }
+      chunk.add(new Line(number, json));
+      if (chunk.size() >= batchSize) {
+        importChunk(chunk, type, factory, repository, source, now, out, summary);
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      importChunk(chunk, type, factory, repository, source, now, out, summary);
+    }
+    log.info("Imported {}: {}", type.getSimpleName(), summary);
+    return summary;
+  }
+
+  /** Creates the entity of a new resource, i.e. a resource controller's newEntity. */
+  @FunctionalInterface
+  interface EntityFactory<R, E> {
+    E newEntity(R resource, String source, String icn, Instant now);
+  }
+
+  @Data
+  @AllArgsConstructor
+  private static class Line {
+    int number;
+
+    String json;
+  }
+
+  /** The outcome of one line, e.g. created, exists, duplicate, invalid, or failed. */
+  @Data
+  @AllArgsConstructor
+  static class Outcome {
+    int line;
+
+    String id;
+
+    String status;
+
+    String diagnostics;
+
+    static Outcome invalid(Line line, String id, String diagnostics) {
+      return new Outcome(line.number(), id, "invalid", diagnostics);
+    }
+
+    static Outcome of(Line line, String id, String status) {
+      return new Outcome(line.number(), id, status, null);
+    }
+  }
+
+  /** Number of lines with each status. */
+  @Data
+  public static class Summary {
+    int created;
+
+    int exists;
+
+    int duplicate;
+
+    int invalid;
+
+    int failed;
+
+    void count(String status) {
+      switch (status) {
+        case "created":
+          created++;
+          break;
+        case "exists":
+          exists++;
+          break;
+        case "duplicate":
+          duplicate++;
+          break;
+        case "failed":
+          failed++;
+          break;
+        default:
+          invalid++;
+      }
+    }
+  }
+}
@@ -0,0 +1,249 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import gov.va.api.lighthouse.vulcan.Vulcan;
+import gov.va.api.lighthouse.vulcan.VulcanConfiguration;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.servlet.http.HttpServletRequest;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.experimental.Delegate;
+import org.hibernate.jpa.QueryHints;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Search that returns every match as NDJSON, one resource per line, instead of a page of at most
+ * page-size-max. See NdjsonFormatFilter for how it is requested.
+ *
+ * <p>The Vulcan configuration of the resource validates the request and builds the query, but
+ * instead of fetching a page, all matches are read with a forward-only cursor and spooled to a
+ * temporary file one row at a time. X-VA-INCLUDES-ICN has to be sent before the body, and searches
+ * matching more than ndjson-search.max-rows are rejected, so the response only starts once every
+ * match has been read. The file is then copied to the response, with writes blocking on the client,
+ * and removed.
+ */
+@RestController
+@RequestMapping(
+    value = "/r4",
+    params = NdjsonFormatFilter.FORMAT_PARAMETER + "=" + NdjsonFormatFilter.NDJSON_FORMAT)
+public class NdjsonSearchController {
+  public static final String NDJSON = "application/fhir+ndjson";
+
+  private final EntityManager entityManager;
+
+  private final ObservationController observationController;
+
+  private final ObservationRepository observationRepository;
+
+  private final QuestionnaireController questionnaireController;
+
+  private final QuestionnaireRepository questionnaireRepository;
+
+  private final QuestionnaireResponseController questionnaireResponseController;
+
+  private final QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  private final int fetchSize;
+
+  private final int maxRows;
+
+  /** Autowired constructor. */
+  @Autowired
+  @Builder
+  public NdjsonSearchController(
+      @NonNull EntityManager entityManager,
+      @NonNull ObservationController observationController,
+      @NonNull ObservationRepository observationRepository,
+      @NonNull QuestionnaireController questionnaireController,
+      @NonNull QuestionnaireRepository questionnaireRepository,
+      @NonNull QuestionnaireResponseController questionnaireResponseController,
+      @NonNull QuestionnaireResponseRepository questionnaireResponseRepository,
+      @Value("${ndjson-search.fetch-size}") int fetchSize,
+      @Value("${ndjson-search.max-rows}") int maxRows) {
+    checkState(fetchSize > 0, "ndjson-search.fetch-size must be positive");
+    checkState(maxRows > 0, "ndjson-search.max-rows must be positive");
+    this.entityManager = entityManager;
+    this.observationController = observationController;
+    this.observationRepository = observationRepository;
+    this.questionnaireController = questionnaireController;
+    this.questionnaireRepository = questionnaireRepository;
+    this.questionnaireResponseController = questionnaireResponseController;
+    this.questionnaireResponseRepository = questionnaireResponseRepository;
+    this.fetchSize = fetchSize;
+    this.maxRows = maxRows;
+  }
+
+  private static StreamingResponseBody copyAndDelete(Path spool) {
+    return out -> {
+      try {
+        Files.copy(spool, out);
+        out.flush();
+      } finally {
+        Files.deleteIfExists(spool);
+      }
+    };
+  }
+
+  @SneakyThrows
+  private <EntityT extends PayloadEntity<?>> ResponseEntity<StreamingResponseBody> search(
+      HttpServletRequest request,
+      JpaSpecificationExecutor<EntityT> repository,
+      Class<EntityT> entity,
+      VulcanConfiguration<EntityT> configuration,
+      Function<EntityT, RawResource> toRawResource) {
+    SearchCapture<EntityT> search = new SearchCapture<>(repository);
+    Vulcan.forRepo(search).config(configuration).build().search(request);
+    Path spool = Files.createTempFile("ndjson-search", ".ndjson");
+    try {
+      Set<String> icns = new LinkedHashSet<>();
+      try (BufferedWriter out = Files.newBufferedWriter(spool, UTF_8)) {
+        if (search.pageable != null) {
+          spool(entity, search, toRawResource, out, icns);
+        }
+      }
+      String users = icns.isEmpty() ? "NONE" : String.join(",", icns);
+      return ResponseEntity.ok()
+          .contentType(MediaType.parseMediaType(NDJSON))
+          .header(IncludesIcnMajig.INCLUDES_ICN_HEADER, users)
+          .body(copyAndDelete(spool));
+    } catch (Exception e) {
+      Files.deleteIfExists(spool);
+      throw e;
+    }
+  }
+
+  @GetMapping(value = "/Observation")
+  ResponseEntity<StreamingResponseBody> searchObservations(HttpServletRequest request) {
+    return search(
+        request,
+        observationRepository,
+        ObservationEntity.class,
+        observationController.configuration(),
+        observationController::toRawResource);
+  }
+
+  @GetMapping(value = "/QuestionnaireResponse")
+  ResponseEntity<StreamingResponseBody> searchQuestionnaireResponses(HttpServletRequest request) {
+    return search(
+        request,
+        questionnaireResponseRepository,
+        QuestionnaireResponseEntity.class,
+        questionnaireResponseController.configuration(),
+        questionnaireResponseController::toRawResource);
+  }
+
+  @GetMapping(value = "/Questionnaire")
+  ResponseEntity<StreamingResponseBody> searchQuestionnaires(HttpServletRequest request) {
+    return search(
+        request,
+        questionnaireRepository,
+        QuestionnaireEntity.class,
+        questionnaireController.configuration(),
+        questionnaireController::toRawResource);
+  }
+
+  /** Write every match, in the order of the search, without holding more than one row. */
+  private <EntityT extends PayloadEntity<?>> void spool(
+      Class<EntityT> entity,
+      SearchCapture<EntityT> search,
+      Function<EntityT, RawResource> toRawResource,
+      BufferedWriter out,
+      Set<String> icns)
+      throws IOException {
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<EntityT> criteriaQuery = criteriaBuilder.createQuery(entity);
+    Root<EntityT> root = criteriaQuery.from(entity);
+    if (search.specification != null) {
+      Predicate predicate = search.specification.toPredicate(root, criteriaQuery, criteriaBuilder);
+      if (predicate != null) {
+        criteriaQuery.where(predicate);
+      }
+    }
+    criteriaQuery.select(root);
+    criteriaQuery.orderBy(QueryUtils.toOrders(search.pageable.getSort(), root, criteriaBuilder));
+    int rows = 0;
+    try (Stream<EntityT> matches =
+        entityManager
+            .createQuery(criteriaQuery)
+            .setMaxResults(maxRows + 1)
+            .setHint(QueryHints.HINT_FETCH_SIZE, fetchSize)
+            .setHint(QueryHints.HINT_READONLY, true)
+            .getResultStream()) {
+      Iterator<EntityT> iterator = matches.iterator();
+      while (iterator.hasNext()) {
+        EntityT match = iterator.next();
+        rows++;
+        checkRequestState(
+            rows <= maxRows,
+            "Search matches more than %s resources, narrow the search or use $export",
+            maxRows);
+        RawResource resource = toRawResource.apply(match);
+        out.write(resource.json());
+        out.write('\n');
+        icns.addAll(resource.icns());
+        entityManager.detach(match);
+      }
+    }
+  }
+
+  private interface PagedSearch<EntityT> {
+    Page<EntityT> findAll(Specification<EntityT> spec, Pageable pageable);
+  }
+
+  /** Records the query Vulcan builds for the request instead of fetching a page. */
+  @RequiredArgsConstructor
+  private static final class SearchCapture<EntityT> implements JpaSpecificationExecutor<EntityT> {
+    @Delegate(excludes = PagedSearch.class)
+    private final JpaSpecificationExecutor<EntityT> repository;
+
+    private Specification<EntityT> specification;
+
+    private Pageable pageable;
+
+    @Override
+    public Page<EntityT> findAll(Specification<EntityT> spec, Pageable pageable) {
+      this.specification = spec;
+      this.pageable = pageable;
+      return Page.empty(pageable);
+    }
+  }
+}
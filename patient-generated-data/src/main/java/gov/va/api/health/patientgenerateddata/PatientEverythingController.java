@@ -0,0 +1,229 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toSet;
+
+import gov.va.api.health.autoconfig.logging.Loggable;
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import gov.va.api.health.r4.api.bundle.AbstractEntry;
+import gov.va.api.health.r4.api.bundle.BundleLink;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.StreamSupport;
+import javax.annotation.PreDestroy;
+import lombok.Builder;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Patient level $everything. The patient's Observations and QuestionnaireResponses are queried in
+ * parallel, and the Questionnaires the responses reference are loaded together and included once.
+ * Rows are selected by the patient ICN in any of their ICN columns, and kept only if the payload
+ * references the ICN as a Patient. The resource limit applies to the selected rows, so a patient
+ * whose selection was cut short is refused rather than answered with part of their record. Payloads
+ * are written to the Bundle as stored, and X-VA-INCLUDES-ICN is every patient ICN the returned
+ * payloads reference.
+ */
+@Validated
+@RestController
+@RequestMapping(
+    value = "/r4/Patient",
+    produces = {"application/json", "application/fhir+json"})
+public class PatientEverythingController {
+  private final LinkProperties linkProperties;
+
+  private final ObservationController observationController;
+
+  private final ObservationRepository observationRepository;
+
+  private final QuestionnaireController questionnaireController;
+
+  private final QuestionnaireRepository questionnaireRepository;
+
+  private final QuestionnaireResponseController questionnaireResponseController;
+
+  private final QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  private final int maxResources;
+
+  private final ExecutorService executor;
+
+  /** Autowired constructor. */
+  @Autowired
+  public PatientEverythingController(
+      @NonNull LinkProperties linkProperties,
+      @NonNull ObservationController observationController,
+      @NonNull ObservationRepository observationRepository,
+      @NonNull QuestionnaireController questionnaireController,
+      @NonNull QuestionnaireRepository questionnaireRepository,
+      @NonNull QuestionnaireResponseController questionnaireResponseController,
+      @NonNull QuestionnaireResponseRepository questionnaireResponseRepository,
+      @Value("${patient-everything.max-resources}") int maxResources,
+      @Value("${patient-everything.threads}") int threads) {
+    this(
+        linkProperties,
+        observationController,
+        observationRepository,
+        questionnaireController,
+        questionnaireRepository,
+        questionnaireResponseController,
+        questionnaireResponseRepository,
+        maxResources,
+        Executors.newFixedThreadPool(threads));
+  }
+
+  @Builder
+  PatientEverythingController(
+      @NonNull LinkProperties linkProperties,
+      @NonNull ObservationController observationController,
+      @NonNull ObservationRepository observationRepository,
+      @NonNull QuestionnaireController questionnaireController,
+      @NonNull QuestionnaireRepository questionnaireRepository,
+      @NonNull QuestionnaireResponseController questionnaireResponseController,
+      @NonNull QuestionnaireResponseRepository questionnaireResponseRepository,
+      int maxResources,
+      @NonNull ExecutorService executor) {
+    checkState(maxResources > 0, "patient-everything.max-resources must be positive");
+    this.linkProperties = linkProperties;
+    this.observationController = observationController;
+    this.observationRepository = observationRepository;
+    this.questionnaireController = questionnaireController;
+    this.questionnaireRepository = questionnaireRepository;
+    this.questionnaireResponseController = questionnaireResponseController;
+    this.questionnaireResponseRepository = questionnaireResponseRepository;
+    this.maxResources = maxResources;
+    this.executor = executor;
+  }
+
+  private static <T> T join(CompletableFuture<T> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  private <T> CompletableFuture<T> async(Supplier<T> supplier) {
+    return CompletableFuture.supplyAsync(supplier, executor);
+  }
+
+  private void checkSize(int size) {
+    checkRequestState(
+        size <= maxResources,
+        "Patient has more than %s resources, use search or $export instead",
+        maxResources);
+  }
+
+  private RawBundle.Entry entry(RawResource resource, AbstractEntry.SearchMode mode) {
+    return RawBundle.Entry.builder()
+        .fullUrl(linkProperties.r4ReadUrl(resource.resourceType(), resource.id()))
+        .resource(resource)
+        .search(AbstractEntry.Search.builder().mode(mode).build())
+        .build();
+  }
+
+  /** Everything in the record of the patient. */
+  @Loggable(arguments = false)
+  @GetMapping(value = "/{id}/$everything")
+  ResponseEntity<RawBundle> everything(@PathVariable("id") String icn) {
+    PageRequest limit = PageRequest.of(0, maxResources + 1);
+    CompletableFuture<List<ObservationEntity>> observations =
+        async(() -> observationRepository.findBySubject(icn, limit));
+    CompletableFuture<List<QuestionnaireResponseEntity>> responses =
+        async(() -> questionnaireResponseRepository.findByPatient(icn, limit));
+    CompletableFuture<List<RawResource>> rawObservations =
+        observations.thenApplyAsync(
+            o ->
+                o.stream()
+                    .map(observationController::toRawResource)
+                    .filter(raw -> raw.icns().contains(icn))
+                    .collect(toList()),
+            executor);
+    CompletableFuture<List<RawResource>> rawResponses =
+        responses.thenApplyAsync(
+            r ->
+                r.stream()
+                    .map(questionnaireResponseController::toRawResource)
+                    .filter(raw -> raw.icns().contains(icn))
+                    .collect(toList()),
+            executor);
+    CompletableFuture<List<RawResource>> questionnaires =
+        rawResponses.thenApplyAsync(
+            raw -> {
+              Set<String> matched = raw.stream().map(RawResource::id).collect(toSet());
+              Set<String> ids =
+                  join(responses).stream()
+                      .filter(r -> matched.contains(r.id()))
+                      .map(QuestionnaireResponseEntity::questionnaire)
+                      .filter(Objects::nonNull)
+                      .collect(toCollection(TreeSet::new));
+              if (ids.isEmpty()) {
+                return List.of();
+              }
+              Iterable<QuestionnaireEntity> found = questionnaireRepository.findAllById(ids);
+              return StreamSupport.stream(found.spliterator(), false)
+                  .map(questionnaireController::toRawResource)
+                  .collect(toList());
+            },
+            executor);
+    checkSize(join(observations).size() + join(responses).size());
+    List<RawResource> matches = new ArrayList<>(join(rawObservations));
+    matches.addAll(join(rawResponses));
+    List<RawBundle.Entry> entries = new ArrayList<>();
+    matches.forEach(r -> entries.add(entry(r, AbstractEntry.SearchMode.match)));
+    join(questionnaires).forEach(r -> entries.add(entry(r, AbstractEntry.SearchMode.include)));
+    checkSize(entries.size());
+    RawBundle bundle =
+        RawBundle.builder()
+            .total(matches.size())
+            .link(
+                List.of(
+                    BundleLink.builder()
+                        .relation(BundleLink.LinkRelation.self)
+                        .url(linkProperties.r4ReadUrl("Patient", icn) + "/$everything")
+                        .build()))
+            .entry(entries)
+            .build();
+    String users = bundle.icns().collect(joining(","));
+    if (users.isEmpty()) {
+      users = "NONE";
+    }
+    return ResponseEntity.ok().header(IncludesIcnMajig.INCLUDES_ICN_HEADER, users).body(bundle);
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+}
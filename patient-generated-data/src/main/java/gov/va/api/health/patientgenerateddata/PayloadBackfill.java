@@ -0,0 +1,124 @@
+package gov.va.api.health.patientgenerateddata;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Liquibase task populating columns or index tables from the stored payloads of existing rows. Each
+ * table is read with one select, and the values extracted from each row are written with batched
+ * statements, executed every 500 rows. A row whose values cannot be extracted, e.g. a malformed
+ * payload, is logged and skipped rather than failing the migration. Subclasses supply the queries
+ * and the extraction.
+ */
+@Slf4j
+public abstract class PayloadBackfill<T> implements CustomTaskChange {
+  protected static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  private static final int BATCH_SIZE = 500;
+
+  private final String description;
+
+  private final List<String> tables;
+
+  private int backfilled;
+
+  /** Backfill of the description, e.g. search columns, for rows of the tables. */
+  protected PayloadBackfill(String description, String... tables) {
+    this.description = description;
+    this.tables = List.of(tables);
+  }
+
+  @SneakyThrows
+  private static void executeBatches(List<PreparedStatement> writes) {
+    for (PreparedStatement write : writes) {
+      write.executeBatch();
+    }
+  }
+
+  @SneakyThrows
+  private void backfill(JdbcConnection connection, String table) {
+    List<PreparedStatement> writes = new ArrayList<>();
+    try (PreparedStatement select = connection.prepareStatement(select(table));
+        ResultSet rows = select.executeQuery()) {
+      for (String write : writes(table)) {
+        writes.add(connection.prepareStatement(write));
+      }
+      int batched = 0;
+      while (rows.next()) {
+        String id = rows.getString("id");
+        T values;
+        try {
+          values = extract(rows);
+        } catch (Exception e) {
+          log.warn("{} of {} {} not backfilled", description, table, id, e);
+          continue;
+        }
+        write(id, values, writes);
+        batched++;
+        if (batched == BATCH_SIZE) {
+          executeBatches(writes);
+          backfilled += batched;
+          batched = 0;
+        }
+      }
+      executeBatches(writes);
+      backfilled += batched;
+    } finally {
+      for (PreparedStatement write : writes) {
+        write.close();
+      }
+    }
+  }
+
+  @Override
+  public void execute(Database database) {
+    JdbcConnection connection = (JdbcConnection) database.getConnection();
+    for (String table : tables) {
+      backfill(connection, table);
+    }
+  }
+
+  /** Values to write for the selected row. Throwing skips the row. */
+  protected abstract T extract(ResultSet row) throws Exception;
+
+  @Override
+  public String getConfirmationMessage() {
+    return "Backfilled " + description + " of " + backfilled + " resources";
+  }
+
+  /** Query of the id and payload of the rows of the table to backfill. */
+  protected abstract String select(String table);
+
+  @Override
+  public void setFileOpener(ResourceAccessor resourceAccessor) {
+    // Not needed
+  }
+
+  @Override
+  public void setUp() {
+    // Not needed
+  }
+
+  @Override
+  public ValidationErrors validate(Database database) {
+    return new ValidationErrors();
+  }
+
+  /** Add the values of the row to the batches of the statements, in the order of writes. */
+  protected abstract void write(String id, T values, List<PreparedStatement> writes)
+      throws SQLException;
+
+  /** Statements the rows of the table are written with, executed in this order. */
+  protected abstract List<String> writes(String table);
+}
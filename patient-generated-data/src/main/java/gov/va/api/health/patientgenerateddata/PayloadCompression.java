@@ -0,0 +1,35 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.SneakyThrows;
+import lombok.experimental.UtilityClass;
+
+/** Deflate (zlib) encoding of stored payloads. */
+@UtilityClass
+public class PayloadCompression {
+  /** Compress the UTF-8 bytes of the JSON. */
+  @SneakyThrows
+  public static byte[] compress(String json) {
+    byte[] bytes = json.getBytes(UTF_8);
+    ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4 + 64);
+    try (OutputStream deflater = new DeflaterOutputStream(out)) {
+      deflater.write(bytes);
+    }
+    return out.toByteArray();
+  }
+
+  /** Inflate a payload written by compress. */
+  @SneakyThrows
+  public static String decompress(byte[] compressed) {
+    try (InputStream inflater = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+      return new String(inflater.readAllBytes(), UTF_8);
+    }
+  }
+}
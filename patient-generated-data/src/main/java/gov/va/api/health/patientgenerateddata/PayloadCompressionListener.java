@@ -0,0 +1,35 @@
+package gov.va.api.health.patientgenerateddata;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import org.springframework.beans.factory.annotation.Value;
+
+/**
+ * Encodes payloads as they are written. When compression is enabled, a new payload is moved into
+ * the compressed column and the plain column is cleared. When disabled, a new payload clears any
+ * compressed copy so it can not shadow the plain payload. Hibernate creates the listener through
+ * the Spring bean container, so the property is injected.
+ */
+public class PayloadCompressionListener {
+  private final boolean enabled;
+
+  public PayloadCompressionListener(@Value("${payload-compression.enabled}") boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @PrePersist
+  @PreUpdate
+  void encode(Object entity) {
+    PayloadEntity<?> payloadEntity = (PayloadEntity<?>) entity;
+    if (payloadEntity.payload() == null) {
+      return;
+    }
+    if (enabled) {
+      payloadEntity
+          .compressedPayload(PayloadCompression.compress(payloadEntity.payload()))
+          .payload(null);
+    } else {
+      payloadEntity.compressedPayload(null);
+    }
+  }
+}
@@ -10,12 +10,18 @@ import lombok.SneakyThrows;
 public interface PayloadEntity<R extends Resource> {
   static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
 
+  /** Deflate compressed payload, used when the plain payload is absent. */
+  byte[] compressedPayload();
+
+  PayloadEntity<R> compressedPayload(byte[] compressedPayload);
+
   /** Deserialize payload. */
   @SneakyThrows
   default R deserializePayload() {
     try {
-      checkState(payload() != null);
-      return MAPPER.readValue(payload(), resourceType());
+      String json = payloadJson();
+      checkState(json != null);
+      return MAPPER.readValue(json, resourceType());
     } catch (Exception e) {
       throw new Exceptions.InvalidPayload(id(), e);
     }
@@ -25,5 +31,19 @@ public interface PayloadEntity<R extends Resource> {
 
   String payload();
 
+  PayloadEntity<R> payload(String payload);
+
+  /**
+   * The payload JSON, read from whichever column holds it. Rows written before compression was
+   * enabled, and not yet re-encoded, only have the plain payload. A plain payload wins, so a new
+   * payload is visible before it has been flushed and compressed.
+   */
+  default String payloadJson() {
+    if (payload() != null || compressedPayload() == null) {
+      return payload();
+    }
+    return PayloadCompression.decompress(compressedPayload());
+  }
+
   Class<R> resourceType();
 }
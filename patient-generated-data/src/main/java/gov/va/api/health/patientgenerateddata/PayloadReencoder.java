@@ -0,0 +1,122 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivedQuestionnaireResponseRepository;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.ToIntBiFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Compresses payloads that were stored before compression was enabled. Uncompressed IDs are read in
+ * chunks and each row is rewritten with a bulk update, so the version and search columns are left
+ * untouched. A row written since it was read, e.g. by an instance with compression disabled, is
+ * left for the next run. Nothing is re-encoded while compression is disabled. Re-encoding runs on
+ * one instance at a time: the payload-reencode job lock is held for
+ * payload-compression.lock-lease-minutes and renewed after each chunk.
+ */
+@Slf4j
+@Component
+public class PayloadReencoder {
+  static final String LOCK = "payload-reencode";
+
+  private final List<VersionedPayloadRepository<?>> repositories;
+
+  private final ArchivedQuestionnaireResponseRepository archivedRepository;
+
+  private final JobLocks jobLocks;
+
+  private final boolean enabled;
+
+  private final int batchSize;
+
+  private final Duration lockLease;
+
+  /** Re-encodes the payloads of every payload repository. */
+  public PayloadReencoder(
+      List<VersionedPayloadRepository<?>> repositories,
+      ArchivedQuestionnaireResponseRepository archivedRepository,
+      JobLocks jobLocks,
+      @Value("${payload-compression.enabled}") boolean enabled,
+      @Value("${payload-compression.batch-size}") int batchSize,
+      @Value("${payload-compression.lock-lease-minutes}") int lockLeaseMinutes) {
+    checkState(batchSize > 0, "payload-compression.batch-size must be positive");
+    checkState(lockLeaseMinutes > 0, "payload-compression.lock-lease-minutes must be positive");
+    this.repositories = repositories;
+    this.archivedRepository = archivedRepository;
+    this.jobLocks = jobLocks;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.lockLease = Duration.ofMinutes(lockLeaseMinutes);
+  }
+
+  /**
+   * Compress every uncompressed payload, returning the number of rows re-encoded. Nothing is
+   * re-encoded if re-encoding is running on another instance.
+   */
+  public int reencode() {
+    if (!enabled) {
+      return 0;
+    }
+    if (!jobLocks.lock(LOCK, Instant.now(), lockLease)) {
+      log.info("Payload re-encoding is running on another instance");
+      return 0;
+    }
+    try {
+      int reencoded = 0;
+      for (VersionedPayloadRepository<?> repository : repositories) {
+        reencoded += reencodeVersioned(repository);
+      }
+      return reencoded
+          + reencode(
+              archivedRepository,
+              (e, compressed) ->
+                  archivedRepository.storeCompressedPayload(
+                      e.id(), e.deletionTimestamp(), compressed));
+    } finally {
+      jobLocks.unlock(LOCK);
+    }
+  }
+
+  private <E extends PayloadEntity<?>> int reencode(
+      PayloadRepository<E> repository, ToIntBiFunction<E, byte[]> store) {
+    int reencoded = 0;
+    String after = "";
+    List<String> ids;
+    do {
+      ids = repository.findIdsWithUncompressedPayload(after, PageRequest.of(0, batchSize));
+      for (E entity : repository.findAllById(ids)) {
+        if (entity.payload() != null) {
+          reencoded += store.applyAsInt(entity, PayloadCompression.compress(entity.payload()));
+        }
+      }
+      if (!ids.isEmpty()) {
+        after = ids.get(ids.size() - 1);
+        checkState(jobLocks.lock(LOCK, Instant.now(), lockLease), "Re-encoding lock lost");
+      }
+    } while (ids.size() == batchSize);
+    return reencoded;
+  }
+
+  private <E extends VersionedPayloadEntity<?>> int reencodeVersioned(
+      VersionedPayloadRepository<E> repository) {
+    return reencode(
+        repository,
+        (e, compressed) -> repository.storeCompressedPayload(e.id(), e.version(), compressed));
+  }
+
+  @Scheduled(cron = "${payload-compression.cron}", zone = "UTC")
+  void scheduledReencode() {
+    try {
+      log.info("Compressed {} payloads", reencode());
+    } catch (RuntimeException e) {
+      log.error("Payload re-encoding failed", e);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+
+/** Queries shared by repositories of payload entities. */
+@NoRepositoryBean
+public interface PayloadRepository<EntityT extends PayloadEntity<?>>
+    extends CrudRepository<EntityT, String> {
+  /** IDs of the given IDs that exist, without loading their payloads. */
+  @Query("select e.id from #{#entityName} e where e.id in :ids")
+  List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+  /** IDs of uncompressed payloads after the given ID, in ID order. */
+  @Query(
+      "select e.id from #{#entityName} e"
+          + " where e.id > :after and e.payload is not null and e.compressedPayload is null"
+          + " order by e.id")
+  List<String> findIdsWithUncompressedPayload(@Param("after") String after, Pageable page);
+}
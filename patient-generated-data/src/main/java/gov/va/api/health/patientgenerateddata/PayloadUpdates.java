@@ -0,0 +1,11 @@
+package gov.va.api.health.patientgenerateddata;
+
+/** Conditional updates shared by repositories of versioned payload entities. */
+public interface PayloadUpdates<EntityT extends VersionedPayloadEntity<?>> {
+  /**
+   * Overwrite the stored entity without loading its payload. The update is only made if the stored
+   * entity was created by the source of the given entity, and, when an expected version is given,
+   * the stored entity is still at that version. The entity is left at its new version.
+   */
+  void updateIfMatch(EntityT entity, Integer expectedVersion);
+}
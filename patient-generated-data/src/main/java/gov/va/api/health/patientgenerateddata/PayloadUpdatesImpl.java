@@ -0,0 +1,55 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static gov.va.api.health.patientgenerateddata.Controllers.validateSource;
+
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import lombok.AllArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Checks the stored version and source with a query of those columns alone, then issues the
+ * versioned update of the detached entity. Hibernate updates where both the ID and the checked
+ * version still match, so a write that lands in between fails the precondition instead of being
+ * lost.
+ */
+@AllArgsConstructor(onConstructor_ = @Autowired)
+class PayloadUpdatesImpl<EntityT extends VersionedPayloadEntity<?>>
+    implements PayloadUpdates<EntityT> {
+  private final EntityManager entityManager;
+
+  private static Exceptions.PreconditionFailed versionMismatch(String id, Integer version) {
+    return new Exceptions.PreconditionFailed(
+        String.format("Resource %s is no longer at version %s", id, version));
+  }
+
+  @Override
+  @Transactional
+  public void updateIfMatch(EntityT entity, Integer expectedVersion) {
+    String entityName = entityManager.getMetamodel().entity(entity.getClass()).getName();
+    Object[] stored =
+        entityManager
+            .createQuery(
+                "select e.version, e.metaSource from " + entityName + " e where e.id = :id",
+                Object[].class)
+            .setParameter("id", entity.id())
+            .getResultList()
+            .stream()
+            .findFirst()
+            .orElseThrow(() -> new Exceptions.NotFound(entity.id()));
+    Integer storedVersion = (Integer) stored[0];
+    validateSource(entity.id(), entity.metaSource(), (String) stored[1]);
+    if (expectedVersion != null && !expectedVersion.equals(storedVersion)) {
+      throw versionMismatch(entity.id(), expectedVersion);
+    }
+    entity.version(storedVersion);
+    try {
+      entityManager.unwrap(Session.class).update(entity);
+      entityManager.flush();
+    } catch (OptimisticLockException e) {
+      throw versionMismatch(entity.id(), storedVersion);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package gov.va.api.health.patientgenerateddata;
+
+import gov.va.api.health.r4.api.bundle.AbstractBundle;
+import gov.va.api.health.r4.api.bundle.AbstractEntry;
+import gov.va.api.health.r4.api.bundle.BundleLink;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.Value;
+
+/** Searchset bundle whose entries are stored payloads written as-is. */
+@Value
+@Builder
+public class RawBundle {
+  @Builder.Default String resourceType = "Bundle";
+
+  @Builder.Default AbstractBundle.BundleType type = AbstractBundle.BundleType.searchset;
+
+  Integer total;
+
+  List<BundleLink> link;
+
+  List<Entry> entry;
+
+  /** Patient ICNs referenced by the entries. */
+  public Stream<String> icns() {
+    if (entry == null) {
+      return Stream.empty();
+    }
+    return entry.stream().flatMap(e -> e.resource().icns().stream()).distinct();
+  }
+
+  /** Bundle entry for a raw resource. */
+  @Value
+  @Builder
+  public static class Entry {
+    String fullUrl;
+
+    RawResource resource;
+
+    AbstractEntry.Search search;
+  }
+}
@@ -0,0 +1,150 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import gov.va.api.health.r4.api.elements.Reference;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.Value;
+
+/**
+ * A stored resource payload that is written to responses as-is. Instead of binding the payload to
+ * the R4 model and serializing it again, references are qualified by a streaming token rewrite, the
+ * same way MagicReferenceConfig qualifies them, and the result is spliced into the response.
+ */
+@Value
+@JsonSerialize(using = RawResource.Serializer.class)
+public class RawResource {
+  private static final JsonFactory FACTORY = JacksonMapperConfig.createMapper().getFactory();
+
+  String resourceType;
+
+  String id;
+
+  String json;
+
+  /** Patient ICNs referenced by the resource. */
+  List<String> icns;
+
+  /**
+   * Patient ICNs referenced by the stored payload of the entity, the same ICNs that {@link #of}
+   * collects, without keeping the rewritten payload.
+   */
+  public static List<String> icns(PayloadEntity<?> entity, Set<String> icnFields) {
+    try {
+      String payload = entity.payloadJson();
+      checkState(payload != null);
+      Set<String> icns = new LinkedHashSet<>();
+      rewrite(payload, "", icnFields, icns, Writer.nullWriter());
+      return new ArrayList<>(icns);
+    } catch (Exception e) {
+      throw new Exceptions.InvalidPayload(entity.id(), e);
+    }
+  }
+
+  /**
+   * Qualify the references in the stored payload of the entity. Patient ICNs are collected from
+   * references nested under the given top-level fields.
+   */
+  public static RawResource of(PayloadEntity<?> entity, String r4Url, Set<String> icnFields) {
+    try {
+      String payload = entity.payloadJson();
+      checkState(payload != null);
+      Set<String> icns = new LinkedHashSet<>();
+      StringWriter json = new StringWriter(payload.length() + 128);
+      rewrite(payload, r4Url, icnFields, icns, json);
+      return new RawResource(
+          entity.resourceType().getSimpleName(),
+          entity.id(),
+          json.toString(),
+          new ArrayList<>(icns));
+    } catch (Exception e) {
+      throw new Exceptions.InvalidPayload(entity.id(), e);
+    }
+  }
+
+  private static void rewrite(
+      String payload, String r4Url, Set<String> icnFields, Set<String> icns, Writer out)
+      throws IOException {
+    try (JsonParser parser = FACTORY.createParser(payload);
+        JsonGenerator generator = FACTORY.createGenerator(out)) {
+      int depth = 0;
+      String topLevelField = null;
+      JsonToken token;
+      while ((token = parser.nextToken()) != null) {
+        if (token.isStructStart()) {
+          depth++;
+        } else if (token.isStructEnd()) {
+          depth--;
+        } else if (token == JsonToken.FIELD_NAME) {
+          if (depth == 1) {
+            topLevelField = parser.getCurrentName();
+          } else if ("reference".equals(parser.getCurrentName())) {
+            boolean collectIcn = depth == 2 && icnFields.contains(topLevelField);
+            writeReference(parser, generator, r4Url, collectIcn, icns);
+            continue;
+          }
+        } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+          // Keep the stored decimal text, e.g. 1.10, rather than round tripping through a double
+          generator.writeNumber(parser.getText());
+          continue;
+        }
+        generator.copyCurrentEvent(parser);
+      }
+    }
+  }
+
+  private static void writeReference(
+      JsonParser parser,
+      JsonGenerator generator,
+      String r4Url,
+      boolean collectIcn,
+      Set<String> icns)
+      throws IOException {
+    JsonToken value = parser.nextToken();
+    if (value == JsonToken.VALUE_NULL) {
+      return;
+    }
+    if (value != JsonToken.VALUE_STRING) {
+      generator.writeFieldName("reference");
+      generator.copyCurrentStructure(parser);
+      return;
+    }
+    String reference = parser.getText();
+    if (collectIcn) {
+      String icn = IncludesIcnMajig.icn(Reference.builder().reference(reference).build());
+      if (icn != null) {
+        icns.add(icn);
+      }
+    }
+    String qualified = MagicReferenceConfig.qualify(r4Url, reference);
+    if (qualified != null) {
+      generator.writeStringField("reference", qualified);
+    }
+  }
+
+  /** Writes the already serialized payload without parsing it again. */
+  public static final class Serializer extends StdSerializer<RawResource> {
+    public Serializer() {
+      super(RawResource.class);
+    }
+
+    @Override
+    public void serialize(RawResource value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeRawValue(value.json());
+    }
+  }
+}
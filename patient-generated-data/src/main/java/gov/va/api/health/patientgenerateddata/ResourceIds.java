@@ -0,0 +1,39 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static com.google.common.base.Preconditions.checkState;
+import static gov.va.api.health.patientgenerateddata.Controllers.generateRandomId;
+import static gov.va.api.health.patientgenerateddata.Controllers.generateTimeOrderedId;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.Sets;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Generates the IDs of new resources. Random IDs land anywhere in the clustered primary key of a
+ * table, so sustained writes split and fragment its pages. Resource types configured as
+ * time-ordered get IDs that sort by creation time instead, which are appended at the end.
+ */
+@Component
+public class ResourceIds {
+  private static final Set<String> RESOURCE_TYPES =
+      Set.of("Observation", "Questionnaire", "QuestionnaireResponse");
+
+  private final Set<String> timeOrderedTypes;
+
+  /** Time-ordered resource types are listed by name, separated by commas. */
+  @Autowired
+  public ResourceIds(@Value("${resource-ids.time-ordered}") String timeOrderedTypes) {
+    this.timeOrderedTypes =
+        Set.copyOf(Splitter.on(',').trimResults().omitEmptyStrings().splitToList(timeOrderedTypes));
+    Set<String> unknown = Sets.difference(this.timeOrderedTypes, RESOURCE_TYPES);
+    checkState(unknown.isEmpty(), "resource-ids.time-ordered has unknown types %s", unknown);
+  }
+
+  /** ID for a new resource of the given type. */
+  public String newId(String resourceType) {
+    return timeOrderedTypes.contains(resourceType) ? generateTimeOrderedId() : generateRandomId();
+  }
+}
@@ -0,0 +1,72 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import gov.va.api.health.r4.api.datatypes.Coding;
+import java.util.Locale;
+import java.util.stream.Stream;
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Token search row kept in a side table next to the resource. Each coding is expanded into the
+ * forms a token search parameter can take (system|code, system|, |code and code), and the
+ * lower-cased form is stored in the indexed token column so searches are equality lookups.
+ */
+@Data
+@Builder
+@Embeddable
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class SearchToken {
+  @Column(name = "system", nullable = false)
+  private String system;
+
+  @Column(name = "code", nullable = false)
+  private String code;
+
+  @EqualsAndHashCode.Include
+  @Column(name = "token", nullable = false)
+  private String token;
+
+  /** Return the search tokens for the coding, using the same forms as a token search value. */
+  public static Stream<SearchToken> forCoding(Coding coding) {
+    if (coding == null) {
+      return Stream.empty();
+    }
+    return forSystemAndCode(coding.system(), coding.code());
+  }
+
+  /** Return the search tokens for the system and code. */
+  public static Stream<SearchToken> forSystemAndCode(String system, String code) {
+    if (isBlank(system) && isBlank(code)) {
+      return Stream.empty();
+    }
+    if (isBlank(system)) {
+      return Stream.of(token("", code, "|" + code), token("", code, code));
+    }
+    if (isBlank(code)) {
+      return Stream.of(token(system, "", system + "|"));
+    }
+    return Stream.of(
+        token(system, code, system + "|" + code),
+        token(system, "", system + "|"),
+        token("", code, code));
+  }
+
+  /** Normalize a token search value into the stored token form. */
+  public static String normalize(String value) {
+    return value.trim().toLowerCase(Locale.ENGLISH);
+  }
+
+  private static SearchToken token(String system, String code, String token) {
+    return SearchToken.builder().system(system).code(code).token(normalize(token)).build();
+  }
+}
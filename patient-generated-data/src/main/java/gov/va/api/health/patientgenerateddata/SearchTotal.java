@@ -0,0 +1,27 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.Locale;
+
+/** See https://www.hl7.org/fhir/r4/search.html#total */
+public enum SearchTotal {
+  /** Bundle.total is omitted and the count query is skipped. */
+  none,
+  /** Bundle.total is the number of matches proven by the page fetch, without a count query. */
+  estimate,
+  /** Bundle.total is the exact number of matches, which requires a count query. */
+  accurate;
+
+  /** Parse the _total parameter value, falling back to the default when it is not specified. */
+  public static SearchTotal parse(String value, SearchTotal defaultTotal) {
+    if (isBlank(value)) {
+      return defaultTotal;
+    }
+    try {
+      return valueOf(value.trim().toLowerCase(Locale.ENGLISH));
+    } catch (IllegalArgumentException e) {
+      throw new Exceptions.BadRequest("Invalid _total: " + value, e);
+    }
+  }
+}
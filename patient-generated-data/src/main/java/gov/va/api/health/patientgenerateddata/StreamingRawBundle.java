@@ -0,0 +1,98 @@
+package gov.va.api.health.patientgenerateddata;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import gov.va.api.health.r4.api.bundle.AbstractBundle;
+import gov.va.api.health.r4.api.bundle.AbstractEntry;
+import gov.va.api.health.r4.api.bundle.BundleLink;
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.Value;
+
+/**
+ * Searchset bundle of stored payloads that is written entry by entry. Each entity is qualified only
+ * when its entry is written, and released as soon as it has been written, so a search response
+ * holds one copy of the page at most instead of the entities, resources, and entries all at once.
+ * The bundle can only be written once.
+ */
+@Value
+@Builder
+@JsonSerialize(using = StreamingRawBundle.Serializer.class)
+public class StreamingRawBundle<EntityT extends PayloadEntity<?>> {
+  Integer total;
+
+  List<BundleLink> link;
+
+  /** Matches in page order. Written entities are cleared from the list. */
+  @NonNull List<EntityT> entities;
+
+  @NonNull LinkProperties linkProperties;
+
+  @NonNull Function<EntityT, RawResource> toRawResource;
+
+  @NonNull Function<EntityT, List<String>> toIcns;
+
+  /** Called with each entity once its entry is written, e.g. to detach it. */
+  @NonNull @Builder.Default Consumer<EntityT> release = e -> {};
+
+  /** Patient ICNs referenced by the entries, found without qualifying the payloads. */
+  public Stream<String> icns() {
+    return entities.stream().flatMap(e -> toIcns.apply(e).stream()).distinct();
+  }
+
+  private void writeEntry(JsonGenerator gen, int index) throws IOException {
+    EntityT entity = entities.get(index);
+    RawResource resource = toRawResource.apply(entity);
+    gen.writeStartObject();
+    gen.writeStringField(
+        "fullUrl", linkProperties.r4ReadUrl(resource.resourceType(), resource.id()));
+    gen.writeFieldName("resource");
+    gen.writeRawValue(resource.json());
+    gen.writeObjectFieldStart("search");
+    gen.writeStringField("mode", AbstractEntry.SearchMode.match.name());
+    gen.writeEndObject();
+    gen.writeEndObject();
+    entities.set(index, null);
+    release.accept(entity);
+  }
+
+  /**
+   * Writes the same JSON as RawBundle, one entry at a time. Like RawBundle, empty links and entries
+   * are left out.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public static final class Serializer extends StdSerializer<StreamingRawBundle> {
+    public Serializer() {
+      super(StreamingRawBundle.class);
+    }
+
+    @Override
+    public void serialize(StreamingRawBundle value, JsonGenerator gen, SerializerProvider provider)
+        throws IOException {
+      gen.writeStartObject();
+      gen.writeStringField("resourceType", "Bundle");
+      gen.writeStringField("type", AbstractBundle.BundleType.searchset.name());
+      if (value.total() != null) {
+        gen.writeNumberField("total", value.total());
+      }
+      if (value.link() != null && !value.link().isEmpty()) {
+        provider.defaultSerializeField("link", value.link(), gen);
+      }
+      if (!value.entities().isEmpty()) {
+        gen.writeArrayFieldStart("entry");
+        for (int i = 0; i < value.entities().size(); i++) {
+          value.writeEntry(gen, i);
+        }
+        gen.writeEndArray();
+      }
+      gen.writeEndObject();
+    }
+  }
+}
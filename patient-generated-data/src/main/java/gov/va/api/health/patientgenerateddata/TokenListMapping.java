@@ -2,13 +2,19 @@ package gov.va.api.health.patientgenerateddata;
 
 import static gov.va.api.health.patientgenerateddata.MappingUtils.addTerminators;
 import static gov.va.api.health.patientgenerateddata.MappingUtils.selectLikeInList;
+import static gov.va.api.health.patientgenerateddata.MappingUtils.selectTokenInIndex;
 import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toSet;
 
 import com.google.common.base.Splitter;
+import gov.va.api.health.r4.api.datatypes.CodeableConcept;
 import gov.va.api.health.r4.api.datatypes.Coding;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
 import gov.va.api.lighthouse.vulcan.mappings.SingleParameterMapping;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.stream.Stream;
 import javax.servlet.http.HttpServletRequest;
 import lombok.Builder;
@@ -16,7 +22,10 @@ import lombok.Value;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.jpa.domain.Specification;
 
-/** Vulcan mapping handler for CSV-formatted values. */
+/**
+ * Vulcan mapping handler for token values. When tokensFieldName is set, values are matched against
+ * the indexed SearchToken collection, otherwise the CSV-formatted field is searched.
+ */
 @Value
 @Builder
 public final class TokenListMapping<EntityT> implements SingleParameterMapping<EntityT> {
@@ -24,6 +33,8 @@ public final class TokenListMapping<EntityT> implements SingleParameterMapping<E
 
   String fieldName;
 
+  String tokensFieldName;
+
   private static Stream<String> codingJoin(Coding tag) {
     if (tag == null) {
       return Stream.empty();
@@ -43,6 +54,18 @@ public final class TokenListMapping<EntityT> implements SingleParameterMapping<E
         addTerminators(tag.code()));
   }
 
+  /** Return the search tokens of the codings of the concepts. */
+  public static Set<SearchToken> codeableConceptTokens(Collection<CodeableConcept> concepts) {
+    if (concepts == null) {
+      return new HashSet<>();
+    }
+    return concepts.stream()
+        .filter(concept -> concept != null && concept.coding() != null)
+        .flatMap(concept -> concept.coding().stream())
+        .flatMap(SearchToken::forCoding)
+        .collect(toCollection(HashSet::new));
+  }
+
   /** Return CSV of metadata tag queries. */
   public static String metadataTagJoin(QuestionnaireResponse questionnaireResponse) {
     if (questionnaireResponse == null
@@ -55,6 +78,18 @@ public final class TokenListMapping<EntityT> implements SingleParameterMapping<E
         .collect(joining(","));
   }
 
+  /** Return the search tokens of the metadata tags. */
+  public static Set<SearchToken> metadataTagTokens(QuestionnaireResponse questionnaireResponse) {
+    if (questionnaireResponse == null
+        || questionnaireResponse.meta() == null
+        || questionnaireResponse.meta().tag() == null) {
+      return new HashSet<>();
+    }
+    return questionnaireResponse.meta().tag().stream()
+        .flatMap(SearchToken::forCoding)
+        .collect(toCollection(HashSet::new));
+  }
+
   @Override
   public Specification<EntityT> specificationFor(HttpServletRequest request) {
     var values =
@@ -62,6 +97,9 @@ public final class TokenListMapping<EntityT> implements SingleParameterMapping<E
             .filter(StringUtils::isNotBlank)
             .filter(str -> !str.equals("|"))
             .collect(toSet());
+    if (tokensFieldName() != null) {
+      return selectTokenInIndex(tokensFieldName(), values);
+    }
     return selectLikeInList(fieldName(), values);
   }
 }
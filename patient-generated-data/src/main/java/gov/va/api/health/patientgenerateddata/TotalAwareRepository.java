@@ -0,0 +1,73 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.experimental.Delegate;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+/**
+ * Repository used by Vulcan that only pays for the count query when an accurate Bundle.total was
+ * requested. Otherwise, the page is fetched with one extra row to determine if more pages exist,
+ * and the total reported to Vulcan is the number of matches proven by that fetch.
+ */
+@Builder
+public final class TotalAwareRepository<EntityT> implements JpaSpecificationExecutor<EntityT> {
+  @NonNull
+  @Delegate(excludes = PagedSearch.class)
+  private final JpaSpecificationExecutor<EntityT> repository;
+
+  @NonNull private final EntityManager entityManager;
+
+  @NonNull private final Class<EntityT> entity;
+
+  @NonNull private final SearchTotal total;
+
+  /** Builder helper to infer generic types. */
+  public static <EntityT> TotalAwareRepositoryBuilder<EntityT> forRepo(
+      JpaSpecificationExecutor<EntityT> repository, Class<EntityT> entity) {
+    return TotalAwareRepository.<EntityT>builder().repository(repository).entity(entity);
+  }
+
+  @Override
+  public Page<EntityT> findAll(Specification<EntityT> spec, Pageable pageable) {
+    if (total == SearchTotal.accurate || pageable.isUnpaged()) {
+      return repository.findAll(spec, pageable);
+    }
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<EntityT> criteriaQuery = criteriaBuilder.createQuery(entity);
+    Root<EntityT> root = criteriaQuery.from(entity);
+    if (spec != null) {
+      Predicate predicate = spec.toPredicate(root, criteriaQuery, criteriaBuilder);
+      if (predicate != null) {
+        criteriaQuery.where(predicate);
+      }
+    }
+    criteriaQuery.select(root);
+    criteriaQuery.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+    List<EntityT> rows =
+        entityManager
+            .createQuery(criteriaQuery)
+            .setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize() + 1)
+            .getResultList();
+    boolean hasMore = rows.size() > pageable.getPageSize();
+    List<EntityT> content = hasMore ? rows.subList(0, pageable.getPageSize()) : rows;
+    long proven = pageable.getOffset() + content.size() + (hasMore ? 1 : 0);
+    return new PageImpl<>(content, pageable, proven);
+  }
+
+  private interface PagedSearch<EntityT> {
+    Page<EntityT> findAll(Specification<EntityT> spec, Pageable pageable);
+  }
+}
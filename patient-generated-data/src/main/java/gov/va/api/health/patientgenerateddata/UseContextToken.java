@@ -0,0 +1,56 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+import java.util.stream.Stream;
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Composite context-type-value search row kept in a side table next to the resource. The stored
+ * token is the lower-cased use-context code and value token joined by $, matching the search
+ * value, so searches are equality lookups.
+ */
+@Data
+@Builder
+@Embeddable
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+@AllArgsConstructor(access = AccessLevel.PRIVATE)
+@EqualsAndHashCode(onlyExplicitlyIncluded = true)
+public class UseContextToken {
+  @Column(name = "contextCode", nullable = false)
+  private String contextCode;
+
+  @Column(name = "system", nullable = false)
+  private String system;
+
+  @Column(name = "code", nullable = false)
+  private String code;
+
+  @EqualsAndHashCode.Include
+  @Column(name = "token", nullable = false)
+  private String token;
+
+  /** Return the search tokens for the use-context code and value system and code. */
+  public static Stream<UseContextToken> forContextValue(
+      String contextCode, String valueSystem, String valueCode) {
+    if (isBlank(contextCode)) {
+      return Stream.empty();
+    }
+    return SearchToken.forSystemAndCode(valueSystem, valueCode)
+        .map(
+            value ->
+                UseContextToken.builder()
+                    .contextCode(contextCode)
+                    .system(value.system())
+                    .code(value.code())
+                    .token(SearchToken.normalize(contextCode) + "$" + value.token())
+                    .build());
+  }
+}
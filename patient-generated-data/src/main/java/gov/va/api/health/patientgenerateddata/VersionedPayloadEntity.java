@@ -0,0 +1,13 @@
+package gov.va.api.health.patientgenerateddata;
+
+import gov.va.api.health.r4.api.resources.Resource;
+
+/** Payload entity that is updated in place, guarded by its version and its original source. */
+public interface VersionedPayloadEntity<R extends Resource> extends PayloadEntity<R> {
+  /** The meta.source of the stored resource, the only source allowed to update it. */
+  String metaSource();
+
+  Integer version();
+
+  VersionedPayloadEntity<R> version(Integer version);
+}
@@ -0,0 +1,32 @@
+package gov.va.api.health.patientgenerateddata;
+
+import java.util.Optional;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/** Queries shared by repositories of versioned payload entities. */
+@NoRepositoryBean
+public interface VersionedPayloadRepository<EntityT extends VersionedPayloadEntity<?>>
+    extends PayloadRepository<EntityT> {
+  /** Version of the entity, without loading its payload. */
+  @Query("select e.version from #{#entityName} e where e.id = :id")
+  Optional<Integer> findVersionById(@Param("id") String id);
+
+  /**
+   * Replace the plain payload with its compressed encoding. The row is left alone if it was
+   * compressed or updated since it was read at the version. The version is not incremented, the
+   * resource has not changed.
+   */
+  @Modifying
+  @Transactional
+  @Query(
+      "update #{#entityName} e set e.compressedPayload = :compressedPayload, e.payload = null"
+          + " where e.id = :id and e.version = :version and e.compressedPayload is null")
+  int storeCompressedPayload(
+      @Param("id") String id,
+      @Param("version") Integer version,
+      @Param("compressedPayload") byte[] compressedPayload);
+}
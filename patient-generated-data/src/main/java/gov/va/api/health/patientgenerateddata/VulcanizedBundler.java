@@ -1,6 +1,7 @@
 package gov.va.api.health.patientgenerateddata;
 
 import static com.google.common.base.Preconditions.checkState;
+import static java.util.stream.Collectors.toCollection;
 import static java.util.stream.Collectors.toList;
 
 import gov.va.api.health.r4.api.bundle.AbstractBundle;
@@ -10,11 +11,14 @@ import gov.va.api.health.r4.api.resources.Resource;
 import gov.va.api.lighthouse.vulcan.VulcanResult;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
+import org.springframework.web.util.UriComponentsBuilder;
 
 /** FHIR Resource bundler used by Vulcan. */
 @Builder
@@ -28,6 +32,8 @@ public final class VulcanizedBundler<
 
   @NonNull private final Function<EntityT, ResourceT> toResource;
 
+  @NonNull @Builder.Default private final SearchTotal total = SearchTotal.accurate;
+
   /** Builder helper to infer generic types. */
   public static <
           EntityT extends PayloadEntity<ResourceT>,
@@ -41,6 +47,19 @@ public final class VulcanizedBundler<
     return VulcanizedBundler.<EntityT, ResourceT, EntryT, BundleT>builder().bundling(bundling);
   }
 
+  private static Optional<String> queryParameter(String url, String name) {
+    return Optional.ofNullable(
+        UriComponentsBuilder.fromUriString(url).build().getQueryParams().getFirst(name));
+  }
+
+  private static String withoutPaging(String url) {
+    return UriComponentsBuilder.fromUriString(url)
+        .replaceQueryParam("page")
+        .replaceQueryParam(LinkProperties.CURSOR_PARAMETER)
+        .build()
+        .toUriString();
+  }
+
   @Override
   public BundleT apply(VulcanResult<EntityT> result) {
     List<ResourceT> payloads = result.entities().map(toResource).collect(toList());
@@ -48,12 +67,82 @@ public final class VulcanizedBundler<
     BundleT bundle = bundling.newBundle().get();
     bundle.resourceType("Bundle");
     bundle.type(AbstractBundle.BundleType.searchset);
-    bundle.total((int) result.paging().totalRecords());
-    bundle.link(toLinks(result.paging()));
+    if (isCursorPaging(result.paging())) {
+      // Keyset pages only count the rows past the cursor, so the total would be misleading.
+      String lastId = payloads.isEmpty() ? null : payloads.get(payloads.size() - 1).id();
+      bundle.link(toCursorLinks(result.paging(), lastId));
+    } else {
+      if (total != SearchTotal.none) {
+        bundle.total((int) result.paging().totalRecords());
+      }
+      bundle.link(toLinks(result.paging()));
+    }
     bundle.entry(entries);
     return bundle;
   }
 
+  private boolean isCursorPaging(VulcanResult.Paging paging) {
+    if (bundling.linkProperties().cursorPaging()) {
+      return true;
+    }
+    return paging
+        .thisPageUrl()
+        .flatMap(url -> queryParameter(url, LinkProperties.CURSOR_PARAMETER))
+        .isPresent();
+  }
+
+  /**
+   * Bundle stored payloads as-is, without binding each one to the resource model. Links and totals
+   * match the bundles built by apply.
+   */
+  public Function<VulcanResult<EntityT>, RawBundle> raw(
+      Function<EntityT, RawResource> toRawResource) {
+    return result -> {
+      List<RawResource> resources = result.entities().map(toRawResource).collect(toList());
+      RawBundle.RawBundleBuilder bundle = RawBundle.builder();
+      if (isCursorPaging(result.paging())) {
+        String lastId = resources.isEmpty() ? null : resources.get(resources.size() - 1).id();
+        bundle.link(toCursorLinks(result.paging(), lastId));
+      } else {
+        if (total != SearchTotal.none) {
+          bundle.total((int) result.paging().totalRecords());
+        }
+        bundle.link(toLinks(result.paging()));
+      }
+      return bundle.entry(resources.stream().map(this::toRawEntry).collect(toList())).build();
+    };
+  }
+
+  /**
+   * Bundle stored payloads like raw, but qualify each payload only when its entry is written. Each
+   * entity is handed to release once its entry has been written.
+   */
+  public Function<VulcanResult<EntityT>, StreamingRawBundle<EntityT>> streaming(
+      Function<EntityT, RawResource> toRawResource,
+      Function<EntityT, List<String>> toIcns,
+      Consumer<EntityT> release) {
+    return result -> {
+      List<EntityT> entities = result.entities().collect(toCollection(ArrayList::new));
+      StreamingRawBundle.StreamingRawBundleBuilder<EntityT> bundle = StreamingRawBundle.builder();
+      if (isCursorPaging(result.paging())) {
+        String lastId = entities.isEmpty() ? null : entities.get(entities.size() - 1).id();
+        bundle.link(toCursorLinks(result.paging(), lastId));
+      } else {
+        if (total != SearchTotal.none) {
+          bundle.total((int) result.paging().totalRecords());
+        }
+        bundle.link(toLinks(result.paging()));
+      }
+      return bundle
+          .entities(entities)
+          .linkProperties(bundling.linkProperties())
+          .toRawResource(toRawResource)
+          .toIcns(toIcns)
+          .release(release)
+          .build();
+    };
+  }
+
   private EntryT toEntry(ResourceT resource) {
     EntryT entry = bundling.newEntry().get();
     entry.resource(resource);
@@ -62,17 +151,51 @@ public final class VulcanizedBundler<
     return entry;
   }
 
+  private RawBundle.Entry toRawEntry(RawResource resource) {
+    return RawBundle.Entry.builder()
+        .fullUrl(bundling.linkProperties().r4ReadUrl(resource.resourceType(), resource.id()))
+        .resource(resource)
+        .search(AbstractEntry.Search.builder().mode(AbstractEntry.SearchMode.match).build())
+        .build();
+  }
+
   private Function<String, BundleLink> toLink(BundleLink.LinkRelation relation) {
     return url -> BundleLink.builder().relation(relation).url(url).build();
   }
 
+  List<BundleLink> toCursorLinks(VulcanResult.Paging paging, String lastId) {
+    List<BundleLink> links = new ArrayList<>(3);
+    paging
+        .thisPageUrl()
+        .map(VulcanizedBundler::withoutPaging)
+        .map(toLink(BundleLink.LinkRelation.first))
+        .ifPresent(links::add);
+    paging.thisPageUrl().map(toLink(BundleLink.LinkRelation.self)).ifPresent(links::add);
+    if (paging.nextPageUrl().isPresent() && lastId != null) {
+      paging
+          .thisPageUrl()
+          .map(
+              url ->
+                  UriComponentsBuilder.fromUriString(withoutPaging(url))
+                      .queryParam(LinkProperties.CURSOR_PARAMETER, CursorMapping.encode(lastId))
+                      .build()
+                      .toUriString())
+          .map(toLink(BundleLink.LinkRelation.next))
+          .ifPresent(links::add);
+    }
+    return links.isEmpty() ? null : links;
+  }
+
   List<BundleLink> toLinks(VulcanResult.Paging paging) {
     List<BundleLink> links = new ArrayList<>(5);
     paging.firstPageUrl().map(toLink(BundleLink.LinkRelation.first)).ifPresent(links::add);
     paging.previousPageUrl().map(toLink(BundleLink.LinkRelation.prev)).ifPresent(links::add);
     paging.thisPageUrl().map(toLink(BundleLink.LinkRelation.self)).ifPresent(links::add);
     paging.nextPageUrl().map(toLink(BundleLink.LinkRelation.next)).ifPresent(links::add);
-    paging.lastPageUrl().map(toLink(BundleLink.LinkRelation.last)).ifPresent(links::add);
+    if (total == SearchTotal.accurate) {
+      // Without an accurate count, the last page is unknown.
+      paging.lastPageUrl().map(toLink(BundleLink.LinkRelation.last)).ifPresent(links::add);
+    }
     return links.isEmpty() ? null : links;
   }
 
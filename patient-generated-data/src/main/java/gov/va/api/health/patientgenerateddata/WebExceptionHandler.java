@@ -195,6 +195,12 @@ public final class WebExceptionHandler {
     return responseFor("not-found", e, request, emptyList(), true);
   }
 
+  @ExceptionHandler({Exceptions.PreconditionFailed.class})
+  @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+  OperationOutcome handlePreconditionFailed(Exception e, HttpServletRequest request) {
+    return responseFor("conflict", e, request, emptyList(), true);
+  }
+
   /**
    * For exceptions relating to unmarshalling json, we want to make sure no PII is being logged.
    * Therefore, when we encounter these exceptions, we will not print the stacktrace to prevent PII
@@ -84,6 +84,7 @@ public interface R4ObservationApi {
           @Content(
               mediaType = "application/fhir+json",
               schema = @Schema(implementation = Observation.class)))
+  @ApiResponse(responseCode = "304", description = "Not modified")
   @ApiResponse(
       responseCode = "400",
       description = "Bad request",
@@ -134,7 +135,15 @@ public interface R4ObservationApi {
               description =
                   "The logical ID of the resource. Once assigned, this value never changes.",
               example = "0b9d2e37-f84d-4f9e-9ba3-995772f368d3")
-          String id);
+          String id,
+      @Parameter(
+              in = ParameterIn.HEADER,
+              name = "If-None-Match",
+              description =
+                  "Entity tag of a version the client already has. The record is not returned"
+                      + " if that version is still current.",
+              example = "W/\"0\"")
+          String ifNoneMatch);
 
   @Operation(
       summary = "Observation Search",
@@ -205,6 +214,45 @@ public interface R4ObservationApi {
               description = "The date when the record was last updated.",
               example = "gt2021-01-01T00:00:00Z")
           String lastUpdated,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "category",
+              description = "The classification of the type of observation.",
+              example = "http://terminology.hl7.org/CodeSystem/observation-category|vital-signs")
+          String category,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "code",
+              description = "The code of the observation type.",
+              example = "http://loinc.org|8867-4")
+          String code,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "date",
+              description =
+                  "A date or range of dates (maximum of 2) that describes "
+                      + "the clinically relevant time of the observation.",
+              example = "ge2021-01-01T00:00:00Z")
+          String[] date,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "status",
+              description = "The status of the observation.",
+              example = "final")
+          String status,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "subject",
+              description = "The subject that the observation is about.",
+              example = "1011537977V693883")
+          String subject,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "_cursor",
+              description =
+                  "Opaque keyset paging cursor. Use the next link of a search result "
+                      + "rather than constructing this value.")
+          String cursor,
       @Parameter(
               in = ParameterIn.QUERY,
               name = "page",
@@ -220,7 +268,15 @@ public interface R4ObservationApi {
                       + "The maximum count size is 100.",
               example = "15")
           @DefaultValue("15")
-          int count);
+          int count,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "_total",
+              description =
+                  "How Bundle.total is calculated: none, estimate, or accurate. "
+                      + "Only accurate requires counting every match.",
+              example = "accurate")
+          String total);
 
   @Operation(
       summary = "Observation Update",
@@ -256,6 +312,13 @@ public interface R4ObservationApi {
           @Content(
               mediaType = "application/json",
               schema = @Schema(implementation = OperationOutcome.class)))
+  @ApiResponse(
+      responseCode = "412",
+      description = "Precondition failed",
+      content =
+          @Content(
+              mediaType = "application/json",
+              schema = @Schema(implementation = OperationOutcome.class)))
   @ApiResponse(
       responseCode = "429",
       description = "Too many requests",
@@ -283,5 +346,13 @@ public interface R4ObservationApi {
               required = true,
               description = "The FHIR resource in JSON format.",
               content = @Content(mediaType = "application/fhir+json"))
-          Observation body);
+          Observation body,
+      @Parameter(
+              in = ParameterIn.HEADER,
+              name = "If-Match",
+              description =
+                  "Entity tag of the version the client last read. The record is only updated"
+                      + " if that version is still current.",
+              example = "W/\"0\"")
+          String ifMatch);
 }
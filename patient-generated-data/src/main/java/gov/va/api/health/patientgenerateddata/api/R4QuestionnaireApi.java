@@ -84,6 +84,7 @@ public interface R4QuestionnaireApi {
           @Content(
               mediaType = "application/fhir+json",
               schema = @Schema(implementation = Questionnaire.class)))
+  @ApiResponse(responseCode = "304", description = "Not modified")
   @ApiResponse(
       responseCode = "400",
       description = "Bad request",
@@ -134,7 +135,15 @@ public interface R4QuestionnaireApi {
               description =
                   "The logical ID of the resource. Once assigned, this value never changes.",
               example = "37953b72-961b-41ee-bd05-86c62bacc46b")
-          String id);
+          String id,
+      @Parameter(
+              in = ParameterIn.HEADER,
+              name = "If-None-Match",
+              description =
+                  "Entity tag of a version the client already has. The record is not returned"
+                      + " if that version is still current.",
+              example = "W/\"0\"")
+          String ifNoneMatch);
 
   @Operation(
       summary = "Questionnaire Search",
@@ -211,6 +220,13 @@ public interface R4QuestionnaireApi {
               description = "A use-context type and value assigned to the questionnaire.",
               example = "venue$vha_688_3485")
           String contextTypeValue,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "_cursor",
+              description =
+                  "Opaque keyset paging cursor. Use the next link of a search result "
+                      + "rather than constructing this value.")
+          String cursor,
       @Parameter(
               in = ParameterIn.QUERY,
               name = "page",
@@ -226,7 +242,15 @@ public interface R4QuestionnaireApi {
                       + "The maximum count size is 100.",
               example = "15")
           @DefaultValue("15")
-          int count);
+          int count,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "_total",
+              description =
+                  "How Bundle.total is calculated: none, estimate, or accurate. "
+                      + "Only accurate requires counting every match.",
+              example = "accurate")
+          String total);
 
   @Operation(
       summary = "Questionnaire Update",
@@ -262,6 +286,13 @@ public interface R4QuestionnaireApi {
           @Content(
               mediaType = "application/json",
               schema = @Schema(implementation = OperationOutcome.class)))
+  @ApiResponse(
+      responseCode = "412",
+      description = "Precondition failed",
+      content =
+          @Content(
+              mediaType = "application/json",
+              schema = @Schema(implementation = OperationOutcome.class)))
   @ApiResponse(
       responseCode = "429",
       description = "Too many requests",
@@ -289,5 +320,13 @@ public interface R4QuestionnaireApi {
               required = true,
               description = "The FHIR resource in JSON format.",
               content = @Content(mediaType = "application/fhir+json"))
-          Questionnaire body);
+          Questionnaire body,
+      @Parameter(
+              in = ParameterIn.HEADER,
+              name = "If-Match",
+              description =
+                  "Entity tag of the version the client last read. The record is only updated"
+                      + " if that version is still current.",
+              example = "W/\"0\"")
+          String ifMatch);
 }
@@ -137,6 +137,7 @@ public interface R4QuestionnaireResponseApi {
           @Content(
               mediaType = "application/fhir+json",
               schema = @Schema(implementation = QuestionnaireResponse.class)))
+  @ApiResponse(responseCode = "304", description = "Not modified")
   @ApiResponse(
       responseCode = "400",
       description = "Bad request",
@@ -187,7 +188,15 @@ public interface R4QuestionnaireResponseApi {
               description =
                   "The logical ID of the resource. Once assigned, this value never changes.",
               example = "f003043a-9047-4c3a-b15b-a26c67f4e723")
-          String id);
+          String id,
+      @Parameter(
+              in = ParameterIn.HEADER,
+              name = "If-None-Match",
+              description =
+                  "Entity tag of a version the client already has. The record is not returned"
+                      + " if that version is still current.",
+              example = "W/\"0\"")
+          String ifNoneMatch);
 
   @Operation(
       summary = "QuestionnaireResponse Search",
@@ -291,6 +300,13 @@ public interface R4QuestionnaireResponseApi {
               description = "The questionnaire that is being responded",
               example = "37953b72-961b-41ee-bd05-86c62bacc46b")
           String questionnaire,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "_cursor",
+              description =
+                  "Opaque keyset paging cursor. Use the next link of a search result "
+                      + "rather than constructing this value.")
+          String cursor,
       @Parameter(
               in = ParameterIn.QUERY,
               name = "page",
@@ -306,7 +322,15 @@ public interface R4QuestionnaireResponseApi {
                       + "The maximum count size is 100.",
               example = "15")
           @DefaultValue("15")
-          int count);
+          int count,
+      @Parameter(
+              in = ParameterIn.QUERY,
+              name = "_total",
+              description =
+                  "How Bundle.total is calculated: none, estimate, or accurate. "
+                      + "Only accurate requires counting every match.",
+              example = "accurate")
+          String total);
 
   @Operation(
       summary = "QuestionnaireResponse Update",
@@ -342,6 +366,13 @@ public interface R4QuestionnaireResponseApi {
           @Content(
               mediaType = "application/json",
               schema = @Schema(implementation = OperationOutcome.class)))
+  @ApiResponse(
+      responseCode = "412",
+      description = "Precondition failed",
+      content =
+          @Content(
+              mediaType = "application/json",
+              schema = @Schema(implementation = OperationOutcome.class)))
   @ApiResponse(
       responseCode = "429",
       description = "Too many requests",
@@ -369,5 +400,13 @@ public interface R4QuestionnaireResponseApi {
               required = true,
               description = "The FHIR resource in JSON format.",
               content = @Content(mediaType = "application/fhir+json"))
-          QuestionnaireResponse body);
+          QuestionnaireResponse body,
+      @Parameter(
+              in = ParameterIn.HEADER,
+              name = "If-Match",
+              description =
+                  "Entity tag of the version the client last read. The record is only updated"
+                      + " if that version is still current.",
+              example = "W/\"0\"")
+          String ifMatch);
 }
@@ -0,0 +1,68 @@
+package gov.va.api.health.patientgenerateddata.observation;
+
+import gov.va.api.health.patientgenerateddata.PayloadBackfill;
+import gov.va.api.health.patientgenerateddata.SearchToken;
+import gov.va.api.health.r4.api.resources.Observation;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Liquibase task populating the Observation search columns and tokens from existing payloads. A
+ * payload that cannot be indexed, e.g. with a malformed effectiveDateTime, is left with empty
+ * search columns.
+ */
+public class ObservationBackfill extends PayloadBackfill<ObservationEntity> {
+  public ObservationBackfill() {
+    super("search columns", "Observation");
+  }
+
+  private static void addTokens(PreparedStatement insert, String id, Set<SearchToken> tokens)
+      throws SQLException {
+    for (SearchToken token : tokens) {
+      insert.setString(1, id);
+      insert.setString(2, token.system());
+      insert.setString(3, token.code());
+      insert.setString(4, token.token());
+      insert.addBatch();
+    }
+  }
+
+  @Override
+  protected ObservationEntity extract(ResultSet row) throws Exception {
+    ObservationEntity entity = ObservationEntity.builder().id(row.getString("id")).build();
+    ObservationController.populateEntity(
+        entity, MAPPER.readValue(row.getString("payload"), Observation.class));
+    return entity;
+  }
+
+  @Override
+  protected String select(String table) {
+    return "select id, payload from app." + table;
+  }
+
+  @Override
+  protected void write(String id, ObservationEntity entity, List<PreparedStatement> writes)
+      throws SQLException {
+    PreparedStatement update = writes.get(0);
+    update.setString(1, entity.subject());
+    update.setString(2, entity.status());
+    update.setTimestamp(3, entity.effective() == null ? null : Timestamp.from(entity.effective()));
+    update.setString(4, id);
+    update.addBatch();
+    addTokens(writes.get(1), id, entity.codeTokens());
+    addTokens(writes.get(2), id, entity.categoryTokens());
+  }
+
+  @Override
+  protected List<String> writes(String table) {
+    return List.of(
+        "update app.Observation set subject = ?, status = ?, effective = ? where id = ?",
+        "insert into app.ObservationCode (observationId, system, code, token) values (?,?,?,?)",
+        "insert into app.ObservationCategory"
+            + " (observationId, system, code, token) values (?,?,?,?)");
+  }
+}
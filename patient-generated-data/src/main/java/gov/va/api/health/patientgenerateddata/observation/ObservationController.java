@@ -2,26 +2,34 @@ package gov.va.api.health.patientgenerateddata.observation;
 
 import static com.google.common.base.Preconditions.checkState;
 import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
-import static gov.va.api.health.patientgenerateddata.Controllers.generateRandomId;
+import static gov.va.api.health.patientgenerateddata.Controllers.eTag;
+import static gov.va.api.health.patientgenerateddata.Controllers.ifMatchVersion;
 import static gov.va.api.health.patientgenerateddata.Controllers.lastUpdatedFromMeta;
 import static gov.va.api.health.patientgenerateddata.Controllers.matchIcn;
 import static gov.va.api.health.patientgenerateddata.Controllers.metaWithLastUpdatedAndSource;
+import static gov.va.api.health.patientgenerateddata.Controllers.notModified;
 import static gov.va.api.health.patientgenerateddata.Controllers.nowMillis;
-import static gov.va.api.health.patientgenerateddata.Controllers.validateSource;
+import static gov.va.api.health.patientgenerateddata.Controllers.parseDateTime;
+import static gov.va.api.health.patientgenerateddata.Controllers.resourceId;
 import static gov.va.api.lighthouse.vulcan.Rules.atLeastOneParameterOf;
 import static gov.va.api.lighthouse.vulcan.Rules.ifParameter;
 import static gov.va.api.lighthouse.vulcan.Vulcan.returnNothing;
-import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Streams;
 import gov.va.api.health.autoconfig.logging.Loggable;
 import gov.va.api.health.patientgenerateddata.Exceptions;
+import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.patientgenerateddata.JacksonMapperConfig;
 import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
+import gov.va.api.health.patientgenerateddata.SearchTotal;
 import gov.va.api.health.patientgenerateddata.Sourcerer;
+import gov.va.api.health.patientgenerateddata.StreamingRawBundle;
+import gov.va.api.health.patientgenerateddata.TokenListMapping;
+import gov.va.api.health.patientgenerateddata.TotalAwareRepository;
 import gov.va.api.health.patientgenerateddata.VulcanizedBundler;
 import gov.va.api.health.r4.api.resources.Observation;
 import gov.va.api.lighthouse.vulcan.Vulcan;
@@ -31,12 +39,15 @@ import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.DataBinder;
 import org.springframework.validation.annotation.Validated;
@@ -59,6 +70,10 @@ import org.springframework.web.bind.annotation.RestController;
 public class ObservationController {
   private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
 
+  private final EntityManager entityManager;
+
+  private final ResourceIds resourceIds;
+
   private final LinkProperties linkProperties;
 
   private final ObservationRepository repository;
@@ -66,8 +81,7 @@ public class ObservationController {
   private final Sourcerer sourcerer;
 
   @SneakyThrows
-  private static void populateEntity(
-      @NonNull ObservationEntity entity, @NonNull Observation observation) {
+  static void populateEntity(@NonNull ObservationEntity entity, @NonNull Observation observation) {
     checkState(
         entity.id().equals(observation.id()),
         "Entity ID (%s) and payload ID (%s) do not match",
@@ -75,6 +89,14 @@ public class ObservationController {
         observation.id());
     entity.payload(MAPPER.writeValueAsString(observation));
     entity.lastUpdated(lastUpdatedFromMeta(observation.meta()).orElse(null));
+    entity.metaSource(observation.meta() == null ? null : observation.meta().source());
+    entity.subject(resourceId(observation.subject()));
+    entity.status(MAPPER.convertValue(observation.status(), String.class));
+    entity.effective(parseDateTime(observation.effectiveDateTime()));
+    entity.codeTokens(
+        TokenListMapping.codeableConceptTokens(
+            observation.code() == null ? null : List.of(observation.code())));
+    entity.categoryTokens(TokenListMapping.codeableConceptTokens(observation.category()));
   }
 
   private static ObservationEntity toEntity(Observation observation) {
@@ -84,19 +106,37 @@ public class ObservationController {
     return entity;
   }
 
-  private VulcanConfiguration<ObservationEntity> configuration() {
+  /** Search parameters and paging, shared with NDJSON search. */
+  public VulcanConfiguration<ObservationEntity> configuration() {
     return VulcanConfiguration.forEntity(ObservationEntity.class)
         .paging(linkProperties.pagingConfiguration("Observation", ObservationEntity.naturalOrder()))
         .mappings(
             Mappings.forEntity(ObservationEntity.class)
                 .value("_id", "id")
                 .dateAsInstant("_lastUpdated", "lastUpdated")
+                .add(
+                    TokenListMapping.<ObservationEntity>builder()
+                        .parameterName("category")
+                        .tokensFieldName("categoryTokens")
+                        .build())
+                .add(
+                    TokenListMapping.<ObservationEntity>builder()
+                        .parameterName("code")
+                        .tokensFieldName("codeTokens")
+                        .build())
+                .dateAsInstant("date", "effective")
+                .value("status", "status")
+                .value("subject", "subject")
+                .add(linkProperties.<ObservationEntity>cursorMapping())
                 .get())
         .defaultQuery(returnNothing())
         .rules(
             List.of(
-                atLeastOneParameterOf("_id", "_lastUpdated"),
-                ifParameter("_id").thenForbidParameters("_lastUpdated")))
+                atLeastOneParameterOf(
+                    "_id", "_lastUpdated", "category", "code", "date", "status", "subject"),
+                ifParameter("_id")
+                    .thenForbidParameters(
+                        "_lastUpdated", "category", "code", "date", "status", "subject")))
         .build();
   }
 
@@ -107,19 +147,19 @@ public class ObservationController {
       @RequestHeader(name = "Authorization", required = true) String authorization,
       @RequestHeader(name = "x-va-icn", required = false) String icn) {
     checkRequestState(isEmpty(observation.id()), "ID must be empty, found %s", observation.id());
-    observation.id(generateRandomId());
+    observation.id(resourceIds.newId("Observation"));
     return create(observation, authorization, icn, nowMillis());
   }
 
   /** Create resource. */
   public ResponseEntity<Observation> create(
       Observation observation, String authorization, String icn, Instant now) {
-    matchIcn(icn, observation, ObservationIncludesIcnMajig::icns);
-    observation.meta(
-        metaWithLastUpdatedAndSource(observation.meta(), now, sourcerer.source(authorization)));
-    repository.save(toEntity(observation));
-    return ResponseEntity.created(
-            URI.create(linkProperties.r4Url() + "/Observation/" + observation.id()))
+    ObservationEntity entity = newEntity(observation, sourcerer.source(authorization), icn, now);
+    repository.save(entity);
+    return eTag(
+            ResponseEntity.created(
+                URI.create(linkProperties.r4Url() + "/Observation/" + observation.id())),
+            entity.version())
         .body(observation);
   }
 
@@ -127,9 +167,10 @@ public class ObservationController {
     return repository.findById(id).map(e -> e.deserializePayload());
   }
 
-  /** Get all IDs for Observation resource. */
-  public List<String> getAllIds() {
-    return Streams.stream(repository.findAll()).map(e -> e.id()).sorted().collect(toList());
+  /** Get the next IDs for Observation resource, in order, after the given ID. */
+  public List<String> findIds(String after, Instant lastUpdatedSince, int count) {
+    return repository.findIdsAfter(
+        after == null ? "" : after, lastUpdatedSince, PageRequest.of(0, count));
   }
 
   @InitBinder
@@ -137,22 +178,56 @@ public class ObservationController {
     dataBinder.initDirectFieldAccess();
   }
 
+  /** Entity for a new resource, from a source that is already resolved. */
+  public ObservationEntity newEntity(
+      Observation observation, String source, String icn, Instant now) {
+    matchIcn(icn, observation, ObservationIncludesIcnMajig::icns);
+    observation.meta(metaWithLastUpdatedAndSource(observation.meta(), now, source));
+    return toEntity(observation);
+  }
+
+  /**
+   * Read the resource. A matching If-None-Match is answered without writing the payload. The ICN
+   * columns do not keep reference types, so its X-VA-INCLUDES-ICN is still found in the payload.
+   */
   @GetMapping(value = "/{id}")
-  public Observation read(@PathVariable("id") String id) {
-    return findById(id).orElseThrow(() -> new Exceptions.NotFound(id));
+  public ResponseEntity<RawResource> read(
+      @PathVariable("id") String id,
+      @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch) {
+    ObservationEntity entity =
+        repository.findById(id).orElseThrow(() -> new Exceptions.NotFound(id));
+    if (notModified(ifNoneMatch, entity.version())) {
+      String users =
+          IncludesIcnMajig.usersCsv(
+              RawResource.icns(entity, ObservationIncludesIcnMajig.ICN_FIELDS).stream());
+      return eTag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), entity.version())
+          .header(IncludesIcnMajig.INCLUDES_ICN_HEADER, users)
+          .build();
+    }
+    return eTag(ResponseEntity.ok(), entity.version()).body(toRawResource(entity));
   }
 
   @GetMapping
-  Observation.Bundle search(HttpServletRequest request) {
-    return Vulcan.forRepo(repository)
+  StreamingRawBundle<ObservationEntity> search(HttpServletRequest request) {
+    SearchTotal total = linkProperties.searchTotal(request);
+    return Vulcan.forRepo(
+            TotalAwareRepository.forRepo(repository, ObservationEntity.class)
+                .entityManager(entityManager)
+                .total(total)
+                .build())
         .config(configuration())
         .build()
         .search(request)
-        .map(toBundle());
+        .map(
+            toBundle(total)
+                .streaming(
+                    this::toRawResource,
+                    e -> RawResource.icns(e, ObservationIncludesIcnMajig.ICN_FIELDS),
+                    entityManager::detach));
   }
 
   private VulcanizedBundler<ObservationEntity, Observation, Observation.Entry, Observation.Bundle>
-      toBundle() {
+      toBundle(SearchTotal total) {
     return VulcanizedBundler.forBundling(
             ObservationEntity.class,
             VulcanizedBundler.Bundling.newBundle(Observation.Bundle::new)
@@ -160,38 +235,41 @@ public class ObservationController {
                 .linkProperties(linkProperties)
                 .build())
         .toResource(ObservationEntity::deserializePayload)
+        .total(total)
         .build();
   }
 
+  public RawResource toRawResource(ObservationEntity entity) {
+    return RawResource.of(entity, linkProperties.r4Url(), ObservationIncludesIcnMajig.ICN_FIELDS);
+  }
+
   @PutMapping(value = "/{id}")
   @Loggable(arguments = false)
   ResponseEntity<Observation> update(
       @PathVariable("id") String pathId,
       @Valid @RequestBody Observation observation,
       @RequestHeader(name = "Authorization", required = true) String authorization,
-      @RequestHeader(name = "x-va-icn", required = false) String icn) {
+      @RequestHeader(name = "x-va-icn", required = false) String icn,
+      @RequestHeader(name = "If-Match", required = false) String ifMatch) {
     checkRequestState(
         pathId.equals(observation.id()),
         "Path ID (%s) and request body ID (%s) do not match",
         pathId,
         observation.id());
-    return update(observation, authorization, icn, nowMillis());
+    return update(observation, authorization, icn, ifMatchVersion(ifMatch), nowMillis());
   }
 
-  /** Update the given resource. */
+  /**
+   * Update the given resource, without reading it first. Only the original source may update it,
+   * and only while it is at the expected version, if one is given.
+   */
   public ResponseEntity<Observation> update(
-      Observation observation, String authorization, String icn, Instant now) {
+      Observation observation, String authorization, String icn, Integer ifMatch, Instant now) {
     matchIcn(icn, observation, ObservationIncludesIcnMajig::icns);
-    String authorizationSource = sourcerer.source(authorization);
-    ObservationEntity entity =
-        repository
-            .findById(observation.id())
-            .orElseThrow(() -> new Exceptions.NotFound(observation.id()));
-    validateSource(
-        observation.id(), authorizationSource, entity.deserializePayload().meta().source());
-    observation.meta(metaWithLastUpdatedAndSource(observation.meta(), now, authorizationSource));
-    populateEntity(entity, observation);
-    repository.save(entity);
-    return ResponseEntity.ok(observation);
+    observation.meta(
+        metaWithLastUpdatedAndSource(observation.meta(), now, sourcerer.source(authorization)));
+    ObservationEntity entity = toEntity(observation);
+    repository.updateIfMatch(entity, ifMatch);
+    return eTag(ResponseEntity.ok(), entity.version()).body(observation);
   }
 }
@@ -1,12 +1,19 @@
 package gov.va.api.health.patientgenerateddata.observation;
 
-import gov.va.api.health.patientgenerateddata.PayloadEntity;
+import gov.va.api.health.patientgenerateddata.PayloadCompressionListener;
+import gov.va.api.health.patientgenerateddata.SearchToken;
+import gov.va.api.health.patientgenerateddata.VersionedPayloadEntity;
 import gov.va.api.health.r4.api.resources.Observation;
 import java.time.Instant;
+import java.util.Set;
 import javax.persistence.Basic;
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import javax.persistence.Version;
@@ -16,26 +23,57 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.springframework.data.domain.Sort;
 
 @Data
 @Entity
 @Builder
 @Table(name = "Observation", schema = "app")
+@EntityListeners(PayloadCompressionListener.class)
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-public class ObservationEntity implements PayloadEntity<Observation> {
+public class ObservationEntity implements VersionedPayloadEntity<Observation> {
   @Id @EqualsAndHashCode.Include private String id;
 
   @Lob
   @Basic(fetch = FetchType.EAGER)
   private String payload;
 
+  @Lob
+  @ToString.Exclude
+  @Basic(fetch = FetchType.EAGER)
+  private byte[] compressedPayload;
+
   @Version private Integer version;
 
   private Instant lastUpdated;
 
+  private String metaSource;
+
+  private String subject;
+
+  private String status;
+
+  private Instant effective;
+
+  @ToString.Exclude
+  @ElementCollection
+  @CollectionTable(
+      name = "ObservationCode",
+      schema = "app",
+      joinColumns = @JoinColumn(name = "observationId"))
+  private Set<SearchToken> codeTokens;
+
+  @ToString.Exclude
+  @ElementCollection
+  @CollectionTable(
+      name = "ObservationCategory",
+      schema = "app",
+      joinColumns = @JoinColumn(name = "observationId"))
+  private Set<SearchToken> categoryTokens;
+
   public static Sort naturalOrder() {
     return Sort.by("id").ascending();
   }
@@ -1,13 +1,33 @@
 package gov.va.api.health.patientgenerateddata.observation;
 
 import gov.va.api.health.autoconfig.logging.Loggable;
+import gov.va.api.health.patientgenerateddata.PayloadUpdates;
+import gov.va.api.health.patientgenerateddata.VersionedPayloadRepository;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Loggable
 @Transactional(isolation = Isolation.READ_UNCOMMITTED)
 public interface ObservationRepository
-    extends CrudRepository<ObservationEntity, String>,
-        JpaSpecificationExecutor<ObservationEntity> {}
+    extends VersionedPayloadRepository<ObservationEntity>,
+        PayloadUpdates<ObservationEntity>,
+        JpaSpecificationExecutor<ObservationEntity> {
+  /** The subject's resources, in ID order, for Patient/$everything. */
+  @Query("select e from ObservationEntity e where e.subject = :subject order by e.id")
+  List<ObservationEntity> findBySubject(@Param("subject") String subject, Pageable page);
+
+  @Query(
+      "select e.id from ObservationEntity e where e.id > :after"
+          + " and (:lastUpdatedSince is null or e.lastUpdated >= :lastUpdatedSince)"
+          + " order by e.id")
+  List<String> findIdsAfter(
+      @Param("after") String after,
+      @Param("lastUpdatedSince") Instant lastUpdatedSince,
+      Pageable page);
+}
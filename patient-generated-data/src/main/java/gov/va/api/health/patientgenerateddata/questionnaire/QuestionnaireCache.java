@@ -0,0 +1,81 @@
+package gov.va.api.health.patientgenerateddata.questionnaire;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.util.Optional;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounded in-process cache of questionnaires, keyed by ID and entity version. A lookup must present
+ * the current version from the database, so writes made by other instances are never served stale.
+ * Local writes invalidate every cached version of the questionnaire. Cached questionnaires are
+ * shared and must not be modified.
+ */
+@Component
+public class QuestionnaireCache {
+  private final Cache<Key, Entry> cache;
+
+  /** Spring constructor, reporting to the global meter registry. */
+  @Autowired
+  public QuestionnaireCache(@Value("${questionnaire-cache.max-size}") long maxSize) {
+    this(maxSize, Metrics.globalRegistry);
+  }
+
+  /** Cache reporting to the given meter registry. */
+  public QuestionnaireCache(long maxSize, MeterRegistry meterRegistry) {
+    checkState(maxSize > 0, "questionnaire-cache.max-size must be positive");
+    cache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+    GuavaCacheMetrics.monitor(meterRegistry, cache, "questionnaire.cache");
+  }
+
+  /** The cached questionnaire, if the given version is cached. */
+  public Optional<Entry> get(String id, Integer version) {
+    if (version == null) {
+      return Optional.empty();
+    }
+    return Optional.ofNullable(cache.getIfPresent(new Key(id, version)));
+  }
+
+  /** Drop every cached version of the questionnaire. */
+  public void invalidate(String id) {
+    cache.asMap().keySet().removeIf(k -> k.id().equals(id));
+  }
+
+  /** Cache the questionnaire as of the given version. */
+  public void put(String id, Integer version, Entry entry) {
+    if (version != null) {
+      cache.put(new Key(id, version), entry);
+    }
+  }
+
+  long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+
+  /** The deserialized questionnaire and its response payload, as of the entity version. */
+  @lombok.Value
+  public static class Entry {
+    Integer version;
+
+    Questionnaire questionnaire;
+
+    RawResource rawResource;
+  }
+
+  @lombok.Value
+  private static class Key {
+    String id;
+
+    int version;
+  }
+}
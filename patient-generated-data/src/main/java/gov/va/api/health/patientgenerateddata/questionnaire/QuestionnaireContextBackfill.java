@@ -0,0 +1,50 @@
+package gov.va.api.health.patientgenerateddata.questionnaire;
+
+import gov.va.api.health.patientgenerateddata.CompositeMapping;
+import gov.va.api.health.patientgenerateddata.PayloadBackfill;
+import gov.va.api.health.patientgenerateddata.UseContextToken;
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+/** Liquibase task populating the QuestionnaireContext index from existing payloads. */
+public class QuestionnaireContextBackfill extends PayloadBackfill<Set<UseContextToken>> {
+  public QuestionnaireContextBackfill() {
+    super("context-type-value tokens", "Questionnaire");
+  }
+
+  @Override
+  protected Set<UseContextToken> extract(ResultSet row) throws Exception {
+    return CompositeMapping.useContextValueTokens(
+        MAPPER.readValue(row.getString("payload"), Questionnaire.class));
+  }
+
+  @Override
+  protected String select(String table) {
+    return "select id, payload from app." + table + " where contextTypeValue is not null";
+  }
+
+  @Override
+  protected void write(String id, Set<UseContextToken> tokens, List<PreparedStatement> writes)
+      throws SQLException {
+    PreparedStatement insert = writes.get(0);
+    for (UseContextToken token : tokens) {
+      insert.setString(1, id);
+      insert.setString(2, token.contextCode());
+      insert.setString(3, token.system());
+      insert.setString(4, token.code());
+      insert.setString(5, token.token());
+      insert.addBatch();
+    }
+  }
+
+  @Override
+  protected List<String> writes(String table) {
+    return List.of(
+        "insert into app.QuestionnaireContext"
+            + " (questionnaireId, contextCode, system, code, token) values (?,?,?,?,?)");
+  }
+}
@@ -2,27 +2,32 @@ package gov.va.api.health.patientgenerateddata.questionnaire;
 
 import static com.google.common.base.Preconditions.checkState;
 import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
-import static gov.va.api.health.patientgenerateddata.Controllers.generateRandomId;
+import static gov.va.api.health.patientgenerateddata.Controllers.eTag;
+import static gov.va.api.health.patientgenerateddata.Controllers.ifMatchVersion;
 import static gov.va.api.health.patientgenerateddata.Controllers.lastUpdatedFromMeta;
 import static gov.va.api.health.patientgenerateddata.Controllers.matchIcn;
 import static gov.va.api.health.patientgenerateddata.Controllers.metaWithLastUpdatedAndSource;
+import static gov.va.api.health.patientgenerateddata.Controllers.notModified;
 import static gov.va.api.health.patientgenerateddata.Controllers.nowMillis;
-import static gov.va.api.health.patientgenerateddata.Controllers.validateSource;
 import static gov.va.api.lighthouse.vulcan.Rules.atLeastOneParameterOf;
 import static gov.va.api.lighthouse.vulcan.Rules.ifParameter;
 import static gov.va.api.lighthouse.vulcan.Vulcan.returnNothing;
-import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Streams;
 import gov.va.api.health.autoconfig.logging.Loggable;
 import gov.va.api.health.patientgenerateddata.CompositeMapping;
 import gov.va.api.health.patientgenerateddata.Exceptions;
+import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.patientgenerateddata.JacksonMapperConfig;
 import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
+import gov.va.api.health.patientgenerateddata.SearchTotal;
 import gov.va.api.health.patientgenerateddata.Sourcerer;
+import gov.va.api.health.patientgenerateddata.StreamingRawBundle;
+import gov.va.api.health.patientgenerateddata.TotalAwareRepository;
 import gov.va.api.health.patientgenerateddata.VulcanizedBundler;
 import gov.va.api.health.r4.api.resources.Questionnaire;
 import gov.va.api.lighthouse.vulcan.Vulcan;
@@ -32,12 +37,15 @@ import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.DataBinder;
 import org.springframework.validation.annotation.Validated;
@@ -60,6 +68,12 @@ import org.springframework.web.bind.annotation.RestController;
 public class QuestionnaireController {
   private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
 
+  private final QuestionnaireCache cache;
+
+  private final EntityManager entityManager;
+
+  private final ResourceIds resourceIds;
+
   private final LinkProperties linkProperties;
 
   private final QuestionnaireRepository repository;
@@ -76,7 +90,9 @@ public class QuestionnaireController {
         questionnaire.id());
     entity.payload(MAPPER.writeValueAsString(questionnaire));
     entity.contextTypeValue(CompositeMapping.useContextValueJoin(questionnaire));
+    entity.contextTypeValueTokens(CompositeMapping.useContextValueTokens(questionnaire));
     entity.lastUpdated(lastUpdatedFromMeta(questionnaire.meta()).orElse(null));
+    entity.metaSource(questionnaire.meta() == null ? null : questionnaire.meta().source());
   }
 
   private static QuestionnaireEntity toEntity(Questionnaire questionnaire) {
@@ -86,7 +102,33 @@ public class QuestionnaireController {
     return entity;
   }
 
-  private VulcanConfiguration<QuestionnaireEntity> configuration() {
+  /**
+   * Read through the cache. Only the version is read from the database when the current version of
+   * the questionnaire is cached.
+   */
+  private Optional<QuestionnaireCache.Entry> cached(String id) {
+    return repository.findVersionById(id).flatMap(version -> cached(id, version));
+  }
+
+  private Optional<QuestionnaireCache.Entry> cached(String id, Integer version) {
+    Optional<QuestionnaireCache.Entry> hit = cache.get(id, version);
+    if (hit.isPresent()) {
+      return hit;
+    }
+    return repository
+        .findById(id)
+        .map(
+            entity -> {
+              QuestionnaireCache.Entry entry =
+                  new QuestionnaireCache.Entry(
+                      entity.version(), entity.deserializePayload(), toRawResource(entity));
+              cache.put(id, entity.version(), entry);
+              return entry;
+            });
+  }
+
+  /** Search parameters and paging, shared with NDJSON search. */
+  public VulcanConfiguration<QuestionnaireEntity> configuration() {
     return VulcanConfiguration.forEntity(QuestionnaireEntity.class)
         .paging(
             linkProperties.pagingConfiguration("Questionnaire", QuestionnaireEntity.naturalOrder()))
@@ -98,7 +140,9 @@ public class QuestionnaireController {
                     CompositeMapping.<QuestionnaireEntity>builder()
                         .parameterName("context-type-value")
                         .fieldName("contextTypeValue")
+                        .tokensFieldName("contextTypeValueTokens")
                         .build())
+                .add(linkProperties.<QuestionnaireEntity>cursorMapping())
                 .get())
         .defaultQuery(returnNothing())
         .rules(
@@ -116,29 +160,33 @@ public class QuestionnaireController {
       @RequestHeader(name = "x-va-icn", required = false) String icn) {
     checkRequestState(
         isEmpty(questionnaire.id()), "ID must be empty, found %s", questionnaire.id());
-    questionnaire.id(generateRandomId());
+    questionnaire.id(resourceIds.newId("Questionnaire"));
     return create(questionnaire, authorization, icn, nowMillis());
   }
 
   /** Create resource. */
   public ResponseEntity<Questionnaire> create(
       Questionnaire questionnaire, String authorization, String icn, Instant now) {
-    matchIcn(icn, questionnaire, QuestionnaireIncludesIcnMajig::icns);
-    questionnaire.meta(
-        metaWithLastUpdatedAndSource(questionnaire.meta(), now, sourcerer.source(authorization)));
-    repository.save(toEntity(questionnaire));
-    return ResponseEntity.created(
-            URI.create(linkProperties.r4Url() + "/Questionnaire/" + questionnaire.id()))
+    QuestionnaireEntity entity =
+        newEntity(questionnaire, sourcerer.source(authorization), icn, now);
+    repository.save(entity);
+    cache.invalidate(questionnaire.id());
+    return eTag(
+            ResponseEntity.created(
+                URI.create(linkProperties.r4Url() + "/Questionnaire/" + questionnaire.id())),
+            entity.version())
         .body(questionnaire);
   }
 
+  /** The questionnaire, shared with the cache, which must not be modified. */
   public Optional<Questionnaire> findById(String id) {
-    return repository.findById(id).map(e -> e.deserializePayload());
+    return cached(id).map(QuestionnaireCache.Entry::questionnaire);
   }
 
-  /** Get all IDs for Questionnaire resource. */
-  public List<String> getAllIds() {
-    return Streams.stream(repository.findAll()).map(e -> e.id()).sorted().collect(toList());
+  /** Get the next IDs for Questionnaire resource, in order, after the given ID. */
+  public List<String> findIds(String after, Instant lastUpdatedSince, int count) {
+    return repository.findIdsAfter(
+        after == null ? "" : after, lastUpdatedSince, PageRequest.of(0, count));
   }
 
   @InitBinder
@@ -146,23 +194,56 @@ public class QuestionnaireController {
     dataBinder.initDirectFieldAccess();
   }
 
+  /** Entity for a new resource, from a source that is already resolved. */
+  public QuestionnaireEntity newEntity(
+      Questionnaire questionnaire, String source, String icn, Instant now) {
+    matchIcn(icn, questionnaire, QuestionnaireIncludesIcnMajig::icns);
+    questionnaire.meta(metaWithLastUpdatedAndSource(questionnaire.meta(), now, source));
+    return toEntity(questionnaire);
+  }
+
+  /**
+   * Read the resource. A matching If-None-Match is answered from the version alone, without
+   * loading the payload. Questionnaires do not reference patients, so X-VA-INCLUDES-ICN is NONE.
+   */
   @GetMapping(value = "/{id}")
-  public Questionnaire read(@PathVariable("id") String id) {
-    return findById(id).orElseThrow(() -> new Exceptions.NotFound(id));
+  public ResponseEntity<RawResource> read(
+      @PathVariable("id") String id,
+      @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch) {
+    Integer version =
+        repository.findVersionById(id).orElseThrow(() -> new Exceptions.NotFound(id));
+    if (notModified(ifNoneMatch, version)) {
+      return eTag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version)
+          .header(IncludesIcnMajig.INCLUDES_ICN_HEADER, "NONE")
+          .build();
+    }
+    QuestionnaireCache.Entry entry =
+        cached(id, version).orElseThrow(() -> new Exceptions.NotFound(id));
+    return eTag(ResponseEntity.ok(), entry.version()).body(entry.rawResource());
   }
 
   @GetMapping
-  Questionnaire.Bundle search(HttpServletRequest request) {
-    return Vulcan.forRepo(repository)
+  StreamingRawBundle<QuestionnaireEntity> search(HttpServletRequest request) {
+    SearchTotal total = linkProperties.searchTotal(request);
+    return Vulcan.forRepo(
+            TotalAwareRepository.forRepo(repository, QuestionnaireEntity.class)
+                .entityManager(entityManager)
+                .total(total)
+                .build())
         .config(configuration())
         .build()
         .search(request)
-        .map(toBundle());
+        .map(
+            toBundle(total)
+                .streaming(
+                    this::toRawResource,
+                    e -> List.of(),
+                    entityManager::detach));
   }
 
   private VulcanizedBundler<
           QuestionnaireEntity, Questionnaire, Questionnaire.Entry, Questionnaire.Bundle>
-      toBundle() {
+      toBundle(SearchTotal total) {
     return VulcanizedBundler.forBundling(
             QuestionnaireEntity.class,
             VulcanizedBundler.Bundling.newBundle(Questionnaire.Bundle::new)
@@ -170,39 +251,42 @@ public class QuestionnaireController {
                 .linkProperties(linkProperties)
                 .build())
         .toResource(QuestionnaireEntity::deserializePayload)
+        .total(total)
         .build();
   }
 
+  public RawResource toRawResource(QuestionnaireEntity entity) {
+    return RawResource.of(entity, linkProperties.r4Url(), QuestionnaireIncludesIcnMajig.ICN_FIELDS);
+  }
+
   @PutMapping(value = "/{id}")
   @Loggable(arguments = false)
   ResponseEntity<Questionnaire> update(
       @PathVariable("id") String pathId,
       @Valid @RequestBody Questionnaire questionnaire,
       @RequestHeader(name = "Authorization", required = true) String authorization,
-      @RequestHeader(name = "x-va-icn", required = false) String icn) {
+      @RequestHeader(name = "x-va-icn", required = false) String icn,
+      @RequestHeader(name = "If-Match", required = false) String ifMatch) {
     checkRequestState(
         pathId.equals(questionnaire.id()),
         "Path ID (%s) and request body ID (%s) do not match",
         pathId,
         questionnaire.id());
-    return update(questionnaire, authorization, icn, nowMillis());
+    return update(questionnaire, authorization, icn, ifMatchVersion(ifMatch), nowMillis());
   }
 
-  /** Update the given resource. */
+  /**
+   * Update the given resource, without reading it first. Only the original source may update it,
+   * and only while it is at the expected version, if one is given.
+   */
   public ResponseEntity<Questionnaire> update(
-      Questionnaire questionnaire, String authorization, String icn, Instant now) {
+      Questionnaire questionnaire, String authorization, String icn, Integer ifMatch, Instant now) {
     matchIcn(icn, questionnaire, QuestionnaireIncludesIcnMajig::icns);
-    String authorizationSource = sourcerer.source(authorization);
-    QuestionnaireEntity entity =
-        repository
-            .findById(questionnaire.id())
-            .orElseThrow(() -> new Exceptions.NotFound(questionnaire.id()));
-    validateSource(
-        questionnaire.id(), authorizationSource, entity.deserializePayload().meta().source());
     questionnaire.meta(
-        metaWithLastUpdatedAndSource(questionnaire.meta(), now, authorizationSource));
-    populateEntity(entity, questionnaire);
-    repository.save(entity);
-    return ResponseEntity.ok(questionnaire);
+        metaWithLastUpdatedAndSource(questionnaire.meta(), now, sourcerer.source(authorization)));
+    QuestionnaireEntity entity = toEntity(questionnaire);
+    repository.updateIfMatch(entity, ifMatch);
+    cache.invalidate(questionnaire.id());
+    return eTag(ResponseEntity.ok(), entity.version()).body(questionnaire);
   }
 }
@@ -1,12 +1,19 @@
 package gov.va.api.health.patientgenerateddata.questionnaire;
 
-import gov.va.api.health.patientgenerateddata.PayloadEntity;
+import gov.va.api.health.patientgenerateddata.PayloadCompressionListener;
+import gov.va.api.health.patientgenerateddata.UseContextToken;
+import gov.va.api.health.patientgenerateddata.VersionedPayloadEntity;
 import gov.va.api.health.r4.api.resources.Questionnaire;
 import java.time.Instant;
+import java.util.Set;
 import javax.persistence.Basic;
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import javax.persistence.Version;
@@ -16,16 +23,18 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.springframework.data.domain.Sort;
 
 @Data
 @Entity
 @Builder
 @Table(name = "Questionnaire", schema = "app")
+@EntityListeners(PayloadCompressionListener.class)
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-public class QuestionnaireEntity implements PayloadEntity<Questionnaire> {
+public class QuestionnaireEntity implements VersionedPayloadEntity<Questionnaire> {
   @Id @EqualsAndHashCode.Include private String id;
 
   @Version private Integer version;
@@ -34,12 +43,27 @@ public class QuestionnaireEntity implements PayloadEntity<Questionnaire> {
   @Basic(fetch = FetchType.EAGER)
   private String payload;
 
+  @Lob
+  @ToString.Exclude
+  @Basic(fetch = FetchType.EAGER)
+  private byte[] compressedPayload;
+
   @Lob
   @Basic(fetch = FetchType.EAGER)
   private String contextTypeValue;
 
+  @ToString.Exclude
+  @ElementCollection
+  @CollectionTable(
+      name = "QuestionnaireContext",
+      schema = "app",
+      joinColumns = @JoinColumn(name = "questionnaireId"))
+  private Set<UseContextToken> contextTypeValueTokens;
+
   private Instant lastUpdated;
 
+  private String metaSource;
+
   public static Sort naturalOrder() {
     return Sort.by("id").ascending();
   }
@@ -3,6 +3,7 @@ package gov.va.api.health.patientgenerateddata.questionnaire;
 import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.r4.api.bundle.AbstractEntry;
 import gov.va.api.health.r4.api.resources.Questionnaire;
+import java.util.Set;
 import java.util.stream.Stream;
 import lombok.experimental.Delegate;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -15,6 +16,9 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
  */
 @ControllerAdvice
 public class QuestionnaireIncludesIcnMajig implements ResponseBodyAdvice<Object> {
+  /** Top-level fields that {@link #icns} reads, for payloads that are not bound to the model. */
+  static final Set<String> ICN_FIELDS = Set.of();
+
   @Delegate
   private final ResponseBodyAdvice<Object> delegate =
       IncludesIcnMajig.<Questionnaire, Questionnaire.Bundle>builder()
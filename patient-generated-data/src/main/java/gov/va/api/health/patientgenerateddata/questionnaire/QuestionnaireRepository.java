@@ -1,13 +1,29 @@
 package gov.va.api.health.patientgenerateddata.questionnaire;
 
 import gov.va.api.health.autoconfig.logging.Loggable;
+import gov.va.api.health.patientgenerateddata.PayloadUpdates;
+import gov.va.api.health.patientgenerateddata.VersionedPayloadRepository;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Loggable
 @Transactional(isolation = Isolation.READ_UNCOMMITTED)
 public interface QuestionnaireRepository
-    extends CrudRepository<QuestionnaireEntity, String>,
-        JpaSpecificationExecutor<QuestionnaireEntity> {}
+    extends VersionedPayloadRepository<QuestionnaireEntity>,
+        PayloadUpdates<QuestionnaireEntity>,
+        JpaSpecificationExecutor<QuestionnaireEntity> {
+  @Query(
+      "select e.id from QuestionnaireEntity e where e.id > :after"
+          + " and (:lastUpdatedSince is null or e.lastUpdated >= :lastUpdatedSince)"
+          + " order by e.id")
+  List<String> findIdsAfter(
+      @Param("after") String after,
+      @Param("lastUpdatedSince") Instant lastUpdatedSince,
+      Pageable page);
+}
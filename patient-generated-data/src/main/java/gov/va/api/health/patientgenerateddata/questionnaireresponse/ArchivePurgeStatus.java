@@ -0,0 +1,28 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import java.time.Instant;
+import java.util.List;
+import lombok.Builder;
+import lombok.Value;
+
+/** Progress and outcome of the archived questionnaire response purge. */
+@Value
+@Builder(toBuilder = true)
+public class ArchivePurgeStatus {
+  boolean running;
+
+  Instant cutoff;
+
+  Instant lastStarted;
+
+  Instant lastCompleted;
+
+  long lastRemoved;
+
+  /** The first IDs removed by the last purge, at most 100. */
+  List<String> lastRemovedIdSample;
+
+  long totalRemoved;
+
+  String lastError;
+}
@@ -0,0 +1,191 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import gov.va.api.health.patientgenerateddata.JobLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Removes archived questionnaire responses that are 5 years or older. Expired IDs are read from the
+ * deletion timestamp index and deleted in chunks, each chunk in its own transaction, so archived
+ * payloads are never loaded and no single transaction grows with the size of the backlog. Purges
+ * run in the background, on one instance at a time: the archive-purge job lock is held for
+ * archive-purge.lock-lease-minutes and renewed after each chunk.
+ */
+@Slf4j
+@Component
+public class ArchivePurger {
+  static final String LOCK = "archive-purge";
+
+  /** Removed IDs kept in the status, out of all removed by a purge. */
+  static final int REMOVED_ID_SAMPLE_SIZE = 100;
+
+  private final ArchivedQuestionnaireResponseRepository repository;
+
+  private final JobLocks jobLocks;
+
+  private final int batchSize;
+
+  private final Duration lockLease;
+
+  private final ExecutorService executor;
+
+  private final Counter removed;
+
+  private final Counter failures;
+
+  private final Timer duration;
+
+  private final AtomicBoolean running = new AtomicBoolean();
+
+  private volatile ArchivePurgeStatus status = ArchivePurgeStatus.builder().build();
+
+  /** Spring constructor, running triggered purges on a single background thread. */
+  @Autowired
+  public ArchivePurger(
+      ArchivedQuestionnaireResponseRepository repository,
+      JobLocks jobLocks,
+      @Value("${archive-purge.batch-size}") int batchSize,
+      @Value("${archive-purge.lock-lease-minutes}") int lockLeaseMinutes,
+      MeterRegistry meterRegistry) {
+    this(
+        repository,
+        jobLocks,
+        batchSize,
+        lockLeaseMinutes,
+        meterRegistry,
+        Executors.newSingleThreadExecutor());
+  }
+
+  ArchivePurger(
+      ArchivedQuestionnaireResponseRepository repository,
+      JobLocks jobLocks,
+      int batchSize,
+      int lockLeaseMinutes,
+      MeterRegistry meterRegistry,
+      ExecutorService executor) {
+    checkState(batchSize > 0, "archive-purge.batch-size must be positive");
+    checkState(lockLeaseMinutes > 0, "archive-purge.lock-lease-minutes must be positive");
+    this.repository = repository;
+    this.jobLocks = jobLocks;
+    this.batchSize = batchSize;
+    this.lockLease = Duration.ofMinutes(lockLeaseMinutes);
+    this.executor = executor;
+    removed = meterRegistry.counter("archive.purge.removed");
+    failures = meterRegistry.counter("archive.purge.failures");
+    duration = meterRegistry.timer("archive.purge.duration");
+    meterRegistry.gauge("archive.purge.running", running, r -> r.get() ? 1 : 0);
+  }
+
+  static Instant retentionCutoff(Instant now) {
+    return now.atZone(ZoneOffset.UTC).minusYears(5).toInstant();
+  }
+
+  /**
+   * Purge expired archives, returning the number removed. Nothing is removed if a purge is already
+   * running here or on another instance.
+   */
+  long purge(Instant now) {
+    if (!running.compareAndSet(false, true)) {
+      log.info("Archive purge is already running");
+      return 0;
+    }
+    try {
+      if (!jobLocks.lock(LOCK, now, lockLease)) {
+        log.info("Archive purge is running on another instance");
+        return 0;
+      }
+      try {
+        return purgeLocked(now);
+      } finally {
+        jobLocks.unlock(LOCK);
+      }
+    } finally {
+      running.set(false);
+    }
+  }
+
+  private long purgeLocked(Instant now) {
+    long start = System.nanoTime();
+    Instant cutoff = retentionCutoff(now);
+    status = status.toBuilder().running(true).cutoff(cutoff).lastStarted(now).build();
+    long removedCount = 0;
+    List<String> sample = new ArrayList<>();
+    try {
+      List<String> ids;
+      do {
+        ids = repository.findIdsDeletedBefore(cutoff, PageRequest.of(0, batchSize));
+        if (!ids.isEmpty()) {
+          repository.deleteByIdIn(ids);
+          removedCount += ids.size();
+          removed.increment(ids.size());
+          ids.stream().limit(REMOVED_ID_SAMPLE_SIZE - sample.size()).forEach(sample::add);
+          checkState(jobLocks.lock(LOCK, Instant.now(), lockLease), "Archive purge lock lost");
+        }
+      } while (ids.size() == batchSize);
+      status =
+          status.toBuilder()
+              .lastCompleted(Instant.now())
+              .lastRemoved(removedCount)
+              .lastRemovedIdSample(sample)
+              .totalRemoved(status.totalRemoved() + removedCount)
+              .lastError(null)
+              .build();
+      return removedCount;
+    } catch (RuntimeException e) {
+      failures.increment();
+      status =
+          status.toBuilder()
+              .lastRemoved(removedCount)
+              .lastRemovedIdSample(sample)
+              .totalRemoved(status.totalRemoved() + removedCount)
+              .lastError(e.getMessage())
+              .build();
+      throw e;
+    } finally {
+      status = status.toBuilder().running(false).build();
+      duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Scheduled(cron = "${archive-purge.cron}", zone = "UTC")
+  void scheduledPurge() {
+    try {
+      log.info("Purged {} archived questionnaire responses", purge(Instant.now()));
+    } catch (RuntimeException e) {
+      log.error("Archive purge failed", e);
+    }
+  }
+
+  @PreDestroy
+  void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Purge expired archives in the background. Progress is reported by status. */
+  public void start() {
+    executor.execute(this::scheduledPurge);
+  }
+
+  public ArchivePurgeStatus status() {
+    return status;
+  }
+}
@@ -1,10 +1,12 @@
 package gov.va.api.health.patientgenerateddata.questionnaireresponse;
 
+import gov.va.api.health.patientgenerateddata.PayloadCompressionListener;
 import gov.va.api.health.patientgenerateddata.PayloadEntity;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
 import java.time.Instant;
 import javax.persistence.Basic;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
 import javax.persistence.Lob;
@@ -15,11 +17,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 @Data
 @Entity
 @Builder
 @Table(name = "ArchivedQuestionnaireResponse", schema = "app")
+@EntityListeners(PayloadCompressionListener.class)
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
@@ -30,6 +34,11 @@ public class ArchivedQuestionnaireResponseEntity implements PayloadEntity<Questi
   @Basic(fetch = FetchType.EAGER)
   private String payload;
 
+  @Lob
+  @ToString.Exclude
+  @Basic(fetch = FetchType.EAGER)
+  private byte[] compressedPayload;
+
   private Instant deletionTimestamp;
 
   @Override
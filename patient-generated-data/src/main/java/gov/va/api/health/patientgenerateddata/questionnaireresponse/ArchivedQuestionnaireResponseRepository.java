@@ -1,13 +1,46 @@
 package gov.va.api.health.patientgenerateddata.questionnaireresponse;
 
 import gov.va.api.health.autoconfig.logging.Loggable;
+import gov.va.api.health.patientgenerateddata.PayloadRepository;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Loggable
 @Transactional(isolation = Isolation.READ_UNCOMMITTED)
 public interface ArchivedQuestionnaireResponseRepository
-    extends CrudRepository<ArchivedQuestionnaireResponseEntity, String>,
-        JpaSpecificationExecutor<ArchivedQuestionnaireResponseEntity> {}
+    extends PayloadRepository<ArchivedQuestionnaireResponseEntity>,
+        JpaSpecificationExecutor<ArchivedQuestionnaireResponseEntity> {
+  @Modifying
+  @Query("delete from ArchivedQuestionnaireResponseEntity e where e.id in :ids")
+  int deleteByIdIn(@Param("ids") Collection<String> ids);
+
+  @Query(
+      "select e.id from ArchivedQuestionnaireResponseEntity e"
+          + " where e.deletionTimestamp < :cutoff"
+          + " order by e.deletionTimestamp, e.id")
+  List<String> findIdsDeletedBefore(@Param("cutoff") Instant cutoff, Pageable page);
+
+  /**
+   * Replace the plain payload with its compressed encoding. Archived payloads are never updated,
+   * but an ID archived again after a purge is a new row, so the row is left alone unless it is
+   * still the one deleted at the timestamp and uncompressed.
+   */
+  @Modifying
+  @Query(
+      "update ArchivedQuestionnaireResponseEntity e"
+          + " set e.compressedPayload = :compressedPayload, e.payload = null"
+          + " where e.id = :id and e.deletionTimestamp = :deletionTimestamp"
+          + " and e.compressedPayload is null")
+  int storeCompressedPayload(
+      @Param("id") String id,
+      @Param("deletionTimestamp") Instant deletionTimestamp,
+      @Param("compressedPayload") byte[] compressedPayload);
+}
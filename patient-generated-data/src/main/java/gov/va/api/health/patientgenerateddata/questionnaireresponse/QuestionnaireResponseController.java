@@ -2,30 +2,34 @@ package gov.va.api.health.patientgenerateddata.questionnaireresponse;
 
 import static com.google.common.base.Preconditions.checkState;
 import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
-import static gov.va.api.health.patientgenerateddata.Controllers.generateRandomId;
+import static gov.va.api.health.patientgenerateddata.Controllers.eTag;
+import static gov.va.api.health.patientgenerateddata.Controllers.ifMatchVersion;
 import static gov.va.api.health.patientgenerateddata.Controllers.lastUpdatedFromMeta;
 import static gov.va.api.health.patientgenerateddata.Controllers.matchIcn;
 import static gov.va.api.health.patientgenerateddata.Controllers.metaWithLastUpdatedAndSource;
+import static gov.va.api.health.patientgenerateddata.Controllers.notModified;
 import static gov.va.api.health.patientgenerateddata.Controllers.nowMillis;
 import static gov.va.api.health.patientgenerateddata.Controllers.parseDateTime;
 import static gov.va.api.health.patientgenerateddata.Controllers.resourceId;
-import static gov.va.api.health.patientgenerateddata.Controllers.validateSource;
 import static gov.va.api.lighthouse.vulcan.Rules.atLeastOneParameterOf;
 import static gov.va.api.lighthouse.vulcan.Rules.ifParameter;
 import static gov.va.api.lighthouse.vulcan.Vulcan.returnNothing;
-import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isEmpty;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Streams;
 import gov.va.api.health.autoconfig.logging.Loggable;
 import gov.va.api.health.patientgenerateddata.Exceptions;
 import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.patientgenerateddata.JacksonMapperConfig;
 import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
+import gov.va.api.health.patientgenerateddata.SearchTotal;
 import gov.va.api.health.patientgenerateddata.Sourcerer;
+import gov.va.api.health.patientgenerateddata.StreamingRawBundle;
 import gov.va.api.health.patientgenerateddata.TokenListMapping;
+import gov.va.api.health.patientgenerateddata.TotalAwareRepository;
 import gov.va.api.health.patientgenerateddata.VulcanizedBundler;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
 import gov.va.api.lighthouse.vulcan.Vulcan;
@@ -33,17 +37,16 @@ import gov.va.api.lighthouse.vulcan.VulcanConfiguration;
 import gov.va.api.lighthouse.vulcan.mappings.Mappings;
 import java.net.URI;
 import java.time.Instant;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.DataBinder;
@@ -68,6 +71,10 @@ import org.springframework.web.bind.annotation.RestController;
 public class QuestionnaireResponseController {
   private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
 
+  private final EntityManager entityManager;
+
+  private final ResourceIds resourceIds;
+
   private final LinkProperties linkProperties;
 
   private final ArchivedQuestionnaireResponseRepository archivedRepository;
@@ -91,8 +98,11 @@ public class QuestionnaireResponseController {
     entity.questionnaire(resourceId(questionnaireResponse.questionnaire()));
     entity.subject(resourceId(questionnaireResponse.subject()));
     entity.metaTag(TokenListMapping.metadataTagJoin(questionnaireResponse));
+    entity.metaTagTokens(TokenListMapping.metadataTagTokens(questionnaireResponse));
     entity.source(resourceId(questionnaireResponse.source()));
     entity.lastUpdated(lastUpdatedFromMeta(questionnaireResponse.meta()).orElse(null));
+    entity.metaSource(
+        questionnaireResponse.meta() == null ? null : questionnaireResponse.meta().source());
   }
 
   private static QuestionnaireResponseEntity toEntity(QuestionnaireResponse questionnaireResponse) {
@@ -112,27 +122,26 @@ public class QuestionnaireResponseController {
         ResponseEntity.status(HttpStatus.NO_CONTENT)
             .header(IncludesIcnMajig.INCLUDES_ICN_HEADER, isBlank(icn) ? "NONE" : icn)
             .body(null);
+    Instant now = nowMillis();
+    if (repository.archive(id, icn, now) > 0 || icn == null) {
+      return response;
+    }
+    // Nothing moved: either it does not exist, or it references something other than the ICN,
+    // e.g. a practitioner author, so fall back to checking the ICNs in the payload.
     var optionalQuestionnaireResponse = repository.findById(id);
     if (optionalQuestionnaireResponse.isEmpty()) {
       return response;
     }
-    var questionnaireResponse = optionalQuestionnaireResponse.get();
     matchIcn(
         icn,
-        questionnaireResponse.deserializePayload(),
+        optionalQuestionnaireResponse.get().deserializePayload(),
         QuestionnaireResponseIncludesIcnMajig::icns);
-    ArchivedQuestionnaireResponseEntity archivedEntity =
-        ArchivedQuestionnaireResponseEntity.builder()
-            .id(questionnaireResponse.id())
-            .payload(questionnaireResponse.payload())
-            .deletionTimestamp(nowMillis())
-            .build();
-    archivedRepository.save(archivedEntity);
-    repository.delete(questionnaireResponse);
+    repository.archive(id, null, now);
     return response;
   }
 
-  private VulcanConfiguration<QuestionnaireResponseEntity> configuration() {
+  /** Search parameters and paging, shared with NDJSON search. */
+  public VulcanConfiguration<QuestionnaireResponseEntity> configuration() {
     return VulcanConfiguration.forEntity(QuestionnaireResponseEntity.class)
         .paging(
             linkProperties.pagingConfiguration(
@@ -145,12 +154,14 @@ public class QuestionnaireResponseController {
                     TokenListMapping.<QuestionnaireResponseEntity>builder()
                         .parameterName("_tag")
                         .fieldName("metaTag")
+                        .tokensFieldName("metaTagTokens")
                         .build())
                 .value("author", "author")
                 .dateAsInstant("authored", "authored")
                 .value("questionnaire", "questionnaire")
                 .value("source", "source")
                 .value("subject", "subject")
+                .add(linkProperties.<QuestionnaireResponseEntity>cursorMapping())
                 .get())
         .defaultQuery(returnNothing())
         .rules(
@@ -186,21 +197,23 @@ public class QuestionnaireResponseController {
         isEmpty(questionnaireResponse.id()),
         "ID must be empty, found %s",
         questionnaireResponse.id());
-    questionnaireResponse.id(generateRandomId());
+    questionnaireResponse.id(resourceIds.newId("QuestionnaireResponse"));
     return create(questionnaireResponse, authorization, icn, nowMillis());
   }
 
   /** Create resource. */
   public ResponseEntity<QuestionnaireResponse> create(
       QuestionnaireResponse questionnaireResponse, String authorization, String icn, Instant now) {
-    matchIcn(icn, questionnaireResponse, QuestionnaireResponseIncludesIcnMajig::icns);
-    questionnaireResponse.meta(
-        metaWithLastUpdatedAndSource(
-            questionnaireResponse.meta(), now, sourcerer.source(authorization)));
-    repository.save(toEntity(questionnaireResponse));
-    return ResponseEntity.created(
-            URI.create(
-                linkProperties.r4Url() + "/QuestionnaireResponse/" + questionnaireResponse.id()))
+    QuestionnaireResponseEntity entity =
+        newEntity(questionnaireResponse, sourcerer.source(authorization), icn, now);
+    repository.save(entity);
+    return eTag(
+            ResponseEntity.created(
+                URI.create(
+                    linkProperties.r4Url()
+                        + "/QuestionnaireResponse/"
+                        + questionnaireResponse.id())),
+            entity.version())
         .body(questionnaireResponse);
   }
 
@@ -212,9 +225,10 @@ public class QuestionnaireResponseController {
     return repository.findById(id).map(e -> e.deserializePayload());
   }
 
-  /** Get all IDs for QuestionnaireResponse resource. */
-  public List<String> getAllIds() {
-    return Streams.stream(repository.findAll()).map(e -> e.id()).sorted().collect(toList());
+  /** Get the next IDs for QuestionnaireResponse resource, in order, after the given ID. */
+  public List<String> findIds(String after, Instant lastUpdatedSince, int count) {
+    return repository.findIdsAfter(
+        after == null ? "" : after, lastUpdatedSince, PageRequest.of(0, count));
   }
 
   @InitBinder
@@ -222,32 +236,53 @@ public class QuestionnaireResponseController {
     dataBinder.initDirectFieldAccess();
   }
 
-  /** Remove 5 year or older archived questionnaire responses. */
-  public List<String> purgeArchives() {
-    Instant fiveYearsAgo = ZonedDateTime.now(ZoneId.of("UTC")).minusYears(5).toInstant();
-    List<String> deletedArchives = new ArrayList<>();
-    Streams.stream(archivedRepository.findAll())
-        .filter(entity -> entity.deletionTimestamp().isBefore(fiveYearsAgo))
-        .forEach(
-            entity -> {
-              deletedArchives.add(entity.id());
-              archivedRepository.delete(entity);
-            });
-    return deletedArchives;
+  /** Entity for a new resource, from a source that is already resolved. */
+  public QuestionnaireResponseEntity newEntity(
+      QuestionnaireResponse questionnaireResponse, String source, String icn, Instant now) {
+    matchIcn(icn, questionnaireResponse, QuestionnaireResponseIncludesIcnMajig::icns);
+    questionnaireResponse.meta(
+        metaWithLastUpdatedAndSource(questionnaireResponse.meta(), now, source));
+    return toEntity(questionnaireResponse);
   }
 
+  /**
+   * Read the resource. A matching If-None-Match is answered without writing the payload. The ICN
+   * columns do not keep reference types, so its X-VA-INCLUDES-ICN is still found in the payload.
+   */
   @GetMapping(value = "/{id}")
-  public QuestionnaireResponse read(@PathVariable("id") String id) {
-    return findById(id).orElseThrow(() -> new Exceptions.NotFound(id));
+  public ResponseEntity<RawResource> read(
+      @PathVariable("id") String id,
+      @RequestHeader(name = "If-None-Match", required = false) String ifNoneMatch) {
+    QuestionnaireResponseEntity entity =
+        repository.findById(id).orElseThrow(() -> new Exceptions.NotFound(id));
+    if (notModified(ifNoneMatch, entity.version())) {
+      String users =
+          IncludesIcnMajig.usersCsv(
+              RawResource.icns(entity, QuestionnaireResponseIncludesIcnMajig.ICN_FIELDS).stream());
+      return eTag(ResponseEntity.status(HttpStatus.NOT_MODIFIED), entity.version())
+          .header(IncludesIcnMajig.INCLUDES_ICN_HEADER, users)
+          .build();
+    }
+    return eTag(ResponseEntity.ok(), entity.version()).body(toRawResource(entity));
   }
 
   @GetMapping
-  QuestionnaireResponse.Bundle search(HttpServletRequest request) {
-    return Vulcan.forRepo(repository)
+  StreamingRawBundle<QuestionnaireResponseEntity> search(HttpServletRequest request) {
+    SearchTotal total = linkProperties.searchTotal(request);
+    return Vulcan.forRepo(
+            TotalAwareRepository.forRepo(repository, QuestionnaireResponseEntity.class)
+                .entityManager(entityManager)
+                .total(total)
+                .build())
         .config(configuration())
         .build()
         .search(request)
-        .map(toBundle());
+        .map(
+            toBundle(total)
+                .streaming(
+                    this::toRawResource,
+                    e -> RawResource.icns(e, QuestionnaireResponseIncludesIcnMajig.ICN_FIELDS),
+                    entityManager::detach));
   }
 
   private VulcanizedBundler<
@@ -255,7 +290,7 @@ public class QuestionnaireResponseController {
           QuestionnaireResponse,
           QuestionnaireResponse.Entry,
           QuestionnaireResponse.Bundle>
-      toBundle() {
+      toBundle(SearchTotal total) {
     return VulcanizedBundler.forBundling(
             QuestionnaireResponseEntity.class,
             VulcanizedBundler.Bundling.newBundle(QuestionnaireResponse.Bundle::new)
@@ -263,41 +298,47 @@ public class QuestionnaireResponseController {
                 .linkProperties(linkProperties)
                 .build())
         .toResource(QuestionnaireResponseEntity::deserializePayload)
+        .total(total)
         .build();
   }
 
+  public RawResource toRawResource(QuestionnaireResponseEntity entity) {
+    return RawResource.of(
+        entity, linkProperties.r4Url(), QuestionnaireResponseIncludesIcnMajig.ICN_FIELDS);
+  }
+
   @PutMapping(value = "/{id}")
   @Loggable(arguments = false)
   ResponseEntity<QuestionnaireResponse> update(
       @PathVariable("id") String pathId,
       @Valid @RequestBody QuestionnaireResponse questionnaireResponse,
       @RequestHeader(name = "Authorization", required = true) String authorization,
-      @RequestHeader(name = "x-va-icn", required = false) String icn) {
+      @RequestHeader(name = "x-va-icn", required = false) String icn,
+      @RequestHeader(name = "If-Match", required = false) String ifMatch) {
     checkRequestState(
         pathId.equals(questionnaireResponse.id()),
         "Path ID (%s) and request body ID (%s) do not match",
         pathId,
         questionnaireResponse.id());
-    return update(questionnaireResponse, authorization, icn, nowMillis());
+    return update(questionnaireResponse, authorization, icn, ifMatchVersion(ifMatch), nowMillis());
   }
 
-  /** Update the given resource. */
+  /**
+   * Update the given resource, without reading it first. Only the original source may update it,
+   * and only while it is at the expected version, if one is given.
+   */
   public ResponseEntity<QuestionnaireResponse> update(
-      QuestionnaireResponse questionnaireResponse, String authorization, String icn, Instant now) {
+      QuestionnaireResponse questionnaireResponse,
+      String authorization,
+      String icn,
+      Integer ifMatch,
+      Instant now) {
     matchIcn(icn, questionnaireResponse, QuestionnaireResponseIncludesIcnMajig::icns);
-    String authorizationSource = sourcerer.source(authorization);
-    QuestionnaireResponseEntity entity =
-        repository
-            .findById(questionnaireResponse.id())
-            .orElseThrow(() -> new Exceptions.NotFound(questionnaireResponse.id()));
-    validateSource(
-        questionnaireResponse.id(),
-        authorizationSource,
-        entity.deserializePayload().meta().source());
     questionnaireResponse.meta(
-        metaWithLastUpdatedAndSource(questionnaireResponse.meta(), now, authorizationSource));
-    populateEntity(entity, questionnaireResponse);
-    repository.save(entity);
-    return ResponseEntity.ok(questionnaireResponse);
+        metaWithLastUpdatedAndSource(
+            questionnaireResponse.meta(), now, sourcerer.source(authorization)));
+    QuestionnaireResponseEntity entity = toEntity(questionnaireResponse);
+    repository.updateIfMatch(entity, ifMatch);
+    return eTag(ResponseEntity.ok(), entity.version()).body(questionnaireResponse);
   }
 }
@@ -1,12 +1,19 @@
 package gov.va.api.health.patientgenerateddata.questionnaireresponse;
 
-import gov.va.api.health.patientgenerateddata.PayloadEntity;
+import gov.va.api.health.patientgenerateddata.PayloadCompressionListener;
+import gov.va.api.health.patientgenerateddata.SearchToken;
+import gov.va.api.health.patientgenerateddata.VersionedPayloadEntity;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
 import java.time.Instant;
+import java.util.Set;
 import javax.persistence.Basic;
+import javax.persistence.CollectionTable;
+import javax.persistence.ElementCollection;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import javax.persistence.Version;
@@ -16,16 +23,18 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import org.springframework.data.domain.Sort;
 
 @Data
 @Entity
 @Builder
 @Table(name = "QuestionnaireResponse", schema = "app")
+@EntityListeners(PayloadCompressionListener.class)
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 @AllArgsConstructor(access = AccessLevel.PRIVATE)
 @EqualsAndHashCode(onlyExplicitlyIncluded = true)
-public class QuestionnaireResponseEntity implements PayloadEntity<QuestionnaireResponse> {
+public class QuestionnaireResponseEntity implements VersionedPayloadEntity<QuestionnaireResponse> {
   @Id @EqualsAndHashCode.Include private String id;
 
   @Version private Integer version;
@@ -34,6 +43,11 @@ public class QuestionnaireResponseEntity implements PayloadEntity<QuestionnaireR
   @Basic(fetch = FetchType.EAGER)
   private String payload;
 
+  @Lob
+  @ToString.Exclude
+  @Basic(fetch = FetchType.EAGER)
+  private byte[] compressedPayload;
+
   private String author;
 
   private Instant authored;
@@ -44,8 +58,18 @@ public class QuestionnaireResponseEntity implements PayloadEntity<QuestionnaireR
 
   private String metaTag;
 
+  @ToString.Exclude
+  @ElementCollection
+  @CollectionTable(
+      name = "QuestionnaireResponseTag",
+      schema = "app",
+      joinColumns = @JoinColumn(name = "questionnaireResponseId"))
+  private Set<SearchToken> metaTagTokens;
+
   private String source;
 
+  private String metaSource;
+
   private Instant lastUpdated;
 
   public static Sort naturalOrder() {
@@ -4,6 +4,7 @@ import com.google.common.collect.Streams;
 import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.r4.api.bundle.AbstractEntry;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.util.Set;
 import java.util.stream.Stream;
 import lombok.experimental.Delegate;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -16,6 +17,9 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
  */
 @ControllerAdvice
 public class QuestionnaireResponseIncludesIcnMajig implements ResponseBodyAdvice<Object> {
+  /** Top-level fields that {@link #icns} reads, for payloads that are not bound to the model. */
+  static final Set<String> ICN_FIELDS = Set.of("subject", "author", "source");
+
   @Delegate
   private final ResponseBodyAdvice<Object> delegate =
       IncludesIcnMajig.<QuestionnaireResponse, QuestionnaireResponse.Bundle>builder()
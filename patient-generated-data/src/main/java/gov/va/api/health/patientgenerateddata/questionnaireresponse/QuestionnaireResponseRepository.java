@@ -1,13 +1,94 @@
 package gov.va.api.health.patientgenerateddata.questionnaireresponse;
 
 import gov.va.api.health.autoconfig.logging.Loggable;
+import gov.va.api.health.patientgenerateddata.PayloadUpdates;
+import gov.va.api.health.patientgenerateddata.VersionedPayloadRepository;
+import java.time.Instant;
+import java.util.List;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
-import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
 
 @Loggable
 @Transactional(isolation = Isolation.READ_UNCOMMITTED)
 public interface QuestionnaireResponseRepository
-    extends CrudRepository<QuestionnaireResponseEntity, String>,
-        JpaSpecificationExecutor<QuestionnaireResponseEntity> {}
+    extends VersionedPayloadRepository<QuestionnaireResponseEntity>,
+        PayloadUpdates<QuestionnaireResponseEntity>,
+        JpaSpecificationExecutor<QuestionnaireResponseEntity> {
+  /**
+   * Copy the QuestionnaireResponse into the archive table, then delete it and its tag tokens, in
+   * one transaction without loading the payload. If an ICN is given, the row is only moved when
+   * its subject, author, and source IDs all match the ICN. Returns the number of rows moved.
+   */
+  default int archive(String id, String icn, Instant deletionTimestamp) {
+    int moved =
+        icn == null
+            ? copyToArchive(id, deletionTimestamp)
+            : copyToArchiveForIcn(id, icn, deletionTimestamp);
+    if (moved > 0) {
+      deleteTagTokens(id);
+      deleteRow(id);
+    }
+    return moved;
+  }
+
+  @Modifying
+  @Query(
+      value =
+          "insert into app.ArchivedQuestionnaireResponse"
+              + " (id, payload, compressedPayload, deletionTimestamp)"
+              + " select id, payload, compressedPayload, :deletionTimestamp"
+              + " from app.QuestionnaireResponse"
+              + " where id = :id",
+      nativeQuery = true)
+  int copyToArchive(@Param("id") String id, @Param("deletionTimestamp") Instant deletionTimestamp);
+
+  @Modifying
+  @Query(
+      value =
+          "insert into app.ArchivedQuestionnaireResponse"
+              + " (id, payload, compressedPayload, deletionTimestamp)"
+              + " select id, payload, compressedPayload, :deletionTimestamp"
+              + " from app.QuestionnaireResponse"
+              + " where id = :id and subject = :icn"
+              + " and (author is null or author = :icn)"
+              + " and (source is null or source = :icn)",
+      nativeQuery = true)
+  int copyToArchiveForIcn(
+      @Param("id") String id,
+      @Param("icn") String icn,
+      @Param("deletionTimestamp") Instant deletionTimestamp);
+
+  @Modifying
+  @Query(value = "delete from app.QuestionnaireResponse where id = :id", nativeQuery = true)
+  int deleteRow(@Param("id") String id);
+
+  @Modifying
+  @Query(
+      value = "delete from app.QuestionnaireResponseTag where questionnaireResponseId = :id",
+      nativeQuery = true)
+  int deleteTagTokens(@Param("id") String id);
+
+  /**
+   * Resources with the ICN as their subject, author, or source ID, in ID order, for
+   * Patient/$everything. The columns do not keep the reference type, so callers check the payload.
+   */
+  @Query(
+      "select e from QuestionnaireResponseEntity e"
+          + " where e.subject = :icn or e.author = :icn or e.source = :icn"
+          + " order by e.id")
+  List<QuestionnaireResponseEntity> findByPatient(@Param("icn") String icn, Pageable page);
+
+  @Query(
+      "select e.id from QuestionnaireResponseEntity e where e.id > :after"
+          + " and (:lastUpdatedSince is null or e.lastUpdated >= :lastUpdatedSince)"
+          + " order by e.id")
+  List<String> findIdsAfter(
+      @Param("after") String after,
+      @Param("lastUpdatedSince") Instant lastUpdatedSince,
+      Pageable page);
+}
@@ -0,0 +1,49 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import gov.va.api.health.patientgenerateddata.PayloadBackfill;
+import gov.va.api.health.patientgenerateddata.SearchToken;
+import gov.va.api.health.patientgenerateddata.TokenListMapping;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Set;
+
+/** Liquibase task populating the QuestionnaireResponseTag index from existing payloads. */
+public class QuestionnaireResponseTagBackfill extends PayloadBackfill<Set<SearchToken>> {
+  public QuestionnaireResponseTagBackfill() {
+    super("tag tokens", "QuestionnaireResponse");
+  }
+
+  @Override
+  protected Set<SearchToken> extract(ResultSet row) throws Exception {
+    return TokenListMapping.metadataTagTokens(
+        MAPPER.readValue(row.getString("payload"), QuestionnaireResponse.class));
+  }
+
+  @Override
+  protected String select(String table) {
+    return "select id, payload from app." + table + " where metaTag is not null";
+  }
+
+  @Override
+  protected void write(String id, Set<SearchToken> tokens, List<PreparedStatement> writes)
+      throws SQLException {
+    PreparedStatement insert = writes.get(0);
+    for (SearchToken token : tokens) {
+      insert.setString(1, id);
+      insert.setString(2, token.system());
+      insert.setString(3, token.code());
+      insert.setString(4, token.token());
+      insert.addBatch();
+    }
+  }
+
+  @Override
+  protected List<String> writes(String table) {
+    return List.of(
+        "insert into app.QuestionnaireResponseTag"
+            + " (questionnaireResponseId, system, code, token) values (?,?,?,?)");
+  }
+}
@@ -0,0 +1,238 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.time.Instant;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+public class BatchControllerTest {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  static final String OBSERVATION_FIELDS =
+      "'status':'final','code':{'text':'code'},'effectiveDateTime':'2021-01-01T00:00:00Z',";
+
+  static final Instant NOW = Instant.parse("2021-01-01T01:00:00.001Z");
+
+  LinkProperties pageLinks =
+      LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
+
+  ObservationRepository observationRepo = mock(ObservationRepository.class);
+
+  QuestionnaireRepository questionnaireRepo = mock(QuestionnaireRepository.class);
+
+  QuestionnaireResponseRepository questionnaireResponseRepo =
+      mock(QuestionnaireResponseRepository.class);
+
+  @SneakyThrows
+  private static JsonNode json(String json) {
+    return MAPPER.readTree(json.replace('\'', '"'));
+  }
+
+  BatchController _controller() {
+    return _controller(
+        TestControllers.observationController(
+            mock(EntityManager.class), pageLinks, observationRepo));
+  }
+
+  BatchController _controller(ObservationController observationController) {
+    EntityManager entityManager = mock(EntityManager.class);
+    return BatchController.builder()
+        .linkProperties(pageLinks)
+        .sourcerer(TestControllers.SOURCERER)
+        .resourceIds(new ResourceIds(""))
+        .validator(Validation.buildDefaultValidatorFactory().getValidator())
+        .observationController(observationController)
+        .observationRepository(observationRepo)
+        .questionnaireController(
+            TestControllers.questionnaireController(entityManager, pageLinks, questionnaireRepo))
+        .questionnaireRepository(questionnaireRepo)
+        .questionnaireResponseController(
+            TestControllers.questionnaireResponseController(
+                entityManager, pageLinks, questionnaireResponseRepo))
+        .questionnaireResponseRepository(questionnaireResponseRepo)
+        .maxEntries(3)
+        .build();
+  }
+
+  @Test
+  void batchReportsFailedEntries() {
+    JsonNode bundle =
+        json(
+            "{'resourceType':'Bundle','type':'batch','entry':["
+                + "{'resource':{'resourceType':'Observation',"
+                + OBSERVATION_FIELDS
+                + "'subject':{'reference':'Patient/p1'}},"
+                + "'request':{'method':'POST','url':'Observation'}},"
+                + "{'resource':{'resourceType':'Observation'},"
+                + "'request':{'method':'POST','url':'Observation'}},"
+                + "{'resource':{'resourceType':'Patient'},"
+                + "'request':{'method':'POST','url':'Patient'}}]}");
+    BatchBundle response = _controller().batch(bundle, "Bearer sat", null, NOW);
+    assertThat(response.type()).isEqualTo("batch-response");
+    assertThat(response.entry())
+        .extracting(e -> e.response().status())
+        .containsExactly("201 Created", "400 Bad Request", "400 Bad Request");
+    assertThat(response.entry().get(1).response().outcome().issue().get(0).diagnostics())
+        .contains("status");
+    assertThat(response.entry().get(2).resource()).isNull();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ObservationEntity>> saved = ArgumentCaptor.forClass(List.class);
+    verify(observationRepo).saveAll(saved.capture());
+    assertThat(saved.getValue()).hasSize(1);
+  }
+
+  @Test
+  void forbiddenIcn() {
+    JsonNode bundle =
+        json(
+            "{'resourceType':'Bundle','type':'batch','entry':["
+                + "{'resource':{'resourceType':'Observation',"
+                + OBSERVATION_FIELDS
+                + "'subject':{'reference':'Patient/p2'}},"
+                + "'request':{'method':'POST','url':'Observation'}}]}");
+    BatchBundle response = _controller().batch(bundle, "Bearer sat", "p1", NOW);
+    assertThat(response.entry().get(0).response().status()).isEqualTo("403 Forbidden");
+    assertThat(response.entry().get(0).response().outcome().issue().get(0).diagnostics())
+        .isNull();
+  }
+
+  @Test
+  void invalidBundles() {
+    BatchController controller = _controller();
+    for (String bundle :
+        List.of(
+            "[]",
+            "{'resourceType':'Observation','type':'batch'}",
+            "{'resourceType':'Bundle','type':'searchset'}",
+            "{'resourceType':'Bundle','type':'batch','entry':{}}",
+            "{'resourceType':'Bundle','type':'batch','entry':[{},{},{},{}]}")) {
+      assertThatExceptionOfType(Exceptions.BadRequest.class)
+          .isThrownBy(() -> controller.batch(json(bundle), "Bearer sat", null, NOW));
+    }
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(
+            () ->
+                controller.batch(
+                    json("{'resourceType':'Bundle','type':'batch'}"), "Bearer nope", null, NOW));
+  }
+
+  @Test
+  void serverErrorsAreNotEntryFailures() {
+    ObservationController observationController = mock(ObservationController.class);
+    when(observationController.newEntity(any(), any(), any(), any()))
+        .thenThrow(new IllegalStateException("boom"));
+    JsonNode bundle =
+        json(
+            "{'resourceType':'Bundle','type':'batch','entry':["
+                + "{'resource':{'resourceType':'Observation',"
+                + OBSERVATION_FIELDS
+                + "'subject':{'reference':'Patient/p1'}},"
+                + "'request':{'method':'POST','url':'Observation'}}]}");
+    assertThatExceptionOfType(IllegalStateException.class)
+        .isThrownBy(
+            () -> _controller(observationController).batch(bundle, "Bearer sat", null, NOW));
+    verify(observationRepo, never()).saveAll(anyList());
+  }
+
+  @Test
+  @SneakyThrows
+  void transaction() {
+    JsonNode bundle =
+        json(
+            "{'resourceType':'Bundle','type':'transaction','entry':["
+                + "{'fullUrl':'urn:uuid:q1','resource':{'resourceType':'Questionnaire',"
+                + "'status':'active'},'request':{'method':'POST','url':'Questionnaire'}},"
+                + "{'fullUrl':'urn:uuid:qr1','resource':{'resourceType':'QuestionnaireResponse',"
+                + "'status':'completed','questionnaire':'Questionnaire/x',"
+                + "'subject':{'reference':'Patient/p1'},'basedOn':[{'reference':'urn:uuid:q1'}]},"
+                + "'request':{'method':'POST','url':'QuestionnaireResponse'}},"
+                + "{'resource':{'resourceType':'Observation',"
+                + OBSERVATION_FIELDS
+                + "'subject':{'reference':'Patient/p1'}},"
+                + "'request':{'method':'POST','url':'Observation'}}]}");
+    BatchBundle response = _controller().batch(bundle, "Bearer sat", "p1", NOW);
+    assertThat(response.type()).isEqualTo("transaction-response");
+    assertThat(response.icns()).containsExactly("p1");
+    assertThat(response.entry())
+        .allSatisfy(
+            e -> {
+              assertThat(e.response().status()).isEqualTo("201 Created");
+              assertThat(e.response().location()).isEqualTo(e.fullUrl());
+              assertThat(e.response().lastModified()).isEqualTo(NOW.toString());
+            });
+    String questionnaireId = response.entry().get(0).resource().id();
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<QuestionnaireResponseEntity>> saved = ArgumentCaptor.forClass(List.class);
+    verify(questionnaireResponseRepo).saveAll(saved.capture());
+    QuestionnaireResponse questionnaireResponse = saved.getValue().get(0).deserializePayload();
+    assertThat(questionnaireResponse.basedOn().get(0).reference())
+        .isEqualTo("Questionnaire/" + questionnaireId);
+    assertThat(questionnaireResponse.meta().source())
+        .isEqualTo("https://api.va.gov/services/pgd/static-access");
+    assertThat(response.entry().get(1).resource().json())
+        .contains("http://foo.com/r4/Questionnaire/" + questionnaireId);
+  }
+
+  @Test
+  void transactionFailsForAnyInvalidEntry() {
+    JsonNode bundle =
+        json(
+            "{'resourceType':'Bundle','type':'transaction','entry':["
+                + "{'resource':{'resourceType':'Observation',"
+                + OBSERVATION_FIELDS
+                + "'subject':{'reference':'Patient/p1'}},"
+                + "'request':{'method':'POST','url':'Observation'}},"
+                + "{'resource':{'resourceType':'Observation','id':'x',"
+                + OBSERVATION_FIELDS
+                + "'subject':{'reference':'Patient/p1'}},"
+                + "'request':{'method':'POST','url':'Observation'}}]}");
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller().batch(bundle, "Bearer sat", null, NOW));
+    verify(observationRepo, never()).saveAll(anyList());
+  }
+
+  @Test
+  void unindexableEntries() {
+    String entries =
+        "'entry':["
+            + "{'resource':{'resourceType':'Observation','status':'final',"
+            + "'code':{'text':'code'},'effectiveDateTime':'2021-02-30T00:00:00Z',"
+            + "'subject':{'reference':'Patient/p1'}},"
+            + "'request':{'method':'POST','url':'Observation'}},"
+            + "{'resource':{'resourceType':'Observation',"
+            + OBSERVATION_FIELDS
+            + "'subject':{'reference':'Patient/p1'}},"
+            + "'request':{'method':'POST','url':'Observation'}}]}";
+    JsonNode batch = json("{'resourceType':'Bundle','type':'batch'," + entries);
+    BatchBundle response = _controller().batch(batch, "Bearer sat", null, NOW);
+    assertThat(response.entry())
+        .extracting(e -> e.response().status())
+        .containsExactly("400 Bad Request", "201 Created");
+    assertThat(response.entry().get(0).response().outcome().issue().get(0).diagnostics())
+        .contains("2021-02-30");
+    JsonNode transaction = json("{'resourceType':'Bundle','type':'transaction'," + entries);
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller().batch(transaction, "Bearer sat", null, NOW));
+  }
+}
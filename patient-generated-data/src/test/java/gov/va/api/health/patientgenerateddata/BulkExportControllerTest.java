@@ -0,0 +1,167 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import gov.va.api.health.r4.api.resources.OperationOutcome;
+import java.io.File;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class BulkExportControllerTest {
+  static final Instant NOW = Instant.parse("2021-01-01T01:00:00.001Z");
+
+  BulkExporter exporter = mock(BulkExporter.class);
+
+  BulkExportController _controller() {
+    return new BulkExportController(exporter);
+  }
+
+  private BulkExportJob job(BulkExportJob.Status status) {
+    return BulkExportJob.builder()
+        .id("j1")
+        .request("http://localhost/management/r4/$export")
+        .transactionTime(NOW)
+        .types(BulkExporter.RESOURCE_TYPES)
+        .status(status)
+        .exporting(status == BulkExportJob.Status.IN_PROGRESS ? "Questionnaire" : null)
+        .exported(5)
+        .output(
+            status == BulkExportJob.Status.COMPLETED
+                ? List.of(
+                    BulkExportJob.Output.builder()
+                        .type("Observation")
+                        .file("Observation.ndjson")
+                        .count(5)
+                        .build())
+                : List.of())
+        .error(status == BulkExportJob.Status.FAILED ? "InvalidPayload" : null)
+        .build();
+  }
+
+  @Test
+  void cancel() {
+    when(exporter.delete("j1")).thenReturn(true);
+    assertThat(_controller().delete("j1").getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThatExceptionOfType(Exceptions.NotFound.class)
+        .isThrownBy(() -> _controller().delete("nope"));
+  }
+
+  @Test
+  void export() {
+    when(exporter.start(any(), any(), any())).thenReturn(job(BulkExportJob.Status.IN_PROGRESS));
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setQueryString("_type=Observation,Questionnaire&_since=2021-01-01T00:00:00Z");
+    ResponseEntity<Void> response =
+        _controller()
+            .export(
+                "respond-async",
+                "application/fhir+ndjson",
+                "2021-01-01T00:00:00Z",
+                "Observation, Questionnaire,Observation",
+                request);
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThat(response.getHeaders().getFirst("Content-Location"))
+        .isEqualTo("http://localhost/management/r4/$export-poll-status/j1");
+    verify(exporter)
+        .start(
+            "http://localhost/management/r4/$export"
+                + "?_type=Observation,Questionnaire&_since=2021-01-01T00:00:00Z",
+            List.of("Observation", "Questionnaire"),
+            Instant.parse("2021-01-01T00:00:00Z"));
+  }
+
+  @Test
+  void exportAllTypes() {
+    when(exporter.start(any(), any(), any())).thenReturn(job(BulkExportJob.Status.IN_PROGRESS));
+    _controller().export("respond-async", null, null, null, new MockHttpServletRequest());
+    verify(exporter)
+        .start(
+            eq("http://localhost/management/r4/$export"),
+            eq(BulkExporter.RESOURCE_TYPES),
+            isNull());
+  }
+
+  @Test
+  void exportBadRequest() {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller().export(null, null, null, null, request));
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(
+            () -> _controller().export("respond-async", "text/csv", null, null, request));
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller().export("respond-async", null, "nope", null, request));
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller().export("respond-async", null, null, "Patient", request));
+  }
+
+  @Test
+  void file() {
+    File file = new File("Observation.ndjson");
+    when(exporter.file("j1", "Observation.ndjson")).thenReturn(Optional.of(file));
+    assertThat(_controller().file("j1", "Observation.ndjson").getBody().getFilename())
+        .isEqualTo("Observation.ndjson");
+    assertThatExceptionOfType(Exceptions.NotFound.class)
+        .isThrownBy(() -> _controller().file("j1", "nope.ndjson"));
+  }
+
+  @Test
+  void statusCompleted() {
+    when(exporter.job("j1")).thenReturn(Optional.of(job(BulkExportJob.Status.COMPLETED)));
+    ResponseEntity<?> response = _controller().status("j1", new MockHttpServletRequest());
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getBody())
+        .isEqualTo(
+            BulkExportManifest.builder()
+                .transactionTime("2021-01-01T01:00:00.001Z")
+                .request("http://localhost/management/r4/$export")
+                .requiresAccessToken(true)
+                .output(
+                    List.of(
+                        BulkExportManifest.Output.builder()
+                            .type("Observation")
+                            .url(
+                                "http://localhost/management/r4/$export-file/j1/Observation.ndjson")
+                            .count(5L)
+                            .build()))
+                .error(List.of())
+                .build());
+  }
+
+  @Test
+  void statusFailed() {
+    when(exporter.job("j1")).thenReturn(Optional.of(job(BulkExportJob.Status.FAILED)));
+    ResponseEntity<?> response = _controller().status("j1", new MockHttpServletRequest());
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    assertThat(((OperationOutcome) response.getBody()).issue().get(0).diagnostics())
+        .isEqualTo("Export failed: InvalidPayload");
+  }
+
+  @Test
+  void statusInProgress() {
+    when(exporter.job("j1")).thenReturn(Optional.of(job(BulkExportJob.Status.IN_PROGRESS)));
+    ResponseEntity<?> response = _controller().status("j1", new MockHttpServletRequest());
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThat(response.getHeaders().getFirst("X-Progress"))
+        .isEqualTo("Exported 5 resources, exporting Questionnaire");
+  }
+
+  @Test
+  void statusNotFound() {
+    when(exporter.job("nope")).thenReturn(Optional.empty());
+    assertThatExceptionOfType(Exceptions.NotFound.class)
+        .isThrownBy(() -> _controller().status("nope", new MockHttpServletRequest()));
+  }
+}
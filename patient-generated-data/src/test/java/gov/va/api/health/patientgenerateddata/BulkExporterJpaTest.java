@@ -0,0 +1,174 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.Mockito.mock;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class BulkExporterJpaTest {
+  static final Instant START = Instant.parse("2021-01-01T00:00:00Z");
+
+  @Autowired DataSource dataSource;
+
+  @Autowired JdbcTemplate jdbc;
+
+  @TempDir Path directory;
+
+  LinkProperties linkProperties =
+      LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
+
+  BulkExporter _exporter() {
+    EntityManager entityManager = mock(EntityManager.class);
+    return new BulkExporter(
+        dataSource,
+        TestControllers.observationController(
+            entityManager, linkProperties, mock(ObservationRepository.class)),
+        TestControllers.questionnaireController(
+            entityManager, linkProperties, mock(QuestionnaireRepository.class)),
+        TestControllers.questionnaireResponseController(
+            entityManager, linkProperties, mock(QuestionnaireResponseRepository.class)),
+        directory.toString(),
+        2,
+        24,
+        MoreExecutors.newDirectExecutorService());
+  }
+
+  @Test
+  void delete() {
+    BulkExporter exporter = _exporter();
+    BulkExportJob job = exporter.start("x", List.of("Questionnaire"), null);
+    assertThat(directory.resolve(job.id()).toFile()).exists();
+    assertThat(exporter.delete(job.id())).isTrue();
+    assertThat(directory.resolve(job.id()).toFile()).doesNotExist();
+    assertThat(exporter.job(job.id())).isEmpty();
+    assertThat(exporter.delete(job.id())).isFalse();
+  }
+
+  @Test
+  @SneakyThrows
+  void export() {
+    BulkExporter exporter = _exporter();
+    BulkExportJob job = exporter.start("x", BulkExporter.RESOURCE_TYPES, null);
+    BulkExportJob done = exporter.job(job.id()).get();
+    assertThat(done.status()).isEqualTo(BulkExportJob.Status.COMPLETED);
+    assertThat(done.exported()).isEqualTo(6);
+    assertThat(done.output())
+        .containsExactly(
+            output("Observation", 1),
+            output("Questionnaire", 3),
+            output("QuestionnaireResponse", 2));
+    assertThat(lines(exporter, job.id(), "Questionnaire.ndjson"))
+        .containsExactlyInAnyOrder("{\"id\":\"q1\"}", "{\"id\":\"q2\"}", "{\"id\":\"q3\"}");
+    assertThat(lines(exporter, job.id(), "QuestionnaireResponse.ndjson"))
+        .containsExactlyInAnyOrder(
+            "{\"id\":\"qr1\",\"subject\":{\"reference\":\"http://foo.com/r4/Patient/p1\"}}",
+            "{\"id\":\"qr2\",\"subject\":{\"reference\":\"http://foo.com/r4/Patient/p1\"}}");
+    assertThat(exporter.file(job.id(), "nope.ndjson")).isEmpty();
+    assertThat(exporter.file("nope", "Questionnaire.ndjson")).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  void exportSinceAndType() {
+    BulkExporter exporter = _exporter();
+    BulkExportJob job =
+        exporter.start("x", List.of("Questionnaire"), START.plus(2, ChronoUnit.DAYS));
+    assertThat(exporter.job(job.id()).get().output()).containsExactly(output("Questionnaire", 2));
+    assertThat(lines(exporter, job.id(), "Questionnaire.ndjson"))
+        .containsExactlyInAnyOrder("{\"id\":\"q2\"}", "{\"id\":\"q3\"}");
+    assertThat(exporter.file(job.id(), "Observation.ndjson")).isEmpty();
+  }
+
+  @Test
+  void failed() {
+    jdbc.update(
+        "insert into app.Questionnaire (id, payload, version) values (?,?,?)", "bad", "{", 0);
+    BulkExporter exporter = _exporter();
+    BulkExportJob job = exporter.start("x", List.of("Questionnaire"), null);
+    BulkExportJob failed = exporter.job(job.id()).get();
+    assertThat(failed.status()).isEqualTo(BulkExportJob.Status.FAILED);
+    assertThat(failed.error()).isEqualTo("InvalidPayload");
+    assertThat(exporter.file(job.id(), "Questionnaire.ndjson")).isEmpty();
+  }
+
+  @BeforeEach
+  void insertRows() {
+    insert("Observation", "o1", "{\"id\":\"o1\"}", START);
+    for (int i = 1; i <= 3; i++) {
+      insert("Questionnaire", "q" + i, "{\"id\":\"q" + i + "\"}", START.plus(i, ChronoUnit.DAYS));
+    }
+    insert(
+        "QuestionnaireResponse",
+        "qr1",
+        "{\"id\":\"qr1\",\"subject\":{\"reference\":\"Patient/p1\"}}",
+        START);
+    jdbc.update(
+        "insert into app.QuestionnaireResponse (id, compressedPayload, version, lastUpdated)"
+            + " values (?,?,?,?)",
+        "qr2",
+        PayloadCompression.compress(
+            "{\"id\":\"qr2\",\"subject\":{\"reference\":\"Patient/p1\"}}"),
+        0,
+        Timestamp.from(START));
+  }
+
+  private void insert(String table, String id, String payload, Instant lastUpdated) {
+    jdbc.update(
+        "insert into app." + table + " (id, payload, version, lastUpdated) values (?,?,?,?)",
+        id,
+        payload,
+        0,
+        Timestamp.from(lastUpdated));
+  }
+
+  @SneakyThrows
+  private List<String> lines(BulkExporter exporter, String id, String file) {
+    File exported = exporter.file(id, file).get();
+    return Files.readAllLines(exported.toPath());
+  }
+
+  private BulkExportJob.Output output(String type, long count) {
+    return BulkExportJob.Output.builder().type(type).file(type + ".ndjson").count(count).build();
+  }
+
+  @Test
+  void removeExpired() {
+    BulkExporter exporter = _exporter();
+    BulkExportJob job = exporter.start("x", List.of("Observation"), null);
+    Instant completed = exporter.job(job.id()).get().completed();
+    assertThat(exporter.removeExpired(completed.plus(23, ChronoUnit.HOURS))).isEqualTo(0);
+    assertThat(exporter.job(job.id())).isPresent();
+    assertThat(exporter.removeExpired(completed.plus(25, ChronoUnit.HOURS))).isEqualTo(1);
+    assertThat(exporter.job(job.id())).isEmpty();
+    assertThat(directory.resolve(job.id()).toFile()).doesNotExist();
+  }
+
+  @Test
+  void unsupportedType() {
+    assertThatExceptionOfType(IllegalStateException.class)
+        .isThrownBy(() -> _exporter().start("x", List.of("Patient"), null));
+  }
+}
@@ -4,6 +4,8 @@ import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri
 import static gov.va.api.health.patientgenerateddata.questionnaire.Samples.questionnaireWithUseContext;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +21,19 @@ public class CompositeMappingJpaTest {
 
   @Autowired FooRepository repository;
 
+  @Autowired QuestionnaireRepository questionnaireRepository;
+
+  private QuestionnaireEntity questionnaireEntity(
+      String id, String ucCode, String valueSystem, String valueCode) {
+    return QuestionnaireEntity.builder()
+        .id(id)
+        .payload("{}")
+        .contextTypeValueTokens(
+            CompositeMapping.useContextValueTokens(
+                questionnaireWithUseContext("uct", ucCode, valueSystem, valueCode)))
+        .build();
+  }
+
   @Test
   void specificationFor_edgeCases() {
     CompositeMapping<FooEntity> mapping =
@@ -46,4 +61,32 @@ public class CompositeMappingJpaTest {
         mapping.specificationFor(requestFromUri("http://fizz.com?param=buzz$something|else"));
     assertThat(repository.findAll(spec)).isEqualTo(List.of(entity));
   }
+
+  @Test
+  void specificationFor_tokenIndex() {
+    QuestionnaireEntity clinic = questionnaireEntity("x", "venue", "Clinics", "123");
+    QuestionnaireEntity other = questionnaireEntity("y", "venue", "something", "456");
+    QuestionnaireEntity focus = questionnaireEntity("z", "focus", "clinics", "123");
+    questionnaireRepository.saveAll(List.of(clinic, other, focus));
+    CompositeMapping<QuestionnaireEntity> mapping =
+        CompositeMapping.<QuestionnaireEntity>builder()
+            .parameterName("param")
+            .fieldName("contextTypeValue")
+            .tokensFieldName("contextTypeValueTokens")
+            .build();
+    assertThat(
+            questionnaireRepository.findAll(
+                mapping.specificationFor(
+                    requestFromUri("http://fizz.com?param=venue$clinics|123"))))
+        .containsExactly(clinic);
+    assertThat(
+            questionnaireRepository.findAll(
+                mapping.specificationFor(requestFromUri("http://fizz.com?param=venue$456"))))
+        .containsExactly(other);
+    assertThat(
+            questionnaireRepository.findAll(
+                mapping.specificationFor(
+                    requestFromUri("http://fizz.com?param=venue$clinics|,focus$123"))))
+        .containsExactlyInAnyOrder(clinic, focus);
+  }
 }
@@ -71,4 +71,26 @@ public class CompositeMappingTest {
     // no value system
     assertThat(join).doesNotContain(addTerminators("venue$|123"));
   }
+
+  @Test
+  void useContextValueTokens() {
+    assertThat(
+            CompositeMapping.useContextValueTokens(
+                questionnaireWithUseContext("uct", "Venue", "Clinics", "123")))
+        .extracting(UseContextToken::token)
+        .containsExactlyInAnyOrder("venue$clinics|123", "venue$clinics|", "venue$123");
+    assertThat(
+            CompositeMapping.useContextValueTokens(
+                questionnaireWithUseContext("uct", "venue", null, "123")))
+        .extracting(UseContextToken::token)
+        .containsExactlyInAnyOrder("venue$|123", "venue$123");
+    assertThat(
+            CompositeMapping.useContextValueTokens(
+                questionnaireWithUseContext("uct", null, "clinics", "123")))
+        .isEmpty();
+    assertThat(
+            CompositeMapping.useContextValueTokens(
+                questionnaireWithUseContext("uct", "venue", null, null)))
+        .isEmpty();
+  }
 }
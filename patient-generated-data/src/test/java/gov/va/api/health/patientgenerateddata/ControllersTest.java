@@ -1,6 +1,10 @@
 package gov.va.api.health.patientgenerateddata;
 
 import static gov.va.api.health.patientgenerateddata.Controllers.checkRequestState;
+import static gov.va.api.health.patientgenerateddata.Controllers.eTag;
+import static gov.va.api.health.patientgenerateddata.Controllers.generateTimeOrderedId;
+import static gov.va.api.health.patientgenerateddata.Controllers.ifMatchVersion;
+import static gov.va.api.health.patientgenerateddata.Controllers.notModified;
 import static gov.va.api.health.patientgenerateddata.Controllers.parseDateTime;
 import static gov.va.api.health.patientgenerateddata.Controllers.resourceId;
 import static gov.va.api.health.patientgenerateddata.Controllers.resourceType;
@@ -11,10 +15,12 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import gov.va.api.health.r4.api.elements.Reference;
 import java.time.format.DateTimeParseException;
+import java.util.UUID;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.http.ResponseEntity;
 
 public class ControllersTest {
   @Test
@@ -37,6 +43,31 @@ public class ControllersTest {
     assertThat(parseDateTime(" ")).isNull();
   }
 
+  @Test
+  void eTags() {
+    assertThat(eTag(ResponseEntity.ok(), 3).build().getHeaders().getETag()).isEqualTo("W/\"3\"");
+    assertThat(eTag(ResponseEntity.ok(), null).build().getHeaders().getETag()).isNull();
+  }
+
+  @Test
+  void ifMatchVersion_any() {
+    assertThat(ifMatchVersion(null)).isNull();
+    assertThat(ifMatchVersion(" ")).isNull();
+    assertThat(ifMatchVersion("*")).isNull();
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"3", "W/3", "W/\"\"", "\"x\"", "\"2\", \"3\"", "\"12345678901\""})
+  void ifMatchVersion_invalid(String ifMatch) {
+    assertThrows(Exceptions.BadRequest.class, () -> ifMatchVersion(ifMatch));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"W/\"3\"", "\"3\"", " W/\"3\" "})
+  void ifMatchVersion_valid(String ifMatch) {
+    assertThat(ifMatchVersion(ifMatch)).isEqualTo(3);
+  }
+
   @ParameterizedTest
   @ValueSource(
       strings = {
@@ -53,6 +84,22 @@ public class ControllersTest {
         .isThrownBy(() -> parseDateTime(datetime));
   }
 
+  @ParameterizedTest
+  @ValueSource(strings = {"W/\"3\"", "\"3\"", "*", "\"2\", W/\"3\"", " W/\"1\",W/\"3\" "})
+  void notModified_match(String ifNoneMatch) {
+    assertThat(notModified(ifNoneMatch, 3)).isTrue();
+  }
+
+  @Test
+  void notModified_noMatch() {
+    assertThat(notModified(null, 3)).isFalse();
+    assertThat(notModified("", 3)).isFalse();
+    assertThat(notModified("W/\"3\"", null)).isFalse();
+    assertThat(notModified("W/\"2\"", 3)).isFalse();
+    assertThat(notModified("W/\"33\", \"4\"", 3)).isFalse();
+    assertThat(notModified("3", 3)).isFalse();
+  }
+
   @Test
   void resourceId_null() {
     assertThat(resourceId(Reference.builder().build())).isNull();
@@ -100,6 +147,29 @@ public class ControllersTest {
             "For resource x, request source foo is not authorized to update original source bar");
   }
 
+  @Test
+  void sourceUnknown() {
+    Throwable ex = assertThrows(Exceptions.Forbidden.class, () -> validateSource("x", "foo", null));
+    assertThat(ex.getMessage())
+        .isEqualTo(
+            "For resource x, request source foo is not authorized, original source is unknown");
+  }
+
+  @Test
+  @SneakyThrows
+  void timeOrderedIds() {
+    long before = System.currentTimeMillis();
+    String first = generateTimeOrderedId();
+    Thread.sleep(2);
+    String second = generateTimeOrderedId();
+    long after = System.currentTimeMillis();
+    UUID uuid = UUID.fromString(first);
+    assertThat(uuid.version()).isEqualTo(7);
+    assertThat(uuid.variant()).isEqualTo(2);
+    assertThat(uuid.getMostSignificantBits() >>> 16).isBetween(before, after);
+    assertThat(first).hasSize(36).isLessThan(second);
+  }
+
   @Test
   void validDates() {
     // Year
@@ -0,0 +1,36 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class CursorMappingJpaTest {
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired FooRepository repository;
+
+  @Test
+  void specificationFor_seeksPastCursor() {
+    jdbc.execute("create table app.foo (id varchar, val varchar)");
+    FooEntity a = FooEntity.builder().id("a").val("1").build();
+    FooEntity b = FooEntity.builder().id("b").val("2").build();
+    FooEntity c = FooEntity.builder().id("c").val("3").build();
+    repository.saveAll(List.of(c, a, b));
+    CursorMapping<FooEntity> mapping =
+        CursorMapping.<FooEntity>builder().parameterName("_cursor").fieldName("id").build();
+    Specification<FooEntity> spec =
+        mapping.specificationFor(
+            requestFromUri("http://fizz.com?_cursor=" + CursorMapping.encode("a")));
+    assertThat(repository.findAll(spec, Sort.by("id"))).isEqualTo(List.of(b, c));
+  }
+}
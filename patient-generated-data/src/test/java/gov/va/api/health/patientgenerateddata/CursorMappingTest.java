@@ -0,0 +1,37 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+public class CursorMappingTest {
+  CursorMapping<FooEntity> mapping =
+      CursorMapping.<FooEntity>builder().parameterName("_cursor").fieldName("id").build();
+
+  @Test
+  void decode_invalid() {
+    assertThrows(Exceptions.BadRequest.class, () -> CursorMapping.decode("not base64!"));
+    assertThrows(Exceptions.BadRequest.class, () -> CursorMapping.decode(""));
+  }
+
+  @Test
+  void encode_roundTrip() {
+    String cursor = CursorMapping.encode("5f1d2a3b-0000-4000-8000-000000000000");
+    assertThat(cursor).doesNotContain("=", "+", "/");
+    assertThat(CursorMapping.decode(cursor)).isEqualTo("5f1d2a3b-0000-4000-8000-000000000000");
+  }
+
+  @Test
+  void specificationFor() {
+    assertThat(mapping.specificationFor(requestFromUri("http://fizz.com?_cursor="))).isNull();
+    assertThat(
+            mapping.specificationFor(
+                requestFromUri("http://fizz.com?_cursor=" + CursorMapping.encode("x"))))
+        .isNotNull();
+    assertThrows(
+        Exceptions.BadRequest.class,
+        () -> mapping.specificationFor(requestFromUri("http://fizz.com?_cursor=%%%")));
+  }
+}
@@ -7,6 +7,7 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
 import gov.va.api.health.r4.api.bundle.AbstractBundle;
 import gov.va.api.health.r4.api.bundle.AbstractEntry;
 import gov.va.api.health.r4.api.bundle.BundleLink;
@@ -16,7 +17,9 @@ import gov.va.api.health.r4.api.elements.Extension;
 import gov.va.api.health.r4.api.elements.Meta;
 import gov.va.api.health.r4.api.elements.Reference;
 import gov.va.api.health.r4.api.resources.Resource;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 import lombok.Builder;
 import lombok.Data;
@@ -107,6 +110,54 @@ public class IncludesIcnMajigTest {
     verifyNoMoreInteractions(mockHeaders);
   }
 
+  @Test
+  void icnHeadersArePresentForRawPayloads() {
+    ServerHttpResponse mockResponse = mock(ServerHttpResponse.class);
+    HttpHeaders mockHeaders = mock(HttpHeaders.class);
+    when(mockResponse.getHeaders()).thenReturn(mockHeaders);
+    RawResource p1 = new RawResource("FakeResource", "1", "{}", List.of("p1"));
+    RawResource none = new RawResource("FakeResource", "2", "{}", List.of());
+    new FakeMajg().beforeBodyWrite(none, null, null, null, null, mockResponse);
+    verify(mockHeaders).add("X-VA-INCLUDES-ICN", "NONE");
+    var bundle =
+        RawBundle.builder()
+            .entry(
+                List.of(
+                    RawBundle.Entry.builder().resource(p1).build(),
+                    RawBundle.Entry.builder().resource(none).build(),
+                    RawBundle.Entry.builder().resource(p1).build()))
+            .build();
+    new FakeMajg().beforeBodyWrite(bundle, null, null, null, null, mockResponse);
+    verify(mockHeaders).add("X-VA-INCLUDES-ICN", "p1");
+    RawResource p2 = new RawResource("FakeResource", "3", "{}", List.of("p2"));
+    var batch =
+        BatchBundle.builder()
+            .entry(
+                List.of(
+                    BatchBundle.Entry.builder().resource(p2).build(),
+                    BatchBundle.Entry.builder().build()))
+            .build();
+    new FakeMajg().beforeBodyWrite(batch, null, null, null, null, mockResponse);
+    verify(mockHeaders).add("X-VA-INCLUDES-ICN", "p2");
+    var streaming =
+        StreamingRawBundle.<QuestionnaireResponseEntity>builder()
+            .entities(
+                new ArrayList<>(
+                    List.of(
+                        QuestionnaireResponseEntity.builder()
+                            .id("4")
+                            .payload("{\"subject\":{\"reference\":\"Patient/p3\"}}")
+                            .build(),
+                        QuestionnaireResponseEntity.builder().id("5").payload("{}").build())))
+            .linkProperties(
+                LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build())
+            .toRawResource(e -> RawResource.of(e, "http://foo.com/r4", Set.of("subject")))
+            .toIcns(e -> RawResource.icns(e, Set.of("subject")))
+            .build();
+    new FakeMajg().beforeBodyWrite(streaming, null, null, null, null, mockResponse);
+    verify(mockHeaders).add("X-VA-INCLUDES-ICN", "p3");
+  }
+
   @Test
   void supportedAcceptsResourceOrResourceBundle() {
     MethodParameter supportedResource = mock(MethodParameter.class);
@@ -115,6 +166,18 @@ public class IncludesIcnMajigTest {
     MethodParameter supportedResourceBundle = mock(MethodParameter.class);
     doReturn(FakeBundle.class).when(supportedResourceBundle).getParameterType();
     assertThat(new FakeMajg().supports(supportedResourceBundle, null)).isTrue();
+    MethodParameter supportedRawResource = mock(MethodParameter.class);
+    doReturn(RawResource.class).when(supportedRawResource).getParameterType();
+    assertThat(new FakeMajg().supports(supportedRawResource, null)).isTrue();
+    MethodParameter supportedRawBundle = mock(MethodParameter.class);
+    doReturn(RawBundle.class).when(supportedRawBundle).getParameterType();
+    assertThat(new FakeMajg().supports(supportedRawBundle, null)).isTrue();
+    MethodParameter supportedStreamingRawBundle = mock(MethodParameter.class);
+    doReturn(StreamingRawBundle.class).when(supportedStreamingRawBundle).getParameterType();
+    assertThat(new FakeMajg().supports(supportedStreamingRawBundle, null)).isTrue();
+    MethodParameter supportedBatchBundle = mock(MethodParameter.class);
+    doReturn(BatchBundle.class).when(supportedBatchBundle).getParameterType();
+    assertThat(new FakeMajg().supports(supportedBatchBundle, null)).isTrue();
     MethodParameter unsupportedResource = mock(MethodParameter.class);
     doReturn(String.class).when(unsupportedResource).getParameterType();
     assertThat(new FakeMajg().supports(unsupportedResource, null)).isFalse();
@@ -0,0 +1,49 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class JobLocksJpaTest {
+  static final Instant NOW = Instant.parse("2021-01-01T00:00:00Z");
+
+  static final Duration LEASE = Duration.ofMinutes(10);
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Test
+  void expiredLeaseIsTakenOver() {
+    JobLocks one = new JobLocks(jdbc, "one");
+    JobLocks two = new JobLocks(jdbc, "two");
+    assertThat(one.lock("archive-purge", NOW, LEASE)).isTrue();
+    assertThat(two.lock("archive-purge", NOW.plus(LEASE).minusSeconds(1), LEASE)).isFalse();
+    assertThat(two.lock("archive-purge", NOW.plus(LEASE), LEASE)).isTrue();
+    assertThat(one.lock("archive-purge", NOW.plus(LEASE), LEASE)).isFalse();
+  }
+
+  @Test
+  void lockIsHeldByOneInstance() {
+    JobLocks one = new JobLocks(jdbc, "one");
+    JobLocks two = new JobLocks(jdbc, "two");
+    assertThat(one.lock("archive-purge", NOW, LEASE)).isTrue();
+    assertThat(two.lock("archive-purge", NOW, LEASE)).isFalse();
+    assertThat(one.lock("archive-purge", NOW.plusSeconds(60), LEASE)).isTrue();
+    two.unlock("archive-purge");
+    assertThat(two.lock("archive-purge", NOW, LEASE)).isFalse();
+    one.unlock("archive-purge");
+    assertThat(two.lock("archive-purge", NOW, LEASE)).isTrue();
+  }
+
+  @Test
+  void unknownLock() {
+    assertThat(new JobLocks(jdbc, "one").lock("nope", NOW, LEASE)).isFalse();
+  }
+}
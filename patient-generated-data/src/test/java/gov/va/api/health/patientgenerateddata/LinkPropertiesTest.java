@@ -1,5 +1,6 @@
 package gov.va.api.health.patientgenerateddata;
 
+import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -45,6 +46,32 @@ public class LinkPropertiesTest {
         () -> LinkProperties.builder().baseUrl("/").r4BasePath("x").build());
   }
 
+  @Test
+  void searchTotal() {
+    LinkProperties pageLinks =
+        LinkProperties.builder().baseUrl("http://va.gov").r4BasePath("r4").build();
+    assertThat(pageLinks.searchTotal(requestFromUri("http://va.gov/r4/Foo")))
+        .isEqualTo(SearchTotal.accurate);
+    assertThat(pageLinks.searchTotal(requestFromUri("http://va.gov/r4/Foo?_total=NONE")))
+        .isEqualTo(SearchTotal.none);
+    assertThat(pageLinks.searchTotal(requestFromUri("http://va.gov/r4/Foo?_total=estimate")))
+        .isEqualTo(SearchTotal.estimate);
+    assertThat(
+            pageLinks.searchTotal(requestFromUri("http://va.gov/r4/Foo?_cursor=YQ&_total=accurate")))
+        .isEqualTo(SearchTotal.none);
+    assertThrows(
+        Exceptions.BadRequest.class,
+        () -> pageLinks.searchTotal(requestFromUri("http://va.gov/r4/Foo?_total=nope")));
+    LinkProperties estimating =
+        LinkProperties.builder()
+            .baseUrl("http://va.gov")
+            .r4BasePath("r4")
+            .defaultTotal("estimate")
+            .build();
+    assertThat(estimating.searchTotal(requestFromUri("http://va.gov/r4/Foo")))
+        .isEqualTo(SearchTotal.estimate);
+  }
+
   @Test
   void unset() {
     assertThrows(
@@ -9,31 +9,42 @@ import static gov.va.api.health.patientgenerateddata.questionnaireresponse.Sampl
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.va.api.health.patientgenerateddata.observation.ObservationController;
-import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
 import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
 import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
 import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
 import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivePurgeStatus;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivePurger;
 import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivedQuestionnaireResponseEntity;
 import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivedQuestionnaireResponseRepository;
 import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
-import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
 import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Stream;
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 public class ManagementControllerTest {
   private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
@@ -41,31 +52,57 @@ public class ManagementControllerTest {
   LinkProperties linkProperties =
       LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
 
-  Sourcerer sourcerer = new Sourcerer("{}", "sat");
-
   ObservationRepository observationRepo = mock(ObservationRepository.class);
 
   QuestionnaireRepository questionnaireRepo = mock(QuestionnaireRepository.class);
 
+  ArchivePurger archivePurger = mock(ArchivePurger.class);
+
   ArchivedQuestionnaireResponseRepository archivedQuestionnaireResponseRepository =
       mock(ArchivedQuestionnaireResponseRepository.class);
 
   QuestionnaireResponseRepository questionnaireResponseRepo =
       mock(QuestionnaireResponseRepository.class);
 
+  @SneakyThrows
+  private static List<String> ids(StreamingResponseBody body) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    body.writeTo(out);
+    return List.of(MAPPER.readValue(out.toByteArray(), String[].class));
+  }
+
   static Stream<String> invalid_formats_strings() {
     return Stream.of("", " ", null);
   }
 
   private ManagementController _controller() {
-    return new ManagementController(
-        new ObservationController(linkProperties, observationRepo, sourcerer),
-        new QuestionnaireController(linkProperties, questionnaireRepo, sourcerer),
-        new QuestionnaireResponseController(
+    EntityManager entityManager = mock(EntityManager.class);
+    ObservationController observationController =
+        TestControllers.observationController(entityManager, linkProperties, observationRepo);
+    QuestionnaireController questionnaireController =
+        TestControllers.questionnaireController(entityManager, linkProperties, questionnaireRepo);
+    QuestionnaireResponseController questionnaireResponseController =
+        TestControllers.questionnaireResponseController(
+            entityManager,
             linkProperties,
             archivedQuestionnaireResponseRepository,
-            questionnaireResponseRepo,
-            sourcerer));
+            questionnaireResponseRepo);
+    return new ManagementController(
+        archivePurger,
+        NdjsonImporter.builder()
+            .sourcerer(TestControllers.SOURCERER)
+            .validator(Validation.buildDefaultValidatorFactory().getValidator())
+            .observationController(observationController)
+            .observationRepository(observationRepo)
+            .questionnaireController(questionnaireController)
+            .questionnaireRepository(questionnaireRepo)
+            .questionnaireResponseController(questionnaireResponseController)
+            .questionnaireResponseRepository(questionnaireResponseRepo)
+            .batchSize(2)
+            .build(),
+        observationController,
+        questionnaireController,
+        questionnaireResponseController);
   }
 
   @Test
@@ -118,6 +155,7 @@ public class ManagementControllerTest {
   @Test
   @SneakyThrows
   void create_questionnaire_duplicate() {
+    when(questionnaireRepo.findVersionById("x")).thenReturn(Optional.of(0));
     when(questionnaireRepo.findById("x"))
         .thenReturn(
             Optional.of(
@@ -129,6 +167,30 @@ public class ManagementControllerTest {
         Exceptions.AlreadyExists.class, () -> _controller().create(questionnaire(), "Bearer sat"));
   }
 
+  @ParameterizedTest
+  @ValueSource(strings = {"Observation", "Questionnaire", "QuestionnaireResponse"})
+  @SneakyThrows
+  void importNdjson(String resourceType) {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setContent(
+        ("{\"resourceType\":\"" + resourceType + "\",\"id\":\"x1\"}\n")
+            .getBytes(StandardCharsets.UTF_8));
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    ManagementController controller = _controller();
+    switch (resourceType) {
+      case "Observation":
+        controller.importObservations("Bearer sat", request, response);
+        break;
+      case "Questionnaire":
+        controller.importQuestionnaires("Bearer sat", request, response);
+        break;
+      default:
+        controller.importQuestionnaireResponses("Bearer sat", request, response);
+    }
+    assertThat(response.getContentType()).isEqualTo("application/x-ndjson");
+    assertThat(response.getContentAsString()).startsWith("{\"line\":1,\"id\":\"x1\"");
+  }
+
   @ParameterizedTest
   @MethodSource("invalid_formats_strings")
   void invalid_formats(String id) {
@@ -137,89 +199,60 @@ public class ManagementControllerTest {
   }
 
   @Test
-  @SneakyThrows
   void observationIds() {
-    when(observationRepo.findAll())
-        .thenReturn(
-            List.of(
-                ObservationEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(observation("x1")))
-                    .build(),
-                ObservationEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(observation("x2")))
-                    .build(),
-                ObservationEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(observation("x3")))
-                    .build()));
-    assertThat(_controller().observationIds()).isEqualTo(List.of("x1", "x2", "x3"));
+    when(observationRepo.findIdsAfter("", null, PageRequest.of(0, 1000)))
+        .thenReturn(List.of("x1", "x2", "x3"));
+    assertThat(ids(_controller().observationIds(null, null, null).getBody()))
+        .isEqualTo(List.of("x1", "x2", "x3"));
+  }
+
+  @Test
+  void observationIds_badRequest() {
+    assertThrows(
+        Exceptions.BadRequest.class, () -> _controller().observationIds(null, "nope", null));
+    assertThrows(Exceptions.BadRequest.class, () -> _controller().observationIds(null, null, -1));
+  }
+
+  @Test
+  void observationIds_chunked() {
+    Instant since = Instant.parse("2021-01-01T00:00:00Z");
+    when(observationRepo.findIdsAfter("x0", since, PageRequest.of(0, 2)))
+        .thenReturn(List.of("x1", "x2"));
+    assertThat(ids(_controller().observationIds("x0", "2021-01-01T00:00:00Z", 2).getBody()))
+        .isEqualTo(List.of("x1", "x2"));
+    IdStreamer.IdFinder finder =
+        (after, lastUpdatedSince, count) ->
+            after == null ? List.of("x1", "x2") : after.equals("x2") ? List.of("x3") : List.of();
+    assertThat(ids(IdStreamer.builder().finder(finder).chunkSize(2).build()))
+        .isEqualTo(List.of("x1", "x2", "x3"));
   }
 
   @Test
-  @SneakyThrows
   void purgeArchives() {
-    when(archivedQuestionnaireResponseRepository.findAll())
-        .thenReturn(
-            List.of(
-                ArchivedQuestionnaireResponseEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x1")))
-                    .deletionTimestamp(Instant.now())
-                    .build(),
-                ArchivedQuestionnaireResponseEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x2")))
-                    .deletionTimestamp(ZonedDateTime.now().minusYears(6).toInstant())
-                    .build(),
-                ArchivedQuestionnaireResponseEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x3")))
-                    .deletionTimestamp(ZonedDateTime.now().minusYears(2).toInstant())
-                    .build()));
-    assertThat(_controller().purgeArchives()).isEqualTo(List.of(questionnaireResponse("x2").id()));
+    ArchivePurgeStatus status = ArchivePurgeStatus.builder().running(true).build();
+    when(archivePurger.status()).thenReturn(status);
+    ResponseEntity<ArchivePurgeStatus> response = _controller().purgeArchives();
+    verify(archivePurger).start();
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+    assertThat(response.getHeaders().getFirst(HttpHeaders.CONTENT_LOCATION))
+        .isEqualTo("/management/archive/r4/purge/status");
+    assertThat(response.getBody()).isEqualTo(status);
+    assertThat(_controller().purgeArchivesStatus()).isEqualTo(status);
   }
 
   @Test
-  @SneakyThrows
   void questionnaireIds() {
-    when(questionnaireRepo.findAll())
-        .thenReturn(
-            List.of(
-                QuestionnaireEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(questionnaire("x1")))
-                    .build(),
-                QuestionnaireEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(questionnaire("x2")))
-                    .build(),
-                QuestionnaireEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(questionnaire("x3")))
-                    .build()));
-    assertThat(_controller().questionnaireIds()).isEqualTo(List.of("x1", "x2", "x3"));
+    when(questionnaireRepo.findIdsAfter("", null, PageRequest.of(0, 1000)))
+        .thenReturn(List.of("x1", "x2", "x3"));
+    assertThat(ids(_controller().questionnaireIds(null, null, null).getBody()))
+        .isEqualTo(List.of("x1", "x2", "x3"));
   }
 
   @Test
-  @SneakyThrows
   void questionnaireResponseIds() {
-    when(questionnaireResponseRepo.findAll())
-        .thenReturn(
-            List.of(
-                QuestionnaireResponseEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x1")))
-                    .build(),
-                QuestionnaireResponseEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x2")))
-                    .build(),
-                QuestionnaireResponseEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x3")))
-                    .build()));
-    assertThat(_controller().questionnaireResponseIds()).isEqualTo(List.of("x1", "x2", "x3"));
+    when(questionnaireResponseRepo.findIdsAfter("", null, PageRequest.of(0, 1000)))
+        .thenReturn(List.of("x1", "x2", "x3"));
+    assertThat(ids(_controller().questionnaireResponseIds(null, null, null).getBody()))
+        .isEqualTo(List.of("x1", "x2", "x3"));
   }
 }
@@ -0,0 +1,56 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Collections;
+import javax.servlet.http.HttpServletRequest;
+import lombok.SneakyThrows;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class NdjsonFormatFilterTest {
+  @SneakyThrows
+  private static HttpServletRequest filtered(MockHttpServletRequest request) {
+    MockFilterChain chain = new MockFilterChain();
+    new NdjsonFormatFilter().doFilter(request, new MockHttpServletResponse(), chain);
+    return (HttpServletRequest) chain.getRequest();
+  }
+
+  @ParameterizedTest
+  @CsvSource(
+      value = {
+        "GET, , , ",
+        "GET, json, , json",
+        "GET, ndjson, , ndjson",
+        "GET, application/fhir+ndjson, , ndjson",
+        "GET, application/fhir ndjson, , ndjson",
+        "GET, application/x-ndjson, , ndjson",
+        "GET, , application/fhir+ndjson, ndjson",
+        "GET, , 'application/json;q=0.5, application/ndjson', ndjson",
+        "GET, , application/fhir+json, ",
+        "GET, , not a media type, ",
+        "GET, json, application/fhir+ndjson, json",
+        "POST, ndjson, , ndjson",
+        "POST, , application/fhir+ndjson, "
+      })
+  void format(String method, String format, String accept, String expected) {
+    MockHttpServletRequest request = new MockHttpServletRequest(method, "/r4/Observation");
+    request.addParameter("subject", "p1");
+    if (format != null) {
+      request.addParameter("_format", format);
+    }
+    if (accept != null) {
+      request.addHeader("Accept", accept);
+    }
+    HttpServletRequest actual = filtered(request);
+    assertThat(actual.getParameter("_format")).isEqualTo(expected);
+    assertThat(actual.getParameterMap().get("subject")).containsExactly("p1");
+    if ("ndjson".equals(expected)) {
+      assertThat(actual.getParameterValues("_format")).containsExactly("ndjson");
+      assertThat(Collections.list(actual.getParameterNames())).contains("subject", "_format");
+    }
+  }
+}
@@ -0,0 +1,167 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import javax.validation.Validation;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+
+public class NdjsonImporterTest {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  static final Instant NOW = Instant.parse("2021-01-01T01:00:00.001Z");
+
+  LinkProperties linkProperties =
+      LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
+
+  ObservationRepository observationRepo = mock(ObservationRepository.class);
+
+  QuestionnaireRepository questionnaireRepo = mock(QuestionnaireRepository.class);
+
+  QuestionnaireResponseRepository questionnaireResponseRepo =
+      mock(QuestionnaireResponseRepository.class);
+
+  private static String observation(String id) {
+    return "{\"resourceType\":\"Observation\",\"id\":\""
+        + id
+        + "\",\"status\":\"final\",\"code\":{\"text\":\"code\"},"
+        + "\"subject\":{\"reference\":\"Patient/p1\"},"
+        + "\"effectiveDateTime\":\"2021-01-01T00:00:00Z\"}";
+  }
+
+  NdjsonImporter _importer(int batchSize) {
+    EntityManager entityManager = mock(EntityManager.class);
+    return NdjsonImporter.builder()
+        .sourcerer(TestControllers.SOURCERER)
+        .validator(Validation.buildDefaultValidatorFactory().getValidator())
+        .observationController(
+            TestControllers.observationController(entityManager, linkProperties, observationRepo))
+        .observationRepository(observationRepo)
+        .questionnaireController(
+            TestControllers.questionnaireController(
+                entityManager, linkProperties, questionnaireRepo))
+        .questionnaireRepository(questionnaireRepo)
+        .questionnaireResponseController(
+            TestControllers.questionnaireResponseController(
+                entityManager, linkProperties, questionnaireResponseRepo))
+        .questionnaireResponseRepository(questionnaireResponseRepo)
+        .batchSize(batchSize)
+        .build();
+  }
+
+  @Test
+  void batchSizeIsLimited() {
+    assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> _importer(0));
+    assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> _importer(2001));
+  }
+
+  @SneakyThrows
+  private List<JsonNode> importObservations(NdjsonImporter importer, String... lines) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    importer.importObservations(
+        "Bearer sat",
+        new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)),
+        out,
+        NOW);
+    List<JsonNode> outcomes = new ArrayList<>();
+    for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+      outcomes.add(MAPPER.readTree(line));
+    }
+    return outcomes;
+  }
+
+  @Test
+  void outcomes() {
+    when(observationRepo.findExistingIds(Set.of("x1", "x2"))).thenReturn(List.of("x2"));
+    List<JsonNode> outcomes =
+        importObservations(
+            _importer(3),
+            observation("x1"),
+            observation("x2"),
+            "",
+            observation("x1"),
+            "{\"resourceType\":\"Observation\",\"id\":\"x3\"}",
+            "{\"id\":",
+            "{\"resourceType\":\"Observation\",\"status\":\"final\"}");
+    assertThat(outcomes)
+        .extracting(o -> o.get("line").asInt() + " " + o.get("status").asText())
+        .containsExactly(
+            "1 created", "2 exists", "4 duplicate", "5 invalid", "6 invalid", "7 invalid");
+    assertThat(outcomes.get(3).get("diagnostics").asText()).contains("status");
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ObservationEntity>> saved = ArgumentCaptor.forClass(List.class);
+    verify(observationRepo, times(2)).saveAll(saved.capture());
+    assertThat(saved.getAllValues().get(0)).extracting(ObservationEntity::id).containsExactly("x1");
+    assertThat(saved.getAllValues().get(1)).isEmpty();
+    assertThat(saved.getAllValues().get(0).get(0).deserializePayload().meta().source())
+        .isEqualTo("https://api.va.gov/services/pgd/static-access");
+  }
+
+  @Test
+  void saveFailureIsReportedForTheChunk() {
+    when(observationRepo.saveAll(anyList()))
+        .thenThrow(new DataIntegrityViolationException("nope"))
+        .thenReturn(List.of());
+    List<JsonNode> outcomes =
+        importObservations(_importer(2), observation("x1"), observation("x2"), observation("x3"));
+    assertThat(outcomes)
+        .extracting(o -> o.get("status").asText())
+        .containsExactly("failed", "failed", "created");
+    verify(observationRepo, times(2)).findExistingIds(anyCollection());
+  }
+
+  @Test
+  void unauthorizedSource() {
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(
+            () ->
+                _importer(2)
+                    .importQuestionnaires(
+                        "nope",
+                        new ByteArrayInputStream(new byte[0]),
+                        new ByteArrayOutputStream(),
+                        NOW));
+  }
+
+  @Test
+  void unindexableLineIsInvalid() {
+    List<JsonNode> outcomes =
+        importObservations(
+            _importer(3),
+            observation("x1").replace("2021-01-01", "2021-02-30"),
+            observation("x2"),
+            observation("x3"));
+    assertThat(outcomes)
+        .extracting(o -> o.get("line").asInt() + " " + o.get("status").asText())
+        .containsExactly("1 invalid", "2 created", "3 created");
+    assertThat(outcomes.get(0).get("id").asText()).isEqualTo("x1");
+    assertThat(outcomes.get(0).get("diagnostics").asText()).contains("2021-02-30");
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<ObservationEntity>> saved = ArgumentCaptor.forClass(List.class);
+    verify(observationRepo).saveAll(saved.capture());
+    assertThat(saved.getValue()).extracting(ObservationEntity::id).containsExactly("x2", "x3");
+  }
+}
@@ -0,0 +1,155 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import javax.persistence.EntityManager;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class NdjsonSearchControllerJpaTest {
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired EntityManager entityManager;
+
+  @Autowired ObservationRepository observationRepository;
+
+  @Autowired QuestionnaireRepository questionnaireRepository;
+
+  @Autowired QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  LinkProperties linkProperties =
+      LinkProperties.builder()
+          .defaultPageSize(1)
+          .maxPageSize(1)
+          .baseUrl("http://foo.com")
+          .r4BasePath("r4")
+          .build();
+
+  @SneakyThrows
+  private static String body(ResponseEntity<StreamingResponseBody> response) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    response.getBody().writeTo(out);
+    return out.toString(StandardCharsets.UTF_8);
+  }
+
+  NdjsonSearchController _controller(int maxRows) {
+    return NdjsonSearchController.builder()
+        .entityManager(entityManager)
+        .observationController(
+            TestControllers.observationController(
+                entityManager, linkProperties, observationRepository))
+        .observationRepository(observationRepository)
+        .questionnaireController(
+            TestControllers.questionnaireController(
+                entityManager, linkProperties, questionnaireRepository))
+        .questionnaireRepository(questionnaireRepository)
+        .questionnaireResponseController(
+            TestControllers.questionnaireResponseController(
+                entityManager, linkProperties, questionnaireResponseRepository))
+        .questionnaireResponseRepository(questionnaireResponseRepository)
+        .fetchSize(2)
+        .maxRows(maxRows)
+        .build();
+  }
+
+  @BeforeEach
+  void insertRows() {
+    for (String id : new String[] {"o3", "o1", "o2"}) {
+      insertObservation(id, "p1");
+    }
+    insertObservation("o4", "p2");
+    jdbc.update(
+        "insert into app.Questionnaire (id, payload, version) values (?,?,?)",
+        "q1",
+        "{\"resourceType\":\"Questionnaire\",\"id\":\"q1\"}",
+        0);
+  }
+
+  private void insertObservation(String id, String subject) {
+    jdbc.update(
+        "insert into app.Observation (id, payload, version, subject) values (?,?,?,?)",
+        id,
+        "{\"resourceType\":\"Observation\",\"id\":\""
+            + id
+            + "\",\"subject\":{\"reference\":\"Patient/"
+            + subject
+            + "\"}}",
+        0,
+        subject);
+  }
+
+  @Test
+  void noMatches() {
+    ResponseEntity<StreamingResponseBody> response =
+        _controller(10)
+            .searchObservations(requestFromUri("http://foo.com/r4/Observation?subject=nope"));
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("NONE");
+    assertThat(body(response)).isEmpty();
+  }
+
+  @Test
+  void searchBeyondPageSize() {
+    ResponseEntity<StreamingResponseBody> response =
+        _controller(10)
+            .searchObservations(requestFromUri("http://foo.com/r4/Observation?subject=p1"));
+    assertThat(response.getHeaders().getContentType().toString())
+        .isEqualTo(NdjsonSearchController.NDJSON);
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("p1");
+    assertThat(body(response).split("\n"))
+        .containsExactly(
+            "{\"resourceType\":\"Observation\",\"id\":\"o1\","
+                + "\"subject\":{\"reference\":\"http://foo.com/r4/Patient/p1\"}}",
+            "{\"resourceType\":\"Observation\",\"id\":\"o2\","
+                + "\"subject\":{\"reference\":\"http://foo.com/r4/Patient/p1\"}}",
+            "{\"resourceType\":\"Observation\",\"id\":\"o3\","
+                + "\"subject\":{\"reference\":\"http://foo.com/r4/Patient/p1\"}}");
+  }
+
+  @Test
+  void searchCursor() {
+    String cursor = CursorMapping.encode("o1");
+    ResponseEntity<StreamingResponseBody> response =
+        _controller(10)
+            .searchObservations(
+                requestFromUri("http://foo.com/r4/Observation?subject=p1&_cursor=" + cursor));
+    assertThat(body(response).split("\n")).hasSize(2);
+  }
+
+  @Test
+  void searchQuestionnaires() {
+    ResponseEntity<StreamingResponseBody> response =
+        _controller(10)
+            .searchQuestionnaires(requestFromUri("http://foo.com/r4/Questionnaire?_id=q1"));
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("NONE");
+    assertThat(body(response)).isEqualTo("{\"resourceType\":\"Questionnaire\",\"id\":\"q1\"}\n");
+  }
+
+  @Test
+  void tooManyRows() {
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(
+            () ->
+                _controller(2)
+                    .searchObservations(
+                        requestFromUri("http://foo.com/r4/Observation?subject=p1")));
+  }
+}
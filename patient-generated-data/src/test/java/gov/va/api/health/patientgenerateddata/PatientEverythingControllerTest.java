@@ -0,0 +1,183 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import gov.va.api.health.r4.api.bundle.AbstractEntry;
+import java.util.List;
+import java.util.Set;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+
+public class PatientEverythingControllerTest {
+  LinkProperties linkProperties =
+      LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
+
+  ObservationRepository observationRepo = mock(ObservationRepository.class);
+
+  QuestionnaireRepository questionnaireRepo = mock(QuestionnaireRepository.class);
+
+  QuestionnaireResponseRepository questionnaireResponseRepo =
+      mock(QuestionnaireResponseRepository.class);
+
+  private static QuestionnaireResponseEntity response(String id, String questionnaire) {
+    return QuestionnaireResponseEntity.builder()
+        .id(id)
+        .questionnaire(questionnaire)
+        .payload(
+            "{\"resourceType\":\"QuestionnaireResponse\",\"id\":\""
+                + id
+                + "\",\"subject\":{\"reference\":\"Patient/p1\"}}")
+        .build();
+  }
+
+  PatientEverythingController _controller(int maxResources) {
+    EntityManager entityManager = mock(EntityManager.class);
+    return PatientEverythingController.builder()
+        .linkProperties(linkProperties)
+        .observationController(
+            TestControllers.observationController(entityManager, linkProperties, observationRepo))
+        .observationRepository(observationRepo)
+        .questionnaireController(
+            TestControllers.questionnaireController(
+                entityManager, linkProperties, questionnaireRepo))
+        .questionnaireRepository(questionnaireRepo)
+        .questionnaireResponseController(
+            TestControllers.questionnaireResponseController(
+                entityManager, linkProperties, questionnaireResponseRepo))
+        .questionnaireResponseRepository(questionnaireResponseRepo)
+        .maxResources(maxResources)
+        .executor(MoreExecutors.newDirectExecutorService())
+        .build();
+  }
+
+  @Test
+  void everything() {
+    when(observationRepo.findBySubject(eq("p1"), any()))
+        .thenReturn(
+            List.of(
+                ObservationEntity.builder()
+                    .id("o1")
+                    .payload(
+                        "{\"resourceType\":\"Observation\",\"id\":\"o1\","
+                            + "\"subject\":{\"reference\":\"Patient/p1\"}}")
+                    .build()));
+    when(questionnaireResponseRepo.findByPatient(eq("p1"), any()))
+        .thenReturn(List.of(response("qr1", "q1"), response("qr2", "q1"), response("qr3", null)));
+    when(questionnaireRepo.findAllById(Set.of("q1")))
+        .thenReturn(
+            List.of(
+                QuestionnaireEntity.builder()
+                    .id("q1")
+                    .payload("{\"resourceType\":\"Questionnaire\",\"id\":\"q1\"}")
+                    .build()));
+    ResponseEntity<RawBundle> response = _controller(10).everything("p1");
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("p1");
+    RawBundle bundle = response.getBody();
+    assertThat(bundle.total()).isEqualTo(4);
+    assertThat(bundle.link().get(0).url()).isEqualTo("http://foo.com/r4/Patient/p1/$everything");
+    assertThat(bundle.entry())
+        .extracting(RawBundle.Entry::fullUrl)
+        .containsExactly(
+            "http://foo.com/r4/Observation/o1",
+            "http://foo.com/r4/QuestionnaireResponse/qr1",
+            "http://foo.com/r4/QuestionnaireResponse/qr2",
+            "http://foo.com/r4/QuestionnaireResponse/qr3",
+            "http://foo.com/r4/Questionnaire/q1");
+    assertThat(bundle.entry())
+        .extracting(e -> e.search().mode())
+        .containsExactly(
+            AbstractEntry.SearchMode.match,
+            AbstractEntry.SearchMode.match,
+            AbstractEntry.SearchMode.match,
+            AbstractEntry.SearchMode.match,
+            AbstractEntry.SearchMode.include);
+    assertThat(bundle.entry().get(1).resource().json())
+        .contains("\"reference\":\"http://foo.com/r4/Patient/p1\"");
+  }
+
+  @Test
+  void everythingAuthoredForOtherPatients() {
+    when(questionnaireResponseRepo.findByPatient(eq("p1"), any()))
+        .thenReturn(
+            List.of(
+                QuestionnaireResponseEntity.builder()
+                    .id("qr1")
+                    .questionnaire("q1")
+                    .payload(
+                        "{\"resourceType\":\"QuestionnaireResponse\",\"id\":\"qr1\","
+                            + "\"subject\":{\"reference\":\"Patient/p2\"},"
+                            + "\"author\":{\"reference\":\"Patient/p1\"}}")
+                    .build(),
+                QuestionnaireResponseEntity.builder()
+                    .id("qr2")
+                    .questionnaire("q2")
+                    .payload(
+                        "{\"resourceType\":\"QuestionnaireResponse\",\"id\":\"qr2\","
+                            + "\"subject\":{\"reference\":\"Patient/p3\"},"
+                            + "\"author\":{\"reference\":\"Practitioner/p1\"}}")
+                    .build()));
+    ResponseEntity<RawBundle> response = _controller(10).everything("p1");
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("p2,p1");
+    assertThat(response.getBody().entry())
+        .extracting(RawBundle.Entry::fullUrl)
+        .containsExactly("http://foo.com/r4/QuestionnaireResponse/qr1");
+    verify(questionnaireRepo).findAllById(Set.of("q1"));
+  }
+
+  @Test
+  void everythingEmpty() {
+    ResponseEntity<RawBundle> response = _controller(10).everything("p1");
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("NONE");
+    RawBundle bundle = response.getBody();
+    assertThat(bundle.total()).isEqualTo(0);
+    assertThat(bundle.entry()).isEmpty();
+    verify(questionnaireRepo, never()).findAllById(any());
+  }
+
+  @Test
+  void invalidMaxResources() {
+    assertThatExceptionOfType(IllegalStateException.class).isThrownBy(() -> _controller(0));
+  }
+
+  @Test
+  void tooManyResources() {
+    when(questionnaireResponseRepo.findByPatient(eq("p1"), any()))
+        .thenReturn(List.of(response("qr1", null), response("qr2", null)));
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller(1).everything("p1"));
+  }
+
+  @Test
+  void tooManySelectedResources() {
+    QuestionnaireResponseEntity authoredByPractitioner =
+        QuestionnaireResponseEntity.builder()
+            .id("qr2")
+            .payload(
+                "{\"resourceType\":\"QuestionnaireResponse\",\"id\":\"qr2\","
+                    + "\"subject\":{\"reference\":\"Patient/p2\"},"
+                    + "\"author\":{\"reference\":\"Practitioner/p1\"}}")
+            .build();
+    when(questionnaireResponseRepo.findByPatient(eq("p1"), any()))
+        .thenReturn(List.of(response("qr1", null), authoredByPractitioner));
+    assertThatExceptionOfType(Exceptions.BadRequest.class)
+        .isThrownBy(() -> _controller(1).everything("p1"));
+  }
+}
@@ -0,0 +1,175 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivedQuestionnaireResponseRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest(properties = "payload-compression.enabled=true")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class PayloadCompressionJpaTest {
+  static final Duration LEASE = Duration.ofMinutes(10);
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired TestEntityManager entityManager;
+
+  @Autowired ObservationRepository observationRepository;
+
+  @Autowired QuestionnaireRepository questionnaireRepository;
+
+  @Autowired QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  @Autowired ArchivedQuestionnaireResponseRepository archivedRepository;
+
+  @Test
+  void archiveKeepsCompressedPayload() {
+    jdbc.update(
+        "insert into app.QuestionnaireResponse (id, compressedPayload, version) values (?,?,?)",
+        "qr1",
+        PayloadCompression.compress("{\"id\":\"qr1\"}"),
+        0);
+    assertThat(questionnaireResponseRepository.archive("qr1", null, Instant.EPOCH)).isEqualTo(1);
+    assertThat(archivedRepository.findById("qr1").get().payloadJson())
+        .isEqualTo("{\"id\":\"qr1\"}");
+  }
+
+  private void insertPlain(String table, String id) {
+    jdbc.update(
+        "insert into app." + table + " (id, payload, version) values (?,?,?)",
+        id,
+        "{\"id\":\"" + id + "\"}",
+        0);
+  }
+
+  private PayloadReencoder reencoder(boolean enabled) {
+    return reencoder(enabled, new JobLocks(jdbc, "one"));
+  }
+
+  private PayloadReencoder reencoder(boolean enabled, JobLocks jobLocks) {
+    return new PayloadReencoder(
+        List.of(observationRepository, questionnaireRepository, questionnaireResponseRepository),
+        archivedRepository,
+        jobLocks,
+        enabled,
+        2,
+        10);
+  }
+
+  @Test
+  void reencode() {
+    for (int i = 0; i < 5; i++) {
+      insertPlain("Questionnaire", "q" + i);
+    }
+    insertPlain("Observation", "o1");
+    assertThat(reencoder(true).reencode()).isEqualTo(6);
+    assertThat(
+            jdbc.queryForObject(
+                "select count(*) from app.Questionnaire"
+                    + " where payload is null and compressedPayload is not null",
+                Integer.class))
+        .isEqualTo(5);
+    assertThat(
+            jdbc.queryForObject(
+                "select version from app.Questionnaire where id = 'q3'", Integer.class))
+        .isEqualTo(0);
+    assertThat(questionnaireRepository.findById("q3").get().payloadJson())
+        .isEqualTo("{\"id\":\"q3\"}");
+    assertThat(observationRepository.findById("o1").get().payloadJson())
+        .isEqualTo("{\"id\":\"o1\"}");
+    assertThat(reencoder(true).reencode()).isEqualTo(0);
+  }
+
+  @Test
+  void reencodeArchive() {
+    jdbc.update(
+        "insert into app.ArchivedQuestionnaireResponse (id, payload, deletionTimestamp)"
+            + " values (?,?,?)",
+        "qr1",
+        "{\"id\":\"qr1\"}",
+        Timestamp.from(Instant.EPOCH));
+    assertThat(reencoder(true).reencode()).isEqualTo(1);
+    assertThat(
+            jdbc.queryForObject(
+                "select count(*) from app.ArchivedQuestionnaireResponse"
+                    + " where payload is null and compressedPayload is not null",
+                Integer.class))
+        .isEqualTo(1);
+    assertThat(archivedRepository.findById("qr1").get().payloadJson())
+        .isEqualTo("{\"id\":\"qr1\"}");
+    assertThat(
+            archivedRepository.storeCompressedPayload(
+                "qr1", Instant.EPOCH, PayloadCompression.compress("{}")))
+        .isEqualTo(0);
+  }
+
+  @Test
+  void reencodeDisabled() {
+    insertPlain("Questionnaire", "q1");
+    assertThat(reencoder(false).reencode()).isEqualTo(0);
+    assertThat(questionnaireRepository.findIdsWithUncompressedPayload("", Pageable.unpaged()))
+        .containsExactly("q1");
+  }
+
+  @Test
+  void reencodeLockedElsewhere() {
+    insertPlain("Questionnaire", "q1");
+    assertThat(new JobLocks(jdbc, "two").lock(PayloadReencoder.LOCK, Instant.now(), LEASE))
+        .isTrue();
+    assertThat(reencoder(true).reencode()).isEqualTo(0);
+    assertThat(questionnaireRepository.findIdsWithUncompressedPayload("", Pageable.unpaged()))
+        .containsExactly("q1");
+  }
+
+  @Test
+  void reencodeSkipsRowsUpdatedSinceRead() {
+    insertPlain("Questionnaire", "q1");
+    jdbc.update("update app.Questionnaire set version = 1 where id = 'q1'");
+    assertThat(
+            questionnaireRepository.storeCompressedPayload(
+                "q1", 0, PayloadCompression.compress("{\"id\":\"q1\"}")))
+        .isEqualTo(0);
+    assertThat(questionnaireRepository.findIdsWithUncompressedPayload("", Pageable.unpaged()))
+        .containsExactly("q1");
+    assertThat(reencoder(true).reencode()).isEqualTo(1);
+    assertThat(questionnaireRepository.findIdsWithUncompressedPayload("", Pageable.unpaged()))
+        .isEmpty();
+  }
+
+  @Test
+  void writesAreCompressed() {
+    questionnaireRepository.save(
+        QuestionnaireEntity.builder().id("q1").payload("{\"id\":\"q1\"}").build());
+    entityManager.flush();
+    entityManager.clear();
+    assertThat(
+            jdbc.queryForObject(
+                "select count(*) from app.Questionnaire"
+                    + " where payload is null and compressedPayload is not null",
+                Integer.class))
+        .isEqualTo(1);
+    QuestionnaireEntity entity = questionnaireRepository.findById("q1").get();
+    assertThat(entity.deserializePayload().id()).isEqualTo("q1");
+    entity.payload("{\"id\":\"q1\",\"title\":\"updated\"}");
+    questionnaireRepository.save(entity);
+    entityManager.flush();
+    entityManager.clear();
+    assertThat(questionnaireRepository.findById("q1").get().payload()).isNull();
+    assertThat(questionnaireRepository.findById("q1").get().payloadJson())
+        .isEqualTo("{\"id\":\"q1\",\"title\":\"updated\"}");
+  }
+}
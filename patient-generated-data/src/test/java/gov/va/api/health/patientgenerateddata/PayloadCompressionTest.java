@@ -0,0 +1,72 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.r4.api.resources.Questionnaire;
+import org.junit.jupiter.api.Test;
+
+public class PayloadCompressionTest {
+  private static QuestionnaireEntity entity(String payload) {
+    return QuestionnaireEntity.builder().id("x").payload(payload).build();
+  }
+
+  @Test
+  void compressedPayloadIsRead() {
+    QuestionnaireEntity entity =
+        entity(null).compressedPayload(PayloadCompression.compress("{\"id\":\"compressed\"}"));
+    assertThat(entity.payloadJson()).isEqualTo("{\"id\":\"compressed\"}");
+    assertThat(entity.deserializePayload())
+        .isEqualTo(Questionnaire.builder().id("compressed").build());
+  }
+
+  @Test
+  void invalidCompressedPayload() {
+    QuestionnaireEntity entity = entity(null).compressedPayload(new byte[] {1, 2, 3});
+    assertThrows(Exceptions.InvalidPayload.class, () -> entity.deserializePayload());
+  }
+
+  @Test
+  void listenerDisabledClearsCompressedPayload() {
+    QuestionnaireEntity entity =
+        entity("{\"id\":\"x\"}").compressedPayload(PayloadCompression.compress("{}"));
+    new PayloadCompressionListener(false).encode(entity);
+    assertThat(entity.payload()).isEqualTo("{\"id\":\"x\"}");
+    assertThat(entity.compressedPayload()).isNull();
+  }
+
+  @Test
+  void listenerEnabledCompressesPayload() {
+    QuestionnaireEntity entity = entity("{\"id\":\"x\"}");
+    new PayloadCompressionListener(true).encode(entity);
+    assertThat(entity.payload()).isNull();
+    assertThat(entity.payloadJson()).isEqualTo("{\"id\":\"x\"}");
+  }
+
+  @Test
+  void listenerLeavesUnchangedPayloadsAlone() {
+    byte[] compressed = PayloadCompression.compress("{\"id\":\"x\"}");
+    QuestionnaireEntity entity = entity(null).compressedPayload(compressed);
+    new PayloadCompressionListener(false).encode(entity);
+    assertThat(entity.compressedPayload()).isSameAs(compressed);
+  }
+
+  @Test
+  void plainPayloadIsPreferred() {
+    assertThat(entity("{\"id\":\"x\"}").payloadJson()).isEqualTo("{\"id\":\"x\"}");
+    assertThat(
+            entity("{\"id\":\"new\"}")
+                .compressedPayload(PayloadCompression.compress("{\"id\":\"old\"}"))
+                .payloadJson())
+        .isEqualTo("{\"id\":\"new\"}");
+  }
+
+  @Test
+  void roundTrip() {
+    String json = "{\"id\":\"x\",\"text\":\"café " + "a".repeat(5000) + "\"}";
+    byte[] compressed = PayloadCompression.compress(json);
+    assertThat(compressed.length).isLessThan(json.length() / 10);
+    assertThat(PayloadCompression.decompress(compressed)).isEqualTo(json);
+  }
+}
@@ -0,0 +1,143 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static java.util.stream.Collectors.toSet;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationEntity;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireEntity;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class PayloadRepositoryJpaTest {
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired ObservationRepository observationRepository;
+
+  @Autowired QuestionnaireRepository questionnaireRepository;
+
+  @Autowired QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  @Test
+  void findVersionById() {
+    jdbc.update(
+        "insert into app.Observation (id, payload, version) values (?,?,?)", "o1", "{}", 4);
+    jdbc.update(
+        "insert into app.Questionnaire (id, payload, version) values (?,?,?)", "q1", "{}", 2);
+    jdbc.update(
+        "insert into app.QuestionnaireResponse (id, payload, version) values (?,?,?)",
+        "qr1",
+        "{}",
+        7);
+    assertThat(observationRepository.findVersionById("o1")).isEqualTo(Optional.of(4));
+    assertThat(questionnaireRepository.findVersionById("q1")).isEqualTo(Optional.of(2));
+    assertThat(questionnaireResponseRepository.findVersionById("qr1")).isEqualTo(Optional.of(7));
+    assertThat(questionnaireRepository.findVersionById("nope")).isEmpty();
+  }
+
+  @Test
+  void savedVersion() {
+    QuestionnaireEntity created =
+        QuestionnaireEntity.builder().id("q1").payload("{\"id\":\"q1\"}").build();
+    questionnaireRepository.save(created);
+    assertThat(created.version()).isEqualTo(0);
+    QuestionnaireEntity detached = questionnaireRepository.findById("q1").get();
+    detached.payload("{\"id\":\"q1\",\"title\":\"t\"}");
+    assertThat(questionnaireRepository.save(detached).version()).isEqualTo(1);
+    assertThat(questionnaireRepository.findVersionById("q1")).isEqualTo(Optional.of(1));
+  }
+
+  @Test
+  void updateIfMatch() {
+    questionnaireRepository.save(
+        QuestionnaireEntity.builder().id("q1").payload("{}").metaSource("s").build());
+    QuestionnaireEntity update =
+        QuestionnaireEntity.builder().id("q1").payload("{\"title\":\"t\"}").metaSource("s").build();
+    questionnaireRepository.updateIfMatch(update, 0);
+    assertThat(update.version()).isEqualTo(1);
+    assertThat(questionnaireRepository.findById("q1").get().payloadJson())
+        .isEqualTo("{\"title\":\"t\"}");
+    QuestionnaireEntity unconditional =
+        QuestionnaireEntity.builder().id("q1").payload("{}").metaSource("s").build();
+    questionnaireRepository.updateIfMatch(unconditional, null);
+    assertThat(questionnaireRepository.findVersionById("q1")).isEqualTo(Optional.of(2));
+  }
+
+  @Test
+  void updateIfMatch_notFound() {
+    assertThrows(
+        Exceptions.NotFound.class,
+        () ->
+            questionnaireRepository.updateIfMatch(
+                QuestionnaireEntity.builder().id("q1").payload("{}").metaSource("s").build(),
+                null));
+  }
+
+  @Test
+  void updateIfMatch_replacesTokens() {
+    observationRepository.save(
+        ObservationEntity.builder()
+            .id("o1")
+            .payload("{}")
+            .metaSource("s")
+            .codeTokens(SearchToken.forSystemAndCode("", "a").collect(toSet()))
+            .build());
+    observationRepository.updateIfMatch(
+        ObservationEntity.builder()
+            .id("o1")
+            .payload("{}")
+            .metaSource("s")
+            .codeTokens(SearchToken.forSystemAndCode("", "b").collect(toSet()))
+            .build(),
+        0);
+    assertThat(
+            jdbc.queryForList(
+                "select token from app.ObservationCode where observationId = ?",
+                String.class,
+                "o1"))
+        .containsExactlyInAnyOrder("|b", "b");
+  }
+
+  @Test
+  void updateIfMatch_sourceMismatch() {
+    questionnaireResponseRepository.save(
+        QuestionnaireResponseEntity.builder().id("qr1").payload("{}").metaSource("s").build());
+    assertThrows(
+        Exceptions.Forbidden.class,
+        () ->
+            questionnaireResponseRepository.updateIfMatch(
+                QuestionnaireResponseEntity.builder()
+                    .id("qr1")
+                    .payload("{}")
+                    .metaSource("other")
+                    .build(),
+                0));
+    assertThat(questionnaireResponseRepository.findVersionById("qr1")).isEqualTo(Optional.of(0));
+  }
+
+  @Test
+  void updateIfMatch_versionMismatch() {
+    questionnaireRepository.save(
+        QuestionnaireEntity.builder().id("q1").payload("{}").metaSource("s").build());
+    assertThrows(
+        Exceptions.PreconditionFailed.class,
+        () ->
+            questionnaireRepository.updateIfMatch(
+                QuestionnaireEntity.builder().id("q1").payload("{}").metaSource("s").build(),
+                1));
+    assertThat(questionnaireRepository.findVersionById("q1")).isEqualTo(Optional.of(0));
+  }
+}
@@ -0,0 +1,136 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.r4.api.elements.Reference;
+import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
+import java.util.List;
+import java.util.Set;
+import lombok.SneakyThrows;
+import org.junit.jupiter.api.Test;
+
+public class RawResourceTest {
+  private static final ObjectMapper MAPPER = JacksonMapperConfig.createMapper();
+
+  LinkProperties pageLinks =
+      LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
+
+  private static QuestionnaireResponseEntity entity(String payload) {
+    return QuestionnaireResponseEntity.builder().id("x").payload(payload).build();
+  }
+
+  private static Reference reference(String reference) {
+    return Reference.builder().reference(reference).build();
+  }
+
+  @Test
+  void blankReferencesAreOmitted() {
+    RawResource raw =
+        RawResource.of(
+            entity(
+                "{\"id\":\"x\",\"subject\":{\"reference\":\"\"},"
+                    + "\"author\":{\"reference\":null}}"),
+            pageLinks.r4Url(),
+            Set.of("subject"));
+    assertThat(raw.json()).isEqualTo("{\"id\":\"x\",\"subject\":{},\"author\":{}}");
+    assertThat(raw.icns()).isEmpty();
+  }
+
+  @Test
+  void decimalsAreWrittenAsStored() {
+    RawResource raw =
+        RawResource.of(entity("{\"id\":\"x\",\"value\":1.10}"), pageLinks.r4Url(), Set.of());
+    assertThat(raw.json()).isEqualTo("{\"id\":\"x\",\"value\":1.10}");
+  }
+
+  @Test
+  void icnsMatchOf() {
+    QuestionnaireResponseEntity entity =
+        entity(
+            "{\"id\":\"x\",\"subject\":{\"reference\":\"Patient/p1\"},"
+                + "\"author\":{\"reference\":\"Practitioner/d1\"},"
+                + "\"source\":{\"reference\":\"https://elsewhere.com/fhir/Patient/p2\"}}");
+    Set<String> icnFields = Set.of("subject", "author", "source");
+    assertThat(RawResource.icns(entity, icnFields)).containsExactly("p1", "p2");
+    assertThat(RawResource.icns(entity, icnFields))
+        .isEqualTo(RawResource.of(entity, pageLinks.r4Url(), icnFields).icns());
+    assertThrows(
+        Exceptions.InvalidPayload.class, () -> RawResource.icns(entity("{\"id\":"), icnFields));
+  }
+
+  @Test
+  void invalidPayload() {
+    assertThrows(
+        Exceptions.InvalidPayload.class,
+        () -> RawResource.of(entity("{\"id\":"), pageLinks.r4Url(), Set.of()));
+    assertThrows(
+        Exceptions.InvalidPayload.class,
+        () -> RawResource.of(entity(null), pageLinks.r4Url(), Set.of()));
+  }
+
+  @Test
+  void onlyDirectReferencesOfIcnFieldsAreIcns() {
+    RawResource raw =
+        RawResource.of(
+            entity(
+                "{\"id\":\"x\","
+                    + "\"subject\":{\"identifier\":{\"assigner\":{\"reference\":\"Patient/p3\"}}},"
+                    + "\"author\":{\"reference\":\"Patient/p4\"}}"),
+            pageLinks.r4Url(),
+            Set.of("subject"));
+    assertThat(raw.icns()).isEmpty();
+  }
+
+  @Test
+  @SneakyThrows
+  void sameAsMagicReferenceSerialization() {
+    QuestionnaireResponse qr =
+        QuestionnaireResponse.builder()
+            .id("x")
+            .status(QuestionnaireResponse.Status.completed)
+            .subject(reference("Patient/p1"))
+            .author(reference("/Practitioner/d1"))
+            .source(reference("https://elsewhere.com/fhir/Patient/p2"))
+            .build();
+    RawResource raw =
+        RawResource.of(
+            entity(MAPPER.writeValueAsString(qr)),
+            pageLinks.r4Url(),
+            Set.of("subject", "author", "source"));
+    ObjectMapper magicMapper =
+        new MagicReferenceConfig(pageLinks).configure(JacksonMapperConfig.createMapper());
+    assertThat(MAPPER.readTree(raw.json()))
+        .isEqualTo(MAPPER.readTree(magicMapper.writeValueAsString(qr)));
+    assertThat(raw.resourceType()).isEqualTo("QuestionnaireResponse");
+    assertThat(raw.id()).isEqualTo("x");
+    assertThat(raw.icns()).containsExactly("p1", "p2");
+  }
+
+  @Test
+  @SneakyThrows
+  void serializedWithoutParsing() {
+    RawResource raw =
+        RawResource.of(
+            entity("{\"id\":\"x\",\"subject\":{\"reference\":\"Patient/p1\"}}"),
+            pageLinks.r4Url(),
+            Set.of());
+    RawBundle bundle =
+        RawBundle.builder()
+            .total(1)
+            .entry(
+                List.of(
+                    RawBundle.Entry.builder()
+                        .fullUrl("http://foo.com/r4/QuestionnaireResponse/x")
+                        .resource(raw)
+                        .build()))
+            .build();
+    QuestionnaireResponse.Bundle typed =
+        MAPPER.readValue(MAPPER.writeValueAsString(bundle), QuestionnaireResponse.Bundle.class);
+    assertThat(typed.total()).isEqualTo(1);
+    assertThat(typed.entry().get(0).resource().subject().reference())
+        .isEqualTo("http://foo.com/r4/Patient/p1");
+  }
+}
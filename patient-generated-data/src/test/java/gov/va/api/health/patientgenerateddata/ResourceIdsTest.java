@@ -0,0 +1,33 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+public class ResourceIdsTest {
+  private static int version(String id) {
+    return UUID.fromString(id).version();
+  }
+
+  @Test
+  void configuredPerType() {
+    ResourceIds ids = new ResourceIds(" Observation, QuestionnaireResponse ");
+    assertThat(version(ids.newId("Observation"))).isEqualTo(7);
+    assertThat(version(ids.newId("Questionnaire"))).isEqualTo(4);
+    assertThat(version(ids.newId("QuestionnaireResponse"))).isEqualTo(7);
+    assertThat(version(ids.newId("Patient"))).isEqualTo(4);
+  }
+
+  @Test
+  void noneTimeOrdered() {
+    ResourceIds ids = new ResourceIds("");
+    assertThat(version(ids.newId("Observation"))).isEqualTo(4);
+  }
+
+  @Test
+  void unknownType() {
+    assertThrows(IllegalStateException.class, () -> new ResourceIds("Observation,Obsrvation"));
+  }
+}
@@ -0,0 +1,67 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.mockito.Mockito.mock;
+
+import gov.va.api.health.patientgenerateddata.observation.ObservationController;
+import gov.va.api.health.patientgenerateddata.observation.ObservationRepository;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireCache;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireController;
+import gov.va.api.health.patientgenerateddata.questionnaire.QuestionnaireRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.ArchivedQuestionnaireResponseRepository;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseController;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import javax.persistence.EntityManager;
+
+/** Resource controllers for tests of the controllers built on them. */
+final class TestControllers {
+  static final Sourcerer SOURCERER = new Sourcerer("{}", "sat");
+
+  private TestControllers() {}
+
+  static ObservationController observationController(
+      EntityManager entityManager,
+      LinkProperties linkProperties,
+      ObservationRepository repository) {
+    return new ObservationController(
+        entityManager, new ResourceIds(""), linkProperties, repository, SOURCERER);
+  }
+
+  static QuestionnaireController questionnaireController(
+      EntityManager entityManager,
+      LinkProperties linkProperties,
+      QuestionnaireRepository repository) {
+    return new QuestionnaireController(
+        new QuestionnaireCache(100, new SimpleMeterRegistry()),
+        entityManager,
+        new ResourceIds(""),
+        linkProperties,
+        repository,
+        SOURCERER);
+  }
+
+  static QuestionnaireResponseController questionnaireResponseController(
+      EntityManager entityManager,
+      LinkProperties linkProperties,
+      QuestionnaireResponseRepository repository) {
+    return questionnaireResponseController(
+        entityManager,
+        linkProperties,
+        mock(ArchivedQuestionnaireResponseRepository.class),
+        repository);
+  }
+
+  static QuestionnaireResponseController questionnaireResponseController(
+      EntityManager entityManager,
+      LinkProperties linkProperties,
+      ArchivedQuestionnaireResponseRepository archivedRepository,
+      QuestionnaireResponseRepository repository) {
+    return new QuestionnaireResponseController(
+        entityManager,
+        new ResourceIds(""),
+        linkProperties,
+        archivedRepository,
+        repository,
+        SOURCERER);
+  }
+}
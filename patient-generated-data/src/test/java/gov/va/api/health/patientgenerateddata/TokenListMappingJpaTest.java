@@ -4,6 +4,8 @@ import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri
 import static gov.va.api.health.patientgenerateddata.questionnaireresponse.Samples.questionnaireResponseWithTags;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseEntity;
+import gov.va.api.health.patientgenerateddata.questionnaireresponse.QuestionnaireResponseRepository;
 import java.util.List;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,6 +21,16 @@ public class TokenListMappingJpaTest {
 
   @Autowired FooRepository repository;
 
+  @Autowired QuestionnaireResponseRepository questionnaireResponseRepository;
+
+  private QuestionnaireResponseEntity questionnaireResponseEntity(String id, String... tags) {
+    return QuestionnaireResponseEntity.builder()
+        .id(id)
+        .payload("{}")
+        .metaTagTokens(TokenListMapping.metadataTagTokens(questionnaireResponseWithTags(tags)))
+        .build();
+  }
+
   @Test
   void specificationFor_csv() {
     jdbc.execute("create table app.foo (id varchar, val varchar)");
@@ -65,4 +77,34 @@ public class TokenListMappingJpaTest {
         mapping.specificationFor(requestFromUri("http://fizz.com?param=clinics|123"));
     assertThat(repository.findAll(spec)).isEqualTo(List.of(entity));
   }
+
+  @Test
+  void specificationFor_tokenIndex() {
+    QuestionnaireResponseEntity clinic = questionnaireResponseEntity("x", "Clinics", "123");
+    QuestionnaireResponseEntity other = questionnaireResponseEntity("y", "something", "456");
+    QuestionnaireResponseEntity codeOnly = questionnaireResponseEntity("z", null, "123");
+    questionnaireResponseRepository.saveAll(List.of(clinic, other, codeOnly));
+    TokenListMapping<QuestionnaireResponseEntity> mapping =
+        TokenListMapping.<QuestionnaireResponseEntity>builder()
+            .parameterName("param")
+            .fieldName("metaTag")
+            .tokensFieldName("metaTagTokens")
+            .build();
+    assertThat(
+            questionnaireResponseRepository.findAll(
+                mapping.specificationFor(requestFromUri("http://fizz.com?param=clinics|123"))))
+        .containsExactly(clinic);
+    assertThat(
+            questionnaireResponseRepository.findAll(
+                mapping.specificationFor(requestFromUri("http://fizz.com?param=clinics|,456"))))
+        .containsExactlyInAnyOrder(clinic, other);
+    assertThat(
+            questionnaireResponseRepository.findAll(
+                mapping.specificationFor(requestFromUri("http://fizz.com?param=123"))))
+        .containsExactlyInAnyOrder(clinic, codeOnly);
+    assertThat(
+            questionnaireResponseRepository.findAll(
+                mapping.specificationFor(requestFromUri("http://fizz.com?param=|123"))))
+        .containsExactly(codeOnly);
+  }
 }
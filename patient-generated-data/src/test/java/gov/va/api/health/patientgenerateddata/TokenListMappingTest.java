@@ -74,4 +74,17 @@ public class TokenListMappingTest {
     String join = TokenListMapping.metadataTagJoin(questionnaireResponseWithTags(null, null));
     assertThat(join).isEmpty();
   }
+
+  @Test
+  void metadataTagTokens() {
+    assertThat(
+            TokenListMapping.metadataTagTokens(
+                questionnaireResponseWithTags("Clinics", "123", null, "456")))
+        .extracting(SearchToken::token)
+        .containsExactlyInAnyOrder("clinics|123", "clinics|", "123", "|456", "456");
+    assertThat(TokenListMapping.metadataTagTokens(questionnaireResponseWithTags(null, null)))
+        .isEmpty();
+    assertThat(TokenListMapping.metadataTagTokens(QuestionnaireResponse.builder().build()))
+        .isEmpty();
+  }
 }
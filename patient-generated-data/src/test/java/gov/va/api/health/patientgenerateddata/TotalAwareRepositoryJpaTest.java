@@ -0,0 +1,67 @@
+package gov.va.api.health.patientgenerateddata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class TotalAwareRepositoryJpaTest {
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired EntityManager entityManager;
+
+  @Autowired FooRepository repository;
+
+  private TotalAwareRepository<FooEntity> repository(SearchTotal total) {
+    return TotalAwareRepository.forRepo(repository, FooEntity.class)
+        .entityManager(entityManager)
+        .total(total)
+        .build();
+  }
+
+  private void saveFoos() {
+    jdbc.execute("create table app.foo (id varchar, val varchar)");
+    repository.saveAll(
+        List.of(
+            FooEntity.builder().id("a").val("x").build(),
+            FooEntity.builder().id("b").val("x").build(),
+            FooEntity.builder().id("c").val("x").build(),
+            FooEntity.builder().id("d").val("y").build()));
+  }
+
+  @Test
+  void findAll_accurate() {
+    saveFoos();
+    Page<FooEntity> page =
+        repository(SearchTotal.accurate).findAll(null, PageRequest.of(0, 1, Sort.by("id")));
+    assertThat(page.getContent()).extracting(FooEntity::id).containsExactly("a");
+    assertThat(page.getTotalElements()).isEqualTo(4);
+  }
+
+  @Test
+  void findAll_withoutCount() {
+    saveFoos();
+    Specification<FooEntity> spec =
+        (root, criteriaQuery, criteriaBuilder) -> criteriaBuilder.like(root.get("val"), "x");
+    TotalAwareRepository<FooEntity> estimating = repository(SearchTotal.estimate);
+    Page<FooEntity> first = estimating.findAll(spec, PageRequest.of(0, 2, Sort.by("id")));
+    assertThat(first.getContent()).extracting(FooEntity::id).containsExactly("a", "b");
+    assertThat(first.getTotalElements()).isEqualTo(3);
+    assertThat(first.hasNext()).isTrue();
+    Page<FooEntity> last = estimating.findAll(spec, PageRequest.of(1, 2, Sort.by("id")));
+    assertThat(last.getContent()).extracting(FooEntity::id).containsExactly("c");
+    assertThat(last.getTotalElements()).isEqualTo(3);
+    assertThat(last.hasNext()).isFalse();
+  }
+}
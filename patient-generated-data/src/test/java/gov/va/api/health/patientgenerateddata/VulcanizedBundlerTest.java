@@ -2,17 +2,24 @@ package gov.va.api.health.patientgenerateddata;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.va.api.health.r4.api.bundle.AbstractBundle;
 import gov.va.api.health.r4.api.bundle.AbstractEntry;
+import gov.va.api.health.r4.api.bundle.BundleLink;
 import gov.va.api.health.r4.api.elements.Meta;
 import gov.va.api.health.r4.api.resources.Resource;
 import gov.va.api.lighthouse.vulcan.VulcanResult;
 import gov.va.api.lighthouse.vulcan.VulcanResult.Paging;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 
 public class VulcanizedBundlerTest {
@@ -57,14 +64,242 @@ public class VulcanizedBundlerTest {
     assertThat(bundle.entry().size()).isEqualTo(3);
   }
 
+  @Test
+  void apply_cursorPaging() {
+    LinkProperties cursorLinks =
+        LinkProperties.builder()
+            .defaultPageSize(20)
+            .maxPageSize(500)
+            .baseUrl("http://foo.com")
+            .r4BasePath("r4")
+            .cursorPaging(true)
+            .build();
+    VulcanResult<FooEntity> result =
+        VulcanResult.<FooEntity>builder()
+            .paging(paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 1, 1, 2, 9, 3))
+            .entities(
+                Stream.of(
+                    new FooEntity("1", "{ id: 1 }"),
+                    new FooEntity("2", "{ id: 2 }"),
+                    new FooEntity("3", "{ id: 3 }")))
+            .build();
+    var bundle = bundler(cursorLinks).apply(result);
+    assertThat(bundle.total()).isNull();
+    assertThat(bundle.link())
+        .containsExactly(
+            BundleLink.builder()
+                .relation(BundleLink.LinkRelation.first)
+                .url("http://foo.com/r4/Foo?patient=p1&_count=3")
+                .build(),
+            BundleLink.builder()
+                .relation(BundleLink.LinkRelation.self)
+                .url("http://foo.com/r4/Foo?patient=p1&page=1&_count=3")
+                .build(),
+            BundleLink.builder()
+                .relation(BundleLink.LinkRelation.next)
+                .url(
+                    "http://foo.com/r4/Foo?patient=p1&_count=3&_cursor="
+                        + CursorMapping.encode("3"))
+                .build());
+  }
+
+  @Test
+  void apply_followingCursor() {
+    String url = "http://foo.com/r4/Foo?patient=p1&_cursor=" + CursorMapping.encode("3");
+    VulcanResult<FooEntity> result =
+        VulcanResult.<FooEntity>builder()
+            .paging(
+                Paging.builder()
+                    .firstPage(Optional.of(1))
+                    .firstPageUrl(Optional.of(url + "&page=1&_count=3"))
+                    .previousPage(Optional.empty())
+                    .previousPageUrl(Optional.empty())
+                    .thisPage(Optional.of(1))
+                    .thisPageUrl(Optional.of(url + "&page=1&_count=3"))
+                    .nextPage(Optional.empty())
+                    .nextPageUrl(Optional.empty())
+                    .lastPage(Optional.of(1))
+                    .lastPageUrl(Optional.of(url + "&page=1&_count=3"))
+                    .totalRecords(1)
+                    .totalPages(1)
+                    .build())
+            .entities(Stream.of(new FooEntity("4", "{ id: 4 }")))
+            .build();
+    var bundle = bundler().apply(result);
+    assertThat(bundle.total()).isNull();
+    assertThat(bundle.link())
+        .containsExactly(
+            BundleLink.builder()
+                .relation(BundleLink.LinkRelation.first)
+                .url("http://foo.com/r4/Foo?patient=p1&_count=3")
+                .build(),
+            BundleLink.builder()
+                .relation(BundleLink.LinkRelation.self)
+                .url(url + "&page=1&_count=3")
+                .build());
+  }
+
+  @Test
+  void apply_totalEstimate() {
+    VulcanResult<FooEntity> result =
+        VulcanResult.<FooEntity>builder()
+            .paging(paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 1, 1, 2, 2, 1))
+            .entities(Stream.of(new FooEntity("1", "{ id: 1 }")))
+            .build();
+    var bundle = bundler(pageLinks, SearchTotal.estimate).apply(result);
+    assertThat(bundle.total()).isEqualTo(999);
+    assertThat(bundle.link())
+        .extracting(BundleLink::relation)
+        .containsExactly(
+            BundleLink.LinkRelation.first,
+            BundleLink.LinkRelation.prev,
+            BundleLink.LinkRelation.self,
+            BundleLink.LinkRelation.next);
+  }
+
+  @Test
+  void apply_totalNone() {
+    VulcanResult<FooEntity> result =
+        VulcanResult.<FooEntity>builder()
+            .paging(paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 1, 1, 2, 2, 1))
+            .entities(Stream.of(new FooEntity("1", "{ id: 1 }")))
+            .build();
+    var bundle = bundler(pageLinks, SearchTotal.none).apply(result);
+    assertThat(bundle.total()).isNull();
+    assertThat(bundle.link())
+        .extracting(BundleLink::relation)
+        .doesNotContain(BundleLink.LinkRelation.last);
+  }
+
+  @Test
+  void raw() {
+    Paging paging = paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 4, 5, 6, 9, 15);
+    VulcanResult<FooEntity> result =
+        VulcanResult.<FooEntity>builder()
+            .paging(paging)
+            .entities(
+                Stream.of(
+                    new FooEntity("1", "{\"id\":\"1\",\"ref\":{\"reference\":\"Patient/p1\"}}"),
+                    new FooEntity("2", "{\"id\":\"2\"}")))
+            .build();
+    RawBundle bundle =
+        bundler().raw(e -> RawResource.of(e, pageLinks.r4Url(), Set.of("ref"))).apply(result);
+    assertThat(bundle.resourceType()).isEqualTo("Bundle");
+    assertThat(bundle.type()).isEqualTo(AbstractBundle.BundleType.searchset);
+    assertThat(bundle.total()).isEqualTo(999);
+    assertThat(bundle.link()).isEqualTo(bundler().toLinks(paging));
+    assertThat(bundle.entry())
+        .extracting(RawBundle.Entry::fullUrl)
+        .containsExactly("http://foo.com/r4/FooResource/1", "http://foo.com/r4/FooResource/2");
+    assertThat(bundle.entry().get(0).resource().json())
+        .isEqualTo("{\"id\":\"1\",\"ref\":{\"reference\":\"http://foo.com/r4/Patient/p1\"}}");
+    assertThat(bundle.icns()).containsExactly("p1");
+  }
+
+  @Test
+  void raw_totalNone() {
+    VulcanResult<FooEntity> result =
+        VulcanResult.<FooEntity>builder()
+            .paging(paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 1, 1, 2, 2, 1))
+            .entities(Stream.of(new FooEntity("1", "{\"id\":\"1\"}")))
+            .build();
+    RawBundle bundle =
+        bundler(pageLinks, SearchTotal.none)
+            .raw(e -> RawResource.of(e, pageLinks.r4Url(), Set.of()))
+            .apply(result);
+    assertThat(bundle.total()).isNull();
+    assertThat(bundle.link())
+        .extracting(BundleLink::relation)
+        .doesNotContain(BundleLink.LinkRelation.last);
+  }
+
+  @Test
+  @SneakyThrows
+  void streaming() {
+    Paging paging = paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 4, 5, 6, 9, 15);
+    Supplier<VulcanResult<FooEntity>> result =
+        () ->
+            VulcanResult.<FooEntity>builder()
+                .paging(paging)
+                .entities(
+                    Stream.of(
+                        new FooEntity("1", "{\"id\":\"1\",\"ref\":{\"reference\":\"Patient/p1\"}}"),
+                        new FooEntity("2", "{\"id\":\"2\",\"value\":1.10}")))
+                .build();
+    List<String> released = new ArrayList<>();
+    StreamingRawBundle<FooEntity> bundle =
+        bundler()
+            .streaming(
+                e -> RawResource.of(e, pageLinks.r4Url(), Set.of("ref")),
+                e -> RawResource.icns(e, Set.of("ref")),
+                e -> released.add(e.id()))
+            .apply(result.get());
+    assertThat(bundle.total()).isEqualTo(999);
+    assertThat(bundle.link()).isEqualTo(bundler().toLinks(paging));
+    assertThat(bundle.icns()).containsExactly("p1");
+    RawBundle raw =
+        bundler()
+            .raw(e -> RawResource.of(e, pageLinks.r4Url(), Set.of("ref")))
+            .apply(result.get());
+    ObjectMapper mapper = JacksonMapperConfig.createMapper();
+    assertThat(mapper.writeValueAsString(bundle)).isEqualTo(mapper.writeValueAsString(raw));
+    assertThat(released).containsExactly("1", "2");
+    assertThat(bundle.entities()).containsOnlyNulls();
+  }
+
+  @Test
+  @SneakyThrows
+  void streaming_cursorEmpty() {
+    LinkProperties cursorLinks =
+        LinkProperties.builder()
+            .defaultPageSize(20)
+            .maxPageSize(500)
+            .baseUrl("http://foo.com")
+            .r4BasePath("r4")
+            .cursorPaging(true)
+            .build();
+    Supplier<VulcanResult<FooEntity>> result =
+        () ->
+            VulcanResult.<FooEntity>builder()
+                .paging(
+                    paging("http://foo.com/r4/Foo?patient=p1&page=%d&_count=%d", 1, 1, 1, 1, 1, 1))
+                .entities(Stream.empty())
+                .build();
+    StreamingRawBundle<FooEntity> bundle =
+        bundler(cursorLinks, SearchTotal.none)
+            .streaming(
+                e -> RawResource.of(e, cursorLinks.r4Url(), Set.of()), e -> List.of(), e -> {})
+            .apply(result.get());
+    assertThat(bundle.total()).isNull();
+    assertThat(bundle.icns()).isEmpty();
+    RawBundle raw =
+        bundler(cursorLinks, SearchTotal.none)
+            .raw(e -> RawResource.of(e, cursorLinks.r4Url(), Set.of()))
+            .apply(result.get());
+    ObjectMapper mapper = JacksonMapperConfig.createMapper();
+    assertThat(mapper.writeValueAsString(bundle)).isEqualTo(mapper.writeValueAsString(raw));
+    assertThat(mapper.writeValueAsString(bundle)).doesNotContain("\"entry\"");
+  }
+
   VulcanizedBundler<FooEntity, FooResource, FooEntry, FooBundle> bundler() {
+    return bundler(pageLinks);
+  }
+
+  VulcanizedBundler<FooEntity, FooResource, FooEntry, FooBundle> bundler(
+      LinkProperties linkProperties) {
+    return bundler(linkProperties, SearchTotal.accurate);
+  }
+
+  VulcanizedBundler<FooEntity, FooResource, FooEntry, FooBundle> bundler(
+      LinkProperties linkProperties, SearchTotal total) {
     return VulcanizedBundler.forBundling(
             FooEntity.class,
             VulcanizedBundler.Bundling.newBundle(FooBundle::new)
                 .newEntry(FooEntry::new)
-                .linkProperties(pageLinks)
+                .linkProperties(linkProperties)
                 .build())
         .toResource(FooEntity::deserializePayload)
+        .total(total)
         .build();
   }
 
@@ -78,6 +313,12 @@ public class VulcanizedBundlerTest {
 
     String payload;
 
+    byte[] compressedPayload;
+
+    FooEntity(String id, String payload) {
+      this(id, payload, null);
+    }
+
     @Override
     public FooResource deserializePayload() {
       return FooResource.builder().id(id).build();
@@ -125,6 +125,30 @@ public class WebExceptionHandlerTest {
                 .build());
   }
 
+  @Test
+  void preconditionFailed() {
+    OperationOutcome outcome =
+        new WebExceptionHandler("")
+            .handlePreconditionFailed(
+                new Exceptions.PreconditionFailed("x"), mock(HttpServletRequest.class));
+    assertThat(outcome.id(null).extension(null))
+        .isEqualTo(
+            OperationOutcome.builder()
+                .resourceType("OperationOutcome")
+                .text(
+                    Narrative.builder()
+                        .status(Narrative.NarrativeStatus.additional)
+                        .div("<div>Failure: null</div>")
+                        .build())
+                .issue(
+                    List.of(
+                        OperationOutcome.Issue.builder()
+                            .severity(OperationOutcome.Issue.IssueSeverity.fatal)
+                            .code("conflict")
+                            .build()))
+                .build());
+  }
+
   @Test
   void sanitizedMessage_exception() {
     assertThat(WebExceptionHandler.sanitizedMessage(new RuntimeException("oh noez")))
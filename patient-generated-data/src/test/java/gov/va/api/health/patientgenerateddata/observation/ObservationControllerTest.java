@@ -7,29 +7,46 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.va.api.health.patientgenerateddata.Exceptions;
+import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.patientgenerateddata.JacksonMapperConfig;
 import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
+import gov.va.api.health.patientgenerateddata.SearchToken;
 import gov.va.api.health.patientgenerateddata.Sourcerer;
+import gov.va.api.health.r4.api.datatypes.CodeableConcept;
+import gov.va.api.health.r4.api.datatypes.Coding;
+import gov.va.api.health.r4.api.elements.Reference;
+import gov.va.api.health.r4.api.resources.Observation;
 import gov.va.api.lighthouse.vulcan.InvalidRequest;
 import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentMatchers;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.DataBinder;
 
@@ -49,7 +66,8 @@ public class ObservationControllerTest {
   ObservationRepository repo = mock(ObservationRepository.class);
 
   ObservationController _controller() {
-    return new ObservationController(pageLinks, repo, sourcerer);
+    return new ObservationController(
+        mock(EntityManager.class), new ResourceIds(""), pageLinks, repo, sourcerer);
   }
 
   @Test
@@ -77,24 +95,12 @@ public class ObservationControllerTest {
   }
 
   @Test
-  @SneakyThrows
-  void getAllIds() {
-    when(repo.findAll())
-        .thenReturn(
-            List.of(
-                ObservationEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(observation("x1")))
-                    .build(),
-                ObservationEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(observation("x2")))
-                    .build(),
-                ObservationEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(observation("x3")))
-                    .build()));
-    assertThat(_controller().getAllIds()).isEqualTo(List.of("x1", "x2", "x3"));
+  void findIds() {
+    when(repo.findIdsAfter("", null, PageRequest.of(0, 3))).thenReturn(List.of("x1", "x2", "x3"));
+    assertThat(_controller().findIds(null, null, 3)).isEqualTo(List.of("x1", "x2", "x3"));
+    Instant since = Instant.parse("2021-01-01T00:00:00Z");
+    when(repo.findIdsAfter("x3", since, PageRequest.of(0, 2))).thenReturn(List.of("x4"));
+    assertThat(_controller().findIds("x3", since, 2)).isEqualTo(List.of("x4"));
   }
 
   @Test
@@ -103,13 +109,43 @@ public class ObservationControllerTest {
   }
 
   @ParameterizedTest
-  @ValueSource(strings = {"", "?_id=123&_lastUpdated=gt2020"})
+  @ValueSource(strings = {"", "?_id=123&_lastUpdated=gt2020", "?_id=123&code=8867-4"})
   void invalidRequests(String query) {
     assertThatExceptionOfType(InvalidRequest.class)
         .isThrownBy(
             () -> _controller().search(requestFromUri("http://fonzy.com/r4/Observation" + query)));
   }
 
+  @Test
+  void populateEntity() {
+    Observation observation =
+        observation()
+            .status(Observation.ObservationStatus.entered_in_error)
+            .subject(Reference.builder().reference("Patient/1011537977V693883").build())
+            .effectiveDateTime("2021-01-01T00:00:00Z")
+            .code(
+                CodeableConcept.builder()
+                    .coding(
+                        List.of(Coding.builder().system("http://loinc.org").code("8867-4").build()))
+                    .build())
+            .category(
+                List.of(
+                    CodeableConcept.builder()
+                        .coding(List.of(Coding.builder().code("vital-signs").build()))
+                        .build()));
+    ObservationEntity entity = ObservationEntity.builder().id("x").build();
+    ObservationController.populateEntity(entity, observation);
+    assertThat(entity.subject()).isEqualTo("1011537977V693883");
+    assertThat(entity.status()).isEqualTo("entered-in-error");
+    assertThat(entity.effective()).isEqualTo(Instant.parse("2021-01-01T00:00:00Z"));
+    assertThat(entity.codeTokens())
+        .extracting(SearchToken::token)
+        .containsExactlyInAnyOrder("http://loinc.org|8867-4", "http://loinc.org|", "8867-4");
+    assertThat(entity.categoryTokens())
+        .extracting(SearchToken::token)
+        .containsExactlyInAnyOrder("|vital-signs", "vital-signs");
+  }
+
   @Test
   @SneakyThrows
   void read() {
@@ -118,31 +154,62 @@ public class ObservationControllerTest {
             Optional.of(
                 ObservationEntity.builder()
                     .id("x")
+                    .version(3)
+                    .payload(MAPPER.writeValueAsString(observation()))
+                    .build()));
+    ResponseEntity<RawResource> response = _controller().read("x", null);
+    assertThat(response.getHeaders().getETag()).isEqualTo("W/\"3\"");
+    assertThat(MAPPER.readValue(response.getBody().json(), Observation.class))
+        .isEqualTo(observation());
+  }
+
+  @Test
+  @SneakyThrows
+  void read_modified() {
+    when(repo.findById("x"))
+        .thenReturn(
+            Optional.of(
+                ObservationEntity.builder()
+                    .id("x")
+                    .version(3)
                     .payload(MAPPER.writeValueAsString(observation()))
                     .build()));
-    assertThat(_controller().read("x")).isEqualTo(observation());
+    ResponseEntity<RawResource> response = _controller().read("x", "W/\"2\"");
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+    assertThat(response.getHeaders().getETag()).isEqualTo("W/\"3\"");
   }
 
   @Test
   void read_notFound() {
-    assertThrows(Exceptions.NotFound.class, () -> _controller().read("notfound"));
+    assertThrows(Exceptions.NotFound.class, () -> _controller().read("notfound", null));
+    assertThrows(Exceptions.NotFound.class, () -> _controller().read("notfound", "W/\"0\""));
   }
 
   @Test
   @SneakyThrows
-  void update_existing() {
-    Instant oldTime = Instant.parse("2021-01-01T01:00:00.001Z");
-    Instant newTime = Instant.parse("2022-02-02T02:00:00.002Z");
+  void read_notModified() {
     when(repo.findById("x"))
         .thenReturn(
             Optional.of(
                 ObservationEntity.builder()
                     .id("x")
-                    .payload(
-                        MAPPER.writeValueAsString(
-                            observationWithLastUpdatedAndSource(
-                                oldTime, "https://api.va.gov/services/pgd/static-access")))
+                    .version(3)
+                    .payload(MAPPER.writeValueAsString(observation()))
                     .build()));
+    ResponseEntity<RawResource> response = _controller().read("x", "W/\"3\"");
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(response.getHeaders().getETag()).isEqualTo("W/\"3\"");
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("1011537977V693883");
+    assertThat(response.getBody()).isNull();
+  }
+
+  @Test
+  void update_existing() {
+    Instant newTime = Instant.parse("2022-02-02T02:00:00.002Z");
+    doAnswer(i -> i.getArgument(0, ObservationEntity.class).version(2))
+        .when(repo)
+        .updateIfMatch(any(), any());
     assertThat(
             _controller()
                 .update(
@@ -150,45 +217,41 @@ public class ObservationControllerTest {
                         newTime, "https://api.va.gov/services/pgd/static-access"),
                     "Bearer sat",
                     null,
+                    null,
                     newTime))
         .isEqualTo(
-            ResponseEntity.ok(
-                observationWithLastUpdatedAndSource(
-                    newTime, "https://api.va.gov/services/pgd/static-access")));
+            ResponseEntity.ok()
+                .eTag("W/\"2\"")
+                .body(
+                    observationWithLastUpdatedAndSource(
+                        newTime, "https://api.va.gov/services/pgd/static-access")));
     verify(repo, times(1))
-        .save(
-            ObservationEntity.builder()
-                .id("x")
-                .payload(
-                    MAPPER.writeValueAsString(
-                        observationWithLastUpdatedAndSource(
-                            newTime, "https://api.va.gov/services/pgd/static-access")))
-                .build());
+        .updateIfMatch(
+            argThat(
+                e ->
+                    e.id().equals("x")
+                        && e.metaSource().equals("https://api.va.gov/services/pgd/static-access")),
+            isNull());
+    verify(repo, never()).findById("x");
+  }
+
+  @Test
+  void update_ifMatch() {
+    _controller().update("x", observation(), "Bearer sat", null, "W/\"3\"");
+    verify(repo, times(1)).updateIfMatch(any(), eq(3));
   }
 
   @Test
   void update_not_existing() {
+    doThrow(new Exceptions.NotFound("x")).when(repo).updateIfMatch(any(), any());
     assertThrows(
         Exceptions.NotFound.class,
-        () -> _controller().update("x", observation(), "Bearer sat", null));
+        () -> _controller().update("x", observation(), "Bearer sat", null, null));
   }
 
   @Test
-  @SneakyThrows
   void update_payloadSource() {
-    Instant oldTime = Instant.parse("2021-01-01T01:00:00.001Z");
     Instant newTime = Instant.parse("2022-02-02T02:00:00.002Z");
-
-    when(repo.findById("x"))
-        .thenReturn(
-            Optional.of(
-                ObservationEntity.builder()
-                    .id("x")
-                    .payload(
-                        MAPPER.writeValueAsString(
-                            observationWithLastUpdatedAndSource(
-                                oldTime, "https://api.va.gov/services/pgd/static-access")))
-                    .build()));
     assertThat(
             _controller()
                 .update(
@@ -196,24 +259,37 @@ public class ObservationControllerTest {
                         newTime, "https://api.va.gov/services/pgd/zombie-bob-nelson"),
                     "Bearer sat",
                     null,
+                    null,
                     newTime))
         .isEqualTo(
             ResponseEntity.ok(
                 observationWithLastUpdatedAndSource(
                     newTime, "https://api.va.gov/services/pgd/static-access")));
     verify(repo, times(1))
-        .save(
-            ObservationEntity.builder()
-                .id("x")
-                .payload(
-                    MAPPER.writeValueAsString(
-                        observationWithLastUpdatedAndSource(
-                            newTime, "https://api.va.gov/services/pgd/static-access")))
-                .build());
+        .updateIfMatch(
+            argThat(e -> e.metaSource().equals("https://api.va.gov/services/pgd/static-access")),
+            isNull());
+  }
+
+  @Test
+  void update_versionMismatch() {
+    doThrow(new Exceptions.PreconditionFailed("x")).when(repo).updateIfMatch(any(), eq(1));
+    assertThrows(
+        Exceptions.PreconditionFailed.class,
+        () -> _controller().update("x", observation(), "Bearer sat", null, "W/\"1\""));
   }
 
   @ParameterizedTest
-  @ValueSource(strings = {"?_id=1", "?_lastUpdated=gt2020"})
+  @ValueSource(
+      strings = {
+        "?_id=1",
+        "?_lastUpdated=gt2020",
+        "?category=vital-signs",
+        "?code=http://loinc.org|8867-4",
+        "?date=ge2020",
+        "?status=final",
+        "?subject=1011537977V693883"
+      })
   void validSearch(String query) {
     when(repo.findAll(
             ArgumentMatchers.<Specification<ObservationEntity>>any(), any(Pageable.class)))
@@ -227,8 +303,7 @@ public class ObservationControllerTest {
                             .payload("{\"resourceType\":\"Observation\",\"id\":1}")),
                     i.getArgument(1, Pageable.class),
                     1));
-    assertThat(
-            _controller().search(requestFromUri("http://fonzy.com/r4/Observation" + query)).entry())
-        .hasSize(1);
+    var actual = _controller().search(requestFromUri("http://fonzy.com/r4/Observation" + query));
+    assertThat(actual.entities()).hasSize(1);
   }
 }
@@ -0,0 +1,143 @@
+package gov.va.api.health.patientgenerateddata.observation;
+
+import static gov.va.api.health.patientgenerateddata.MockRequests.requestFromUri;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
+import gov.va.api.health.patientgenerateddata.Sourcerer;
+import gov.va.api.health.r4.api.datatypes.CodeableConcept;
+import gov.va.api.health.r4.api.datatypes.Coding;
+import gov.va.api.health.r4.api.elements.Reference;
+import gov.va.api.health.r4.api.resources.Observation;
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ObservationRepositoryJpaTest {
+  @Autowired EntityManager entityManager;
+
+  @Autowired ObservationRepository repository;
+
+  LinkProperties linkProperties =
+      LinkProperties.builder()
+          .defaultPageSize(20)
+          .maxPageSize(20)
+          .baseUrl("http://foo.com")
+          .r4BasePath("r4")
+          .build();
+
+  private static Observation observation(
+      String id,
+      String subject,
+      Observation.ObservationStatus status,
+      String code,
+      String category,
+      String effective) {
+    return Observation.builder()
+        .id(id)
+        .subject(Reference.builder().reference("Patient/" + subject).build())
+        .status(status)
+        .code(
+            CodeableConcept.builder()
+                .coding(List.of(Coding.builder().system("http://loinc.org").code(code).build()))
+                .build())
+        .category(
+            category == null
+                ? null
+                : List.of(
+                    CodeableConcept.builder()
+                        .coding(List.of(Coding.builder().code(category).build()))
+                        .build()))
+        .effectiveDateTime(effective)
+        .build();
+  }
+
+  private ObservationController _controller() {
+    return new ObservationController(
+        entityManager,
+        new ResourceIds(""),
+        linkProperties,
+        repository,
+        new Sourcerer("{}", "sat"));
+  }
+
+  @BeforeEach
+  void insertRows() {
+    List.of(
+            observation(
+                "o1",
+                "p1",
+                Observation.ObservationStatus.amended,
+                "8867-4",
+                "vital-signs",
+                "2021-01-01T00:00:00Z"),
+            observation(
+                "o2",
+                "p1",
+                Observation.ObservationStatus.preliminary,
+                "8310-5",
+                null,
+                "2021-06-01T00:00:00Z"),
+            observation(
+                "o3",
+                "p2",
+                Observation.ObservationStatus.amended,
+                "8867-4",
+                "vital-signs",
+                "2022-01-01T00:00:00Z"))
+        .forEach(
+            o -> {
+              ObservationEntity entity = ObservationEntity.builder().id(o.id()).build();
+              ObservationController.populateEntity(entity, o);
+              repository.save(entity);
+            });
+    entityManager.flush();
+    entityManager.clear();
+  }
+
+  private List<String> search(String query) {
+    return _controller()
+        .search(requestFromUri("http://foo.com/r4/Observation?" + query))
+        .entities()
+        .stream()
+        .map(ObservationEntity::id)
+        .collect(toList());
+  }
+
+  @Test
+  void searchByCategory() {
+    assertThat(search("category=vital-signs")).containsExactlyInAnyOrder("o1", "o3");
+    assertThat(search("category=laboratory")).isEmpty();
+  }
+
+  @Test
+  void searchByCode() {
+    assertThat(search("code=http://loinc.org|8867-4")).containsExactlyInAnyOrder("o1", "o3");
+    assertThat(search("code=8310-5")).containsExactly("o2");
+  }
+
+  @Test
+  void searchByDate() {
+    assertThat(search("date=ge2021-06-01")).containsExactlyInAnyOrder("o2", "o3");
+    assertThat(search("date=lt2021-06-01")).containsExactly("o1");
+  }
+
+  @Test
+  void searchByStatus() {
+    assertThat(search("status=amended")).containsExactlyInAnyOrder("o1", "o3");
+  }
+
+  @Test
+  void searchBySubject() {
+    assertThat(search("subject=p1")).containsExactlyInAnyOrder("o1", "o2");
+    assertThat(search("subject=p1&status=amended&code=8867-4")).containsExactly("o1");
+  }
+}
@@ -0,0 +1,73 @@
+package gov.va.api.health.patientgenerateddata.questionnaire;
+
+import static gov.va.api.health.patientgenerateddata.questionnaire.Samples.questionnaire;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+public class QuestionnaireCacheTest {
+  SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+  private static QuestionnaireCache.Entry entry(String id) {
+    return new QuestionnaireCache.Entry(0, questionnaire().id(id), null);
+  }
+
+  private double count(String name, String result) {
+    return meters
+        .get(name)
+        .tag("cache", "questionnaire.cache")
+        .tag("result", result)
+        .functionCounter()
+        .count();
+  }
+
+  @Test
+  void eviction() {
+    QuestionnaireCache cache = new QuestionnaireCache(1, meters);
+    cache.put("x1", 0, entry("x1"));
+    cache.put("x2", 0, entry("x2"));
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.get("x1", 0)).isEmpty();
+    assertThat(cache.get("x2", 0)).isPresent();
+    assertThat(meters.get("cache.evictions").functionCounter().count()).isEqualTo(1);
+  }
+
+  @Test
+  void hitsAndMisses() {
+    QuestionnaireCache cache = new QuestionnaireCache(10, meters);
+    assertThat(cache.get("x", 0)).isEmpty();
+    cache.put("x", 0, entry("x"));
+    assertThat(cache.get("x", 0).get().questionnaire().id()).isEqualTo("x");
+    assertThat(cache.get("x", 1)).isEmpty();
+    assertThat(count("cache.gets", "hit")).isEqualTo(1);
+    assertThat(count("cache.gets", "miss")).isEqualTo(2);
+  }
+
+  @Test
+  void invalidate() {
+    QuestionnaireCache cache = new QuestionnaireCache(10, meters);
+    cache.put("x", 0, entry("x"));
+    cache.put("x", 1, entry("x"));
+    cache.put("y", 0, entry("y"));
+    cache.invalidate("x");
+    assertThat(cache.get("x", 0)).isEmpty();
+    assertThat(cache.get("x", 1)).isEmpty();
+    assertThat(cache.get("y", 0)).isPresent();
+    assertThat(meters.get("cache.evictions").functionCounter().count()).isEqualTo(0);
+  }
+
+  @Test
+  void invalidMaxSize() {
+    assertThrows(IllegalStateException.class, () -> new QuestionnaireCache(0, meters));
+  }
+
+  @Test
+  void unversionedIsNotCached() {
+    QuestionnaireCache cache = new QuestionnaireCache(10, meters);
+    cache.put("x", null, entry("x"));
+    assertThat(cache.size()).isEqualTo(0);
+    assertThat(cache.get("x", null)).isEmpty();
+  }
+}
@@ -7,30 +7,43 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.va.api.health.patientgenerateddata.Exceptions;
+import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.patientgenerateddata.JacksonMapperConfig;
 import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
 import gov.va.api.health.patientgenerateddata.Sourcerer;
 import gov.va.api.health.r4.api.resources.Questionnaire;
 import gov.va.api.lighthouse.vulcan.InvalidRequest;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentMatchers;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.DataBinder;
 
@@ -45,7 +58,13 @@ public class QuestionnaireControllerTest {
         LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
     QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
     QuestionnaireController controller =
-        new QuestionnaireController(pageLinks, repo, new Sourcerer("{}", "sat"));
+        new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            repo,
+            new Sourcerer("{}", "sat"));
     var questionnaire = questionnaire();
     var persisted = MAPPER.writeValueAsString(questionnaire);
     assertThat(controller.create(questionnaire, "Bearer sat", null, time))
@@ -62,39 +81,43 @@ public class QuestionnaireControllerTest {
     var questionnaire = questionnaire().id("123");
     var repo = mock(QuestionnaireRepository.class);
     var pageLinks = mock(LinkProperties.class);
-    var controller = new QuestionnaireController(pageLinks, repo, new Sourcerer("{}", "sat"));
+    var controller =
+        new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            repo,
+            new Sourcerer("{}", "sat"));
     assertThrows(Exceptions.BadRequest.class, () -> controller.create(questionnaire, "", null));
   }
 
   @Test
-  @SneakyThrows
-  void getAllIds() {
+  void findIds() {
     QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
     LinkProperties pageLinks =
         LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
     QuestionnaireController controller =
-        new QuestionnaireController(pageLinks, repo, new Sourcerer("{}", "sat"));
-    when(repo.findAll())
-        .thenReturn(
-            List.of(
-                QuestionnaireEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(questionnaire("x1")))
-                    .build(),
-                QuestionnaireEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(questionnaire("x2")))
-                    .build(),
-                QuestionnaireEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(questionnaire("x3")))
-                    .build()));
-    assertThat(controller.getAllIds()).isEqualTo(List.of("x1", "x2", "x3"));
+        new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            repo,
+            new Sourcerer("{}", "sat"));
+    when(repo.findIdsAfter("", null, PageRequest.of(0, 3))).thenReturn(List.of("x1", "x2", "x3"));
+    assertThat(controller.findIds(null, null, 3)).isEqualTo(List.of("x1", "x2", "x3"));
+    Instant since = Instant.parse("2021-01-01T00:00:00Z");
+    when(repo.findIdsAfter("x3", since, PageRequest.of(0, 2))).thenReturn(List.of("x4"));
+    assertThat(controller.findIds("x3", since, 2)).isEqualTo(List.of("x4"));
   }
 
   @Test
   void initDirectFieldAccess() {
     new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
             mock(LinkProperties.class),
             mock(QuestionnaireRepository.class),
             new Sourcerer("{}", "sat"))
@@ -106,25 +129,95 @@ public class QuestionnaireControllerTest {
   void read() {
     QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
     String payload = MAPPER.writeValueAsString(questionnaire());
+    when(repo.findVersionById("x")).thenReturn(Optional.of(0));
     when(repo.findById("x"))
-        .thenReturn(Optional.of(QuestionnaireEntity.builder().id("x").payload(payload).build()));
-    assertThat(
-            new QuestionnaireController(
-                    mock(LinkProperties.class), repo, new Sourcerer("{}", "sat"))
-                .read("x"))
+        .thenReturn(
+            Optional.of(QuestionnaireEntity.builder().id("x").version(0).payload(payload).build()));
+    ResponseEntity<RawResource> actual =
+        new QuestionnaireController(
+                new QuestionnaireCache(100, new SimpleMeterRegistry()),
+                mock(EntityManager.class),
+                new ResourceIds(""),
+                mock(LinkProperties.class),
+                repo,
+                new Sourcerer("{}", "sat"))
+            .read("x", null);
+    assertThat(actual.getHeaders().getETag()).isEqualTo("W/\"0\"");
+    assertThat(MAPPER.readValue(actual.getBody().json(), Questionnaire.class))
         .isEqualTo(questionnaire());
   }
 
+  @Test
+  @SneakyThrows
+  void read_cached() {
+    Instant now = Instant.parse("2021-01-01T01:00:00.001Z");
+    QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
+    String payload =
+        MAPPER.writeValueAsString(
+            questionnaireWithLastUpdatedAndSource(
+                now, "https://api.va.gov/services/pgd/static-access"));
+    when(repo.findVersionById("x")).thenReturn(Optional.of(0));
+    when(repo.findById("x"))
+        .thenAnswer(
+            i ->
+                Optional.of(
+                    QuestionnaireEntity.builder().id("x").version(0).payload(payload).build()));
+    QuestionnaireController controller =
+        new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            mock(LinkProperties.class),
+            repo,
+            new Sourcerer("{}", "sat"));
+    RawResource first = controller.read("x", null).getBody();
+    assertThat(controller.read("x", null).getBody()).isSameAs(first);
+    assertThat(controller.findById("x").get().id()).isEqualTo("x");
+    verify(repo, times(1)).findById("x");
+    // A newer version, e.g. written by another instance, is loaded again
+    when(repo.findVersionById("x")).thenReturn(Optional.of(1));
+    controller.read("x", null);
+    verify(repo, times(2)).findById("x");
+    // Local writes invalidate the cache
+    controller.update(questionnaire(), "Bearer sat", null, null, now);
+    when(repo.findVersionById("x")).thenReturn(Optional.of(0));
+    assertThat(controller.read("x", null).getBody()).isNotSameAs(first);
+    verify(repo, times(3)).findById("x");
+  }
+
   @Test
   void read_notFound() {
     assertThrows(
         Exceptions.NotFound.class,
         () ->
             new QuestionnaireController(
+                    new QuestionnaireCache(100, new SimpleMeterRegistry()),
+                    mock(EntityManager.class),
+                    new ResourceIds(""),
                     mock(LinkProperties.class),
                     mock(QuestionnaireRepository.class),
                     new Sourcerer("{}", "sat"))
-                .read("notfound"));
+                .read("notfound", null));
+  }
+
+  @Test
+  void read_notModified() {
+    QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
+    when(repo.findVersionById("x")).thenReturn(Optional.of(3));
+    ResponseEntity<RawResource> response =
+        new QuestionnaireController(
+                new QuestionnaireCache(100, new SimpleMeterRegistry()),
+                mock(EntityManager.class),
+                new ResourceIds(""),
+                mock(LinkProperties.class),
+                repo,
+                new Sourcerer("{}", "sat"))
+            .read("x", "W/\"3\"");
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(response.getHeaders().getETag()).isEqualTo("W/\"3\"");
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("NONE");
+    verify(repo, never()).findById("x");
   }
 
   @ParameterizedTest
@@ -139,7 +232,12 @@ public class QuestionnaireControllerTest {
             .build();
     QuestionnaireController controller =
         new QuestionnaireController(
-            pageLinks, mock(QuestionnaireRepository.class), new Sourcerer("{}", "sat"));
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            mock(QuestionnaireRepository.class),
+            new Sourcerer("{}", "sat"));
     var req = requestFromUri("http://fonzy.com/r4/Questionnaire" + query);
     assertThatExceptionOfType(InvalidRequest.class).isThrownBy(() -> controller.search(req));
   }
@@ -156,7 +254,13 @@ public class QuestionnaireControllerTest {
             .build();
     QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
     QuestionnaireController controller =
-        new QuestionnaireController(pageLinks, repo, new Sourcerer("{}", "sat"));
+        new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            repo,
+            new Sourcerer("{}", "sat"));
     var anySpec = ArgumentMatchers.<Specification<QuestionnaireEntity>>any();
     when(repo.findAll(anySpec, any(Pageable.class)))
         .thenAnswer(
@@ -171,63 +275,99 @@ public class QuestionnaireControllerTest {
                     1));
     var r = requestFromUri("http://fonzy.com/r4/Questionnaire" + query);
     var actual = controller.search(r);
-    assertThat(actual.entry()).hasSize(1);
+    assertThat(actual.entities()).hasSize(1);
   }
 
   @Test
-  @SneakyThrows
   void update_existing() {
     Instant now = Instant.parse("2021-01-01T01:00:00.001Z");
     Questionnaire questionnaire =
         questionnaireWithLastUpdatedAndSource(now, "https://api.va.gov/services/pgd/static-access");
-    String payload = MAPPER.writeValueAsString(questionnaire);
     QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
-    when(repo.findById("x"))
-        .thenReturn(Optional.of(QuestionnaireEntity.builder().id("x").payload(payload).build()));
+    doAnswer(i -> i.getArgument(0, QuestionnaireEntity.class).version(2))
+        .when(repo)
+        .updateIfMatch(any(), any());
     assertThat(
             new QuestionnaireController(
-                    mock(LinkProperties.class), repo, new Sourcerer("{}", "sat"))
-                .update(questionnaire, "Bearer sat", null, now))
+                    new QuestionnaireCache(100, new SimpleMeterRegistry()),
+                    mock(EntityManager.class),
+                    new ResourceIds(""),
+                    mock(LinkProperties.class),
+                    repo,
+                    new Sourcerer("{}", "sat"))
+                .update(questionnaire, "Bearer sat", null, null, now))
         .isEqualTo(
-            ResponseEntity.ok(
-                questionnaireWithLastUpdatedAndSource(
-                    now, "https://api.va.gov/services/pgd/static-access")));
-    verify(repo, times(1)).save(QuestionnaireEntity.builder().id("x").payload(payload).build());
+            ResponseEntity.ok()
+                .eTag("W/\"2\"")
+                .body(
+                    questionnaireWithLastUpdatedAndSource(
+                        now, "https://api.va.gov/services/pgd/static-access")));
+    verify(repo, times(1))
+        .updateIfMatch(
+            argThat(
+                e ->
+                    e.id().equals("x")
+                        && e.metaSource().equals("https://api.va.gov/services/pgd/static-access")),
+            isNull());
+    verify(repo, never()).findById("x");
+  }
+
+  @Test
+  void update_ifMatch() {
+    QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
+    new QuestionnaireController(
+            new QuestionnaireCache(100, new SimpleMeterRegistry()),
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            mock(LinkProperties.class),
+            repo,
+            new Sourcerer("{}", "sat"))
+        .update("x", questionnaire(), "Bearer sat", null, "W/\"3\"");
+    verify(repo, times(1)).updateIfMatch(any(), eq(3));
   }
 
   @Test
   void update_not_existing() {
     LinkProperties pageLinks =
         LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
+    QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
+    doThrow(new Exceptions.NotFound("x")).when(repo).updateIfMatch(any(), any());
     assertThrows(
         Exceptions.NotFound.class,
         () ->
             new QuestionnaireController(
-                    pageLinks, mock(QuestionnaireRepository.class), new Sourcerer("{}", "sat"))
-                .update("x", questionnaire(), "Bearer sat", null));
+                    new QuestionnaireCache(100, new SimpleMeterRegistry()),
+                    mock(EntityManager.class),
+                    new ResourceIds(""),
+                    pageLinks,
+                    repo,
+                    new Sourcerer("{}", "sat"))
+                .update("x", questionnaire(), "Bearer sat", null, null));
   }
 
   @Test
-  @SneakyThrows
   void update_payloadSource() {
     Instant now = Instant.parse("2021-01-01T01:00:00.001Z");
     Questionnaire questionnaire =
         questionnaireWithLastUpdatedAndSource(
             now, "https://api.va.gov/services/pgd/zombie-bob-nelson");
-    Questionnaire staticQuestionnaireSource =
-        questionnaireWithLastUpdatedAndSource(now, "https://api.va.gov/services/pgd/static-access");
-    String payload = MAPPER.writeValueAsString(staticQuestionnaireSource);
     QuestionnaireRepository repo = mock(QuestionnaireRepository.class);
-    when(repo.findById("x"))
-        .thenReturn(Optional.of(QuestionnaireEntity.builder().id("x").payload(payload).build()));
     assertThat(
             new QuestionnaireController(
-                    mock(LinkProperties.class), repo, new Sourcerer("{}", "sat"))
-                .update(questionnaire, "Bearer sat", null, now))
+                    new QuestionnaireCache(100, new SimpleMeterRegistry()),
+                    mock(EntityManager.class),
+                    new ResourceIds(""),
+                    mock(LinkProperties.class),
+                    repo,
+                    new Sourcerer("{}", "sat"))
+                .update(questionnaire, "Bearer sat", null, null, now))
         .isEqualTo(
             ResponseEntity.ok(
                 questionnaireWithLastUpdatedAndSource(
                     now, "https://api.va.gov/services/pgd/static-access")));
-    verify(repo, times(1)).save(QuestionnaireEntity.builder().id("x").payload(payload).build());
+    verify(repo, times(1))
+        .updateIfMatch(
+            argThat(e -> e.metaSource().equals("https://api.va.gov/services/pgd/static-access")),
+            isNull());
   }
 }
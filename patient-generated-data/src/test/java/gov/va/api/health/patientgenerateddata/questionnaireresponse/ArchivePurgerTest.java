@@ -0,0 +1,170 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import gov.va.api.health.patientgenerateddata.JobLocks;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+public class ArchivePurgerTest {
+  static final Instant NOW = Instant.parse("2021-06-15T12:00:00Z");
+
+  static final Instant CUTOFF = Instant.parse("2016-06-15T12:00:00Z");
+
+  ArchivedQuestionnaireResponseRepository repo =
+      mock(ArchivedQuestionnaireResponseRepository.class);
+
+  JobLocks jobLocks = mock(JobLocks.class);
+
+  SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+  private ArchivePurger _purger() {
+    return new ArchivePurger(
+        repo, jobLocks, 2, 10, meters, MoreExecutors.newDirectExecutorService());
+  }
+
+  @Test
+  void invalidBatchSize() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            new ArchivePurger(
+                repo, jobLocks, 0, 10, meters, MoreExecutors.newDirectExecutorService()));
+  }
+
+  @Test
+  void invalidLockLease() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            new ArchivePurger(
+                repo, jobLocks, 2, 0, meters, MoreExecutors.newDirectExecutorService()));
+  }
+
+  @BeforeEach
+  void lockAvailable() {
+    when(jobLocks.lock(eq(ArchivePurger.LOCK), any(), eq(Duration.ofMinutes(10))))
+        .thenReturn(true);
+  }
+
+  @Test
+  void purge() {
+    when(repo.findIdsDeletedBefore(CUTOFF, PageRequest.of(0, 2)))
+        .thenReturn(List.of("x1", "x2"), List.of("x3"));
+    ArchivePurger purger = _purger();
+    assertThat(purger.purge(NOW)).isEqualTo(3);
+    verify(repo).deleteByIdIn(List.of("x1", "x2"));
+    verify(repo).deleteByIdIn(List.of("x3"));
+    verify(jobLocks).unlock(ArchivePurger.LOCK);
+    assertThat(meters.counter("archive.purge.removed").count()).isEqualTo(3);
+    assertThat(meters.timer("archive.purge.duration").count()).isEqualTo(1);
+    ArchivePurgeStatus status = purger.status();
+    assertThat(status.running()).isFalse();
+    assertThat(status.cutoff()).isEqualTo(CUTOFF);
+    assertThat(status.lastStarted()).isEqualTo(NOW);
+    assertThat(status.lastCompleted()).isNotNull();
+    assertThat(status.lastRemoved()).isEqualTo(3);
+    assertThat(status.lastRemovedIdSample()).isEqualTo(List.of("x1", "x2", "x3"));
+    assertThat(status.totalRemoved()).isEqualTo(3);
+    assertThat(status.lastError()).isNull();
+  }
+
+  @Test
+  void purge_alreadyRunning() {
+    ArchivePurger purger = _purger();
+    when(repo.findIdsDeletedBefore(CUTOFF, PageRequest.of(0, 2)))
+        .thenAnswer(
+            invocation -> {
+              assertThat(purger.status().running()).isTrue();
+              assertThat(purger.purge(NOW)).isEqualTo(0);
+              return List.of();
+            });
+    assertThat(purger.purge(NOW)).isEqualTo(0);
+    assertThat(purger.status().running()).isFalse();
+  }
+
+  @Test
+  void purge_failure() {
+    when(repo.findIdsDeletedBefore(CUTOFF, PageRequest.of(0, 2)))
+        .thenReturn(List.of("x1", "x2"))
+        .thenThrow(new IllegalStateException("fugazi"));
+    ArchivePurger purger = _purger();
+    assertThrows(IllegalStateException.class, () -> purger.purge(NOW));
+    assertThat(meters.counter("archive.purge.failures").count()).isEqualTo(1);
+    verify(jobLocks).unlock(ArchivePurger.LOCK);
+    ArchivePurgeStatus status = purger.status();
+    assertThat(status.running()).isFalse();
+    assertThat(status.lastRemoved()).isEqualTo(2);
+    assertThat(status.lastRemovedIdSample()).isEqualTo(List.of("x1", "x2"));
+    assertThat(status.totalRemoved()).isEqualTo(2);
+    assertThat(status.lastError()).isEqualTo("fugazi");
+  }
+
+  @Test
+  void purge_nothingExpired() {
+    when(repo.findIdsDeletedBefore(CUTOFF, PageRequest.of(0, 2))).thenReturn(List.of());
+    assertThat(_purger().purge(NOW)).isEqualTo(0);
+    verify(repo, never()).deleteByIdIn(any());
+  }
+
+  @Test
+  void purge_lockLost() {
+    when(repo.findIdsDeletedBefore(CUTOFF, PageRequest.of(0, 2))).thenReturn(List.of("x1", "x2"));
+    when(jobLocks.lock(eq(ArchivePurger.LOCK), any(), any())).thenReturn(true, false);
+    ArchivePurger purger = _purger();
+    assertThrows(IllegalStateException.class, () -> purger.purge(NOW));
+    verify(repo).deleteByIdIn(List.of("x1", "x2"));
+    assertThat(purger.status().lastError()).isEqualTo("Archive purge lock lost");
+  }
+
+  @Test
+  void purge_lockedByAnotherInstance() {
+    when(jobLocks.lock(eq(ArchivePurger.LOCK), any(), any())).thenReturn(false);
+    ArchivePurger purger = _purger();
+    assertThat(purger.purge(NOW)).isEqualTo(0);
+    verify(repo, never()).findIdsDeletedBefore(any(), any());
+    verify(jobLocks, never()).unlock(any());
+    assertThat(purger.status().lastStarted()).isNull();
+  }
+
+  @Test
+  void purge_removedIdSampleIsCapped() {
+    List<String> ids = IntStream.range(0, 150).mapToObj(i -> "x" + i).collect(toList());
+    when(repo.findIdsDeletedBefore(CUTOFF, PageRequest.of(0, 2)))
+        .thenReturn(ids.subList(0, 2), ids.subList(2, 150));
+    ArchivePurger purger = _purger();
+    assertThat(purger.purge(NOW)).isEqualTo(150);
+    assertThat(purger.status().lastRemoved()).isEqualTo(150);
+    assertThat(purger.status().lastRemovedIdSample())
+        .isEqualTo(ids.subList(0, ArchivePurger.REMOVED_ID_SAMPLE_SIZE));
+  }
+
+  @Test
+  void retentionCutoff() {
+    assertThat(ArchivePurger.retentionCutoff(NOW)).isEqualTo(CUTOFF);
+  }
+
+  @Test
+  void start() {
+    when(repo.findIdsDeletedBefore(any(), eq(PageRequest.of(0, 2)))).thenReturn(List.of("x1"));
+    ArchivePurger purger = _purger();
+    purger.start();
+    verify(repo).deleteByIdIn(List.of("x1"));
+    assertThat(purger.status().totalRemoved()).isEqualTo(1);
+  }
+}
@@ -0,0 +1,63 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class ArchivedQuestionnaireResponseRepositoryJpaTest {
+  static final Instant START = Instant.parse("2010-01-01T00:00:00Z");
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired ArchivedQuestionnaireResponseRepository repository;
+
+  @Test
+  void deleteByIdIn() {
+    assertThat(repository.deleteByIdIn(List.of("a1", "a3", "nope"))).isEqualTo(2);
+    Instant cutoff = START.plus(5, ChronoUnit.DAYS);
+    assertThat(repository.findIdsDeletedBefore(cutoff, PageRequest.of(0, 10)))
+        .containsExactly("a0", "a2", "a4");
+  }
+
+  @Test
+  void deletionTimestampIndex() {
+    assertThat(
+            jdbc.queryForObject(
+                "explain select id from app.ArchivedQuestionnaireResponse"
+                    + " where deletionTimestamp < '2010-01-03' order by deletionTimestamp, id",
+                String.class))
+        .containsIgnoringCase("ix_ArchivedQuestionnaireResponse_deletionTimestamp");
+  }
+
+  @Test
+  void findIdsDeletedBefore() {
+    Instant cutoff = START.plus(3, ChronoUnit.DAYS);
+    assertThat(repository.findIdsDeletedBefore(cutoff, PageRequest.of(0, 2)))
+        .containsExactly("a0", "a1");
+    assertThat(repository.findIdsDeletedBefore(cutoff, PageRequest.of(0, 10)))
+        .containsExactly("a0", "a1", "a2");
+  }
+
+  @BeforeEach
+  void insertRows() {
+    for (int i = 0; i < 10; i++) {
+      repository.save(
+          ArchivedQuestionnaireResponseEntity.builder()
+              .id("a" + i)
+              .payload("{}")
+              .deletionTimestamp(START.plus(i, ChronoUnit.DAYS))
+              .build());
+    }
+  }
+}
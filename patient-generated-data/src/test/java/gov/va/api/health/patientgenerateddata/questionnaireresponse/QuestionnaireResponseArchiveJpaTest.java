@@ -0,0 +1,86 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class QuestionnaireResponseArchiveJpaTest {
+  static final Instant NOW = Instant.parse("2021-06-15T12:00:00Z");
+
+  @Autowired JdbcTemplate jdbc;
+
+  @Autowired QuestionnaireResponseRepository repository;
+
+  @Autowired ArchivedQuestionnaireResponseRepository archivedRepository;
+
+  @Test
+  void archive() {
+    assertThat(repository.archive("qr1", null, NOW)).isEqualTo(1);
+    assertMoved("qr1");
+  }
+
+  @Test
+  void archiveIcn() {
+    assertThat(repository.archive("qr1", "p1", NOW)).isEqualTo(1);
+    assertMoved("qr1");
+  }
+
+  @Test
+  void archiveIcnMismatch() {
+    assertThat(repository.archive("qr1", "p2", NOW)).isEqualTo(0);
+    assertThat(repository.archive("qr2", "p1", NOW)).isEqualTo(0);
+    assertThat(count("QuestionnaireResponse")).isEqualTo(2);
+    assertThat(count("QuestionnaireResponseTag")).isEqualTo(2);
+    assertThat(count("ArchivedQuestionnaireResponse")).isEqualTo(0);
+  }
+
+  @Test
+  void archiveNotFound() {
+    assertThat(repository.archive("nope", null, NOW)).isEqualTo(0);
+    assertThat(count("QuestionnaireResponse")).isEqualTo(2);
+  }
+
+  private void assertMoved(String id) {
+    assertThat(repository.existsById(id)).isFalse();
+    assertThat(count("QuestionnaireResponseTag")).isEqualTo(1);
+    ArchivedQuestionnaireResponseEntity archived = archivedRepository.findById(id).get();
+    assertThat(archived.payload()).isEqualTo("{\"id\":\"" + id + "\"}");
+    assertThat(archived.deletionTimestamp()).isEqualTo(NOW);
+  }
+
+  private int count(String table) {
+    return jdbc.queryForObject("select count(*) from app." + table, Integer.class);
+  }
+
+  @BeforeEach
+  void insertRows() {
+    insert("qr1", "p1", null);
+    insert("qr2", "p1", "d1");
+  }
+
+  private void insert(String id, String subject, String author) {
+    jdbc.update(
+        "insert into app.QuestionnaireResponse (id, payload, version, subject, author)"
+            + " values (?,?,?,?,?)",
+        id,
+        "{\"id\":\"" + id + "\"}",
+        0,
+        subject,
+        author);
+    jdbc.update(
+        "insert into app.QuestionnaireResponseTag"
+            + " (questionnaireResponseId, system, code, token) values (?,?,?,?)",
+        id,
+        "s",
+        "c",
+        "s|c");
+  }
+}
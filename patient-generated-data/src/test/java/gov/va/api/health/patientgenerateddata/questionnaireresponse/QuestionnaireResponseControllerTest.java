@@ -7,28 +7,40 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gov.va.api.health.patientgenerateddata.Exceptions;
+import gov.va.api.health.patientgenerateddata.IncludesIcnMajig;
 import gov.va.api.health.patientgenerateddata.JacksonMapperConfig;
 import gov.va.api.health.patientgenerateddata.LinkProperties;
+import gov.va.api.health.patientgenerateddata.RawResource;
+import gov.va.api.health.patientgenerateddata.ResourceIds;
 import gov.va.api.health.patientgenerateddata.Sourcerer;
+import gov.va.api.health.r4.api.elements.Reference;
 import gov.va.api.health.r4.api.resources.QuestionnaireResponse;
 import gov.va.api.lighthouse.vulcan.InvalidRequest;
 import java.net.URI;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
+import javax.persistence.EntityManager;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.ArgumentMatchers;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
@@ -52,49 +64,88 @@ public class QuestionnaireResponseControllerTest {
         mock(QuestionnaireResponseRepository.class));
   }
 
+  private static QuestionnaireResponseController _controller(
+      QuestionnaireResponseRepository repo) {
+    return _controller(mock(ArchivedQuestionnaireResponseRepository.class), repo);
+  }
+
   private static QuestionnaireResponseController _controller(
       ArchivedQuestionnaireResponseRepository archivedRepo, QuestionnaireResponseRepository repo) {
     return new QuestionnaireResponseController(
-        pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"));
+        mock(EntityManager.class),
+        new ResourceIds(""),
+        pageLinks,
+        archivedRepo,
+        repo,
+        new Sourcerer("{}", "sat"));
   }
 
   @Test
-  @SneakyThrows
   void archivedDelete() {
-    ArchivedQuestionnaireResponseRepository archivedRepo =
-        mock(ArchivedQuestionnaireResponseRepository.class);
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
-
-    String payload = MAPPER.writeValueAsString(questionnaireResponse());
-    when(repo.findById("x"))
-        .thenReturn(
-            Optional.of(QuestionnaireResponseEntity.builder().id("x").payload(payload).build()));
-
-    assertThat(_controller(archivedRepo, repo).archivedDelete("x", null))
+    when(repo.archive(eq("x"), isNull(), any(Instant.class))).thenReturn(1);
+    assertThat(_controller(repo).archivedDelete("x", null))
         .isEqualTo(
             ResponseEntity.status(HttpStatus.NO_CONTENT)
                 .header("X-VA-INCLUDES-ICN", "NONE")
                 .body(null));
+    verify(repo).archive(eq("x"), isNull(), any(Instant.class));
+    verify(repo, never()).findById(any());
+  }
 
-    verify(archivedRepo, times(1))
-        .save(ArchivedQuestionnaireResponseEntity.builder().id("x").payload(payload).build());
+  @Test
+  void archivedDeleteIcn() {
+    QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    when(repo.archive(eq("x"), eq("p1"), any(Instant.class))).thenReturn(1);
+    assertThat(_controller(repo).archivedDelete("x", "p1"))
+        .isEqualTo(
+            ResponseEntity.status(HttpStatus.NO_CONTENT)
+                .header("X-VA-INCLUDES-ICN", "p1")
+                .body(null));
+    verify(repo, never()).findById(any());
+  }
 
-    verify(repo, times(1))
-        .delete(QuestionnaireResponseEntity.builder().id("x").payload(payload).build());
+  @Test
+  @SneakyThrows
+  void archivedDeleteIcnForbidden() {
+    QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    String payload =
+        MAPPER.writeValueAsString(
+            questionnaireResponse().subject(Reference.builder().reference("Patient/p2").build()));
+    when(repo.findById("x"))
+        .thenReturn(
+            Optional.of(QuestionnaireResponseEntity.builder().id("x").payload(payload).build()));
+    var controller = _controller(repo);
+    assertThrows(Exceptions.Forbidden.class, () -> controller.archivedDelete("x", "p1"));
+    verify(repo, never()).archive(eq("x"), isNull(), any(Instant.class));
   }
 
   @Test
   @SneakyThrows
-  void archivedDeleteNotFound() {
-    ArchivedQuestionnaireResponseRepository archivedRepo =
-        mock(ArchivedQuestionnaireResponseRepository.class);
+  void archivedDeleteIcnWithPractitionerAuthor() {
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    String payload =
+        MAPPER.writeValueAsString(
+            questionnaireResponse()
+                .subject(Reference.builder().reference("Patient/p1").build())
+                .author(Reference.builder().reference("Practitioner/d1").build()));
+    when(repo.findById("x"))
+        .thenReturn(
+            Optional.of(QuestionnaireResponseEntity.builder().id("x").payload(payload).build()));
+    _controller(repo).archivedDelete("x", "p1");
+    verify(repo).archive(eq("x"), eq("p1"), any(Instant.class));
+    verify(repo).archive(eq("x"), isNull(), any(Instant.class));
+  }
 
-    assertThat(_controller(archivedRepo, repo).archivedDelete("x", null))
+  @Test
+  void archivedDeleteNotFound() {
+    QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    assertThat(_controller(repo).archivedDelete("x", "p1"))
         .isEqualTo(
             ResponseEntity.status(HttpStatus.NO_CONTENT)
-                .header("X-VA-INCLUDES-ICN", "NONE")
+                .header("X-VA-INCLUDES-ICN", "p1")
                 .body(null));
+    verify(repo, never()).archive(eq("x"), isNull(), any(Instant.class));
   }
 
   @Test
@@ -129,14 +180,18 @@ public class QuestionnaireResponseControllerTest {
     var pageLinks = mock(LinkProperties.class);
     var controller =
         new QuestionnaireResponseController(
-            pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"));
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            archivedRepo,
+            repo,
+            new Sourcerer("{}", "sat"));
     assertThrows(
         Exceptions.BadRequest.class, () -> controller.create(questionnaireResponse, "", null));
   }
 
   @Test
-  @SneakyThrows
-  void getAllIds() {
+  void findIds() {
     ArchivedQuestionnaireResponseRepository archivedRepo =
         mock(ArchivedQuestionnaireResponseRepository.class);
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
@@ -144,28 +199,24 @@ public class QuestionnaireResponseControllerTest {
         LinkProperties.builder().baseUrl("http://foo.com").r4BasePath("r4").build();
     var controller =
         new QuestionnaireResponseController(
-            pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"));
-    when(repo.findAll())
-        .thenReturn(
-            List.of(
-                QuestionnaireResponseEntity.builder()
-                    .id("x1")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x1")))
-                    .build(),
-                QuestionnaireResponseEntity.builder()
-                    .id("x2")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x2")))
-                    .build(),
-                QuestionnaireResponseEntity.builder()
-                    .id("x3")
-                    .payload(MAPPER.writeValueAsString(questionnaireResponse("x3")))
-                    .build()));
-    assertThat(controller.getAllIds()).isEqualTo(List.of("x1", "x2", "x3"));
+            mock(EntityManager.class),
+            new ResourceIds(""),
+            pageLinks,
+            archivedRepo,
+            repo,
+            new Sourcerer("{}", "sat"));
+    when(repo.findIdsAfter("", null, PageRequest.of(0, 3))).thenReturn(List.of("x1", "x2", "x3"));
+    assertThat(controller.findIds(null, null, 3)).isEqualTo(List.of("x1", "x2", "x3"));
+    Instant since = Instant.parse("2021-01-01T00:00:00Z");
+    when(repo.findIdsAfter("x3", since, PageRequest.of(0, 2))).thenReturn(List.of("x4"));
+    assertThat(controller.findIds("x3", since, 2)).isEqualTo(List.of("x4"));
   }
 
   @Test
   void initDirectFieldAccess() {
     new QuestionnaireResponseController(
+            mock(EntityManager.class),
+            new ResourceIds(""),
             mock(LinkProperties.class),
             mock(ArchivedQuestionnaireResponseRepository.class),
             mock(QuestionnaireResponseRepository.class),
@@ -184,18 +235,22 @@ public class QuestionnaireResponseControllerTest {
   @Test
   @SneakyThrows
   void read() {
-    ArchivedQuestionnaireResponseRepository archivedRepo =
-        mock(ArchivedQuestionnaireResponseRepository.class);
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
-    String payload = MAPPER.writeValueAsString(questionnaireResponse());
+    String payload =
+        MAPPER.writeValueAsString(
+            questionnaireResponse().subject(Reference.builder().reference("Patient/p1").build()));
     when(repo.findById("x"))
         .thenReturn(
-            Optional.of(QuestionnaireResponseEntity.builder().id("x").payload(payload).build()));
-    assertThat(
-            new QuestionnaireResponseController(
-                    pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"))
-                .read("x"))
-        .isEqualTo(questionnaireResponse());
+            Optional.of(
+                QuestionnaireResponseEntity.builder().id("x").version(3).payload(payload).build()));
+    ResponseEntity<RawResource> response = _controller(repo).read("x", null);
+    assertThat(response.getHeaders().getETag()).isEqualTo("W/\"3\"");
+    RawResource actual = response.getBody();
+    assertThat(actual.icns()).containsExactly("p1");
+    assertThat(MAPPER.readValue(actual.json(), QuestionnaireResponse.class))
+        .isEqualTo(
+            questionnaireResponse()
+                .subject(Reference.builder().reference("http://foo.com/r4/Patient/p1").build()));
   }
 
   @Test
@@ -207,34 +262,69 @@ public class QuestionnaireResponseControllerTest {
         Exceptions.NotFound.class,
         () ->
             new QuestionnaireResponseController(
-                    pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"))
-                .read("notfound"));
+                    mock(EntityManager.class),
+                    new ResourceIds(""),
+                    pageLinks,
+                    archivedRepo,
+                    repo,
+                    new Sourcerer("{}", "sat"))
+                .read("notfound", null));
   }
 
   @Test
   @SneakyThrows
+  void read_notModified() {
+    QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    String payload =
+        MAPPER.writeValueAsString(
+            questionnaireResponse()
+                .subject(Reference.builder().reference("Patient/p1").build())
+                .author(Reference.builder().reference("Practitioner/d1").build()));
+    when(repo.findById("x"))
+        .thenReturn(
+            Optional.of(
+                QuestionnaireResponseEntity.builder().id("x").version(3).payload(payload).build()));
+    ResponseEntity<RawResource> response = _controller(repo).read("x", "W/\"3\"");
+    assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+    assertThat(response.getHeaders().getETag()).isEqualTo("W/\"3\"");
+    assertThat(response.getHeaders().getFirst(IncludesIcnMajig.INCLUDES_ICN_HEADER))
+        .isEqualTo("p1");
+    assertThat(response.getBody()).isNull();
+  }
+
+  @Test
   void update_existing() {
     Instant now = Instant.parse("2021-01-01T01:00:00.001Z");
-    ArchivedQuestionnaireResponseRepository archivedRepo =
-        mock(ArchivedQuestionnaireResponseRepository.class);
     QuestionnaireResponse questionnaireResponse =
         questionnaireResponseWithLastUpdatedAndSource(
             now, "https://api.va.gov/services/pgd/static-access");
-    String payload = MAPPER.writeValueAsString(questionnaireResponse);
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
-    when(repo.findById("x"))
-        .thenReturn(
-            Optional.of(QuestionnaireResponseEntity.builder().id("x").payload(payload).build()));
+    doAnswer(i -> i.getArgument(0, QuestionnaireResponseEntity.class).version(2))
+        .when(repo)
+        .updateIfMatch(any(), any());
     QuestionnaireResponse expected =
         questionnaireResponseWithLastUpdatedAndSource(
             now, "https://api.va.gov/services/pgd/static-access");
     assertThat(
-            new QuestionnaireResponseController(
-                    pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"))
-                .update(questionnaireResponse, "Bearer sat", null, now))
-        .isEqualTo(ResponseEntity.ok(expected));
+            _controller(mock(ArchivedQuestionnaireResponseRepository.class), repo)
+                .update(questionnaireResponse, "Bearer sat", null, null, now))
+        .isEqualTo(ResponseEntity.ok().eTag("W/\"2\"").body(expected));
     verify(repo, times(1))
-        .save(QuestionnaireResponseEntity.builder().id("x").payload(payload).build());
+        .updateIfMatch(
+            argThat(
+                e ->
+                    e.id().equals("x")
+                        && e.metaSource().equals("https://api.va.gov/services/pgd/static-access")),
+            isNull());
+    verify(repo, never()).findById("x");
+  }
+
+  @Test
+  void update_ifMatch() {
+    QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    _controller(mock(ArchivedQuestionnaireResponseRepository.class), repo)
+        .update("x", questionnaireResponse(), "Bearer sat", null, "W/\"3\"");
+    verify(repo, times(1)).updateIfMatch(any(), eq(3));
   }
 
   @Test
@@ -242,42 +332,39 @@ public class QuestionnaireResponseControllerTest {
     ArchivedQuestionnaireResponseRepository archivedRepo =
         mock(ArchivedQuestionnaireResponseRepository.class);
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
+    doThrow(new Exceptions.NotFound("x")).when(repo).updateIfMatch(any(), any());
     QuestionnaireResponse questionnaireResponse = questionnaireResponse();
     assertThrows(
         Exceptions.NotFound.class,
         () ->
             new QuestionnaireResponseController(
-                    pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"))
-                .update("x", questionnaireResponse, "Bearer sat", null));
+                    mock(EntityManager.class),
+                    new ResourceIds(""),
+                    pageLinks,
+                    archivedRepo,
+                    repo,
+                    new Sourcerer("{}", "sat"))
+                .update("x", questionnaireResponse, "Bearer sat", null, null));
   }
 
   @Test
-  @SneakyThrows
   void update_payloadSource() {
     Instant now = Instant.parse("2021-01-01T01:00:00.001Z");
-    ArchivedQuestionnaireResponseRepository archivedRepo =
-        mock(ArchivedQuestionnaireResponseRepository.class);
     QuestionnaireResponse questionnaireResponse =
         questionnaireResponseWithLastUpdatedAndSource(
             now, "https://api.va.gov/services/pgd/zombie-bob-nelson");
-    QuestionnaireResponse staticQuestionnaireResponseSource =
-        questionnaireResponseWithLastUpdatedAndSource(
-            now, "https://api.va.gov/services/pgd/static-access");
-    String payload = MAPPER.writeValueAsString(staticQuestionnaireResponseSource);
     QuestionnaireResponseRepository repo = mock(QuestionnaireResponseRepository.class);
-    when(repo.findById("x"))
-        .thenReturn(
-            Optional.of(QuestionnaireResponseEntity.builder().id("x").payload(payload).build()));
     QuestionnaireResponse expected =
         questionnaireResponseWithLastUpdatedAndSource(
             now, "https://api.va.gov/services/pgd/static-access");
     assertThat(
-            new QuestionnaireResponseController(
-                    pageLinks, archivedRepo, repo, new Sourcerer("{}", "sat"))
-                .update(questionnaireResponse, "Bearer sat", null, now))
+            _controller(mock(ArchivedQuestionnaireResponseRepository.class), repo)
+                .update(questionnaireResponse, "Bearer sat", null, null, now))
         .isEqualTo(ResponseEntity.ok(expected));
     verify(repo, times(1))
-        .save(QuestionnaireResponseEntity.builder().id("x").payload(payload).build());
+        .updateIfMatch(
+            argThat(e -> e.metaSource().equals("https://api.va.gov/services/pgd/static-access")),
+            isNull());
   }
 
   @ParameterizedTest
@@ -307,6 +394,6 @@ public class QuestionnaireResponseControllerTest {
                     1));
     var r = requestFromUri("http://fonzy.com/r4/QuestionnaireResponse" + query);
     var actual = controller.search(r);
-    assertThat(actual.entry()).hasSize(1);
+    assertThat(actual.entities()).hasSize(1);
   }
 }
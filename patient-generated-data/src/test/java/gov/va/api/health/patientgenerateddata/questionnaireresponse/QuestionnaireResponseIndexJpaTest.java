@@ -0,0 +1,82 @@
+package gov.va.api.health.patientgenerateddata.questionnaireresponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+
+@DataJpaTest
+@DirtiesContext(classMode = DirtiesContext.ClassMode.BEFORE_EACH_TEST_METHOD)
+public class QuestionnaireResponseIndexJpaTest {
+  @Autowired JdbcTemplate jdbc;
+
+  private String explain(String where) {
+    return jdbc.queryForObject(
+        "explain select id from app.QuestionnaireResponse where " + where + " order by id",
+        String.class);
+  }
+
+  @BeforeEach
+  void insertRows() {
+    Instant start = Instant.parse("2020-01-01T00:00:00Z");
+    for (int i = 0; i < 100; i++) {
+      Timestamp when = Timestamp.from(start.plus(i, ChronoUnit.DAYS));
+      jdbc.update(
+          "insert into app.QuestionnaireResponse"
+              + " (id, payload, version, author, authored, subject, questionnaire, source,"
+              + " lastUpdated) values (?,?,?,?,?,?,?,?,?)",
+          "qr" + i,
+          "{}",
+          0,
+          "author" + (i % 10),
+          when,
+          "subject" + (i % 20),
+          "questionnaire" + (i % 5),
+          "source" + (i % 3),
+          when);
+    }
+  }
+
+  @Test
+  void authorAndAuthored() {
+    assertThat(explain("author = 'author1' and authored >= '2020-02-01'"))
+        .containsIgnoringCase("ix_QuestionnaireResponse_author_authored");
+  }
+
+  @Test
+  void authored() {
+    assertThat(explain("authored >= '2020-03-01' and authored < '2020-03-02'"))
+        .containsIgnoringCase("ix_QuestionnaireResponse_authored_id");
+  }
+
+  @Test
+  void lastUpdated() {
+    assertThat(explain("lastUpdated >= '2020-03-01' and lastUpdated < '2020-03-02'"))
+        .containsIgnoringCase("ix_QuestionnaireResponse_lastUpdated_id");
+  }
+
+  @Test
+  void questionnaireAndSubject() {
+    assertThat(explain("questionnaire = 'questionnaire1' and subject = 'subject1'"))
+        .containsIgnoringCase("ix_QuestionnaireResponse_questionnaire_subject");
+  }
+
+  @Test
+  void sourceAndLastUpdated() {
+    assertThat(explain("source = 'source1' and lastUpdated >= '2020-02-01'"))
+        .containsIgnoringCase("ix_QuestionnaireResponse_source_lastUpdated");
+  }
+
+  @Test
+  void subjectAndAuthored() {
+    assertThat(explain("subject = 'subject1' and authored >= '2020-02-01'"))
+        .containsIgnoringCase("ix_QuestionnaireResponse_subject_authored");
+  }
+}